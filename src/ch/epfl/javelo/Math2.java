@@ -147,5 +147,38 @@ public final class Math2 {
 		return dotProduct(u1, u2, v1, v2) / norm(v1, v2);
 	}
 
-
-}
\ No newline at end of file
+	/**
+	 * Calculates the index of the cell (x, y) along the Hilbert curve filling a square grid of side 2^order.
+	 * Two cells whose indexes are close are always close in the grid, and every aligned sub-square of side 2^k
+	 * is visited by a contiguous range of indexes.
+	 *
+	 * @param order the order of the curve, between 0 and 31.
+	 * @param x     the x coordinate of the cell, between 0 (included) and 2^order (excluded).
+	 * @param y     the y coordinate of the cell, between 0 (included) and 2^order (excluded).
+	 * @return the index of the cell along the curve.
+	 * @throws IllegalArgumentException if the order or one of the coordinates is out of bounds.
+	 */
+	public static long hilbertIndex(int order, int x, int y) {
+		Preconditions.checkArgument(order >= 0 && order < Integer.SIZE);
+		long side = 1L << order;
+		Preconditions.checkArgument(x >= 0 && x < side && y >= 0 && y < side);
+
+		long index = 0;
+		for (long s = side >> 1; s > 0; s >>= 1) {
+			int rx = (x & s) != 0 ? 1 : 0;
+			int ry = (y & s) != 0 ? 1 : 0;
+			index += s * s * ((3 * rx) ^ ry);
+			// rotate the quadrant so that the curve stays continuous
+			if (ry == 0) {
+				if (rx == 1) {
+					x = (int) (side - 1 - x);
+					y = (int) (side - 1 - y);
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return index;
+	}
+}
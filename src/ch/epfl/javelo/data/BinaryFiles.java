@@ -0,0 +1,121 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * This class defines static methods for reading and writing the binary files composing a JaVelo dataset.
+ * <p>
+ * The files derived from a dataset (like the reverse adjacency or the gradients of its edges) start with a header of
+ * {@value #HEADER_BYTES} bytes, made of the version of the dataset they were computed from (see
+ * {@link #datasetVersion(Path)}) and of its numbers of nodes and edges, so that a file left over from another dataset
+ * is not used. Checking the header is cheap, as the version only depends on the sizes and modification times of the
+ * files of the dataset, not on their content.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class BinaryFiles {
+
+	/**
+	 * Number of bytes of the header of the files derived from a dataset.
+	 */
+	public static final int HEADER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+	private static final int OFFSET_VERSION = 0;
+	private static final int OFFSET_NODE_COUNT = OFFSET_VERSION + Long.BYTES;
+	private static final int OFFSET_EDGE_COUNT = OFFSET_NODE_COUNT + Integer.BYTES;
+	private static final String[] DATASET_FILES =
+			{"nodes.bin", "sectors.bin", "edges.bin", "profile_ids.bin", "elevations.bin", "attributes.bin"};
+
+	private BinaryFiles() {
+	}
+
+	/**
+	 * Maps the content of the file in memory, in read only mode, in order to obtain a ByteBuffer whose content is that of the file.
+	 *
+	 * @param p the path of the file we want to map.
+	 * @return a ByteBuffer whose content is that of the file.
+	 * @throws IOException in case of an input/output error. For example, if the file does not exist.
+	 */
+	public static ByteBuffer map(Path p) throws IOException {
+		try (FileChannel channel = FileChannel.open(p)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Writes the whole content of the buffer (from index 0 to its limit) in the file, which is replaced if it already exists.
+	 * The position of the given buffer is not modified.
+	 *
+	 * @param p      the path of the file to write.
+	 * @param buffer the content of the file.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static void write(Path p, ByteBuffer buffer) throws IOException {
+		ByteBuffer content = buffer.duplicate().rewind();
+		try (FileChannel channel = FileChannel.open(p, CREATE, WRITE, TRUNCATE_EXISTING)) {
+			while (content.hasRemaining()) channel.write(content);
+		}
+	}
+
+	/**
+	 * Gives the version of the dataset contained in the given directory, which changes as soon as one of its files is
+	 * modified (or replaced).
+	 *
+	 * @param directory the directory of the dataset.
+	 * @return the version of the dataset.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static long datasetVersion(Path directory) throws IOException {
+		long version = 0;
+		for (String name : DATASET_FILES) {
+			Path file = directory.resolve(name);
+			boolean exists = Files.exists(file);
+			version = mix(version, exists ? Files.size(file) : -1);
+			version = mix(version, exists ? Files.getLastModifiedTime(file).toMillis() : -1);
+		}
+		return version;
+	}
+
+	private static long mix(long hash, long value) {
+		long mixed = (hash ^ value) * 0x9E3779B97F4A7C15L;
+		return mixed ^ (mixed >>> 32);
+	}
+
+	/**
+	 * Writes the header of a file derived from a dataset at the start of the given buffer, whose position is not
+	 * modified.
+	 *
+	 * @param buffer         the content of the file, starting with {@value #HEADER_BYTES} bytes for the header.
+	 * @param datasetVersion the version of the dataset.
+	 * @param nodeCount      the number of nodes of the dataset.
+	 * @param edgeCount      the number of edges of the dataset.
+	 */
+	public static void putHeader(ByteBuffer buffer, long datasetVersion, int nodeCount, int edgeCount) {
+		buffer.putLong(OFFSET_VERSION, datasetVersion)
+				.putInt(OFFSET_NODE_COUNT, nodeCount)
+				.putInt(OFFSET_EDGE_COUNT, edgeCount);
+	}
+
+	/**
+	 * Checks if the given buffer starts with the header of a file derived from the given dataset.
+	 *
+	 * @param buffer         the content of the file.
+	 * @param datasetVersion the version of the dataset.
+	 * @param nodeCount      the number of nodes of the dataset.
+	 * @param edgeCount      the number of edges of the dataset.
+	 * @return true if and only if the file was derived from that dataset.
+	 */
+	public static boolean hasHeader(ByteBuffer buffer, long datasetVersion, int nodeCount, int edgeCount) {
+		return buffer.capacity() >= HEADER_BYTES
+				&& buffer.getLong(OFFSET_VERSION) == datasetVersion
+				&& buffer.getInt(OFFSET_NODE_COUNT) == nodeCount
+				&& buffer.getInt(OFFSET_EDGE_COUNT) == edgeCount;
+	}
+}
@@ -8,9 +8,10 @@ import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.DoubleUnaryOperator;
 
@@ -26,6 +27,14 @@ public final class Graph {
 	private final GraphSectors sectors;
 	private final GraphEdges edges;
 	private final List<AttributeSet> attributeSets;
+	private final long datasetVersion;
+	// built on first use if it was not loaded with the graph
+	private volatile GraphInEdges inEdges;
+
+	/**
+	 * Name of the optional file containing the reverse adjacency of the graph, see {@link GraphInEdges}.
+	 */
+	public static final String IN_EDGES_FILE = "in_edges.bin";
 
 	/**
 	 * Creates a Graph. A graph is composed of nodes, sectors and edges. It also has a set of attributes.
@@ -36,26 +45,48 @@ public final class Graph {
 	 * @param attributeSets the set of attributes linked to this graph. (Immutable)
 	 */
 	public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets) {
+		this(nodes, sectors, edges, attributeSets, null, 0);
+	}
+
+	/**
+	 * Creates a Graph whose reverse adjacency is already known.
+	 *
+	 * @param nodes the nodes composing the graph.
+	 * @param sectors the sectors framing the graph.
+	 * @param edges the edges composing the graph.
+	 * @param attributeSets the set of attributes linked to this graph. (Immutable)
+	 * @param inEdges the edges arriving at each node of the graph.
+	 */
+	public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets, GraphInEdges inEdges) {
+		this(nodes, sectors, edges, attributeSets, inEdges, 0);
+	}
+
+	private Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets,
+				  GraphInEdges inEdges, long datasetVersion) {
 		this.nodes = nodes;
 		this.sectors = sectors;
 		this.edges = edges;
 		this.attributeSets = List.copyOf(attributeSets);
+		this.inEdges = inEdges;
+		this.datasetVersion = datasetVersion;
 	}
 
 	/**
 	 * Gives the "JaVelo" graph obtained from the files in the directory whose path is basePath.
+	 * The reverse adjacency is read from the file in_edges.bin if it exists and was written for this version of the
+	 * dataset, and built on first use otherwise.
 	 *
 	 * @param basePath the path of the directory that will allow us to access different files.
 	 * @return a Graph constructed from all the components in the directory basePath.
 	 * @throws IOException in case of an input/output error. For example, if one of the expected files does not exist.
 	 */
 	public static Graph loadFrom(Path basePath) throws IOException {
-		IntBuffer nodesBuffer = mapBuffer(basePath.resolve("nodes.bin")).asIntBuffer();
-		ByteBuffer sectorsBuffer = mapBuffer(basePath.resolve("sectors.bin"));
-		ByteBuffer edgesBuffer = mapBuffer(basePath.resolve("edges.bin"));
-		IntBuffer profileIds = mapBuffer(basePath.resolve("profile_ids.bin")).asIntBuffer();
-		ShortBuffer elevations = mapBuffer(basePath.resolve("elevations.bin")).asShortBuffer();
-		LongBuffer attributeSets = mapBuffer(basePath.resolve("attributes.bin")).asLongBuffer();
+		IntBuffer nodesBuffer = BinaryFiles.map(basePath.resolve("nodes.bin")).asIntBuffer();
+		ByteBuffer sectorsBuffer = BinaryFiles.map(basePath.resolve("sectors.bin"));
+		ByteBuffer edgesBuffer = BinaryFiles.map(basePath.resolve("edges.bin"));
+		IntBuffer profileIds = BinaryFiles.map(basePath.resolve("profile_ids.bin")).asIntBuffer();
+		ShortBuffer elevations = BinaryFiles.map(basePath.resolve("elevations.bin")).asShortBuffer();
+		LongBuffer attributeSets = BinaryFiles.map(basePath.resolve("attributes.bin")).asLongBuffer();
 		List<AttributeSet> attributeList = new ArrayList<>();
 
 		for (int i = 0; i < attributeSets.capacity(); i++) {
@@ -64,21 +95,23 @@ public final class Graph {
 		GraphNodes nodes = new GraphNodes(nodesBuffer);
 		GraphSectors sectors = new GraphSectors(sectorsBuffer);
 		GraphEdges edges = new GraphEdges(edgesBuffer, profileIds, elevations);
-		return new Graph(nodes, sectors, edges, attributeList);
+		long datasetVersion = BinaryFiles.datasetVersion(basePath);
+		Path inEdgesPath = basePath.resolve(IN_EDGES_FILE);
+		GraphInEdges inEdges = Files.exists(inEdgesPath)
+				? GraphInEdges.loadFrom(inEdgesPath, datasetVersion, nodes.count(), edges.count())
+				: null;
+		return new Graph(nodes, sectors, edges, attributeList, inEdges, datasetVersion);
 	}
 
 	/**
-	 * Maps the content of the file in memory, in read only mode, in order to obtain a ByteBuffer whose content is that of the file.
-	 * This method's only purpose is to map the content of the different files needed for the method above "loadFrom".
+	 * Gives the version of the dataset the graph was loaded from, which identifies the files derived from it (see
+	 * {@link BinaryFiles}).
 	 *
-	 * @param p the path of the file we want to map.
-	 * @return a ByteBuffer containing components needed for the method "loadFrom".
-	 * @throws IOException in case of an input/output error. For example, if one of the expected files does not exist.
+	 * @return the version of the dataset, see {@link BinaryFiles#datasetVersion(Path)}, or 0 if the graph was not
+	 * loaded from a directory.
 	 */
-	private static ByteBuffer mapBuffer(Path p) throws IOException {
-		try (FileChannel channel = FileChannel.open(p)) {
-			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
-		}
+	public long datasetVersion() {
+		return datasetVersion;
 	}
 
 	/**
@@ -90,6 +123,15 @@ public final class Graph {
 		return this.nodes.count();
 	}
 
+	/**
+	 * Gives the total number of edges in the Graph.
+	 *
+	 * @return the total number of edges.
+	 */
+	public int edgeCount() {
+		return this.edges.count();
+	}
+
 	/**
 	 * Gives the point of the given identity node.
 	 *
@@ -121,6 +163,27 @@ public final class Graph {
 		return this.nodes.edgeId(nodeId, edgeIndex);
 	}
 
+	/**
+	 * Gives the number of edges arriving at the given identity node.
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return the number of arriving edges.
+	 */
+	public int nodeInDegree(int nodeId) {
+		return inEdges().inDegree(nodeId);
+	}
+
+	/**
+	 * Gives the identity of the edgeIndex-th edge arriving at the identity nodeId.
+	 *
+	 * @param nodeId    the identity of the node.
+	 * @param edgeIndex the index of the edge.
+	 * @return the identity of the edgeIndex-th edge arriving.
+	 */
+	public int nodeInEdgeId(int nodeId, int edgeIndex) {
+		return inEdges().edgeId(nodeId, edgeIndex);
+	}
+
 	/**
 	 * Gives the identity of the node closest to the given point, at the given maximum distance (in meters).
 	 *
@@ -148,6 +211,27 @@ public final class Graph {
 		return nodeId;
 	}
 
+	/**
+	 * Gives the identities of all the nodes at the given maximum distance (in meters) from the given point.
+	 *
+	 * @param point          the point of reference.
+	 * @param searchDistance the maximum distance between the point and the nodes.
+	 * @return the identities of the nodes at the given maximum distance, in increasing order within each sector.
+	 */
+	public int[] nodesCloseTo(PointCh point, double searchDistance) {
+		double maxDistance = searchDistance * searchDistance;
+		int[] nodeIds = new int[16];
+		int count = 0;
+		for (GraphSectors.Sector sec : sectors.sectorsInArea(point, searchDistance)) {
+			for (int i = sec.startNodeId(); i < sec.endNodeId(); i++) {
+				if (nodePoint(i).squaredDistanceTo(point) > maxDistance) continue;
+				if (count == nodeIds.length) nodeIds = Arrays.copyOf(nodeIds, 2 * count);
+				nodeIds[count++] = i;
+			}
+		}
+		return Arrays.copyOf(nodeIds, count);
+	}
+
 	/**
 	 * Gives the identity of the destination node of the given identity edge.
 	 *
@@ -158,6 +242,16 @@ public final class Graph {
 		return this.edges.targetNodeId(edgeId);
 	}
 
+	/**
+	 * Gives the identity of the starting node of the given identity edge.
+	 *
+	 * @param edgeId the edge identity.
+	 * @return the identity of the starting node of the given identity edge
+	 */
+	public int edgeSourceNodeId(int edgeId) {
+		return inEdges().sourceNodeId(edgeId);
+	}
+
 	/**
 	 * Tells if the edge, knowing its identity, goes in the opposite direction of the OSM path from which it comes.
 	 *
@@ -210,4 +304,20 @@ public final class Graph {
 		double upperBound = edgeLength(edgeId);
 		return Functions.sampled(edges.profileSamples(edgeId), upperBound);
 	}
+
+	/**
+	 * Gives the reverse adjacency of the graph, building it if it is not known yet.
+	 *
+	 * @return the reverse adjacency of the graph.
+	 */
+	private GraphInEdges inEdges() {
+		GraphInEdges result = inEdges;
+		if (result == null) {
+			synchronized (this) {
+				result = inEdges;
+				if (result == null) inEdges = result = GraphInEdges.of(nodes, edges);
+			}
+		}
+		return result;
+	}
 }
@@ -37,6 +37,15 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
 	private final static int PROF_3_VAL_LENGTH = 4;
 
 
+	/**
+	 * Calculates the total number of edges of the graph.
+	 *
+	 * @return the number of edges.
+	 */
+	public int count() {
+		return edgesBuffer.capacity() / BYTES_PER_EDGE;
+	}
+
 	/**
 	 * Checks if an edge is inverted.
 	 *
@@ -0,0 +1,193 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.Q28_4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * This record class represents the gradients (slopes) of the edges of a graph, computed once and for all from their
+ * decoded profiles, so that cost functions can take the steep parts of an edge into account without decoding its
+ * profile.
+ * <p>
+ * As each edge goes in a single direction (the two directions of a way being two edges), the gradients are stored per
+ * edge, in the direction of the edge. Every edge is described by {@value #BYTES_PER_EDGE} bytes: its steepest up-slope
+ * and its steepest down-slope, as unsigned multiples of half a percent (saturated at 127.5%), followed by the share of
+ * its length, in 255ths, whose slope belongs to each of the {@value #BUCKET_COUNT} buckets. The slope of an edge
+ * without profile is considered to be zero.
+ * <p>
+ * In the file gradients.bin, the gradients are preceded by the header identifying the dataset they were computed from
+ * (see {@link BinaryFiles}), so that the gradients of another dataset are never used.
+ *
+ * @param buffer the buffer containing the gradients of all the edges.
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public record GraphGradients(ByteBuffer buffer) {
+
+	/**
+	 * Name of the optional file containing the gradients of the edges.
+	 */
+	public static final String FILE = "gradients.bin";
+
+	/**
+	 * Number of slope buckets: descents steeper than 5%, slopes from -5% to 1%, from 1% to 3%, from 3% to 5%, from 5%
+	 * to 10% and above 10%.
+	 */
+	public static final int BUCKET_COUNT = 6;
+
+	private static final double[] BUCKET_LOWER_BOUNDS = {-0.05, 0.01, 0.03, 0.05, 0.10};
+	private static final int BYTES_PER_EDGE = 2 + BUCKET_COUNT;
+	private static final int OFFSET_MAX_UP = 0;
+	private static final int OFFSET_MAX_DOWN = OFFSET_MAX_UP + 1;
+	private static final int OFFSET_SHARES = OFFSET_MAX_DOWN + 1;
+	private static final double SLOPE_UNIT = 0.005;
+	private static final int SHARE_UNIT = 255;
+	private static final int SAMPLE_SPACING = 2;
+
+	/**
+	 * Gives the gradients of the edges of the given graph contained in the file gradients.bin of the directory whose
+	 * path is basePath.
+	 *
+	 * @param basePath the path of the directory of the dataset.
+	 * @param graph    the graph loaded from the dataset.
+	 * @return the gradients of the edges.
+	 * @throws IOException              in case of an input/output error. For example, if the file does not exist.
+	 * @throws IllegalArgumentException if the file was computed from another version of the dataset (see
+	 *                                  {@link Graph#datasetVersion()}), or does not contain the gradients of all the
+	 *                                  edges of the graph.
+	 */
+	public static GraphGradients loadFrom(Path basePath, Graph graph) throws IOException {
+		ByteBuffer content = BinaryFiles.map(basePath.resolve(FILE));
+		Preconditions.checkArgument(
+				BinaryFiles.hasHeader(content, graph.datasetVersion(), graph.nodeCount(), graph.edgeCount()));
+		GraphGradients gradients = new GraphGradients(
+				content.slice(BinaryFiles.HEADER_BYTES, content.capacity() - BinaryFiles.HEADER_BYTES));
+		Preconditions.checkArgument(gradients.buffer.capacity() % BYTES_PER_EDGE == 0
+				&& gradients.count() == graph.edgeCount());
+		return gradients;
+	}
+
+	/**
+	 * Computes the gradients of all the edges of the given graph from their profiles. The work is split among all the
+	 * available processors.
+	 *
+	 * @param graph the graph.
+	 * @return the gradients of the edges of the graph.
+	 */
+	public static GraphGradients of(Graph graph) {
+		byte[] gradients = new byte[graph.edgeCount() * BYTES_PER_EDGE];
+		IntStream.range(0, graph.edgeCount()).parallel().forEach(edgeId -> {
+			double length = graph.edgeLength(edgeId);
+			int sampleCount = 1 + Math2.ceilDiv((int) Math.scalb(length, 4), Q28_4.ofInt(SAMPLE_SPACING));
+			double spacing = length / (sampleCount - 1);
+			DoubleUnaryOperator profile = graph.edgeProfile(edgeId);
+
+			double maxUp = 0, maxDown = 0;
+			double[] lengths = new double[BUCKET_COUNT];
+			double previous = profile.applyAsDouble(0);
+			for (int i = 1; i < sampleCount && !Double.isNaN(previous); i++) {
+				double elevation = profile.applyAsDouble(i * spacing);
+				double slope = (elevation - previous) / spacing;
+				maxUp = Math.max(maxUp, slope);
+				maxDown = Math.max(maxDown, -slope);
+				lengths[bucketOf(slope)] += spacing;
+				previous = elevation;
+			}
+			if (Double.isNaN(previous) || length == 0) lengths[bucketOf(0)] = 1;
+
+			int offset = edgeId * BYTES_PER_EDGE;
+			gradients[offset + OFFSET_MAX_UP] = toSlopeByte(maxUp);
+			gradients[offset + OFFSET_MAX_DOWN] = toSlopeByte(maxDown);
+			// the shares are rounded cumulatively, so that their sum is exactly SHARE_UNIT
+			double total = 0;
+			for (double bucketLength : lengths) total += bucketLength;
+			double cumulated = 0;
+			int rounded = 0;
+			for (int b = 0; b < BUCKET_COUNT; b++) {
+				cumulated += lengths[b];
+				int next = (int) Math.round(cumulated / total * SHARE_UNIT);
+				gradients[offset + OFFSET_SHARES + b] = (byte) (next - rounded);
+				rounded = next;
+			}
+		});
+		return new GraphGradients(ByteBuffer.wrap(gradients));
+	}
+
+	private static byte toSlopeByte(double slope) {
+		return (byte) Math2.clamp(0, (int) Math.round(slope / SLOPE_UNIT), 255);
+	}
+
+	/**
+	 * Gives the bucket containing the given slope.
+	 *
+	 * @param slope the slope (positive uphill), for example 0.04 for 4%.
+	 * @return the index of the bucket of the slope, between 0 (included) and {@value #BUCKET_COUNT} (excluded).
+	 */
+	public static int bucketOf(double slope) {
+		int bucket = 0;
+		while (bucket < BUCKET_LOWER_BOUNDS.length && slope >= BUCKET_LOWER_BOUNDS[bucket]) bucket++;
+		return bucket;
+	}
+
+	/**
+	 * Writes the gradients in the file gradients.bin of the directory whose path is basePath.
+	 *
+	 * @param basePath the path of the directory of the dataset.
+	 * @param graph    the graph the gradients were computed from, loaded from the dataset.
+	 * @throws IOException              in case of an input/output error.
+	 * @throws IllegalArgumentException if the gradients are not those of all the edges of the graph.
+	 */
+	public void writeTo(Path basePath, Graph graph) throws IOException {
+		Preconditions.checkArgument(count() == graph.edgeCount());
+		ByteBuffer content = ByteBuffer.allocate(BinaryFiles.HEADER_BYTES + buffer.capacity());
+		BinaryFiles.putHeader(content, graph.datasetVersion(), graph.nodeCount(), graph.edgeCount());
+		content.put(BinaryFiles.HEADER_BYTES, buffer, 0, buffer.capacity());
+		BinaryFiles.write(basePath.resolve(FILE), content);
+	}
+
+	/**
+	 * Gives the number of edges whose gradients are stored.
+	 *
+	 * @return the number of edges.
+	 */
+	public int count() {
+		return buffer.capacity() / BYTES_PER_EDGE;
+	}
+
+	/**
+	 * Gives the steepest up-slope of the given identity edge, in its direction.
+	 *
+	 * @param edgeId the identity of the edge.
+	 * @return the steepest up-slope, positive or zero, with a precision of half a percent.
+	 */
+	public double maxUpSlope(int edgeId) {
+		return Byte.toUnsignedInt(buffer.get(edgeId * BYTES_PER_EDGE + OFFSET_MAX_UP)) * SLOPE_UNIT;
+	}
+
+	/**
+	 * Gives the steepest down-slope of the given identity edge, in its direction.
+	 *
+	 * @param edgeId the identity of the edge.
+	 * @return the absolute value of the steepest down-slope, with a precision of half a percent.
+	 */
+	public double maxDownSlope(int edgeId) {
+		return Byte.toUnsignedInt(buffer.get(edgeId * BYTES_PER_EDGE + OFFSET_MAX_DOWN)) * SLOPE_UNIT;
+	}
+
+	/**
+	 * Gives the share of the length of the given identity edge whose slope belongs to the given bucket.
+	 *
+	 * @param edgeId the identity of the edge.
+	 * @param bucket the index of the bucket, see {@link #bucketOf(double)}.
+	 * @return the share of the length of the edge, between 0 and 1, the shares of an edge adding up to 1.
+	 */
+	public double share(int edgeId, int bucket) {
+		return Byte.toUnsignedInt(buffer.get(edgeId * BYTES_PER_EDGE + OFFSET_SHARES + bucket)) / (double) SHARE_UNIT;
+	}
+}
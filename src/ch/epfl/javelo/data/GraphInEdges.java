@@ -0,0 +1,138 @@
+package ch.epfl.javelo.data;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This record class represents the reverse adjacency of the graph, in compressed sparse row (CSR) layout:
+ * the edges arriving at a node are stored contiguously, ordered by node identity then by edge identity.
+ * <p>
+ * The buffer "offsets" contains nodeCount + 1 values, the edges arriving at node n being those stored between
+ * offsets[n] (included) and offsets[n + 1] (excluded) in the buffer "edgeIds". The buffer "sources" gives, for each
+ * edge identity, the identity of the node it starts from.
+ * <p>
+ * Once persisted, the three buffers are stored one after the other, as 32 bits integers, in the file in_edges.bin.
+ * They are preceded by the header identifying the dataset they were built from (see {@link BinaryFiles}), so that a
+ * file left over from another version of the dataset, for example after its nodes were renumbered, is not used.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public record GraphInEdges(IntBuffer offsets, IntBuffer edgeIds, IntBuffer sources) {
+
+	/**
+	 * Builds the reverse adjacency of the graph made of the given nodes and edges. The work is split among all the
+	 * available processors.
+	 *
+	 * @param nodes the nodes of the graph.
+	 * @param edges the edges of the graph.
+	 * @return the reverse adjacency of the graph.
+	 */
+	public static GraphInEdges of(GraphNodes nodes, GraphEdges edges) {
+		int nodeCount = nodes.count();
+		int edgeCount = edges.count();
+
+		int[] sources = new int[edgeCount];
+		IntStream.range(0, nodeCount).parallel().forEach(nodeId -> {
+			for (int i = 0; i < nodes.outDegree(nodeId); i++) sources[nodes.edgeId(nodeId, i)] = nodeId;
+		});
+
+		// sorting the edges by target node (then by identity) gives directly the content of edgeIds
+		long[] targetAndEdge = new long[edgeCount];
+		IntStream.range(0, edgeCount).parallel().forEach(edgeId ->
+				targetAndEdge[edgeId] = ((long) edges.targetNodeId(edgeId) << Integer.SIZE) | edgeId);
+		Arrays.parallelSort(targetAndEdge);
+
+		int[] offsets = new int[nodeCount + 1];
+		int[] edgeIds = new int[edgeCount];
+		for (int i = 0; i < edgeCount; i++) {
+			edgeIds[i] = (int) targetAndEdge[i];
+			offsets[(int) (targetAndEdge[i] >>> Integer.SIZE) + 1]++;
+		}
+		Arrays.parallelPrefix(offsets, Integer::sum);
+
+		return new GraphInEdges(IntBuffer.wrap(offsets), IntBuffer.wrap(edgeIds), IntBuffer.wrap(sources));
+	}
+
+	/**
+	 * Gives the reverse adjacency stored in the given file (as written by {@link #writeTo(Path, long)}), or null if
+	 * the file was written for another dataset.
+	 *
+	 * @param file           the path of the file.
+	 * @param datasetVersion the version of the dataset of the graph (see {@link BinaryFiles#datasetVersion(Path)}).
+	 * @param nodeCount      the number of nodes of the graph.
+	 * @param edgeCount      the number of edges of the graph.
+	 * @return the reverse adjacency contained in the file, or null if its header or its size does not match the
+	 * dataset.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static GraphInEdges loadFrom(Path file, long datasetVersion, int nodeCount, int edgeCount)
+			throws IOException {
+		ByteBuffer content = BinaryFiles.map(file);
+		if (!BinaryFiles.hasHeader(content, datasetVersion, nodeCount, edgeCount)) return null;
+		IntBuffer buffer = content.slice(BinaryFiles.HEADER_BYTES, content.capacity() - BinaryFiles.HEADER_BYTES)
+				.asIntBuffer();
+		if (buffer.capacity() != nodeCount + 1 + 2 * edgeCount) return null;
+		return new GraphInEdges(
+				buffer.slice(0, nodeCount + 1),
+				buffer.slice(nodeCount + 1, edgeCount),
+				buffer.slice(nodeCount + 1 + edgeCount, edgeCount));
+	}
+
+	/**
+	 * Writes the reverse adjacency in the given file, which is replaced if it already exists.
+	 *
+	 * @param file           the path of the file.
+	 * @param datasetVersion the version of the dataset the reverse adjacency was built from.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public void writeTo(Path file, long datasetVersion) throws IOException {
+		int nodeCount = offsets.capacity() - 1;
+		int edgeCount = sources.capacity();
+		ByteBuffer content = ByteBuffer.allocate(
+				BinaryFiles.HEADER_BYTES + (nodeCount + 1 + 2 * edgeCount) * Integer.BYTES);
+		BinaryFiles.putHeader(content, datasetVersion, nodeCount, edgeCount);
+		content.slice(BinaryFiles.HEADER_BYTES, content.capacity() - BinaryFiles.HEADER_BYTES).asIntBuffer()
+				.put(offsets.duplicate().clear())
+				.put(edgeIds.duplicate().clear())
+				.put(sources.duplicate().clear());
+		BinaryFiles.write(file, content);
+	}
+
+	/**
+	 * Calculates the number of edges arriving at the given identity node.
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return the number of edges arriving at the node.
+	 */
+	public int inDegree(int nodeId) {
+		return offsets.get(nodeId + 1) - offsets.get(nodeId);
+	}
+
+	/**
+	 * Gives the identity of the "edgeIndex" edge arriving at the given identity node.
+	 *
+	 * @param nodeId    the identity of the node.
+	 * @param edgeIndex the index of the edge.
+	 * @return the identity of the given "edgeIndex" edge arriving at the given node.
+	 */
+	public int edgeId(int nodeId, int edgeIndex) {
+		assert 0 <= edgeIndex && edgeIndex < inDegree(nodeId);
+		return edgeIds.get(offsets.get(nodeId) + edgeIndex);
+	}
+
+	/**
+	 * Gives the identity of the node the given identity edge starts from.
+	 *
+	 * @param edgeId the identity of the edge.
+	 * @return the identity of the source node of the edge.
+	 */
+	public int sourceNodeId(int edgeId) {
+		return sources.get(edgeId);
+	}
+}
@@ -0,0 +1,117 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * This record class represents the OpenStreetMap identities of the nodes of the graph (the content of nodes_osmid.bin),
+ * indexed in both directions.
+ * <p>
+ * The buffer "osmIds" gives the OSM identity of each node. The buffers "sortedOsmIds" and "sortedNodeIds" contain the
+ * same pairs (OSM identity, node identity), sorted by OSM identity, so that the node of a given OSM identity is found by
+ * binary search. No lookup allocates memory.
+ * <p>
+ * The nodes which are not OpenStreetMap nodes, like the ones interpolated along long roads, have the identity -1.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public record GraphOsmIds(LongBuffer osmIds, LongBuffer sortedOsmIds, IntBuffer sortedNodeIds) {
+
+	/**
+	 * Name of the file containing the OSM identities of the nodes.
+	 */
+	public static final String FILE = "nodes_osmid.bin";
+
+	private static final int NODE_ID_BITS = 28;
+	private static final long MAX_PACKED_OSM_ID = 1L << (Long.SIZE - 1 - NODE_ID_BITS);
+
+	/**
+	 * Gives the index of the OSM identities contained in the file nodes_osmid.bin of the directory whose path is basePath.
+	 *
+	 * @param basePath the path of the directory of the dataset.
+	 * @return the index of the OSM identities of the nodes.
+	 * @throws IOException in case of an input/output error. For example, if the file does not exist.
+	 */
+	public static GraphOsmIds loadFrom(Path basePath) throws IOException {
+		return of(BinaryFiles.map(basePath.resolve(FILE)).asLongBuffer());
+	}
+
+	/**
+	 * Builds the index of the given OSM identities, the one at index i being the one of the node of identity i.
+	 *
+	 * @param osmIds the OSM identities of the nodes.
+	 * @return the index of the OSM identities.
+	 */
+	public static GraphOsmIds of(LongBuffer osmIds) {
+		int count = osmIds.capacity();
+		long[] sortedOsmIds = new long[count];
+		int[] sortedNodeIds = new int[count];
+
+		boolean packable = IntStream.range(0, count).parallel()
+				.allMatch(i -> osmIds.get(i) >= -1 && osmIds.get(i) + 1 < MAX_PACKED_OSM_ID);
+		if (packable) {
+			// the OSM identity (shifted by one, for -1) and the node identity fit together in a long, sorting them is
+			// then much faster
+			long[] packed = new long[count];
+			IntStream.range(0, count).parallel().forEach(i -> packed[i] = ((osmIds.get(i) + 1) << NODE_ID_BITS) | i);
+			Arrays.parallelSort(packed);
+			for (int i = 0; i < count; i++) {
+				sortedOsmIds[i] = (packed[i] >>> NODE_ID_BITS) - 1;
+				sortedNodeIds[i] = (int) (packed[i] & ((1 << NODE_ID_BITS) - 1));
+			}
+		} else {
+			Integer[] order = IntStream.range(0, count).boxed().toArray(Integer[]::new);
+			Arrays.parallelSort(order, Comparator.comparingLong(osmIds::get));
+			for (int i = 0; i < count; i++) {
+				sortedOsmIds[i] = osmIds.get(order[i]);
+				sortedNodeIds[i] = order[i];
+			}
+		}
+		return new GraphOsmIds(osmIds, LongBuffer.wrap(sortedOsmIds), IntBuffer.wrap(sortedNodeIds));
+	}
+
+	/**
+	 * Gives the number of nodes of the index.
+	 *
+	 * @return the number of nodes.
+	 */
+	public int count() {
+		return osmIds.capacity();
+	}
+
+	/**
+	 * Gives the OSM identity of the given identity node.
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return the OSM identity of the node, or -1 if it is not an OpenStreetMap node.
+	 */
+	public long osmId(int nodeId) {
+		return osmIds.get(nodeId);
+	}
+
+	/**
+	 * Gives the identity of the node whose OSM identity is the given one.
+	 *
+	 * @param osmId the OSM identity of the node.
+	 * @return the identity of the node, or -1 if no node has this OSM identity (always the case for -1).
+	 */
+	public int nodeId(long osmId) {
+		if (osmId == -1) return -1;
+		int low = 0;
+		int high = sortedOsmIds.capacity() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleOsmId = sortedOsmIds.get(middle);
+			if (middleOsmId < osmId) low = middle + 1;
+			else if (middleOsmId > osmId) high = middle - 1;
+			else return sortedNodeIds.get(middle);
+		}
+		return -1;
+	}
+}
@@ -17,10 +17,11 @@ import java.util.List;
  */
 public record GraphSectors(ByteBuffer buffer) {
 
-	private static final int NUMBER_OF_SECTOR_PER_SIDE = 128;
-	private static final int SECTOR_SIZE_BYTE = 6;
-	private final static double SECTOR_WIDTH = SwissBounds.WIDTH / NUMBER_OF_SECTOR_PER_SIDE;
-	private final static double SECTOR_HEIGHT = SwissBounds.HEIGHT / NUMBER_OF_SECTOR_PER_SIDE;
+	public static final int NUMBER_OF_SECTOR_PER_SIDE = 128;
+	public static final int SECTOR_COUNT = NUMBER_OF_SECTOR_PER_SIDE * NUMBER_OF_SECTOR_PER_SIDE;
+	public static final int SECTOR_SIZE_BYTE = 6;
+	public final static double SECTOR_WIDTH = SwissBounds.WIDTH / NUMBER_OF_SECTOR_PER_SIDE;
+	public final static double SECTOR_HEIGHT = SwissBounds.HEIGHT / NUMBER_OF_SECTOR_PER_SIDE;
 
 	/**
 	 * This method gives the sectors that intersect with the area of (2*distance)x(2*distance) with center as its center.
@@ -71,6 +72,23 @@ public record GraphSectors(ByteBuffer buffer) {
 		return sectorsArea;
 	}
 
+	/**
+	 * Gives the index of the sector containing the given point, the sectors being numbered line by line
+	 * starting from the bottom-left corner of Switzerland. Points on the upper or right border belong to the last sector
+	 * of their line or column.
+	 *
+	 * @param e the east coordinate of the point.
+	 * @param n the north coordinate of the point.
+	 * @return the index of the sector containing the point.
+	 * @throws IllegalArgumentException if the point is not inside Switzerland, see {@link SwissBounds#containsEN(double, double)}.
+	 */
+	public static int sectorIndexOf(double e, double n) {
+		Preconditions.checkArgument(SwissBounds.containsEN(e, n));
+		int x = Math.min((int) ((e - SwissBounds.MIN_E) / SECTOR_WIDTH), NUMBER_OF_SECTOR_PER_SIDE - 1);
+		int y = Math.min((int) ((n - SwissBounds.MIN_N) / SECTOR_HEIGHT), NUMBER_OF_SECTOR_PER_SIDE - 1);
+		return y * NUMBER_OF_SECTOR_PER_SIDE + x;
+	}
+
 	/**
 	 * Sector is represented by its starting and end node id.
 	 */
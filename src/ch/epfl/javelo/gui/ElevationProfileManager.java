@@ -44,6 +44,7 @@ public final class ElevationProfileManager {
 
 	// constants
 	private static final int M_TO_KM_CONVERTER = 1000;
+	private static final int S_TO_MIN_CONVERTER = 60;
 	private static final double X_PIXEL_DISTANCE = 50;
 	private static final double Y_PIXEL_DISTANCE = 25;
 	private static final double NO_COORD = 0;
@@ -281,6 +282,13 @@ public final class ElevationProfileManager {
 				"     Descente : %.0f m" +
 				"     Altitude : de %.0f m à %.0f m", length, ascent, descent, minElevation, maxElevation);
 
+		// the estimated travel time is only displayed if it is known
+		double time = this.elevationProfile.get().time();
+		if (!Double.isNaN(time)) {
+			long minutes = Math.round(time / S_TO_MIN_CONVERTER);
+			statistics += String.format("     Durée : %d h %02d", minutes / 60, minutes % 60);
+		}
+
 		Text vBoxText = new Text(statistics);
 
 		this.vBox.getChildren().add(vBoxText);
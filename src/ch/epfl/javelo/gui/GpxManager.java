@@ -0,0 +1,111 @@
+package ch.epfl.javelo.gui;
+
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.ElevationProfile;
+import ch.epfl.javelo.routing.GpxGenerator;
+import ch.epfl.javelo.routing.Route;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class manages the export and the import of the routes of the interface in GPX format, with their waypoints,
+ * in the files chosen by the user. The GPX documents themselves are created and read by {@link GpxGenerator}.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class GpxManager {
+
+	private GpxManager() {
+	}
+
+	/**
+	 * Creates a document in GPX format describing the given route and its waypoints.
+	 *
+	 * @param route        the route.
+	 * @param routeProfile the profile of the given route.
+	 * @param waypoints    the list of waypoints.
+	 * @return the GPX document corresponding to the itinerary.
+	 */
+	public static Document createGpx(Route route, ElevationProfile routeProfile, List<Waypoint> waypoints) {
+		Document doc = GpxGenerator.createGpx(route, routeProfile);
+		Node rte = doc.getElementsByTagName("rte").item(0);
+
+		// the list of waypoints is added to the document
+		for (Waypoint p : waypoints) {
+			Element wayPoint = doc.createElement("waypoint");
+			rte.appendChild(wayPoint);
+			wayPoint.setAttribute("e", Double.toString(p.swissCoord().e()));
+			wayPoint.setAttribute("n", Double.toString(p.swissCoord().n()));
+			wayPoint.setAttribute("closestNodeId", Integer.toString(p.closestNodeId()));
+		}
+		return doc;
+	}
+
+	/**
+	 * Writes the GPX document corresponding to the given route and its waypoints in the file chosen by the user.
+	 *
+	 * @param route        the route.
+	 * @param routeProfile the profile of the route.
+	 * @param waypoints    the list of waypoints.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static void writeGpx(Route route, ElevationProfile routeProfile, List<Waypoint> waypoints) throws IOException {
+		Document doc = createGpx(route, routeProfile, waypoints);
+		JFileChooser fileChooser = new JFileChooser();
+		fileChooser.setCurrentDirectory(new File("."));
+		if (fileChooser.showSaveDialog(null) == JFileChooser.APPROVE_OPTION) {
+			Path path = Path.of(fileChooser.getSelectedFile().getPath() + ".gpx");
+			try (Writer w = Files.newBufferedWriter(path)) {
+				GpxGenerator.writeDocument(doc, w);
+			}
+		}
+	}
+
+	/**
+	 * Reads the GPX document in the file chosen by the user and gives its list of waypoints.
+	 *
+	 * @return the list of waypoints, empty if no file was chosen.
+	 * @throws SAXException if the file is not a valid XML document.
+	 */
+	public static List<Waypoint> readGpx() throws SAXException {
+		List<Waypoint> routePoints = new ArrayList<>();
+
+		try {
+			JFileChooser fileChooser = new JFileChooser();
+			fileChooser.setCurrentDirectory(new File("."));
+			FileNameExtensionFilter filter = new FileNameExtensionFilter("gpx", "gpx");
+			fileChooser.setFileFilter(filter);
+
+			int returnVal = fileChooser.showOpenDialog(null);
+			if (returnVal == JFileChooser.APPROVE_OPTION) {
+				Document document = GpxGenerator.readDocument(fileChooser.getSelectedFile().toPath());
+				NodeList nList = document.getElementsByTagName("waypoint");
+				for (int temp = 0; temp < nList.getLength(); temp++) {
+					Node nNode = nList.item(temp);
+					if (nNode.getNodeType() == Node.ELEMENT_NODE) {
+						Element eElement = (Element) nNode;
+						PointCh swissCoords = new PointCh(Double.parseDouble(eElement.getAttribute("e")), Double.parseDouble(eElement.getAttribute("n")));
+						routePoints.add(new Waypoint(swissCoords, Integer.parseInt(eElement.getAttribute("closestNodeId"))));
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+		return routePoints;
+	}
+}
@@ -3,8 +3,10 @@ package ch.epfl.javelo.gui;
 import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.routing.CityBikeCF;
 import ch.epfl.javelo.routing.CostFunction;
-import ch.epfl.javelo.routing.GpxGenerator;
+import ch.epfl.javelo.routing.RouteCache;
 import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.javelo.routing.SpeedModel;
+import ch.epfl.javelo.routing.TravelTimes;
 import javafx.application.Application;
 import javafx.beans.binding.Bindings;
 import javafx.geometry.Orientation;
@@ -19,7 +21,6 @@ import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
@@ -34,6 +35,11 @@ import java.util.Objects;
  * @author Amene Gafsi (345583)
  */
 public final class JaVelo extends Application {
+	private final static Path DATA_DIRECTORY = Path.of("javelo-data");
+	private final static Path ROUTE_CACHE_FILE = Path.of("javelo-routes.bin");
+	private final static long ROUTE_CACHE_BYTES = 64L << 20;
+	private final static int CITY_BIKE_PROFILE = 0;
+
 	public static void main(String[] args) {
 		launch(args);
 	}
@@ -53,11 +59,26 @@ public final class JaVelo extends Application {
 		ErrorManager errorManager = new ErrorManager();
 
 		// loading the Javelo graph
-		Graph graph = Graph.loadFrom(Path.of("javelo-data"));
+		Graph graph = Graph.loadFrom(DATA_DIRECTORY);
+
+		// loading the routes computed during the previous sessions on the same dataset, written when the window closes
+		RouteCache routeCache = RouteCache.loadFrom(ROUTE_CACHE_FILE, RouteCache.datasetVersion(DATA_DIRECTORY),
+				ROUTE_CACHE_BYTES);
+		primaryStage.setOnHidden(event -> {
+			try {
+				routeCache.writeTo(ROUTE_CACHE_FILE);
+			} catch (IOException e) {
+				System.out.println(e);
+			}
+		});
 
 		// creating a RouteComputer, an itinerary planner, that is composed of a CostFunction
 		CostFunction cf = new CityBikeCF(graph);
-		RouteComputer computer = new RouteComputer(graph, cf);
+		// whose routes are timed, so that their estimated travel time is displayed with their profile. The travel
+		// times are only computed at the first launch on a dataset, and then read from the dataset directory
+		RouteComputer computer = new RouteComputer(graph, cf)
+				.withTravelTimes(TravelTimes.loadOrCompute(DATA_DIRECTORY, graph, SpeedModel.CITY_BIKE))
+				.withCache(routeCache, CITY_BIKE_PROFILE);
 
 		// creating a RouteBean that is composed of a RouteComputer
 		RouteBean bean = new RouteBean(computer, errorManager::displayError);
@@ -104,11 +125,15 @@ public final class JaVelo extends Application {
 		Menu routeMenu = new Menu("Route");
 		MenuItem deleteRoute = new MenuItem("Effacer la route");
 		MenuItem inverseRoute = new MenuItem("Inverser la route");
-		routeMenu.getItems().addAll(deleteRoute, inverseRoute);
+		MenuItem optimizeRoute = new MenuItem("Optimiser l'ordre des étapes");
+		MenuItem optimizeLoop = new MenuItem("Optimiser l'ordre des étapes (boucle)");
+		routeMenu.getItems().addAll(deleteRoute, inverseRoute, optimizeRoute, optimizeLoop);
 
 		// at the beginning we can't select these MenuItems because there is no route
 		inverseRoute.setDisable(true);
 		deleteRoute.setDisable(true);
+		optimizeRoute.setDisable(true);
+		optimizeLoop.setDisable(true);
 
 		// creating a Menu containing two MenuItems that can change the style of the map
 		Menu mapMenu = new Menu("Carte");
@@ -133,6 +158,10 @@ public final class JaVelo extends Application {
 			Collections.reverse(bean.waypoints());
 		});
 
+		// reordering the waypoints, the route either ending at any of them or going back to the first one
+		optimizeRoute.setOnAction(e -> bean.optimizeWaypointOrder(false));
+		optimizeLoop.setOnAction(e -> bean.optimizeWaypointOrder(true));
+
 		// we change the current map style to the standardOpenStreetMap when we click on it
 		standardOpenStreetMap.setOnAction(event -> {
 			// we only change the map style if the current map style is different from the new map style
@@ -176,12 +205,14 @@ public final class JaVelo extends Application {
 			exportGpx.setDisable(bean.route() == null);
 			inverseRoute.setDisable(bean.route() == null);
 			deleteRoute.setDisable(bean.route() == null);
+			optimizeRoute.setDisable(bean.route() == null);
+			optimizeLoop.setDisable(bean.route() == null);
 		});
 
 		// when we click on this menuItem, then we should be able to export the route is GPX format
 		exportGpx.setOnAction(event -> {
 			try {
-				GpxGenerator.writeGpx(bean.route(), bean.elevationProfileProperty().get(), bean.waypoints());
+				GpxManager.writeGpx(bean.route(), bean.elevationProfileProperty().get(), bean.waypoints());
 			} catch (IOException e) {
 				// should never happen
 				throw new UncheckedIOException(e);
@@ -191,13 +222,13 @@ public final class JaVelo extends Application {
 		// when we click on this menuItem, then we should be able to import a route in GPX format
 		importGpx.setOnAction(event -> {
 			try {
-				List<Waypoint> wayPoints = GpxGenerator.readGpx();
+				List<Waypoint> wayPoints = GpxManager.readGpx();
 				if (wayPoints.size() > 1) {
 					bean.waypoints().clear();
 					annotatedMap.setCenter(wayPoints.get(0).swissCoord());
 					bean.waypoints().addAll(wayPoints);
 				}
-			} catch (ParserConfigurationException | SAXException e1) {
+			} catch (SAXException e1) {
 				System.out.println(e1);
 			}
 		});
@@ -1,16 +1,15 @@
 package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.routing.*;
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.util.Pair;
+import javafx.concurrent.Task;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -25,19 +24,21 @@ public final class RouteBean {
 	private final ObjectProperty<Route> route;
 	private final DoubleProperty highlightedPosition;
 	private final ObjectProperty<ElevationProfile> elevationProfile;
-	private final RouteCache routeCache;
 	private final List<Route> segments;
 	private final Consumer<String> error;
+	// the optimization of the order of the waypoints in progress, if any
+	private Task<Void> optimization;
 
 	
 	// constants
-	private static final int MAX_SIZE = 100;
 	private final static double MAX_STEP_LENGTH = 5;
-	private final static float LOAD_FACTOR = 0.75F;
+	private final static long MAX_OPTIMIZATION_TIME = 200_000_000L; // in nanoseconds
 
 
 	/**
-	 * Creates a RouteBean. A RouteBean is composed of RouteComputer.
+	 * Creates a RouteBean. A RouteBean is composed of RouteComputer, which should use a cache (see
+	 * {@link RouteComputer#withCache(RouteCache, int)}) as the routes between all the waypoints are computed again each
+	 * time they change.
 	 *
 	 * @param routeComputer a routeComputer which represents an itinerary planner.
 	 */
@@ -48,7 +49,6 @@ public final class RouteBean {
 		this.highlightedPosition = new SimpleDoubleProperty();
 		this.elevationProfile = new SimpleObjectProperty<>();
 		this.segments = new ArrayList<>();
-		this.routeCache = new RouteCache();
 		this.error = error;
 
 		// calculating the best route between all the waypoints for the first time
@@ -64,7 +64,7 @@ public final class RouteBean {
 
 	/**
 	 * Calculates the best route between all the waypoints and puts it in a list of segments.
-	 * The route is first searched in the RouteCache (is a memory cache) and, if it is not found, it is then calculated and added to the memory cache.
+	 * The routes already computed are given by the cache of the route computer, if it has one.
 	 */
 	private void routeCalculator() {
 		// If there are less than two waypoints in the list then the properties corresponding
@@ -75,22 +75,16 @@ public final class RouteBean {
 		} else {
 			Route actualRoad;
 			int node1, node2;
-			Pair<Integer, Integer> wayPoints;
 			// Calculating the best route between each waypoint in the list waypoints
 			for (int i = 0; i < waypoints.size() - 1; i++) {
 				node1 = waypoints.get(i).closestNodeId();
 				node2 = waypoints.get(i + 1).closestNodeId();
-				wayPoints = new Pair<>(node1, node2);
 
-				// if the best route between a pair of waypoints already exists then we directly add it to the list of segments
-				if (this.routeCache.containsKey(wayPoints)) {
-					segments.add(this.routeCache.get(wayPoints));
-				} else if (node1 != node2) {    // if the identities of the closest nodes are different, then we calculate the best route between the two nodes
+				if (node1 != node2) {    // if the identities of the closest nodes are different, then we calculate the best route between the two nodes
 					actualRoad = roadComputer.bestRouteBetween(node1, node2);
 
-					if (actualRoad != null) { // if the calculated best route between two nodes is not equal to null, then we add it to the list of segments and to the memory cache
+					if (actualRoad != null) { // if the calculated best route between two nodes is not equal to null, then we add it to the list of segments
 						segments.add(actualRoad);
-						routeCache.put(wayPoints, actualRoad);
 					} else { 
 						error.accept("Aucune route adaptée aux velos à proximité !");
 						this.route.set(null);
@@ -106,6 +100,51 @@ public final class RouteBean {
 		segments.clear();
 	}
 
+	/**
+	 * Reorders the waypoints so that the total cost of the route between them is as small as possible, the first
+	 * waypoint remaining the first one. If the route is closed, it goes back to the first waypoint at the end: the
+	 * first waypoint is then added at the end of the list, unless it already is there. Otherwise, the last waypoint
+	 * (the destination) remains the last one.
+	 * <p>
+	 * The costs between the waypoints are searched in the whole graph, which takes time, so that the waypoints are
+	 * reordered in the background, once the search is done, unless they were modified in the meantime. A previous
+	 * optimization still in progress is cancelled.
+	 *
+	 * @param closed true iff the route goes back to the first waypoint.
+	 */
+	public void optimizeWaypointOrder(boolean closed) {
+		List<Waypoint> original = List.copyOf(waypoints);
+		List<Waypoint> stops = new ArrayList<>(original);
+		if (closed && stops.size() > 1
+				&& stops.get(0).closestNodeId() == stops.get(stops.size() - 1).closestNodeId()) {
+			stops.remove(stops.size() - 1);
+		}
+		if (stops.size() < 2) return;
+
+		if (optimization != null) optimization.cancel();
+		int[] nodeIds = stops.stream().mapToInt(Waypoint::closestNodeId).toArray();
+		optimization = new Task<>() {
+			@Override
+			protected Void call() {
+				double[][] costs = TourOptimizer.costMatrix(roadComputer, nodeIds);
+				int[] order = closed
+						? TourOptimizer.optimize(costs, true, MAX_OPTIMIZATION_TIME)
+						: TourOptimizer.optimizeWithFixedEnd(costs, MAX_OPTIMIZATION_TIME);
+				List<Waypoint> reordered = new ArrayList<>();
+				for (int index : order) reordered.add(stops.get(index));
+				if (closed) reordered.add(stops.get(0));
+				Platform.runLater(() -> {
+					if (!isCancelled() && waypoints.equals(original)) waypoints.setAll(reordered);
+				});
+				return null;
+			}
+		};
+		optimization.setOnFailed(e -> error.accept("L'optimisation des étapes a échoué !"));
+		Thread thread = new Thread(optimization, "waypoint-optimizer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
 	/**
 	 * Calculates the index of the segment containing the position along the route.
 	 * This method ignores empty segments.
@@ -194,21 +233,4 @@ public final class RouteBean {
 	public ReadOnlyObjectProperty<ElevationProfile> elevationProfileProperty() {
 		return this.elevationProfile;
 	}
-
-	/**
-	 * RoutCache is a reimplementation of a LinkedHashMap for its capabilities to remove the eldest entry when it reaches a defined size.
-	 * RouteCache is used to stock the best route between a pair of nodes and this prevents from recalculating a route that had
-	 * already been calculated.
-	 */
-	private static class RouteCache extends LinkedHashMap<Pair<Integer, Integer>, Route> {
-
-		public RouteCache() {
-			super(MAX_SIZE, LOAD_FACTOR, true);
-		}
-
-		@Override
-		protected boolean removeEldestEntry(Map.Entry<Pair<Integer, Integer>, Route> eldest) {
-			return this.size() > MAX_SIZE; //must override it if used in a fixed cache
-		}
-	}
 }
@@ -2,17 +2,28 @@ package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
+import ch.epfl.javelo.routing.Route;
+import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.geometry.Point2D;
 import javafx.scene.layout.Pane;
 import javafx.scene.shape.Circle;
-import javafx.scene.shape.Polyline;
+import javafx.scene.shape.LineTo;
+import javafx.scene.shape.MoveTo;
+import javafx.scene.shape.Path;
+import javafx.scene.shape.PathElement;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class manages the display and interaction with the itinerary.
+ * <p>
+ * The itinerary is drawn with its points simplified for the current zoom level (see {@link SimplifiedRoute}), which
+ * are computed in the background once per route, and only its parts visible around the displayed map section. The
+ * drawn parts are moved with the map until it leaves them.
  *
  * @author Morgane Magnin (347041)
  * @author Amene Gafsi (345583)
@@ -21,15 +32,26 @@ public final class RouteManager {
 	private final RouteBean bean;
 	private final ReadOnlyObjectProperty<MapViewParameters> mapViewParametersP;
 	private final Pane pane;
-	private final List<Double> routePoints ;
-	private final Polyline polyline;
+	private final Path polyline;
 	private final Circle circle;
-	
+
+	// the simplified route, once computed, and the zoom level and window (at that zoom level) of its drawn parts
+	private SimplifiedRoute simplifiedRoute;
+	private int drawnZoomLevel;
+	private double drawnMinX, drawnMinY, drawnMaxX, drawnMaxY;
+
 	// constants
 	private static final int FIRST_INDEX = 0 ;
 	private static final int SECOND_INDEX = 1;
 	private static final int CIRCLE_RADIUS = 5;
 
+	// the routes are simplified one after the other, by a thread which does not prevent the application from exiting
+	private static final ExecutorService SIMPLIFIER = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "route-simplifier");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	/**
 	 * Creates a RouteManager. A RouteManager is composed of a RouteBean and a ReadOnlyObjectProperty<MapViewParameters>.
 	 *
@@ -40,19 +62,23 @@ public final class RouteManager {
 		this.bean = bean;
 		this.mapViewParametersP = mapViewParametersP;
 		this.pane = new Pane();
-		this.routePoints = new ArrayList<>();
 		this.pane.setPickOnBounds(false);
 
 		// setting the identity corresponding to the polyline and the circle
-		this.polyline = new Polyline(); 
+		this.polyline = new Path();
 		polyline.setId("route");
 
 		// setting the identity corresponding to the circle
 		this.circle = new Circle(CIRCLE_RADIUS);
 		circle.setId("highlight");	
 
-		// if there exists a route, then we draw the polyline and the circle for the first time
-		if (this.bean.route() != null) drawRouteComponents();
+		// if there exists a route, then we simplify it and draw the circle for the first time
+		polyline.setVisible(false);
+		circle.setVisible(false);
+		if (this.bean.route() != null) {
+			simplify(this.bean.route());
+			if (!Double.isNaN(this.bean.highlightedPosition())) drawCircle();
+		}
 
 		// adding the polyline and the circle to the pane
 		pane.getChildren().add(polyline);
@@ -76,17 +102,20 @@ public final class RouteManager {
 			}
 			});
 
-		// if the route changes, then we check if the new route exists or if the highlighted position is NaN. If it is neither, we redraw the circle and the polyline.
+		// if the route changes, then we check if the new route exists or if the highlighted position is NaN. If it is neither, we redraw the circle.
+		// The previous polyline stays displayed until the new route is simplified.
 		this.bean.routeProperty().addListener((p, o, n) -> {
+			simplifiedRoute = null;
 			if((n == null)) {
 				circle.setVisible(false);
 				polyline.setVisible(false);
+				return;
 			} else if (Double.isNaN(this.bean.highlightedPosition())){
 				circle.setVisible(false);
-				drawPolyline();
 			} else {
-				drawRouteComponents();
+				drawCircle();
 			}
+			simplify(n);
 		});
 
 		// adding listener to the parameters of the displayed map
@@ -97,22 +126,18 @@ public final class RouteManager {
 			} else if (Double.isNaN(this.bean.highlightedPosition())){ // if the highlighted position is equal to Nan then
 				circle.setVisible(false);								// we set invisible the circle and redraw the polyline
 				drawPolyline();
-			} else if (n.zoomLevel() != o.zoomLevel()){   // if the new and old zoom level are different, then we redraw the polyline and the circle
-				drawRouteComponents();	
-			} else if (!n.topLeft().equals(o.topLeft())) { // if the new and old top lef coords are different, then we translate the polyline and circle coords
-				double[] coordsInWindow = coordsInWindow(this.bean.route().points().get(FIRST_INDEX));
-				polyline.setLayoutX(coordsInWindow[FIRST_INDEX] - polyline.getPoints().get(FIRST_INDEX));   
-				polyline.setLayoutY(coordsInWindow[SECOND_INDEX] - polyline.getPoints().get(SECOND_INDEX));
-				
-				PointCh pointAtPosition = this.bean.route().pointAt(this.bean.highlightedPosition());
-				coordsInWindow = coordsInWindow(pointAtPosition);
-				circle.setLayoutX(coordsInWindow[FIRST_INDEX] - circle.getCenterX());
-				circle.setLayoutY(coordsInWindow[SECOND_INDEX] - circle.getCenterY());
+			} else {   // otherwise we redraw the polyline (which is only moved if its drawn parts still cover the map) and the circle
+				drawRouteComponents();
 			}
 		});
 
-
-			
+		// if the size of the pane changes, then the drawn parts of the polyline may not cover the map anymore
+		this.pane.widthProperty().addListener(o -> {
+			if (this.bean.route() != null) drawPolyline();
+		});
+		this.pane.heightProperty().addListener(o -> {
+			if (this.bean.route() != null) drawPolyline();
+		});
 	}
 	
 	/**
@@ -152,25 +177,54 @@ public final class RouteManager {
 		drawCircle();
 	}
 
+	/**
+	 * Simplifies the given route in the background, then draws its polyline if it is still the route of the bean.
+	 *
+	 * @param route the route to simplify.
+	 */
+	private void simplify(Route route) {
+		CompletableFuture.supplyAsync(() -> SimplifiedRoute.of(route.points()), SIMPLIFIER)
+				.thenAcceptAsync(simplified -> {
+					if (this.bean.route() != route) return;
+					simplifiedRoute = simplified;
+					drawnZoomLevel = -1;
+					drawPolyline();
+				}, Platform::runLater);
+	}
+
 	/**
 	 * Draws the polyline of the itinerary with the right position in the javaFX window.
-	 * This method adds the coordinates of the points of the itinerary to the polyline.
-	 * 
+	 * This method adds the parts of the simplified itinerary which are visible in a window around the displayed map
+	 * section, larger than it by its size on each side, to the polyline. While the displayed map section stays in that
+	 * window, the polyline is only moved.
+	 *
 	 */
 	private void drawPolyline() {
-			List<PointCh> points = this.bean.route().points();
-			double[] coordsInWindow;
-			for (PointCh point : points) {
-				coordsInWindow = coordsInWindow(point);
-				routePoints.add(coordsInWindow[FIRST_INDEX]);
-				routePoints.add(coordsInWindow[SECOND_INDEX]);
-			}
-			polyline.getPoints().setAll(routePoints);
-			polyline.setLayoutX(routePoints.get(FIRST_INDEX) - polyline.getPoints().get(FIRST_INDEX));
-			polyline.setLayoutY(routePoints.get(SECOND_INDEX) - polyline.getPoints().get(SECOND_INDEX));
+			if (simplifiedRoute == null) return;
+			MapViewParameters parameters = mapViewParametersP.getValue();
+			int zoomLevel = parameters.zoomLevel();
+			double width = pane.getWidth(), height = pane.getHeight();
+			double minX = parameters.xTopLeftCoord(), minY = parameters.yTopLeftCoord();
+			double maxX = minX + width, maxY = minY + height;
 
-			//After adding all points, the list of points is reseted.
-			routePoints.clear();
+			boolean covered = zoomLevel == drawnZoomLevel
+					&& drawnMinX <= minX && maxX <= drawnMaxX && drawnMinY <= minY && maxY <= drawnMaxY;
+			if (!covered) {
+				drawnZoomLevel = zoomLevel;
+				drawnMinX = minX - width;
+				drawnMinY = minY - height;
+				drawnMaxX = maxX + width;
+				drawnMaxY = maxY + height;
+
+				List<PathElement> elements = new ArrayList<>();
+				for (double[] part : simplifiedRoute.visibleParts(zoomLevel, drawnMinX, drawnMinY, drawnMaxX, drawnMaxY)) {
+					elements.add(new MoveTo(part[FIRST_INDEX], part[SECOND_INDEX]));
+					for (int i = 2; i < part.length; i += 2) elements.add(new LineTo(part[i], part[i + 1]));
+				}
+				polyline.getElements().setAll(elements);
+			}
+			polyline.setLayoutX(drawnMinX - minX);
+			polyline.setLayoutY(drawnMinY - minY);
 			polyline.setVisible(true);
 	}
 	/**
@@ -0,0 +1,183 @@
+package ch.epfl.javelo.gui;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.PointWebMercator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * This class represents the points of a route simplified for each zoom level of the map, so that the route is drawn
+ * with the vertices which are distinguishable at that zoom level only.
+ * <p>
+ * The points are simplified with the Douglas-Peucker algorithm, run once for all the zoom levels: each point is given
+ * the largest tolerance for which it is kept, and the points kept at a zoom level are those whose tolerance is larger
+ * than {@value #TOLERANCE_PIXELS} pixel at that zoom level. The points kept at a zoom level are thus also kept at all
+ * the larger ones. The simplification may take some time for long routes, and is meant to be done in the background.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class SimplifiedRoute {
+
+	/**
+	 * The smallest zoom level for which the route is simplified, the smaller ones using the same points.
+	 */
+	public final static int MIN_ZOOM_LEVEL = 8;
+
+	/**
+	 * The largest zoom level for which the route is simplified, the larger ones using the same points.
+	 */
+	public final static int MAX_ZOOM_LEVEL = 19;
+
+	// the largest distance between the simplified route and the removed points, in pixels
+	private final static double TOLERANCE_PIXELS = 1;
+	private final static int MAP_SIDE_BINARY_EXPONENT = 8;
+
+	// the coordinates of the points in the Web Mercator system
+	private final double[] xs, ys;
+	// the indices of the points kept at each zoom level, from the smallest one
+	private final int[][] vertices;
+
+	private SimplifiedRoute(double[] xs, double[] ys, int[][] vertices) {
+		this.xs = xs;
+		this.ys = ys;
+		this.vertices = vertices;
+	}
+
+	/**
+	 * Simplifies the given points of a route for all the zoom levels.
+	 *
+	 * @param points the points of the route, in order.
+	 * @return the simplified route.
+	 * @throws IllegalArgumentException if there are less than two points.
+	 */
+	public static SimplifiedRoute of(List<PointCh> points) {
+		int count = points.size();
+		Preconditions.checkArgument(count >= 2);
+		double[] xs = new double[count], ys = new double[count];
+		for (int i = 0; i < count; i++) {
+			PointWebMercator point = PointWebMercator.ofPointCh(points.get(i));
+			xs[i] = point.x();
+			ys[i] = point.y();
+		}
+
+		double[] tolerances = tolerances(xs, ys);
+		int[][] vertices = new int[MAX_ZOOM_LEVEL - MIN_ZOOM_LEVEL + 1][];
+		int[] kept = new int[count];
+		for (int zoomLevel = MIN_ZOOM_LEVEL; zoomLevel <= MAX_ZOOM_LEVEL; zoomLevel++) {
+			double tolerance = Math.scalb(TOLERANCE_PIXELS, -(zoomLevel + MAP_SIDE_BINARY_EXPONENT));
+			int keptCount = 0;
+			for (int i = 0; i < count; i++) {
+				if (tolerances[i] > tolerance) kept[keptCount++] = i;
+			}
+			vertices[zoomLevel - MIN_ZOOM_LEVEL] = Arrays.copyOf(kept, keptCount);
+		}
+		return new SimplifiedRoute(xs, ys, vertices);
+	}
+
+	/**
+	 * Gives the largest tolerance for which the Douglas-Peucker algorithm keeps each point, the first and last ones
+	 * being always kept. The ranges of points are examined with a stack rather than recursively, as long routes have
+	 * many points.
+	 */
+	private static double[] tolerances(double[] xs, double[] ys) {
+		int last = xs.length - 1;
+		double[] tolerances = new double[xs.length];
+		tolerances[0] = tolerances[last] = Double.POSITIVE_INFINITY;
+
+		// each range is given by its first and last point, both already kept
+		Deque<int[]> ranges = new ArrayDeque<>();
+		ranges.push(new int[]{0, last});
+		while (!ranges.isEmpty()) {
+			int[] range = ranges.pop();
+			int first = range[0], end = range[1];
+			if (end - first < 2) continue;
+
+			int farthest = first + 1;
+			double farthestDistance = -1;
+			for (int i = first + 1; i < end; i++) {
+				double distance = distanceToSegment(xs, ys, i, first, end);
+				if (distance > farthestDistance) {
+					farthest = i;
+					farthestDistance = distance;
+				}
+			}
+			// a point is only examined if the points enclosing its range are kept
+			tolerances[farthest] = Math.min(farthestDistance, Math.min(tolerances[first], tolerances[end]));
+			ranges.push(new int[]{first, farthest});
+			ranges.push(new int[]{farthest, end});
+		}
+		return tolerances;
+	}
+
+	private static double distanceToSegment(double[] xs, double[] ys, int point, int from, int to) {
+		double segmentLength = Math2.norm(xs[to] - xs[from], ys[to] - ys[from]);
+		double position = segmentLength == 0 ? 0 : Math2.clamp(0,
+				Math2.projectionLength(xs[from], ys[from], xs[to], ys[to], xs[point], ys[point]), segmentLength);
+		double x = segmentLength == 0 ? 0 : position / segmentLength;
+		return Math2.norm(Math2.interpolate(xs[from], xs[to], x) - xs[point],
+				Math2.interpolate(ys[from], ys[to], x) - ys[point]);
+	}
+
+	/**
+	 * Gives the number of points kept at the given zoom level.
+	 *
+	 * @param zoomLevel the zoom level.
+	 * @return the number of points kept.
+	 */
+	public int vertexCount(int zoomLevel) {
+		return verticesAt(zoomLevel).length;
+	}
+
+	private int[] verticesAt(int zoomLevel) {
+		return vertices[Math2.clamp(MIN_ZOOM_LEVEL, zoomLevel, MAX_ZOOM_LEVEL) - MIN_ZOOM_LEVEL];
+	}
+
+	/**
+	 * Gives the parts of the route simplified for the given zoom level which are visible in the given window, each
+	 * part being a sequence of consecutive points whose segments intersect the window. The coordinates of the points
+	 * are given at the zoom level, relative to the top-left corner of the window.
+	 *
+	 * @param zoomLevel the zoom level.
+	 * @param minX      the x coordinate of the left side of the window, at the zoom level.
+	 * @param minY      the y coordinate of the top side of the window, at the zoom level.
+	 * @param maxX      the x coordinate of the right side of the window, at the zoom level.
+	 * @param maxY      the y coordinate of the bottom side of the window, at the zoom level.
+	 * @return the visible parts of the route, each one made of the x and y coordinates of its points, alternately.
+	 */
+	public List<double[]> visibleParts(int zoomLevel, double minX, double minY, double maxX, double maxY) {
+		int[] kept = verticesAt(zoomLevel);
+		int exponent = zoomLevel + MAP_SIDE_BINARY_EXPONENT;
+		List<double[]> parts = new ArrayList<>();
+		double[] part = new double[2 * kept.length];
+		int partLength = 0;
+
+		double fromX = Math.scalb(xs[kept[0]], exponent), fromY = Math.scalb(ys[kept[0]], exponent);
+		for (int i = 1; i < kept.length; i++) {
+			double toX = Math.scalb(xs[kept[i]], exponent), toY = Math.scalb(ys[kept[i]], exponent);
+			boolean visible = Math.max(fromX, toX) >= minX && Math.min(fromX, toX) <= maxX
+					&& Math.max(fromY, toY) >= minY && Math.min(fromY, toY) <= maxY;
+			if (visible) {
+				if (partLength == 0) {
+					part[partLength++] = fromX - minX;
+					part[partLength++] = fromY - minY;
+				}
+				part[partLength++] = toX - minX;
+				part[partLength++] = toY - minY;
+			} else if (partLength > 0) {
+				parts.add(Arrays.copyOf(part, partLength));
+				partLength = 0;
+			}
+			fromX = toX;
+			fromY = toY;
+		}
+		if (partLength > 0) parts.add(Arrays.copyOf(part, partLength));
+		return parts;
+	}
+}
@@ -0,0 +1,266 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.util.Arrays;
+
+/**
+ * This class represents the routing graph of a graph whose chains of intermediate nodes are collapsed, for a given
+ * cost function.
+ * <p>
+ * A node is intermediate if it is linked to exactly two other nodes, by one edge in each direction, like the nodes
+ * along a way between two crossings: a route going through such a node always leaves it towards the neighbour it did
+ * not come from. The other nodes are junctions. Every sequence of edges going from a junction to the next one through
+ * intermediate nodes only becomes an arc, whose cost and length are the sums of those of its edges. Routes are then
+ * searched among the junctions only, and the arcs are expanded to their edges once the best route is known.
+ * <p>
+ * The edges of the arcs are stored one after the other, at consecutive positions, along with their cost, so that
+ * routes starting or ending at an intermediate node can use parts of arcs.
+ * The arcs of a junction are stored contiguously (compressed sparse row layout).
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class ChainGraph {
+
+	private final Graph graph;
+	private final CostFunction costFunction;
+
+	// arcs leaving the node n: from arcOffsets[n] (included) to arcOffsets[n + 1] (excluded)
+	private final int[] arcOffsets;
+	private final int[] arcTargets;
+	private final float[] arcCosts;
+	private final float[] arcLengths;
+	// edges of the arc a: from the position arcPositions[a] (included) to arcPositions[a + 1] (excluded)
+	private final int[] arcPositions;
+
+	private final int[] positionEdges;
+	private final float[] positionCosts;
+
+	private final boolean[] intermediate;
+	// for an intermediate node, the (at most two) positions of the edges arriving at it, -1 otherwise
+	private final int[] arrivingPositions;
+
+	private ChainGraph(Graph graph, CostFunction costFunction, int[] arcOffsets, int[] arcTargets, float[] arcCosts,
+					   float[] arcLengths,
+					   int[] arcPositions, int[] positionEdges, float[] positionCosts,
+					   boolean[] intermediate, int[] arrivingPositions) {
+		this.graph = graph;
+		this.costFunction = costFunction;
+		this.arcOffsets = arcOffsets;
+		this.arcTargets = arcTargets;
+		this.arcCosts = arcCosts;
+		this.arcLengths = arcLengths;
+		this.arcPositions = arcPositions;
+		this.positionEdges = positionEdges;
+		this.positionCosts = positionCosts;
+		this.intermediate = intermediate;
+		this.arrivingPositions = arrivingPositions;
+	}
+
+	/**
+	 * Builds the collapsed routing graph of the given graph, for the given cost function.
+	 *
+	 * @param graph        the graph.
+	 * @param costFunction the cost function giving the cost of the edges.
+	 * @return the collapsed routing graph.
+	 */
+	public static ChainGraph of(Graph graph, CostFunction costFunction) {
+		int nodeCount = graph.nodeCount();
+		boolean[] intermediate = new boolean[nodeCount];
+		for (int nodeId = 0; nodeId < nodeCount; nodeId++) intermediate[nodeId] = isIntermediate(graph, nodeId);
+
+		int[] arcOffsets = new int[nodeCount + 1];
+		int arcCapacity = 0;
+		for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+			if (!intermediate[nodeId]) arcCapacity += graph.nodeOutDegree(nodeId);
+		}
+		int[] arcTargets = new int[arcCapacity];
+		float[] arcCosts = new float[arcCapacity];
+		float[] arcLengths = new float[arcCapacity];
+		int[] arcPositions = new int[arcCapacity + 1];
+
+		int positionCapacity = graph.edgeCount();
+		int[] positionEdges = new int[positionCapacity];
+		float[] positionCosts = new float[positionCapacity];
+		int[] arrivingPositions = new int[2 * nodeCount];
+		Arrays.fill(arrivingPositions, -1);
+
+		int arc = 0;
+		int position = 0;
+		for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+			arcOffsets[nodeId] = arc;
+			if (intermediate[nodeId]) continue;
+			for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+				// follow the chain starting with this edge, up to the next junction
+				int edgeId = graph.nodeOutEdgeId(nodeId, i);
+				int previous = nodeId;
+				float cost = 0;
+				float length = 0;
+				arcPositions[arc] = position;
+				while (true) {
+					int target = graph.edgeTargetNodeId(edgeId);
+					float edgeCost = (float) (graph.edgeLength(edgeId) * costFunction.costFactor(previous, edgeId));
+					cost += edgeCost;
+					length += (float) graph.edgeLength(edgeId);
+					positionEdges[position] = edgeId;
+					positionCosts[position] = edgeCost;
+					if (!intermediate[target]) {
+						position++;
+						arcTargets[arc] = target;
+						break;
+					}
+					int slot = arrivingPositions[2 * target] < 0 ? 2 * target : 2 * target + 1;
+					arrivingPositions[slot] = position++;
+					edgeId = otherOutEdge(graph, target, previous);
+					previous = target;
+				}
+				arcCosts[arc] = cost;
+				arcLengths[arc++] = length;
+			}
+		}
+		arcOffsets[nodeCount] = arc;
+		arcPositions[arc] = position;
+
+		return new ChainGraph(graph, costFunction, arcOffsets, arcTargets, arcCosts, arcLengths, arcPositions,
+				Arrays.copyOf(positionEdges, position), Arrays.copyOf(positionCosts, position), intermediate,
+				arrivingPositions);
+	}
+
+	private static boolean isIntermediate(Graph graph, int nodeId) {
+		if (graph.nodeOutDegree(nodeId) != 2 || graph.nodeInDegree(nodeId) != 2) return false;
+		int a = graph.edgeTargetNodeId(graph.nodeOutEdgeId(nodeId, 0));
+		int b = graph.edgeTargetNodeId(graph.nodeOutEdgeId(nodeId, 1));
+		if (a == b || a == nodeId || b == nodeId) return false;
+		int c = graph.edgeSourceNodeId(graph.nodeInEdgeId(nodeId, 0));
+		int d = graph.edgeSourceNodeId(graph.nodeInEdgeId(nodeId, 1));
+		return (c == a && d == b) || (c == b && d == a);
+	}
+
+	private static int otherOutEdge(Graph graph, int nodeId, int previousNodeId) {
+		int edgeId = graph.nodeOutEdgeId(nodeId, 0);
+		return graph.edgeTargetNodeId(edgeId) != previousNodeId ? edgeId : graph.nodeOutEdgeId(nodeId, 1);
+	}
+
+	/**
+	 * Gives the graph whose chains are collapsed.
+	 *
+	 * @return the graph.
+	 */
+	public Graph graph() {
+		return graph;
+	}
+
+	/**
+	 * Gives the cost function used to compute the cost of the arcs.
+	 *
+	 * @return the cost function.
+	 */
+	public CostFunction costFunction() {
+		return costFunction;
+	}
+
+	/**
+	 * Gives the total number of arcs.
+	 *
+	 * @return the number of arcs.
+	 */
+	public int arcCount() {
+		return arcTargets.length;
+	}
+
+	/**
+	 * Checks if the given identity node is an intermediate node of a chain (which has no arc leaving it).
+	 * The intermediate nodes of a cycle without any junction belong to no arc.
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return true iff the node is intermediate.
+	 */
+	public boolean isIntermediate(int nodeId) {
+		return intermediate[nodeId];
+	}
+
+	/**
+	 * Gives the identity of the first arc leaving the given identity node, the arcs leaving it being those between
+	 * firstArc(nodeId) (included) and firstArc(nodeId + 1) (excluded).
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return the identity of the first arc leaving the node.
+	 */
+	public int firstArc(int nodeId) {
+		return arcOffsets[nodeId];
+	}
+
+	/**
+	 * Gives the identity of the junction the given identity arc arrives at.
+	 *
+	 * @param arcId the identity of the arc.
+	 * @return the identity of the target node of the arc.
+	 */
+	public int arcTargetNodeId(int arcId) {
+		return arcTargets[arcId];
+	}
+
+	/**
+	 * Gives the total cost of the given identity arc, positive infinity if one of its edges cannot be used.
+	 *
+	 * @param arcId the identity of the arc.
+	 * @return the cost of the arc.
+	 */
+	public float arcCost(int arcId) {
+		return arcCosts[arcId];
+	}
+
+	/**
+	 * Gives the total length, in meters, of the given identity arc.
+	 *
+	 * @param arcId the identity of the arc.
+	 * @return the length of the arc.
+	 */
+	public float arcLength(int arcId) {
+		return arcLengths[arcId];
+	}
+
+	/**
+	 * Gives the position of the first edge of the given identity arc, its edges being stored between
+	 * arcFirstPosition(arcId) (included) and arcFirstPosition(arcId + 1) (excluded).
+	 *
+	 * @param arcId the identity of the arc (or the number of arcs).
+	 * @return the position of the first edge of the arc.
+	 */
+	int arcFirstPosition(int arcId) {
+		return arcPositions[arcId];
+	}
+
+	/**
+	 * Gives the identity of the arc containing the edge stored at the given position.
+	 */
+	int arcAt(int position) {
+		// arcs are never empty, their first positions are thus strictly increasing
+		int index = Arrays.binarySearch(arcPositions, position);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * Gives the identity of the edge stored at the given position.
+	 */
+	int edgeAt(int position) {
+		return positionEdges[position];
+	}
+
+	/**
+	 * Gives the total cost of the edges stored between the given positions (first included, last excluded).
+	 */
+	float costBetween(int first, int last) {
+		float cost = 0;
+		for (int position = first; position < last; position++) cost += positionCosts[position];
+		return cost;
+	}
+
+	/**
+	 * Gives the position of the "index" (0 or 1) edge of an arc arriving at the given intermediate node, or -1.
+	 */
+	int arrivingPosition(int nodeId, int index) {
+		return arrivingPositions[2 * nodeId + index];
+	}
+}
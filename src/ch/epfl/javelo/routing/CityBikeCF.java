@@ -2,6 +2,7 @@ package ch.epfl.javelo.routing;
 
 import ch.epfl.javelo.data.AttributeSet;
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphGradients;
 
 import java.util.Optional;
 
@@ -11,7 +12,7 @@ import static ch.epfl.javelo.data.Attribute.*;
 // https://github.com/abrensch/brouter/blob/15e84c81ea23408abde8605bd57a87a777003ce2/misc/profiles2/trekking.brf
 
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-public record CityBikeCF(Graph graph) implements CostFunction {
+public record CityBikeCF(Graph graph, GraphGradients gradients) implements CostFunction {
 	// Any kind of marked cycle route (international, national, regional or local)
 	private static final AttributeSet CYCLE_ROUTE =
 			AttributeSet.of(ICN_YES, NCN_YES, RCN_YES, LCN_YES);
@@ -57,11 +58,19 @@ public record CityBikeCF(Graph graph) implements CostFunction {
 	private static final AttributeSet TRACKLIKE =
 			AttributeSet.of(HIGHWAY_TRACK, HIGHWAY_ROAD, HIGHWAY_PATH, HIGHWAY_FOOTWAY);
 
+	// Cost multipliers of the slope buckets of GraphGradients (descents and flat parts cost nothing more)
+	private static final double[] SLOPE_BUCKET_FACTORS = {1, 1, 1.2, 1.4, 1.8, 2.6};
+
 	// Ternary logic
 	private static final Optional<Boolean> TRUE = Optional.of(Boolean.TRUE);
 	private static final Optional<Boolean> FALSE = Optional.of(Boolean.FALSE);
 	private static final Optional<Boolean> UNKNOWN = Optional.empty();
 
+	// Without gradients, the slope of an edge is its average up-slope.
+	public CityBikeCF(Graph graph) {
+		this(graph, null);
+	}
+
 	@Override
 	public double costFactor(int nodeId, int edgeId) {
 		var edgeAttributes = graph.edgeAttributes(edgeId);
@@ -95,6 +104,15 @@ public record CityBikeCF(Graph graph) implements CostFunction {
 				? 1d
 				: 0.05 + nonCycleRouteCostFactor(edgeAttributes);
 
+		// With gradients, each part of the edge is penalized according to its own slope, so that a short steep ramp
+		// in a long edge is not ignored.
+		if (gradients != null) {
+			var slopeFactor = 0d;
+			for (int b = 0; b < GraphGradients.BUCKET_COUNT; b += 1)
+				slopeFactor += gradients.share(edgeId, b) * SLOPE_BUCKET_FACTORS[b];
+			return flatCost * slopeFactor;
+		}
+
 		var averageUpSlope = graph.edgeElevationGain(edgeId) / graph.edgeLength(edgeId);
 		if (averageUpSlope < 0.01) return flatCost;
 		else if (averageUpSlope < 0.03) return flatCost * 1.2;
@@ -103,6 +121,12 @@ public record CityBikeCF(Graph graph) implements CostFunction {
 		else return flatCost * 2.6;
 	}
 
+	// The costs of the edges differ with and without gradients.
+	@Override
+	public String id() {
+		return gradients == null ? getClass().getName() : getClass().getName() + "+gradients";
+	}
+
 	private Optional<Boolean> isAccessibleByBike(AttributeSet edgeAttributes) {
 		if (edgeAttributes.intersects(BIKE_ACCESS_ALLOWED)) return TRUE;
 		if (edgeAttributes.intersects(BIKE_ACCESS_FORBIDDEN)) return FALSE;
@@ -0,0 +1,55 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import static ch.epfl.javelo.data.Attribute.*;
+
+/**
+ * This record represents the turn cost function of a bike in traffic driving on the right: the sharper the turn, the
+ * higher its cost, and turning left, which crosses the opposite lane, costs more when a main road is involved.
+ * The angle of a turn is computed from the points of the nodes linked by the two edges, the edges being straight.
+ *
+ * @param graph the graph containing the edges.
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public record CityBikeTurnCF(Graph graph) implements TurnCostFunction {
+
+	private static final AttributeSet MAIN_ROAD =
+			AttributeSet.of(HIGHWAY_TRUNK, HIGHWAY_PRIMARY, HIGHWAY_SECONDARY, HIGHWAY_TERTIARY);
+
+	// costs of the turns, in meters of flat cycle route
+	private static final double U_TURN_COST = 100;
+	private static final double SHARP_TURN_COST = 30;
+	private static final double TURN_COST = 10;
+	private static final double MAIN_ROAD_LEFT_TURN_COST = 40;
+
+	// angles delimiting the kinds of turns, in radians
+	private static final double STRAIGHT_ANGLE = Math.toRadians(30);
+	private static final double SHARP_ANGLE = Math.toRadians(120);
+
+	@Override
+	public double turnCost(int fromNodeId, int inEdgeId, int nodeId, int outEdgeId) {
+		int toNodeId = graph.edgeTargetNodeId(outEdgeId);
+		if (toNodeId == fromNodeId) return U_TURN_COST;
+
+		PointCh from = graph.nodePoint(fromNodeId);
+		PointCh at = graph.nodePoint(nodeId);
+		PointCh to = graph.nodePoint(toNodeId);
+		double inAngle = Math.atan2(at.n() - from.n(), at.e() - from.e());
+		double outAngle = Math.atan2(to.n() - at.n(), to.e() - at.e());
+		// positive for a left turn, negative for a right one
+		double turn = Math.IEEEremainder(outAngle - inAngle, 2 * Math.PI);
+
+		double absTurn = Math.abs(turn);
+		if (absTurn < STRAIGHT_ANGLE) return 0;
+		double cost = absTurn < SHARP_ANGLE ? TURN_COST : SHARP_TURN_COST;
+		if (turn > 0 && (graph.edgeAttributes(inEdgeId).intersects(MAIN_ROAD)
+				|| graph.edgeAttributes(outEdgeId).intersects(MAIN_ROAD))) {
+			cost += MAIN_ROAD_LEFT_TURN_COST;
+		}
+		return cost;
+	}
+}
@@ -0,0 +1,316 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * This class represents a single route stored compactly, as the identities of its edges in a graph and their positions
+ * along the route, its points and profiles being read from the graph when needed. It behaves like the
+ * {@link SingleRoute} made of the same edges, but its edges and points are views created on demand.
+ * <p>
+ * Its serialized form (see {@link #toBytes()}) only contains the identities of its first node and of its edges, and
+ * can thus be read again with the same version of the graph only.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class CompactRoute implements Route {
+	private final static int FORMAT = 0x4A56_5231; // "JVR1"
+	private final static int HEADER_INTS = 3;
+
+	private final Graph graph;
+	private final TravelTimes travelTimes;
+	private final int startNodeId;
+	private final int[] edgeIds;
+	private final double[] sortedEdgePos;
+	private final double time;
+	// the profile of the last edge whose elevation was asked, as they are usually asked in order
+	private ProfileOfEdge lastProfile;
+	// the spatial index of the edges, built when a point closest to another one is first asked
+	private SegmentIndex segmentIndex;
+
+	private record ProfileOfEdge(int index, DoubleUnaryOperator profile) {
+	}
+
+	/**
+	 * Creates a route following the given edges of the graph from the given node, whose travel time is not known.
+	 *
+	 * @param graph       the graph.
+	 * @param startNodeId the identity of the first node of the route.
+	 * @param edgeIds     the identities of the edges of the route, in order.
+	 * @throws IllegalArgumentException if there is no edge, or if an edge does not leave the node reached by the
+	 *                                  previous one (or the first node).
+	 */
+	public CompactRoute(Graph graph, int startNodeId, int[] edgeIds) {
+		this(graph, null, startNodeId, edgeIds);
+	}
+
+	/**
+	 * Creates a route following the given edges of the graph from the given node, whose edges are timed with the given
+	 * travel times.
+	 *
+	 * @param graph       the graph.
+	 * @param travelTimes the travel times of the edges of the graph, or null if they are not known.
+	 * @param startNodeId the identity of the first node of the route.
+	 * @param edgeIds     the identities of the edges of the route, in order.
+	 * @throws IllegalArgumentException if there is no edge, or if an edge does not leave the node reached by the
+	 *                                  previous one (or the first node).
+	 */
+	public CompactRoute(Graph graph, TravelTimes travelTimes, int startNodeId, int[] edgeIds) {
+		Preconditions.checkArgument(edgeIds.length > 0);
+		this.graph = graph;
+		this.travelTimes = travelTimes;
+		this.startNodeId = startNodeId;
+		this.edgeIds = edgeIds.clone();
+
+		sortedEdgePos = new double[edgeIds.length + 1];
+		double time = 0;
+		int nodeId = startNodeId;
+		for (int i = 0; i < edgeIds.length; i++) {
+			Preconditions.checkArgument(leaves(nodeId, edgeIds[i]));
+			sortedEdgePos[i + 1] = sortedEdgePos[i] + graph.edgeLength(edgeIds[i]);
+			time += travelTimes == null ? Double.NaN : travelTimes.time(edgeIds[i]);
+			nodeId = graph.edgeTargetNodeId(edgeIds[i]);
+		}
+		this.time = time;
+	}
+
+	/**
+	 * Reads a route from its serialized form (see {@link #toBytes()}).
+	 *
+	 * @param graph       the graph of the route.
+	 * @param travelTimes the travel times of the edges of the graph, or null if they are not known.
+	 * @param bytes       the serialized form of the route.
+	 * @return the route.
+	 * @throws IllegalArgumentException if the bytes are not the serialized form of a route of the graph.
+	 */
+	public static CompactRoute fromBytes(Graph graph, TravelTimes travelTimes, byte[] bytes) {
+		Preconditions.checkArgument(bytes.length >= HEADER_INTS * Integer.BYTES && bytes.length % Integer.BYTES == 0);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		Preconditions.checkArgument(buffer.getInt() == FORMAT);
+		int startNodeId = buffer.getInt();
+		int edgeCount = buffer.getInt();
+		Preconditions.checkArgument(edgeCount == bytes.length / Integer.BYTES - HEADER_INTS);
+		Preconditions.checkArgument(0 <= startNodeId && startNodeId < graph.nodeCount());
+		int[] edgeIds = new int[edgeCount];
+		buffer.asIntBuffer().get(edgeIds);
+		for (int edgeId : edgeIds) Preconditions.checkArgument(0 <= edgeId && edgeId < graph.edgeCount());
+		return new CompactRoute(graph, travelTimes, startNodeId, edgeIds);
+	}
+
+	/**
+	 * Gives the serialized form of the route: a format number, the identity of its first node, its number of edges
+	 * and the identities of its edges, as big-endian 32-bit integers.
+	 *
+	 * @return the serialized form of the route.
+	 */
+	public byte[] toBytes() {
+		ByteBuffer buffer = ByteBuffer.allocate((HEADER_INTS + edgeIds.length) * Integer.BYTES);
+		buffer.putInt(FORMAT).putInt(startNodeId).putInt(edgeIds.length);
+		buffer.asIntBuffer().put(edgeIds);
+		return buffer.array();
+	}
+
+	/**
+	 * Gives the identity of the first node of the route.
+	 *
+	 * @return the identity of the first node.
+	 */
+	public int startNodeId() {
+		return startNodeId;
+	}
+
+	/**
+	 * Gives the identities of the edges of the route, in order.
+	 *
+	 * @return the identities of the edges.
+	 */
+	public int[] edgeIds() {
+		return edgeIds.clone();
+	}
+
+	private boolean leaves(int nodeId, int edgeId) {
+		for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+			if (graph.nodeOutEdgeId(nodeId, i) == edgeId) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gives the identity of the node at the given index along the route, the first node having the index 0.
+	 */
+	private int nodeId(int index) {
+		return index == 0 ? startNodeId : graph.edgeTargetNodeId(edgeIds[index - 1]);
+	}
+
+	private Edge edge(int index) {
+		int fromNodeId = nodeId(index);
+		int toNodeId = graph.edgeTargetNodeId(edgeIds[index]);
+		return travelTimes == null
+				? Edge.of(graph, edgeIds[index], fromNodeId, toNodeId)
+				: Edge.of(graph, edgeIds[index], fromNodeId, toNodeId, travelTimes);
+	}
+
+	@Override
+	public int indexOfSegmentAt(double position) {
+		return 0;
+	}
+
+	@Override
+	public double length() {
+		return sortedEdgePos[sortedEdgePos.length - 1];
+	}
+
+	@Override
+	public double time() {
+		return time;
+	}
+
+	@Override
+	public List<Edge> edges() {
+		return new AbstractList<>() {
+			@Override
+			public Edge get(int index) {
+				return edge(Objects.checkIndex(index, size()));
+			}
+
+			@Override
+			public int size() {
+				return edgeIds.length;
+			}
+		};
+	}
+
+	@Override
+	public List<PointCh> points() {
+		return new AbstractList<>() {
+			@Override
+			public PointCh get(int index) {
+				return graph.nodePoint(nodeId(Objects.checkIndex(index, size())));
+			}
+
+			@Override
+			public int size() {
+				return edgeIds.length + 1;
+			}
+		};
+	}
+
+	/**
+	 * Gives the index in the edge list of a given position.
+	 *
+	 * @param position the given position.
+	 * @return the index in the edge list of the given position.
+	 */
+	private int edgeIndex(double position) {
+		int indexEdge = Arrays.binarySearch(sortedEdgePos, position);
+		if (indexEdge > 0) return indexEdge - 1;
+		if (indexEdge == 0) return indexEdge;
+		return ((-indexEdge) - 2);
+	}
+
+	@Override
+	public PointCh pointAt(double position) {
+		double newPosition = Math2.clamp(0, position, this.length());
+		int edgeIndex = edgeIndex(newPosition);
+		double positionOnEdge = newPosition - sortedEdgePos[edgeIndex];
+		PointCh from = graph.nodePoint(nodeId(edgeIndex));
+		PointCh to = graph.nodePoint(nodeId(edgeIndex + 1));
+		double x = positionOnEdge / graph.edgeLength(edgeIds[edgeIndex]);
+		return new PointCh(Math2.interpolate(from.e(), to.e(), x), Math2.interpolate(from.n(), to.n(), x));
+	}
+
+	@Override
+	public double elevationAt(double position) {
+		double newPosition = Math2.clamp(0, position, this.length());
+		int edgeIndex = edgeIndex(newPosition);
+		ProfileOfEdge profile = lastProfile;
+		if (profile == null || profile.index() != edgeIndex) {
+			profile = new ProfileOfEdge(edgeIndex, graph.edgeProfile(edgeIds[edgeIndex]));
+			lastProfile = profile;
+		}
+		return profile.profile().applyAsDouble(newPosition - sortedEdgePos[edgeIndex]);
+	}
+
+	@Override
+	public void elevationsAt(double[] positions, double[] elevations) {
+		Preconditions.checkArgument(positions.length == elevations.length);
+		int edgeIndex = 0;
+		int profileIndex = -1;
+		DoubleUnaryOperator profile = null;
+		for (int i = 0; i < positions.length; i++) {
+			double newPosition = Math2.clamp(0, positions[i], this.length());
+			while (edgeIndex < edgeIds.length - 1 && sortedEdgePos[edgeIndex + 1] < newPosition) edgeIndex++;
+			// a position at the end of an edge is found as elevationAt finds it, as there may be edges of length 0
+			int index = newPosition == sortedEdgePos[edgeIndex] || newPosition == sortedEdgePos[edgeIndex + 1]
+					? edgeIndex(newPosition)
+					: edgeIndex;
+			if (index != profileIndex) {
+				profile = graph.edgeProfile(edgeIds[index]);
+				profileIndex = index;
+			}
+			elevations[i] = profile.applyAsDouble(newPosition - sortedEdgePos[index]);
+		}
+	}
+
+	@Override
+	public int nodeClosestTo(double position) {
+		double newPosition = Math2.clamp(0, position, this.length());
+		int edgeIndex = edgeIndex(newPosition);
+		double positionInEdge = newPosition - sortedEdgePos[edgeIndex];
+		double edgeLength = graph.edgeLength(edgeIds[edgeIndex]);
+		return positionInEdge <= edgeLength - positionInEdge ? nodeId(edgeIndex) : nodeId(edgeIndex + 1);
+	}
+
+	@Override
+	public RoutePoint pointClosestTo(PointCh point) {
+		SegmentIndex index = segmentIndex;
+		if (index == null) segmentIndex = index = segmentIndex();
+		int i = index.closestSegment(point.e(), point.n());
+		double position = index.positionOn(i, point.e(), point.n());
+		PointCh from = graph.nodePoint(nodeId(i));
+		PointCh to = graph.nodePoint(nodeId(i + 1));
+		double x = position / graph.edgeLength(edgeIds[i]);
+		PointCh pointCh = new PointCh(Math2.interpolate(from.e(), to.e(), x), Math2.interpolate(from.n(), to.n(), x));
+		return new RoutePoint(pointCh, position + sortedEdgePos[i], pointCh.distanceTo(point));
+	}
+
+	private SegmentIndex segmentIndex() {
+		double[] fromE = new double[edgeIds.length], fromN = new double[edgeIds.length];
+		double[] toE = new double[edgeIds.length], toN = new double[edgeIds.length];
+		double[] lengths = new double[edgeIds.length];
+		for (int i = 0; i < edgeIds.length; i++) {
+			PointCh from = graph.nodePoint(nodeId(i));
+			PointCh to = graph.nodePoint(nodeId(i + 1));
+			fromE[i] = from.e();
+			fromN[i] = from.n();
+			toE[i] = to.e();
+			toN[i] = to.n();
+			lengths[i] = graph.edgeLength(edgeIds[i]);
+		}
+		return new SegmentIndex(fromE, fromN, toE, toN, lengths);
+	}
+
+	@Override
+	public boolean equals(Object that) {
+		return that instanceof CompactRoute route
+				&& graph == route.graph
+				&& travelTimes == route.travelTimes
+				&& startNodeId == route.startNodeId
+				&& Arrays.equals(edgeIds, route.edgeIds);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * startNodeId + Arrays.hashCode(edgeIds);
+	}
+}
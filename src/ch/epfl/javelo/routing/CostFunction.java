@@ -17,4 +17,17 @@ public interface CostFunction {
 	 * @return the factor by which the length of the edge should be multiplied.
 	 */
 	double costFactor(int nodeId, int edgeId);
+
+	/**
+	 * Gives the identifier of the costs given by this cost function, stored with the costs computed once and for all
+	 * (see {@link FilteredGraph#writeTo(java.nio.file.Path)}) so that they are not used with another cost function.
+	 * Two cost functions giving different costs on the same graph must have different identifiers.
+	 * By default, the name of the class of the cost function, which suits the cost functions whose costs only depend
+	 * on the graph.
+	 *
+	 * @return the identifier of the cost function.
+	 */
+	default String id() {
+		return getClass().getName();
+	}
 }
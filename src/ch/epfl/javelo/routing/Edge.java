@@ -8,12 +8,28 @@ import java.util.function.DoubleUnaryOperator;
 
 /**
  * This record class represents an edge of an itinerary.
+ * Its travel time, in seconds, is NaN if it is not known.
  *
  * @author Morgane Magnin (347041)
  * @author Amene Gafsi (345583)
  */
 public record Edge(int fromNodeId, int toNodeId, PointCh fromPoint, PointCh toPoint, double length,
-				   DoubleUnaryOperator profile) {
+				   DoubleUnaryOperator profile, double time) {
+
+	/**
+	 * Creates an edge whose travel time is not known.
+	 *
+	 * @param fromNodeId the identity of the edge starting node.
+	 * @param toNodeId   the identity of the edge arrival node.
+	 * @param fromPoint  the point of the starting node.
+	 * @param toPoint    the point of the arrival node.
+	 * @param length     the length of the edge, in meters.
+	 * @param profile    the profile of the edge.
+	 */
+	public Edge(int fromNodeId, int toNodeId, PointCh fromPoint, PointCh toPoint, double length,
+				DoubleUnaryOperator profile) {
+		this(fromNodeId, toNodeId, fromPoint, toPoint, length, profile, Double.NaN);
+	}
 
 	/**
 	 * Gives an instance of Edge whose attributes fromNodeId and toNodeId are those given.
@@ -29,6 +45,22 @@ public record Edge(int fromNodeId, int toNodeId, PointCh fromPoint, PointCh toPo
 		return new Edge(fromNodeId, toNodeId, graph.nodePoint(fromNodeId), graph.nodePoint(toNodeId), graph.edgeLength(edgeId), graph.edgeProfile(edgeId));
 	}
 
+	/**
+	 * Gives an instance of Edge like {@link #of(Graph, int, int, int)}, whose travel time is the one of the "edgeId"
+	 * identity edge in the given travel times.
+	 *
+	 * @param graph      the graph that contains the edges.
+	 * @param edgeId     the identity of the edge in the graph.
+	 * @param fromNodeId the identity of the edge starting node.
+	 * @param toNodeId   the identity of the edge arrival node.
+	 * @param times      the travel times of the edges of the graph.
+	 * @return a new instance of Edge whose travel time is known.
+	 */
+	public static Edge of(Graph graph, int edgeId, int fromNodeId, int toNodeId, TravelTimes times) {
+		return new Edge(fromNodeId, toNodeId, graph.nodePoint(fromNodeId), graph.nodePoint(toNodeId),
+				graph.edgeLength(edgeId), graph.edgeProfile(edgeId), times.time(edgeId));
+	}
+
 	/**
 	 * Gives the position along the edge, in meters, that is closest to the given point.
 	 *
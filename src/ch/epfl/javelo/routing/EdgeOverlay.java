@@ -0,0 +1,202 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class represents a mutable layer of temporary changes to the cost of the edges of a graph (closures due to
+ * roadworks or events, penalties), applied on top of the cost function by {@link RouteComputer}.
+ * <p>
+ * The changes are stored in an immutable {@link Snapshot}, replaced as a whole on every update: a route computation
+ * reads the current snapshot once, and thus sees a consistent state even if the overlay is updated meanwhile.
+ * Updates are meant to be rare compared to route computations, and cost a copy of the snapshot.
+ * <p>
+ * Overlays are saved as text files, one change per line: the identity of the edge followed by its cost factor or by
+ * "blocked". Empty lines and lines starting with '#' are ignored.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class EdgeOverlay {
+
+	private final static String BLOCKED = "blocked";
+	private final static char COMMENT = '#';
+
+	private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+	/**
+	 * This record class represents the state of an overlay at a given time: the cost factors of the changed edges,
+	 * sorted by edge identity. A blocked edge has an infinite factor.
+	 *
+	 * @param edgeIds the identities of the changed edges, sorted in increasing order (not copied).
+	 * @param factors the cost factors of these edges (not copied).
+	 */
+	public record Snapshot(int[] edgeIds, float[] factors) {
+		/**
+		 * The snapshot of an overlay without any change.
+		 */
+		public static final Snapshot EMPTY = new Snapshot(new int[0], new float[0]);
+
+		/**
+		 * Gives the number of changed edges.
+		 *
+		 * @return the number of changed edges.
+		 */
+		public int size() {
+			return edgeIds.length;
+		}
+
+		/**
+		 * Checks if no edge is changed.
+		 *
+		 * @return true iff no edge is changed.
+		 */
+		public boolean isEmpty() {
+			return edgeIds.length == 0;
+		}
+
+		/**
+		 * Gives the factor by which the cost of the given identity edge is multiplied.
+		 *
+		 * @param edgeId the identity of the edge.
+		 * @return the factor of the edge, 1 if it is not changed, positive infinity if it is blocked.
+		 */
+		public double factor(int edgeId) {
+			int index = Arrays.binarySearch(edgeIds, edgeId);
+			return index < 0 ? 1 : factors[index];
+		}
+
+		private Map<Integer, Float> toMap() {
+			Map<Integer, Float> map = new TreeMap<>();
+			for (int i = 0; i < edgeIds.length; i++) map.put(edgeIds[i], factors[i]);
+			return map;
+		}
+
+		private static Snapshot of(Map<Integer, Float> map) {
+			int[] edgeIds = new int[map.size()];
+			float[] factors = new float[map.size()];
+			int i = 0;
+			for (Map.Entry<Integer, Float> change : new TreeMap<>(map).entrySet()) {
+				edgeIds[i] = change.getKey();
+				factors[i++] = change.getValue();
+			}
+			return new Snapshot(edgeIds, factors);
+		}
+	}
+
+	/**
+	 * Gives the current state of the overlay.
+	 *
+	 * @return the current snapshot.
+	 */
+	public Snapshot snapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Blocks the given identity edge.
+	 *
+	 * @param edgeId the identity of the edge.
+	 */
+	public void block(int edgeId) {
+		update(Map.of(edgeId, Double.POSITIVE_INFINITY));
+	}
+
+	/**
+	 * Multiplies the cost of the given identity edge by the given factor (replacing its previous factor, if any).
+	 *
+	 * @param edgeId the identity of the edge.
+	 * @param factor the factor of the edge.
+	 * @throws IllegalArgumentException if the factor is smaller than 1.
+	 */
+	public void penalize(int edgeId, double factor) {
+		update(Map.of(edgeId, factor));
+	}
+
+	/**
+	 * Removes the change of the given identity edge, if any.
+	 *
+	 * @param edgeId the identity of the edge.
+	 */
+	public void remove(int edgeId) {
+		update(Map.of(edgeId, 1d));
+	}
+
+	/**
+	 * Removes all the changes.
+	 */
+	public synchronized void clear() {
+		snapshot = Snapshot.EMPTY;
+	}
+
+	/**
+	 * Applies the given changes at once: route computations see either none or all of them.
+	 *
+	 * @param changes the new factor of each changed edge, a factor of 1 removing the change of the edge.
+	 * @throws IllegalArgumentException if a factor is smaller than 1 (or NaN).
+	 */
+	public synchronized void update(Map<Integer, Double> changes) {
+		for (double factor : changes.values()) Preconditions.checkArgument(factor >= 1);
+		Map<Integer, Float> map = snapshot.toMap();
+		changes.forEach((edgeId, factor) -> {
+			if (factor == 1) map.remove(edgeId);
+			else map.put(edgeId, factor.floatValue());
+		});
+		snapshot = Snapshot.of(map);
+	}
+
+	/**
+	 * Replaces all the changes by the ones of the given file, at once.
+	 *
+	 * @param file the path of the file.
+	 * @throws IOException              in case of an input/output error.
+	 * @throws IllegalArgumentException if a line of the file is invalid.
+	 */
+	public void loadFrom(Path file) throws IOException {
+		Map<Integer, Float> map = new TreeMap<>();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.strip();
+				if (line.isEmpty() || line.charAt(0) == COMMENT) continue;
+				String[] fields = line.split("\\s+");
+				Preconditions.checkArgument(fields.length == 2);
+				float factor = fields[1].equals(BLOCKED) ? Float.POSITIVE_INFINITY : Float.parseFloat(fields[1]);
+				Preconditions.checkArgument(factor >= 1);
+				map.put(Integer.parseInt(fields[0]), factor);
+			}
+		}
+		synchronized (this) {
+			snapshot = Snapshot.of(map);
+		}
+	}
+
+	/**
+	 * Writes the current changes in the given file, which is replaced if it already exists.
+	 *
+	 * @param file the path of the file.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public void saveTo(Path file) throws IOException {
+		Snapshot current = snapshot;
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write(COMMENT + " edge factor");
+			writer.newLine();
+			for (int i = 0; i < current.size(); i++) {
+				float factor = current.factors()[i];
+				writer.write(current.edgeIds()[i] + " "
+						+ (factor == Float.POSITIVE_INFINITY ? BLOCKED : Float.toString(factor)));
+				writer.newLine();
+			}
+		}
+	}
+}
@@ -16,6 +16,7 @@ public final class ElevationProfile {
 
 	private final double length;
 	private final float[] elevationSamples;
+	private final double time;
 	private double maxElevation = 0.0;
 	private double minElevation = 0.0;
 	private double totalAscent = 0.0;
@@ -32,7 +33,21 @@ public final class ElevationProfile {
 	 * least 2 elements in the elevations samples array.
 	 */
 	public ElevationProfile(double length, float[] elevationSamples) {
+		this(length, elevationSamples, Double.NaN);
+	}
+
+	/**
+	 * Constructor of the profile of a route whose travel time is known.
+	 *
+	 * @param length           the length of the profile.
+	 * @param elevationSamples the elevation samples.
+	 * @param time             the travel time along the route, in seconds (NaN if it is not known).
+	 * @throws IllegalArgumentException preconditions not checked: length must be > 0 and there must be at
+	 * least 2 elements in the elevations samples array.
+	 */
+	public ElevationProfile(double length, float[] elevationSamples, double time) {
 		this.length = length;
+		this.time = time;
 		this.elevationSamples = elevationSamples.clone();
 
 		Preconditions.checkArgument(length > 0 && elevationSamples.length >= 2);
@@ -66,6 +81,45 @@ public final class ElevationProfile {
 		return length;
 	}
 
+	/**
+	 * Gives the estimated travel time along the route of the profile, in seconds.
+	 *
+	 * @return the travel time, NaN if it is not known.
+	 */
+	public double time() {
+		return time;
+	}
+
+	/**
+	 * Gives the number of elevation samples of the profile, the first one being at its start and the last one at its
+	 * end.
+	 *
+	 * @return the number of elevation samples.
+	 */
+	public int sampleCount() {
+		return elevationSamples.length;
+	}
+
+	/**
+	 * Gives the distance between two consecutive elevation samples of the profile, in meters.
+	 *
+	 * @return the distance between two consecutive samples.
+	 */
+	public double sampleStep() {
+		return length / (elevationSamples.length - 1);
+	}
+
+	/**
+	 * Gives the elevation sample of the given index, in meters.
+	 *
+	 * @param index the index of the sample, between 0 (included) and the number of samples (excluded).
+	 * @return the elevation sample of the given index.
+	 * @throws IndexOutOfBoundsException if the index is not valid.
+	 */
+	public double elevationSample(int index) {
+		return elevationSamples[index];
+	}
+
 	/**
 	 * Gives the minimum altitude of the profile, in meters.
 	 *
@@ -22,7 +22,7 @@ public final class ElevationProfileComputer {
 	 *
 	 * @param route         the route from which the profiles are extracted.
 	 * @param maxStepLength the maximum spacing between the samples in meters.
-	 * @return the long profile of the route.
+	 * @return the long profile of the route, whose travel time is the one of the route.
 	 * @throws IllegalArgumentException if "maxStepLength" is not strictly positive.
 	 */
 	public static ElevationProfile elevationProfile(Route route, double maxStepLength) {
@@ -30,9 +30,14 @@ public final class ElevationProfileComputer {
 
 		int nbSamples = ((int) Math.ceil(route.length() / maxStepLength)) + 1;
 		double lengthOfSample = route.length() / (nbSamples - 1);
+		// the samples are computed at once, so that the route walks its edges once
+		double[] positions = new double[nbSamples];
+		for (int i = 0; i < nbSamples; i++) positions[i] = i * lengthOfSample;
+		double[] elevations = new double[nbSamples];
+		route.elevationsAt(positions, elevations);
 		float[] elevationSamples = new float[nbSamples];
 		for (int i = 0; i < nbSamples; i++) {
-			elevationSamples[i] = (float) route.elevationAt(i * lengthOfSample);
+			elevationSamples[i] = (float) elevations[i];
 		}
 
 		// find a valid sample to fill in the gaps at the beginning of the list and check if the array contains a non Nan value
@@ -74,6 +79,6 @@ public final class ElevationProfileComputer {
 				}
 			}
 		}
-		return new ElevationProfile(route.length(), elevationSamples);
+		return new ElevationProfile(route.length(), elevationSamples, route.time());
 	}
 }
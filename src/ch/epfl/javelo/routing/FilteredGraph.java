@@ -0,0 +1,217 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.BinaryFiles;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents the routing graph of a graph for a given cost function, from which the edges that cannot be
+ * used (whose cost factor is infinite, like motorways for bikes) are removed.
+ * <p>
+ * The usable out-edges of the node n are stored between offsets[n] (included) and offsets[n + 1] (excluded), in
+ * compressed sparse row layout, with their identity in the graph (so that {@link Edge#of} and the profiles keep
+ * working), their target node and their cost, computed once and for all.
+ * <p>
+ * Once persisted, the four arrays are stored one after the other, as 32 bits values, in a single file. They are
+ * preceded by the header identifying the dataset of the graph (see {@link BinaryFiles}) and by the hash code of the
+ * identifier of the cost function (see {@link CostFunction#id()}), so that the costs are never used with another
+ * version of the dataset or another cost function.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class FilteredGraph {
+
+	private static final int HEADER_BYTES = BinaryFiles.HEADER_BYTES + Integer.BYTES;
+
+	private final Graph graph;
+	private final CostFunction costFunction;
+	private final IntBuffer offsets;
+	private final IntBuffer edgeIds;
+	private final IntBuffer targets;
+	private final FloatBuffer costs;
+
+	private FilteredGraph(Graph graph, CostFunction costFunction, IntBuffer offsets, IntBuffer edgeIds,
+						  IntBuffer targets, FloatBuffer costs) {
+		this.graph = graph;
+		this.costFunction = costFunction;
+		this.offsets = offsets;
+		this.edgeIds = edgeIds;
+		this.targets = targets;
+		this.costs = costs;
+	}
+
+	/**
+	 * Builds the routing graph of the given graph for the given cost function. The work is split among all the
+	 * available processors.
+	 *
+	 * @param graph        the graph.
+	 * @param costFunction the cost function giving the cost of the edges.
+	 * @return the routing graph without the edges of infinite cost.
+	 */
+	public static FilteredGraph of(Graph graph, CostFunction costFunction) {
+		int nodeCount = graph.nodeCount();
+		float[] edgeCosts = new float[graph.edgeCount()];
+		int[] offsets = new int[nodeCount + 1];
+		IntStream.range(0, nodeCount).parallel().forEach(nodeId -> {
+			int usable = 0;
+			for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+				int edgeId = graph.nodeOutEdgeId(nodeId, i);
+				edgeCosts[edgeId] = (float) (graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId));
+				if (isUsable(edgeCosts[edgeId])) usable++;
+			}
+			offsets[nodeId + 1] = usable;
+		});
+		Arrays.parallelPrefix(offsets, Integer::sum);
+
+		int count = offsets[nodeCount];
+		int[] edgeIds = new int[count];
+		int[] targets = new int[count];
+		float[] costs = new float[count];
+		IntStream.range(0, nodeCount).parallel().forEach(nodeId -> {
+			int index = offsets[nodeId];
+			for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+				int edgeId = graph.nodeOutEdgeId(nodeId, i);
+				if (!isUsable(edgeCosts[edgeId])) continue;
+				edgeIds[index] = edgeId;
+				targets[index] = graph.edgeTargetNodeId(edgeId);
+				costs[index++] = edgeCosts[edgeId];
+			}
+		});
+		return new FilteredGraph(graph, costFunction, IntBuffer.wrap(offsets), IntBuffer.wrap(edgeIds),
+				IntBuffer.wrap(targets), FloatBuffer.wrap(costs));
+	}
+
+	private static boolean isUsable(float cost) {
+		// the cost of an empty edge of infinite factor is NaN
+		return cost < Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Gives the routing graph stored in the given file (as written by {@link #writeTo(Path)}), which must have been
+	 * built from the same version of the dataset and the same cost function.
+	 *
+	 * @param file         the path of the file.
+	 * @param graph        the graph.
+	 * @param costFunction the cost function giving the cost of the edges.
+	 * @return the routing graph contained in the file.
+	 * @throws IOException              in case of an input/output error.
+	 * @throws IllegalArgumentException if the file was built from another version of the dataset (see
+	 *                                  {@link Graph#datasetVersion()}) or another cost function, or if its size does
+	 *                                  not match the size of the graph.
+	 */
+	public static FilteredGraph loadFrom(Path file, Graph graph, CostFunction costFunction) throws IOException {
+		ByteBuffer fileContent = BinaryFiles.map(file);
+		Preconditions.checkArgument(
+				BinaryFiles.hasHeader(fileContent, graph.datasetVersion(), graph.nodeCount(), graph.edgeCount())
+						&& fileContent.capacity() >= HEADER_BYTES
+						&& fileContent.getInt(BinaryFiles.HEADER_BYTES) == costFunction.id().hashCode());
+		ByteBuffer buffer = fileContent.slice(HEADER_BYTES, fileContent.capacity() - HEADER_BYTES);
+		IntBuffer ints = buffer.asIntBuffer();
+		int nodeCount = graph.nodeCount();
+		Preconditions.checkArgument(ints.capacity() > nodeCount);
+		int count = ints.get(nodeCount);
+		Preconditions.checkArgument(ints.capacity() == nodeCount + 1 + 3 * count && count <= graph.edgeCount());
+		return new FilteredGraph(graph, costFunction,
+				ints.slice(0, nodeCount + 1),
+				ints.slice(nodeCount + 1, count),
+				ints.slice(nodeCount + 1 + count, count),
+				buffer.asFloatBuffer().slice(nodeCount + 1 + 2 * count, count));
+	}
+
+	/**
+	 * Writes the routing graph in the given file, which is replaced if it already exists.
+	 *
+	 * @param file the path of the file.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public void writeTo(Path file) throws IOException {
+		int count = edgeIds.capacity();
+		ByteBuffer fileContent = ByteBuffer.allocate(HEADER_BYTES + (offsets.capacity() + 3 * count) * Integer.BYTES);
+		BinaryFiles.putHeader(fileContent, graph.datasetVersion(), graph.nodeCount(), graph.edgeCount());
+		fileContent.putInt(BinaryFiles.HEADER_BYTES, costFunction.id().hashCode());
+		ByteBuffer content = fileContent.slice(HEADER_BYTES, fileContent.capacity() - HEADER_BYTES);
+		content.asIntBuffer()
+				.put(offsets.duplicate().clear())
+				.put(edgeIds.duplicate().clear())
+				.put(targets.duplicate().clear());
+		content.asFloatBuffer().position(offsets.capacity() + 2 * count).put(costs.duplicate().clear());
+		BinaryFiles.write(file, fileContent);
+	}
+
+	/**
+	 * Gives the graph this routing graph is built from.
+	 *
+	 * @return the graph.
+	 */
+	public Graph graph() {
+		return graph;
+	}
+
+	/**
+	 * Gives the cost function used to compute the cost of the edges.
+	 *
+	 * @return the cost function.
+	 */
+	public CostFunction costFunction() {
+		return costFunction;
+	}
+
+	/**
+	 * Gives the total number of usable edges.
+	 *
+	 * @return the number of edges.
+	 */
+	public int edgeCount() {
+		return edgeIds.capacity();
+	}
+
+	/**
+	 * Gives the index of the first usable edge leaving the given identity node, the usable edges leaving it having
+	 * the indexes between firstEdge(nodeId) (included) and firstEdge(nodeId + 1) (excluded).
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return the index of the first edge leaving the node.
+	 */
+	public int firstEdge(int nodeId) {
+		return offsets.get(nodeId);
+	}
+
+	/**
+	 * Gives the identity, in the graph, of the edge of the given index.
+	 *
+	 * @param index the index of the edge.
+	 * @return the identity of the edge in the graph.
+	 */
+	public int edgeId(int index) {
+		return edgeIds.get(index);
+	}
+
+	/**
+	 * Gives the identity of the node the edge of the given index arrives at.
+	 *
+	 * @param index the index of the edge.
+	 * @return the identity of the target node of the edge.
+	 */
+	public int targetNodeId(int index) {
+		return targets.get(index);
+	}
+
+	/**
+	 * Gives the cost of the edge of the given index (its length multiplied by its cost factor).
+	 *
+	 * @param index the index of the edge.
+	 * @return the cost of the edge.
+	 */
+	public float cost(int index) {
+		return costs.get(index);
+	}
+}
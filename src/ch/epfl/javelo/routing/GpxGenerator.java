@@ -1,17 +1,13 @@
 package ch.epfl.javelo.routing;
 
-import ch.epfl.javelo.gui.Waypoint;
+import ch.epfl.javelo.projection.Ch1903;
 import ch.epfl.javelo.projection.PointCh;
-import javafx.collections.ObservableList;
+import ch.epfl.javelo.projection.SwissBounds;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
-import javax.swing.*;
-import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
@@ -20,9 +16,9 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -43,10 +39,9 @@ public class GpxGenerator {
 	 *
 	 * @param route        the route.
 	 * @param routeProfile the profile of the given route.
-	 * @param waypoints    the list of waypoints.
 	 * @return the GPX document corresponding to the itinerary.
 	 */
-	public static Document createGpx(Route route, ElevationProfile routeProfile, ObservableList<Waypoint> waypoints) {
+	public static Document createGpx(Route route, ElevationProfile routeProfile) {
 		Document doc = newDocument();
 
 		Element root = doc
@@ -94,83 +89,85 @@ public class GpxGenerator {
 			ele.setTextContent(Double.toString(routeProfile.elevationAt(positions[index])));
 			index++;
 		}
-
-		// the list of waypoints is added to the document
-		for (Waypoint p : waypoints) {
-			Element wayPoint = doc.createElement("waypoint");
-			rte.appendChild(wayPoint);
-			wayPoint.setAttribute("e", Double.toString(p.swissCoord().e()));
-			wayPoint.setAttribute("n", Double.toString(p.swissCoord().n()));
-			wayPoint.setAttribute("closestNodeId", Integer.toString(p.closestNodeId()));
-		}
 		return doc;
 	}
 
 	/**
-	 * Writes the GPX document corresponding to the given route in the file chosen by the user.
+	 * Writes the GPX document corresponding to the given route with the given writer.
 	 *
 	 * @param route        the route.
 	 * @param routeProfile the profile of the route.
-	 * @param waypoints    the list of waypoints.
+	 * @param writer       the writer of the document, which is not closed.
 	 * @throws IOException in case of an input/output error.
 	 */
-	public static void writeGpx(Route route, ElevationProfile routeProfile, ObservableList<Waypoint> waypoints) throws IOException {
-		Document doc = createGpx(route, routeProfile, waypoints);
-		JFileChooser fileChooser = new JFileChooser();
-		fileChooser.setCurrentDirectory(new File("."));
-		if (fileChooser.showSaveDialog(null) == JFileChooser.APPROVE_OPTION) {
-			File file = fileChooser.getSelectedFile();
-			String path = file.getPath() + ".gpx";
-			file = new File(path);
-			FileWriter w = new FileWriter(file.getPath(), true);
-			try {
-				Transformer transformer = TransformerFactory
-						.newDefaultInstance()
-						.newTransformer();
-				transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-				transformer.transform(new DOMSource(doc),
-						new StreamResult(w));
-			} catch (TransformerException e) {
-				throw new Error(e);
-			}
-		}
+	public static void writeGpx(Route route, ElevationProfile routeProfile, Writer writer) throws IOException {
+		writeDocument(createGpx(route, routeProfile), writer);
 	}
 
 	/**
-	 * Reads the GPX document corresponding to the given route in the file chosen by the user and gives it's list of waypoints.
+	 * Writes the given document, indented, with the given writer.
 	 *
-	 * @return the list of waypoints.
+	 * @param document the document, for example one created by {@link #createGpx(Route, ElevationProfile)}.
+	 * @param writer   the writer of the document, which is not closed.
+	 * @throws IOException in case of an input/output error.
 	 */
-	public static List<Waypoint> readGpx() throws ParserConfigurationException, SAXException {
-		List<Waypoint> routePoints = new ArrayList<>();
+	public static void writeDocument(Document document, Writer writer) throws IOException {
+		try {
+			Transformer transformer = TransformerFactory
+					.newDefaultInstance()
+					.newTransformer();
+			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+			transformer.transform(new DOMSource(document),
+					new StreamResult(writer));
+		} catch (TransformerException e) {
+			if (e.getCause() instanceof IOException io) throw io;
+			throw new Error(e);
+		}
+	}
 
+	/**
+	 * Reads the document of the given GPX file.
+	 *
+	 * @param file the path of the GPX file.
+	 * @return the document of the file.
+	 * @throws IOException  in case of an input/output error.
+	 * @throws SAXException if the file is not a valid XML document.
+	 */
+	public static Document readDocument(Path file) throws IOException, SAXException {
 		try {
-			JFileChooser fileChooser = new JFileChooser();
-			fileChooser.setCurrentDirectory(new File("."));
-			FileNameExtensionFilter filter = new FileNameExtensionFilter("gpx", "gpx");
-			fileChooser.setFileFilter(filter);
-
-			int returnVal = fileChooser.showOpenDialog(null);
-			if (returnVal == JFileChooser.APPROVE_OPTION) {
-				File file = fileChooser.getSelectedFile();
-				DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-				DocumentBuilder db = dbf.newDocumentBuilder();
-				Document document = db.parse(file);
-				document.getDocumentElement().normalize();
-				NodeList nList = document.getElementsByTagName("waypoint");
-				for (int temp = 0; temp < nList.getLength(); temp++) {
-					Node nNode = nList.item(temp);
-					if (nNode.getNodeType() == Node.ELEMENT_NODE) {
-						Element eElement = (Element) nNode;
-						PointCh swissCoords = new PointCh(Double.parseDouble(eElement.getAttribute("e")), Double.parseDouble(eElement.getAttribute("n")));
-						routePoints.add(new Waypoint(swissCoords, Integer.parseInt(eElement.getAttribute("closestNodeId"))));
-					}
-				}
-			}
-		} catch (IOException e) {
-			System.out.println(e);
+			Document document = DocumentBuilderFactory.newDefaultInstance().newDocumentBuilder().parse(file.toFile());
+			document.getDocumentElement().normalize();
+			return document;
+		} catch (ParserConfigurationException e) {
+			throw new Error(e); // Should never happen
+		}
+	}
+
+	/**
+	 * Reads the positions of the track (or, if there is none, of the route) of the given GPX file, for example a ride
+	 * recorded by a GPS device, to be matched on the graph by {@link MapMatcher}. The positions outside Switzerland
+	 * are ignored.
+	 *
+	 * @param file the path of the GPX file.
+	 * @return the positions of the track, in the order of the file.
+	 * @throws IOException  in case of an input/output error.
+	 * @throws SAXException if the file is not a valid XML document.
+	 */
+	public static List<PointCh> readTrack(Path file) throws IOException, SAXException {
+		Document document = readDocument(file);
+		NodeList nList = document.getElementsByTagName("trkpt");
+		if (nList.getLength() == 0) nList = document.getElementsByTagName("rtept");
+
+		List<PointCh> trackPoints = new ArrayList<>();
+		for (int i = 0; i < nList.getLength(); i++) {
+			Element eElement = (Element) nList.item(i);
+			double lon = Math.toRadians(Double.parseDouble(eElement.getAttribute("lon")));
+			double lat = Math.toRadians(Double.parseDouble(eElement.getAttribute("lat")));
+			double e = Ch1903.e(lon, lat);
+			double n = Ch1903.n(lon, lat);
+			if (SwissBounds.containsEN(e, n)) trackPoints.add(new PointCh(e, n));
 		}
-		return routePoints;
+		return trackPoints;
 	}
 
 
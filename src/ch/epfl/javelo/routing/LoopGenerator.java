@@ -0,0 +1,158 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a generator of round trips: routes of a given length starting and ending at the same node.
+ * <p>
+ * A loop is made of three legs, forming a triangle: from the start node to a node A, from A to a node B and back to the
+ * start node. The candidate nodes A and B are found with a single one-to-many search bounded around the start node,
+ * among the nodes whose best route is about a third of the target length long, in directions 60 degrees apart. The
+ * candidate loops are then computed in parallel and scored: the best one is the one whose length is the closest to
+ * the target length while following the same ways as little as possible.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class LoopGenerator {
+
+	private static final int SECTOR_COUNT = 36;
+	// directions of the candidate nodes A, and angle between the directions of A and B, in sectors
+	private static final int SECTOR_STEP = 3;
+	private static final int TRIANGLE_ANGLE = SECTOR_COUNT / 6;
+	// tolerance on the length of the first leg, and bound on its cost, relative to a third of the target length
+	private static final double LEG_TOLERANCE = 0.25;
+	private static final double MAX_LEG_COST = 4;
+	private static final double OVERLAP_WEIGHT = 1;
+	// the legs are scaled once more if the length of the best loop is too far from the target one
+	private static final int MAX_ROUNDS = 2;
+	private static final double ACCEPTED_LENGTH_ERROR = 0.1;
+
+	private final RouteComputer routeComputer;
+	private final Graph graph;
+
+	private record Loop(MultiRoute route, double lengthError, double score) {
+	}
+
+	/**
+	 * Creates a loop generator searching routes with the given cost function.
+	 *
+	 * @param graph        the graph.
+	 * @param costFunction the cost function that determines the cost of an edge.
+	 */
+	public LoopGenerator(Graph graph, CostFunction costFunction) {
+		this(new RouteComputer(graph, costFunction), graph);
+	}
+
+	/**
+	 * Creates a loop generator searching the legs of the loops with the given route computer (and thus its overlay
+	 * and travel times).
+	 *
+	 * @param routeComputer the route computer.
+	 * @param graph         the graph of the route computer.
+	 */
+	public LoopGenerator(RouteComputer routeComputer, Graph graph) {
+		this.routeComputer = routeComputer;
+		this.graph = graph;
+	}
+
+	/**
+	 * Gives the best loop of the given length found from the given identity node.
+	 *
+	 * @param startNodeId  the identity of the first (and last) node of the loop.
+	 * @param targetLength the length wished for the loop, in meters.
+	 * @return the best loop found, made of three segments, or null if no loop was found.
+	 * @throws IllegalArgumentException if the target length is not strictly positive.
+	 */
+	public Route loopFrom(int startNodeId, double targetLength) {
+		Preconditions.checkArgument(targetLength > 0);
+		double legLength = targetLength / 3;
+		Loop best = null;
+		for (int round = 0; round < MAX_ROUNDS; round++) {
+			Loop loop = bestLoop(startNodeId, targetLength, legLength);
+			if (loop != null && (best == null || loop.score < best.score)) best = loop;
+			if (best == null || best.lengthError <= ACCEPTED_LENGTH_ERROR) break;
+			// the ways are longer (or shorter) than the triangle expected, the legs are scaled accordingly
+			legLength *= targetLength / best.route.length();
+		}
+		return best == null ? null : best.route;
+	}
+
+	private Loop bestLoop(int startNodeId, double targetLength, double legLength) {
+		ShortestPathTree tree = routeComputer.shortestPathTree(startNodeId, MAX_LEG_COST * legLength);
+
+		// the settled node of each sector whose best route is the closest to the length of a leg
+		int[] bestNodes = new int[SECTOR_COUNT];
+		Arrays.fill(bestNodes, -1);
+		double[] bestErrors = new double[SECTOR_COUNT];
+		PointCh startPoint = graph.nodePoint(startNodeId);
+		for (int i = 1; i < tree.settledCount(); i++) {
+			int nodeId = tree.settledNodeId(i);
+			double error = Math.abs(tree.length(nodeId) - legLength);
+			if (error > LEG_TOLERANCE * legLength) continue;
+			PointCh point = graph.nodePoint(nodeId);
+			double angle = Math.atan2(point.n() - startPoint.n(), point.e() - startPoint.e());
+			int sector = Math.floorMod((int) Math.floor(angle / (2 * Math.PI) * SECTOR_COUNT), SECTOR_COUNT);
+			if (bestNodes[sector] < 0 || error < bestErrors[sector]) {
+				bestNodes[sector] = nodeId;
+				bestErrors[sector] = error;
+			}
+		}
+
+		// the triangles turning both ways from each direction
+		List<int[]> candidates = new ArrayList<>();
+		for (int sector = 0; sector < SECTOR_COUNT; sector += SECTOR_STEP) {
+			for (int turn : new int[]{TRIANGLE_ANGLE, -TRIANGLE_ANGLE}) {
+				int a = bestNodes[sector];
+				int b = bestNodes[Math.floorMod(sector + turn, SECTOR_COUNT)];
+				if (a >= 0 && b >= 0 && a != b) candidates.add(new int[]{a, b});
+			}
+		}
+
+		return candidates.parallelStream()
+				.map(c -> loop(tree, c[0], c[1], targetLength))
+				.filter(loop -> loop != null)
+				.min(Comparator.comparingDouble(Loop::score))
+				.orElse(null);
+	}
+
+	private Loop loop(ShortestPathTree tree, int a, int b, double targetLength) {
+		Route first = tree.routeTo(a);
+		Route second = routeComputer.bestRouteBetween(a, b);
+		if (second == null) return null;
+		Route third = routeComputer.bestRouteBetween(b, tree.sourceNodeId());
+		if (third == null) return null;
+		MultiRoute route = new MultiRoute(List.of(first, second, third));
+
+		double lengthError = Math.abs(route.length() - targetLength) / targetLength;
+		return new Loop(route, lengthError, lengthError + OVERLAP_WEIGHT * overlap(route));
+	}
+
+	/**
+	 * Gives the share of the length of the route following ways it follows several times, in either direction.
+	 */
+	private static double overlap(Route route) {
+		Map<Long, Integer> uses = new HashMap<>();
+		for (Edge edge : route.edges()) uses.merge(wayOf(edge), 1, Integer::sum);
+		double overlapping = 0;
+		for (Edge edge : route.edges()) {
+			if (uses.get(wayOf(edge)) > 1) overlapping += edge.length();
+		}
+		return overlapping / route.length();
+	}
+
+	private static long wayOf(Edge edge) {
+		int from = Math.min(edge.fromNodeId(), edge.toNodeId());
+		int to = Math.max(edge.fromNodeId(), edge.toNodeId());
+		return ((long) from << Integer.SIZE) | to;
+	}
+}
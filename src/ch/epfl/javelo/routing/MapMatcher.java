@@ -0,0 +1,464 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphSectors;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class matches traces of GPS positions (recorded rides) onto the edges of a graph, using a hidden Markov model:
+ * the hidden state at each position of the trace is a candidate point on one of the edges close to it, and the matched
+ * route goes through the most likely sequence of candidates, given by the Viterbi algorithm.
+ * <p>
+ * The likelihood of a candidate decreases (normal distribution) with its distance to the GPS position. The likelihood
+ * of going from a candidate to one of the next position decreases (exponential distribution) with the difference
+ * between the length of the shortest route between them and the distance between the two GPS positions. These routes
+ * are searched on the lengths of the edges, up to a few times that distance only.
+ * <p>
+ * The candidate edges of a position are found through their source node, among the nodes close to it, except the
+ * edges too long for their source node to be close to all their points: those are indexed beforehand by the sectors
+ * of the graph which are close to them.
+ * <p>
+ * The positions closer than twice the GPS accuracy to the previous position kept are ignored. The candidates of all
+ * the positions, then the transitions between all the pairs of consecutive positions, are computed in parallel, each
+ * thread reusing the same search arrays for all the pairs it handles.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class MapMatcher {
+
+	// standard deviation of the GPS positions, in meters
+	private static final double GPS_SIGMA = 10;
+	private static final double SEARCH_RADIUS = 5 * GPS_SIGMA;
+	// the edges at most that long are found through their source node, the longer ones through the index of the sectors
+	private static final double EDGE_REACH = 300;
+	private static final int MAX_CANDIDATES = 8;
+	// scale of the distribution of the transitions, in meters
+	private static final double BETA = 5;
+	private static final double MAX_DETOUR_FACTOR = 2;
+	// a candidate slightly behind the previous one on the same edge is considered as not moving (GPS noise)
+	private static final double BACKWARD_TOLERANCE = GPS_SIGMA;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final Graph graph;
+	// the edges longer than EDGE_REACH close to each sector, those of sector s being stored in longEdgeIds between
+	// longEdgeOffsets[s] (included) and longEdgeOffsets[s + 1] (excluded)
+	private final int[] longEdgeOffsets;
+	private final int[] longEdgeIds;
+
+	/**
+	 * This record class represents the candidates of a GPS position, sorted by increasing distance to it.
+	 *
+	 * @param edgeIds          the identities of the edges of the candidates.
+	 * @param positions        the positions of the candidates along their edge, in meters.
+	 * @param logProbabilities the logarithms of the (unnormalized) likelihoods of the candidates.
+	 */
+	private record Candidates(int[] edgeIds, double[] positions, double[] logProbabilities) {
+		int count() {
+			return edgeIds.length;
+		}
+	}
+
+	/**
+	 * Creates a map matcher on the given graph, indexing the edges longer than {@value #EDGE_REACH} meters by the
+	 * sectors which are at most {@value #SEARCH_RADIUS} meters from their bounding box.
+	 *
+	 * @param graph the graph.
+	 */
+	public MapMatcher(Graph graph) {
+		this.graph = graph;
+		int[] longEdges = IntStream.range(0, graph.edgeCount()).parallel()
+				.filter(edgeId -> graph.edgeLength(edgeId) > EDGE_REACH)
+				.toArray();
+		int[][] sectorRanges = new int[longEdges.length][];
+		longEdgeOffsets = new int[GraphSectors.SECTOR_COUNT + 1];
+		for (int i = 0; i < longEdges.length; i++) {
+			sectorRanges[i] = sectorRangeOf(longEdges[i]);
+			forEachSector(sectorRanges[i], sector -> longEdgeOffsets[sector + 1]++);
+		}
+		Arrays.parallelPrefix(longEdgeOffsets, Integer::sum);
+		longEdgeIds = new int[longEdgeOffsets[GraphSectors.SECTOR_COUNT]];
+		int[] next = Arrays.copyOf(longEdgeOffsets, GraphSectors.SECTOR_COUNT);
+		for (int i = 0; i < longEdges.length; i++) {
+			int edgeId = longEdges[i];
+			forEachSector(sectorRanges[i], sector -> longEdgeIds[next[sector]++] = edgeId);
+		}
+	}
+
+	/**
+	 * Gives the smallest and largest column, then the smallest and largest line, of the sectors which are at most
+	 * SEARCH_RADIUS from the bounding box of the given edge.
+	 */
+	private int[] sectorRangeOf(int edgeId) {
+		PointCh from = graph.nodePoint(graph.edgeSourceNodeId(edgeId));
+		PointCh to = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+		return new int[]{
+				sectorColumn(Math.min(from.e(), to.e()) - SEARCH_RADIUS),
+				sectorColumn(Math.max(from.e(), to.e()) + SEARCH_RADIUS),
+				sectorLine(Math.min(from.n(), to.n()) - SEARCH_RADIUS),
+				sectorLine(Math.max(from.n(), to.n()) + SEARCH_RADIUS)};
+	}
+
+	private static int sectorColumn(double e) {
+		return Math2.clamp(0, (int) Math.floor((e - SwissBounds.MIN_E) / GraphSectors.SECTOR_WIDTH),
+				GraphSectors.NUMBER_OF_SECTOR_PER_SIDE - 1);
+	}
+
+	private static int sectorLine(double n) {
+		return Math2.clamp(0, (int) Math.floor((n - SwissBounds.MIN_N) / GraphSectors.SECTOR_HEIGHT),
+				GraphSectors.NUMBER_OF_SECTOR_PER_SIDE - 1);
+	}
+
+	private static void forEachSector(int[] range, IntConsumer action) {
+		for (int y = range[2]; y <= range[3]; y++) {
+			for (int x = range[0]; x <= range[1]; x++) action.accept(y * GraphSectors.NUMBER_OF_SECTOR_PER_SIDE + x);
+		}
+	}
+
+	/**
+	 * Gives the route most likely followed by the given trace. The route is made of whole edges, even if the trace
+	 * starts or ends in the middle of one. If the trace cannot be followed on the graph between two positions (a gap
+	 * in the recording, a path missing in the graph), the route jumps from the edge matched before to the next one.
+	 * The positions farther than 50 meters from every edge are ignored.
+	 *
+	 * @param trace the GPS positions of the trace, in chronological order.
+	 * @return the matched route, or null if no position of the trace is close to an edge.
+	 * @throws IllegalArgumentException if the trace is empty.
+	 */
+	public Route match(List<PointCh> trace) {
+		Preconditions.checkArgument(!trace.isEmpty());
+		List<PointCh> kept = new ArrayList<>();
+		for (PointCh point : trace) {
+			if (kept.isEmpty() || kept.get(kept.size() - 1).distanceTo(point) >= 2 * GPS_SIGMA) kept.add(point);
+		}
+		PointCh last = trace.get(trace.size() - 1);
+		if (!kept.get(kept.size() - 1).equals(last)) kept.add(last);
+
+		Candidates[] allCandidates = kept.parallelStream().map(this::candidatesOf).toArray(Candidates[]::new);
+		List<PointCh> points = new ArrayList<>();
+		List<Candidates> candidates = new ArrayList<>();
+		for (int i = 0; i < allCandidates.length; i++) {
+			if (allCandidates[i].count() == 0) continue;
+			points.add(kept.get(i));
+			candidates.add(allCandidates[i]);
+		}
+		if (candidates.isEmpty()) return null;
+
+		// transitions[k][i * m + j]: logarithm of the likelihood of going from the candidate i of the position k - 1
+		// to the candidate j (among m) of the position k
+		int count = candidates.size();
+		double[][] transitions = new double[count][];
+		forEachStep(count, (search, k) -> transitions[k] = transitionsBetween(points.get(k - 1),
+				candidates.get(k - 1), points.get(k), candidates.get(k), search));
+
+		int[] chosen = viterbi(candidates, transitions);
+
+		int[][] stepEdges = new int[count][];
+		forEachStep(count, (search, k) -> stepEdges[k] = edgesBetween(points.get(k - 1), candidates.get(k - 1),
+				chosen[k - 1], points.get(k), candidates.get(k), chosen[k], transitions[k], search));
+
+		List<Edge> edges = new ArrayList<>();
+		int previousEdgeId = candidates.get(0).edgeIds[chosen[0]];
+		edges.add(edgeOf(previousEdgeId));
+		for (int k = 1; k < count; k++) {
+			for (int edgeId : stepEdges[k]) {
+				if (edgeId == previousEdgeId) continue;
+				edges.add(edgeOf(edgeId));
+				previousEdgeId = edgeId;
+			}
+		}
+		return new SingleRoute(edges);
+	}
+
+	private Edge edgeOf(int edgeId) {
+		return Edge.of(graph, edgeId, graph.edgeSourceNodeId(edgeId), graph.edgeTargetNodeId(edgeId));
+	}
+
+	/**
+	 * Applies the given action to each step k between 1 (included) and count (excluded), in parallel, the steps being
+	 * split in chunks handled with a single search each.
+	 */
+	private void forEachStep(int count, ObjIntConsumer<Search> action) {
+		int chunkCount = Math.min(count, CHUNKS_PER_THREAD * Runtime.getRuntime().availableProcessors());
+		IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+			Search search = new Search(graph);
+			int first = Math.max(1, (int) ((long) count * chunk / chunkCount));
+			int last = (int) ((long) count * (chunk + 1) / chunkCount);
+			for (int k = first; k < last; k++) action.accept(search, k);
+		});
+	}
+
+	private Candidates candidatesOf(PointCh point) {
+		int[] edgeIds = new int[MAX_CANDIDATES];
+		double[] positions = new double[MAX_CANDIDATES];
+		double[] distances = new double[MAX_CANDIDATES];
+		int count = 0;
+		// the points of an edge at most EDGE_REACH long are at most that far from its source node
+		for (int nodeId : graph.nodesCloseTo(point, SEARCH_RADIUS + EDGE_REACH)) {
+			for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+				int edgeId = graph.nodeOutEdgeId(nodeId, i);
+				if (graph.edgeLength(edgeId) > EDGE_REACH) continue;
+				count = offer(point, edgeId, nodeId, edgeIds, positions, distances, count);
+			}
+		}
+		int sector = GraphSectors.sectorIndexOf(point.e(), point.n());
+		for (int k = longEdgeOffsets[sector]; k < longEdgeOffsets[sector + 1]; k++) {
+			int edgeId = longEdgeIds[k];
+			count = offer(point, edgeId, graph.edgeSourceNodeId(edgeId), edgeIds, positions, distances, count);
+		}
+		double[] logProbabilities = new double[count];
+		for (int i = 0; i < count; i++) {
+			double x = distances[i] / GPS_SIGMA;
+			logProbabilities[i] = -0.5 * x * x;
+		}
+		return new Candidates(Arrays.copyOf(edgeIds, count), Arrays.copyOf(positions, count), logProbabilities);
+	}
+
+	/**
+	 * Inserts the point of the given edge closest to the given point among the candidates sorted by distance, if it is
+	 * close enough, replacing the farthest one if there are too many. Gives the new number of candidates.
+	 */
+	private int offer(PointCh point, int edgeId, int sourceNodeId, int[] edgeIds, double[] positions,
+					  double[] distances, int count) {
+		PointCh from = graph.nodePoint(sourceNodeId);
+		PointCh to = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+		double segmentLength = from.distanceTo(to);
+		double fraction = segmentLength == 0 ? 0 : Math2.clamp(0, Math2.projectionLength(from.e(), from.n(),
+				to.e(), to.n(), point.e(), point.n()) / segmentLength, 1);
+		double distance = Math2.norm(Math2.interpolate(from.e(), to.e(), fraction) - point.e(),
+				Math2.interpolate(from.n(), to.n(), fraction) - point.n());
+		if (distance > SEARCH_RADIUS || (count == MAX_CANDIDATES && distance >= distances[count - 1])) return count;
+
+		int j = Math.min(count, MAX_CANDIDATES - 1);
+		for (; j > 0 && distances[j - 1] > distance; j--) {
+			edgeIds[j] = edgeIds[j - 1];
+			positions[j] = positions[j - 1];
+			distances[j] = distances[j - 1];
+		}
+		edgeIds[j] = edgeId;
+		positions[j] = fraction * graph.edgeLength(edgeId);
+		distances[j] = distance;
+		return Math.min(count + 1, MAX_CANDIDATES);
+	}
+
+	/**
+	 * Checks if going from the candidate i of c0 to the candidate j of c1 stays on the same edge.
+	 */
+	private static boolean staysOnEdge(Candidates c0, int i, Candidates c1, int j) {
+		return c0.edgeIds[i] == c1.edgeIds[j] && c1.positions[j] >= c0.positions[i] - BACKWARD_TOLERANCE;
+	}
+
+	private static double maxSearchLength(PointCh p0, PointCh p1) {
+		return MAX_DETOUR_FACTOR * p0.distanceTo(p1) + 2 * SEARCH_RADIUS;
+	}
+
+	private double[] transitionsBetween(PointCh p0, Candidates c0, PointCh p1, Candidates c1, Search search) {
+		double distance = p0.distanceTo(p1);
+		double maxLength = maxSearchLength(p0, p1);
+		int m = c1.count();
+		int[] targets = new int[m];
+		for (int j = 0; j < m; j++) targets[j] = graph.edgeSourceNodeId(c1.edgeIds[j]);
+
+		double[] transitions = new double[c0.count() * m];
+		Arrays.fill(transitions, Double.NEGATIVE_INFINITY);
+		for (int i = 0; i < c0.count(); i++) {
+			int edgeId = c0.edgeIds[i];
+			double rest = graph.edgeLength(edgeId) - c0.positions[i];
+			search.run(graph.edgeTargetNodeId(edgeId), maxLength, targets);
+			for (int j = 0; j < m; j++) {
+				double length;
+				if (staysOnEdge(c0, i, c1, j)) {
+					length = Math.max(0, c1.positions[j] - c0.positions[i]);
+				} else {
+					double between = search.length(targets[j]);
+					if (between == Double.POSITIVE_INFINITY) continue;
+					length = rest + between + c1.positions[j];
+				}
+				transitions[i * m + j] = -Math.abs(length - distance) / BETA;
+			}
+		}
+		return transitions;
+	}
+
+	/**
+	 * Gives the index of the most likely candidate of each position. When no candidate of a position can be reached
+	 * from the candidates of the previous one, the sequence restarts from the likelihoods of the candidates only.
+	 */
+	private static int[] viterbi(List<Candidates> candidates, double[][] transitions) {
+		int count = candidates.size();
+		double[][] scores = new double[count][];
+		int[][] previous = new int[count][];
+		scores[0] = candidates.get(0).logProbabilities.clone();
+		for (int k = 1; k < count; k++) {
+			Candidates current = candidates.get(k);
+			int m = current.count();
+			double[] before = scores[k - 1];
+			scores[k] = new double[m];
+			previous[k] = new int[m];
+			boolean linked = false;
+			for (int j = 0; j < m; j++) {
+				double best = Double.NEGATIVE_INFINITY;
+				int bestIndex = -1;
+				for (int i = 0; i < before.length; i++) {
+					double score = before[i] + transitions[k][i * m + j];
+					if (score > best) {
+						best = score;
+						bestIndex = i;
+					}
+				}
+				scores[k][j] = best + current.logProbabilities[j];
+				previous[k][j] = bestIndex;
+				linked |= bestIndex >= 0;
+			}
+			if (!linked) scores[k] = current.logProbabilities.clone();
+		}
+
+		int[] chosen = new int[count];
+		chosen[count - 1] = indexOfMax(scores[count - 1]);
+		for (int k = count - 1; k > 0; k--) {
+			int i = previous[k][chosen[k]];
+			chosen[k - 1] = i >= 0 ? i : indexOfMax(scores[k - 1]);
+		}
+		return chosen;
+	}
+
+	private static int indexOfMax(double[] values) {
+		int index = 0;
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] > values[index]) index = i;
+		}
+		return index;
+	}
+
+	/**
+	 * Gives the identities of the edges leading from the chosen candidate i of c0 to the chosen candidate j of c1,
+	 * the edge of the latter included, or only that edge if there is no route between them.
+	 */
+	private int[] edgesBetween(PointCh p0, Candidates c0, int i, PointCh p1, Candidates c1, int j,
+							   double[] transitions, Search search) {
+		if (staysOnEdge(c0, i, c1, j)) return new int[0];
+		int edgeId = c1.edgeIds[j];
+		if (transitions[i * c1.count() + j] == Double.NEGATIVE_INFINITY) return new int[]{edgeId};
+		int target = graph.edgeSourceNodeId(edgeId);
+		search.run(graph.edgeTargetNodeId(c0.edgeIds[i]), maxSearchLength(p0, p1), target);
+		int[] path = search.pathTo(target);
+		int[] edges = Arrays.copyOf(path, path.length + 1);
+		edges[path.length] = edgeId;
+		return edges;
+	}
+
+	/**
+	 * This class represents a bounded search of the shortest routes (in length) from a node, whose arrays are reused
+	 * from one search to the next: only the nodes reached by the previous search are reset.
+	 */
+	private static final class Search {
+		private final Graph graph;
+		private final float[] lengths;
+		private final int[] previousEdges;
+		private int[] reached = new int[64];
+		private int reachedCount = 0;
+		private int sourceNodeId = -1;
+		private double maxLength;
+		private int[] targetNodeIds;
+
+		Search(Graph graph) {
+			this.graph = graph;
+			this.lengths = new float[graph.nodeCount()];
+			this.previousEdges = new int[graph.nodeCount()];
+			Arrays.fill(lengths, Float.POSITIVE_INFINITY);
+		}
+
+		/**
+		 * Searches the shortest routes from the given source node, up to the given length, stopping earlier once all
+		 * the given targets are settled. Does nothing if the previous search was the same (with the same array of
+		 * targets).
+		 */
+		void run(int sourceNodeId, double maxLength, int... targetNodeIds) {
+			if (sourceNodeId == this.sourceNodeId && maxLength == this.maxLength
+					&& targetNodeIds == this.targetNodeIds) return;
+			for (int k = 0; k < reachedCount; k++) lengths[reached[k]] = Float.POSITIVE_INFINITY;
+			reachedCount = 0;
+			this.sourceNodeId = sourceNodeId;
+			this.maxLength = maxLength;
+			this.targetNodeIds = targetNodeIds;
+
+			int remainingTargets = 0;
+			for (int t = 0; t < targetNodeIds.length; t++) {
+				if (indexOf(targetNodeIds, targetNodeIds[t]) == t) remainingTargets++;
+			}
+			reach(sourceNodeId, 0);
+			// a node and its length are packed in a long whose order is the one of the lengths (which are positive)
+			PriorityQueue<Long> inExploration = new PriorityQueue<>();
+			inExploration.add(pack(sourceNodeId, 0));
+			while (!inExploration.isEmpty()) {
+				long packed = inExploration.remove();
+				int nodeId = (int) packed;
+				float length = Float.intBitsToFloat((int) (packed >>> Integer.SIZE));
+				if (length > lengths[nodeId]) continue;
+				if (length > maxLength) break;
+				if (indexOf(targetNodeIds, nodeId) >= 0 && --remainingTargets == 0) break;
+				for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+					int edgeId = graph.nodeOutEdgeId(nodeId, i);
+					int arrivalNode = graph.edgeTargetNodeId(edgeId);
+					float arrivalLength = length + (float) graph.edgeLength(edgeId);
+					if (arrivalLength < lengths[arrivalNode]) {
+						if (lengths[arrivalNode] == Float.POSITIVE_INFINITY) reach(arrivalNode, arrivalLength);
+						lengths[arrivalNode] = arrivalLength;
+						previousEdges[arrivalNode] = edgeId;
+						inExploration.add(pack(arrivalNode, arrivalLength));
+					}
+				}
+			}
+		}
+
+		private void reach(int nodeId, float length) {
+			if (reachedCount == reached.length) reached = Arrays.copyOf(reached, 2 * reachedCount);
+			reached[reachedCount++] = nodeId;
+			lengths[nodeId] = length;
+		}
+
+		private static long pack(int nodeId, float length) {
+			return ((long) Float.floatToIntBits(length) << Integer.SIZE) | (nodeId & 0xFFFF_FFFFL);
+		}
+
+		private static int indexOf(int[] values, int value) {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == value) return i;
+			}
+			return -1;
+		}
+
+		/**
+		 * Gives the length of the shortest route from the source to the given node, positive infinity if it is
+		 * longer than the maximal length (every node reached at most at that length being settled).
+		 */
+		double length(int nodeId) {
+			float length = lengths[nodeId];
+			return length <= maxLength ? length : Double.POSITIVE_INFINITY;
+		}
+
+		/**
+		 * Gives the identities of the edges of the shortest route from the source to the given node, reached.
+		 */
+		int[] pathTo(int nodeId) {
+			int count = 0;
+			for (int n = nodeId; n != sourceNodeId; n = graph.edgeSourceNodeId(previousEdges[n])) count++;
+			int[] path = new int[count];
+			for (int n = nodeId; n != sourceNodeId; n = graph.edgeSourceNodeId(previousEdges[n])) {
+				path[--count] = previousEdges[n];
+			}
+			return path;
+		}
+	}
+}
@@ -4,39 +4,140 @@ import ch.epfl.javelo.Math2;
 import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.projection.PointCh;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * This class represents a multi route (wraps multiple Route).
+ * <p>
+ * The segments which are themselves multi routes are flattened at construction, and the positions, points and nodes of
+ * the edges of all the segments are stored in arrays, so that the queries along the route are binary searches instead
+ * of walks through the segments.
  *
  * @author Morgane Magnin (347041)
  * @author Amene Gafsi (345583)
  */
 public final class MultiRoute implements Route {
-	private final List<Route> segments;
-	private double[] sortedEdgePos;
+	private final double length;
+	private final double time;
+
+	// the segments which are not multi routes, in order, with their positions along the route and their first edge
+	private final Route[] leaves;
+	private final double[] leafPositions;
+	private final double[] leafLengths;
+	private final int[] leafFirstEdge;
+
+	// the edges of all the leaves, in order, their positions being relative to the start of their leaf
+	private final double[] edgePositions;
+	private final double[] edgeLengths;
+	private final double[] fromE, fromN, toE, toN;
+	private final int[] fromNodeIds, toNodeIds;
+	// the spatial index of the edges, built when a point closest to another one is first asked
+	private SegmentIndex segmentIndex;
 
 	/**
 	 * Constructor.
-	 * In this constructor is built directly the array containing the positions of the route segments.
-	 * However, the index 0 of the array is an exception because it represents nothing and its value is always 0.
+	 * In this constructor are built directly the arrays containing the positions of the segments and of their edges.
 	 *
 	 * @param segments the list of segments of an itinerary.
 	 * @throws IllegalArgumentException if the segments are empty.
 	 */
 	public MultiRoute(List<Route> segments) {
-		this.segments = List.copyOf(segments);
 		Preconditions.checkArgument(!segments.isEmpty());
+		List<Route> leaves = new ArrayList<>();
+		double length = 0.0, time = 0.0;
+		for (Route segment : List.copyOf(segments)) {
+			if (segment instanceof MultiRoute multiRoute) leaves.addAll(List.of(multiRoute.leaves));
+			else leaves.add(segment);
+			length += segment.length();
+			time += segment.time();
+		}
+		this.length = length;
+		this.time = time;
+		this.leaves = leaves.toArray(new Route[0]);
+
+		int leafCount = this.leaves.length;
+		leafPositions = new double[leafCount + 1];
+		leafLengths = new double[leafCount];
+		leafFirstEdge = new int[leafCount + 1];
+		List<List<Edge>> leafEdges = new ArrayList<>(leafCount);
+		for (int i = 0; i < leafCount; i++) {
+			leafEdges.add(this.leaves[i].edges());
+			leafLengths[i] = this.leaves[i].length();
+			leafPositions[i + 1] = leafPositions[i] + leafLengths[i];
+			leafFirstEdge[i + 1] = leafFirstEdge[i] + leafEdges.get(i).size();
+		}
+
+		int edgeCount = leafFirstEdge[leafCount];
+		edgePositions = new double[edgeCount];
+		edgeLengths = new double[edgeCount];
+		fromE = new double[edgeCount];
+		fromN = new double[edgeCount];
+		toE = new double[edgeCount];
+		toN = new double[edgeCount];
+		fromNodeIds = new int[edgeCount];
+		toNodeIds = new int[edgeCount];
+		int j = 0;
+		for (List<Edge> edges : leafEdges) {
+			double position = 0.0;
+			for (Edge edge : edges) {
+				edgePositions[j] = position;
+				edgeLengths[j] = edge.length();
+				fromE[j] = edge.fromPoint().e();
+				fromN[j] = edge.fromPoint().n();
+				toE[j] = edge.toPoint().e();
+				toN[j] = edge.toPoint().n();
+				fromNodeIds[j] = edge.fromNodeId();
+				toNodeIds[j] = edge.toNodeId();
+				position += edge.length();
+				j++;
+			}
+		}
+	}
 
-		sortedEdgePos = new double[segments.size() + 1];
-		sortedEdgePos[0] = 0;
+	/**
+	 * Gives the index of the leaf at the given position, a position at the end of a leaf belonging to it rather than
+	 * to the next one.
+	 *
+	 * @param position the given position, between 0 and the length of the route.
+	 * @return the index of the leaf at the given position.
+	 */
+	private int leafIndex(double position) {
+		int low = 0, high = leaves.length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (leafPositions[middle + 1] >= position) high = middle;
+			else low = middle + 1;
+		}
+		return low;
+	}
 
-		for (int i = 1; i < segments.size(); ++i) {
-			sortedEdgePos[i] = sortedEdgePos[i - 1] + segments.get(i - 1).length();
+	/**
+	 * Gives the index of the edge at the given position in the given leaf, a position at the end of an edge belonging
+	 * to it rather than to the next one.
+	 *
+	 * @param leaf     the index of the leaf.
+	 * @param position the given position, relative to the start of the leaf.
+	 * @return the index of the edge at the given position.
+	 */
+	private int edgeIndex(int leaf, double position) {
+		int low = leafFirstEdge[leaf], high = leafFirstEdge[leaf + 1] - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (edgePositions[middle] < position) low = middle;
+			else high = middle - 1;
 		}
+		return low;
 	}
 
+	/**
+	 * Gives the position relative to the start of the given leaf of the given position along the route.
+	 */
+	private double positionInLeaf(int leaf, double position) {
+		return Math2.clamp(0, position - leafPositions[leaf], leafLengths[leaf]);
+	}
 
 	/**
 	 * Gives the index of the segment at the given position (in meters).
@@ -46,19 +147,7 @@ public final class MultiRoute implements Route {
 	 */
 	@Override
 	public int indexOfSegmentAt(double position) {
-		double activePosition = Math2.clamp(0, position, this.length());
-		int index = 0;
-
-		for (Route route : this.segments) {
-			if (activePosition > route.length()) {
-				index += route.indexOfSegmentAt(route.length()) + 1;
-				activePosition -= route.length();
-			} else {
-				index += route.indexOfSegmentAt(activePosition);
-				break;
-			}
-		}
-		return index;
+		return leafIndex(Math2.clamp(0, position, length));
 	}
 
 	/**
@@ -68,14 +157,19 @@ public final class MultiRoute implements Route {
 	 */
 	@Override
 	public double length() {
-
-		double length = 0.0;
-		for (Route segment : this.segments) {
-			length += segment.length();
-		}
 		return length;
 	}
 
+	/**
+	 * Gives the estimated travel time along the route, in seconds.
+	 *
+	 * @return the travel time along the route, NaN if it is not known.
+	 */
+	@Override
+	public double time() {
+		return time;
+	}
+
 	/**
 	 * Gives all the edges of the route.
 	 *
@@ -83,35 +177,52 @@ public final class MultiRoute implements Route {
 	 */
 	@Override
 	public List<Edge> edges() {
-		List<Edge> edges = new ArrayList<>();
+		List<Edge> edges = new ArrayList<>(fromNodeIds.length);
 
-		for (Route segment : this.segments) {
-			edges.addAll(segment.edges());
+		for (Route leaf : leaves) {
+			edges.addAll(leaf.edges());
 		}
 
 		return edges;
 	}
 
 	/**
-	 * Gives all the points located at the ends of the edges of the route.
+	 * Gives all the points located at the ends of the edges of the route, the last point of a segment being the first
+	 * point of the next one.
 	 *
 	 * @return the points located at the ends of the edges of the route.
 	 */
 	@Override
 	public List<PointCh> points() {
+		return new AbstractList<>() {
+			@Override
+			public PointCh get(int index) {
+				int edge = Objects.checkIndex(index, size());
+				if (edge == fromNodeIds.length) return new PointCh(toE[edge - 1], toN[edge - 1]);
+				boolean firstOfLeaf = edge == 0 || edge == leafFirstEdge[leafIndexOfEdge(edge)];
+				return firstOfLeaf
+						? new PointCh(fromE[edge], fromN[edge])
+						: new PointCh(toE[edge - 1], toN[edge - 1]);
+			}
 
-		List<PointCh> points = new ArrayList<>();
+			@Override
+			public int size() {
+				return fromNodeIds.length + 1;
+			}
+		};
+	}
 
-		for (Route segment : this.segments) {
-			points.addAll(segment.points());
-			points.remove(points.size() - 1);
+	/**
+	 * Gives the index of the leaf the given edge belongs to.
+	 */
+	private int leafIndexOfEdge(int edge) {
+		int low = 0, high = leaves.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (leafFirstEdge[middle] <= edge) low = middle;
+			else high = middle - 1;
 		}
-		int lastSegmentIndex = segments.size() - 1;
-		int lastPointIndex = segments.get(lastSegmentIndex).points().size() - 1;
-		PointCh lastPoint = segments.get(lastSegmentIndex).points().get(lastPointIndex);
-		points.add(lastPoint);
-
-		return points;
+		return low;
 	}
 
 	/**
@@ -122,19 +233,11 @@ public final class MultiRoute implements Route {
 	 */
 	@Override
 	public PointCh pointAt(double position) {
-
-		double activePosition = Math2.clamp(0, position, this.length());
-
-		for (Route segment : this.segments) {
-			if (activePosition > segment.length()) {
-				activePosition -= segment.length();
-			} else {
-				return segment.pointAt(activePosition);
-			}
-
-		}
-		return null;     //we never reach this return
-
+		int leaf = leafIndex(Math2.clamp(0, position, length));
+		double positionInLeaf = positionInLeaf(leaf, position);
+		int edge = edgeIndex(leaf, positionInLeaf);
+		double x = (positionInLeaf - edgePositions[edge]) / edgeLengths[edge];
+		return new PointCh(Math2.interpolate(fromE[edge], toE[edge], x), Math2.interpolate(fromN[edge], toN[edge], x));
 	}
 
 	/**
@@ -145,18 +248,37 @@ public final class MultiRoute implements Route {
 	 */
 	@Override
 	public double elevationAt(double position) {
+		int leaf = leafIndex(Math2.clamp(0, position, length));
+		return leaves[leaf].elevationAt(positionInLeaf(leaf, position));
+	}
 
-		double activePosition = Math2.clamp(0, position, this.length());
-
-		for (Route segment : this.segments) {
-			if (activePosition > segment.length()) {
-				activePosition -= segment.length();
-			} else {
-				return segment.elevationAt(activePosition);
-			}
-
+	/**
+	 * Gives the altitudes at the given positions along the route, the positions of each segment being given to it at
+	 * once.
+	 *
+	 * @param positions  the positions, sorted in increasing order.
+	 * @param elevations the array receiving the altitude at each position, as long as the positions.
+	 * @throws IllegalArgumentException if the arrays do not have the same length.
+	 */
+	@Override
+	public void elevationsAt(double[] positions, double[] elevations) {
+		Preconditions.checkArgument(positions.length == elevations.length);
+		int leaf = 0;
+		int first = 0;
+		while (first < positions.length) {
+			double position = Math2.clamp(0, positions[first], length);
+			while (leaf < leaves.length - 1 && leafPositions[leaf + 1] < position) leaf++;
+			int end = first + 1;
+			while (end < positions.length && (leaf == leaves.length - 1
+					|| leafPositions[leaf + 1] >= Math2.clamp(0, positions[end], length))) end++;
+
+			double[] positionsInLeaf = new double[end - first];
+			for (int i = first; i < end; i++) positionsInLeaf[i - first] = positionInLeaf(leaf, positions[i]);
+			double[] elevationsInLeaf = new double[end - first];
+			leaves[leaf].elevationsAt(positionsInLeaf, elevationsInLeaf);
+			System.arraycopy(elevationsInLeaf, 0, elevations, first, end - first);
+			first = end;
 		}
-		return 0;        //we never reach this return
 	}
 
 	/**
@@ -167,17 +289,11 @@ public final class MultiRoute implements Route {
 	 */
 	@Override
 	public int nodeClosestTo(double position) {
-
-		double activePosition = Math2.clamp(0, position, this.length());
-
-		for (Route segment : this.segments) {
-			if (activePosition > segment.length()) {
-				activePosition -= segment.length();
-			} else {
-				return segment.nodeClosestTo(activePosition);
-			}
-		}
-		return 0;        //we never reach this return
+		int leaf = leafIndex(Math2.clamp(0, position, length));
+		double positionInLeaf = positionInLeaf(leaf, position);
+		int edge = edgeIndex(leaf, positionInLeaf);
+		double positionInEdge = positionInLeaf - edgePositions[edge];
+		return positionInEdge <= edgeLengths[edge] - positionInEdge ? fromNodeIds[edge] : toNodeIds[edge];
 	}
 
 	/**
@@ -188,16 +304,18 @@ public final class MultiRoute implements Route {
 	 */
 	@Override
 	public RoutePoint pointClosestTo(PointCh point) {
-		RoutePoint actualRoute, nextRoute;
-		actualRoute = segments.get(0).pointClosestTo(point);
-
-		for (int i = 1; i < segments.size(); i++) {
-			nextRoute = segments.get(i).pointClosestTo(point);
-			nextRoute = nextRoute.withPositionShiftedBy(sortedEdgePos[i]);
-			actualRoute = actualRoute.min(nextRoute);
-
-		}
-		return actualRoute;
+		SegmentIndex index = segmentIndex;
+		if (index == null) segmentIndex = index = new SegmentIndex(fromE, fromN, toE, toN, edgeLengths);
+		int closestEdge = index.closestSegment(point.e(), point.n());
+		int closestLeaf = leafIndexOfEdge(closestEdge);
+		double closestPosition = index.positionOn(closestEdge, point.e(), point.n());
+
+		double x = closestPosition / edgeLengths[closestEdge];
+		PointCh closestPoint = new PointCh(Math2.interpolate(fromE[closestEdge], toE[closestEdge], x),
+				Math2.interpolate(fromN[closestEdge], toN[closestEdge], x));
+		double position = closestPosition + edgePositions[closestEdge];
+		return new RoutePoint(closestPoint, closestLeaf == 0 ? position : position + leafPositions[closestLeaf],
+				closestPoint.distanceTo(point));
 	}
 
 }
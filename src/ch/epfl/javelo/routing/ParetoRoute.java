@@ -0,0 +1,13 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * This record class represents a route of a Pareto front, along with the values of the two criteria it optimizes.
+ *
+ * @param route         the route.
+ * @param cost          the total cost of the edges of the route.
+ * @param elevationGain the total elevation gain of the route, in meters.
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public record ParetoRoute(Route route, double cost, double elevationGain) {
+}
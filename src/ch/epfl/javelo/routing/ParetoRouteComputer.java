@@ -0,0 +1,199 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * This class represents an itinerary planner optimizing two criteria at once: the cost of the route, given by a cost
+ * function, and its total elevation gain. It gives the Pareto front of the routes between two nodes, that is all the
+ * routes such that no other route is both cheaper and flatter, from the cheapest to the flattest one.
+ * <p>
+ * The search is a multi-label search: each node keeps the labels (cost, elevation gain) of the routes reaching it that
+ * are not dominated by another one, stored in primitive arrays. Labels are explored by increasing cost plus the
+ * distance to the end node, so that the first label reaching the end node is the cheapest route. To keep the search
+ * interactive, labels are pruned when they are dominated by a label of the end node (the cost and elevation gain of a
+ * route can only grow), when their cost exceeds the cost of the cheapest route multiplied by a given ratio, and when
+ * another label of their node has a smaller cost and an elevation gain that is at most {@value #GAIN_TOLERANCE} meters
+ * larger.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class ParetoRouteComputer {
+
+	private static final double GAIN_TOLERANCE = 2;
+	private static final int INITIAL_LABEL_CAPACITY = 1 << 10;
+
+	private final Graph graph;
+	private final CostFunction costFunction;
+
+	private record QueuedLabel(int labelId, float priority, float gain) implements Comparable<QueuedLabel> {
+		@Override
+		public int compareTo(QueuedLabel that) {
+			int compare = Float.compare(this.priority, that.priority);
+			return compare != 0 ? compare : Float.compare(this.gain, that.gain);
+		}
+	}
+
+	/**
+	 * Creates a ParetoRouteComputer.
+	 *
+	 * @param graph        the graph composing the itinerary.
+	 * @param costFunction the cost function that determines the cost of an edge.
+	 */
+	public ParetoRouteComputer(Graph graph, CostFunction costFunction) {
+		this.graph = graph;
+		this.costFunction = costFunction;
+	}
+
+	/**
+	 * Gives the Pareto front of the routes between the given nodes, whose cost is at most maxCostRatio times the one
+	 * of the cheapest route.
+	 *
+	 * @param startNodeId  the identity of the first node of the itinerary.
+	 * @param endNodeId    the identity of the last node of the itinerary.
+	 * @param maxCostRatio the maximal ratio between the cost of a route and the one of the cheapest route.
+	 * @return the routes of the Pareto front, by increasing cost (and thus decreasing elevation gain), empty if no
+	 * route exists.
+	 * @throws IllegalArgumentException if the start and end nodes are identical, or if the ratio is smaller than 1.
+	 */
+	public List<ParetoRoute> paretoRoutesBetween(int startNodeId, int endNodeId, double maxCostRatio) {
+		Preconditions.checkArgument(startNodeId != endNodeId && maxCostRatio >= 1);
+		Labels labels = new Labels(graph.nodeCount());
+		PointCh endPoint = graph.nodePoint(endNodeId);
+		PriorityQueue<QueuedLabel> inExploration = new PriorityQueue<>();
+		int first = labels.add(startNodeId, 0, 0, -1, -1);
+		inExploration.add(new QueuedLabel(first, distanceToEnd(startNodeId, endPoint), 0));
+
+		double maxCost = Double.POSITIVE_INFINITY;
+		List<Integer> front = new ArrayList<>();
+		while (!inExploration.isEmpty()) {
+			QueuedLabel actual = inExploration.remove();
+			int labelId = actual.labelId;
+			if (labels.dead[labelId]) continue;
+			if (actual.priority > maxCost) break;
+			int nodeId = labels.node[labelId];
+			float cost = labels.cost[labelId];
+			float gain = labels.gain[labelId];
+			if (isDominatedByFront(labels, front, actual.priority, gain)) continue;
+
+			if (nodeId == endNodeId) {
+				// the labels of the end node are reached by increasing cost, and thus decreasing elevation gain
+				if (front.isEmpty()) maxCost = cost * maxCostRatio;
+				front.add(labelId);
+				continue;
+			}
+
+			for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+				int edgeId = graph.nodeOutEdgeId(nodeId, i);
+				float edgeCost = (float) (graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId));
+				if (!(edgeCost < Float.POSITIVE_INFINITY)) continue;
+				int arrivalNode = graph.edgeTargetNodeId(edgeId);
+				float arrivalCost = cost + edgeCost;
+				float arrivalGain = gain + (float) graph.edgeElevationGain(edgeId);
+				float priority = arrivalCost + distanceToEnd(arrivalNode, endPoint);
+				if (priority > maxCost || isDominatedByFront(labels, front, priority, arrivalGain)) continue;
+				if (!labels.insertIfNotDominated(arrivalNode, arrivalCost, arrivalGain)) continue;
+				int arrival = labels.add(arrivalNode, arrivalCost, arrivalGain, labelId, edgeId);
+				inExploration.add(new QueuedLabel(arrival, priority, arrivalGain));
+			}
+		}
+
+		List<ParetoRoute> routes = new ArrayList<>();
+		for (int labelId : front) {
+			List<Edge> edges = new ArrayList<>();
+			for (int l = labelId; labels.previous[l] >= 0; l = labels.previous[l]) {
+				int previous = labels.previous[l];
+				edges.add(Edge.of(graph, labels.edge[l], labels.node[previous], labels.node[l]));
+			}
+			Collections.reverse(edges);
+			routes.add(new ParetoRoute(new SingleRoute(edges), labels.cost[labelId], labels.gain[labelId]));
+		}
+		return routes;
+	}
+
+	private float distanceToEnd(int nodeId, PointCh endPoint) {
+		return (float) graph.nodePoint(nodeId).distanceTo(endPoint);
+	}
+
+	/**
+	 * Checks if a route of the front is at least as good as any route extending a label whose cost plus the distance
+	 * to the end node is "minCost", and whose elevation gain is "gain".
+	 */
+	private static boolean isDominatedByFront(Labels labels, List<Integer> front, float minCost, float gain) {
+		// the last label of the front is the flattest one
+		return !front.isEmpty() && labels.gain[front.get(front.size() - 1)] <= gain
+				&& labels.cost[front.get(front.size() - 1)] <= minCost;
+	}
+
+	/**
+	 * The labels of a search, stored in primitive arrays indexed by label identity. The labels of a node that are not
+	 * dominated are linked together, starting with nodeFirstLabel[node].
+	 */
+	private static final class Labels {
+		private int[] node = new int[INITIAL_LABEL_CAPACITY];
+		private float[] cost = new float[INITIAL_LABEL_CAPACITY];
+		private float[] gain = new float[INITIAL_LABEL_CAPACITY];
+		private int[] previous = new int[INITIAL_LABEL_CAPACITY];
+		private int[] edge = new int[INITIAL_LABEL_CAPACITY];
+		private int[] nextOfNode = new int[INITIAL_LABEL_CAPACITY];
+		private boolean[] dead = new boolean[INITIAL_LABEL_CAPACITY];
+		private final int[] nodeFirstLabel;
+		private int count = 0;
+
+		private Labels(int nodeCount) {
+			nodeFirstLabel = new int[nodeCount];
+			Arrays.fill(nodeFirstLabel, -1);
+		}
+
+		/**
+		 * Checks if a new label (arrivalCost, arrivalGain) of the given node would not be dominated by one of its
+		 * labels, in which case the labels it dominates are removed.
+		 */
+		private boolean insertIfNotDominated(int nodeId, float arrivalCost, float arrivalGain) {
+			for (int l = nodeFirstLabel[nodeId]; l >= 0; l = nextOfNode[l]) {
+				if (!dead[l] && cost[l] <= arrivalCost && gain[l] <= arrivalGain + GAIN_TOLERANCE) return false;
+			}
+			int previousLabel = -1;
+			for (int l = nodeFirstLabel[nodeId]; l >= 0; l = nextOfNode[l]) {
+				if (!dead[l] && arrivalCost <= cost[l] && arrivalGain <= gain[l]) dead[l] = true;
+				if (dead[l]) {
+					// unlinked from the labels of the node, but kept as the previous label of other labels
+					if (previousLabel < 0) nodeFirstLabel[nodeId] = nextOfNode[l];
+					else nextOfNode[previousLabel] = nextOfNode[l];
+				} else {
+					previousLabel = l;
+				}
+			}
+			return true;
+		}
+
+		private int add(int nodeId, float labelCost, float labelGain, int previousLabel, int edgeId) {
+			if (count == node.length) {
+				int capacity = 2 * count;
+				node = Arrays.copyOf(node, capacity);
+				cost = Arrays.copyOf(cost, capacity);
+				gain = Arrays.copyOf(gain, capacity);
+				previous = Arrays.copyOf(previous, capacity);
+				edge = Arrays.copyOf(edge, capacity);
+				nextOfNode = Arrays.copyOf(nextOfNode, capacity);
+				dead = Arrays.copyOf(dead, capacity);
+			}
+			node[count] = nodeId;
+			cost[count] = labelCost;
+			gain[count] = labelGain;
+			previous[count] = previousLabel;
+			edge[count] = edgeId;
+			nextOfNode[count] = nodeFirstLabel[nodeId];
+			nodeFirstLabel[nodeId] = count;
+			return count++;
+		}
+	}
+}
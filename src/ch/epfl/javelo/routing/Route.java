@@ -1,5 +1,6 @@
 package ch.epfl.javelo.routing;
 
+import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.projection.PointCh;
 
 import java.util.List;
@@ -26,6 +27,16 @@ public interface Route {
 	 */
 	double length();
 
+	/**
+	 * Gives the estimated travel time along the route, in seconds. The routes made of timed edges sum their times once,
+	 * at their creation, while the other routes do not know their travel time.
+	 *
+	 * @return the travel time along the route, NaN if it is not known.
+	 */
+	default double time() {
+		return Double.NaN;
+	}
+
 	/**
 	 * Gives all the edges of the route.
 	 *
@@ -56,6 +67,20 @@ public interface Route {
 	 */
 	double elevationAt(double position);
 
+	/**
+	 * Gives the altitudes at the given positions along the route, which are exactly the ones given by
+	 * {@link #elevationAt(double)}. The routes made of edges walk them once, instead of searching the edge of each
+	 * position.
+	 *
+	 * @param positions  the positions, sorted in increasing order.
+	 * @param elevations the array receiving the altitude at each position, as long as the positions.
+	 * @throws IllegalArgumentException if the arrays do not have the same length.
+	 */
+	default void elevationsAt(double[] positions, double[] elevations) {
+		Preconditions.checkArgument(positions.length == elevations.length);
+		for (int i = 0; i < positions.length; i++) elevations[i] = elevationAt(positions[i]);
+	}
+
 	/**
 	 * Gives the identity of the node belonging to the route and being closest to the given position.
 	 *
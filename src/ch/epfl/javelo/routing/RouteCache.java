@@ -0,0 +1,327 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.BinaryFiles;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * This class represents a cache of the best routes between pairs of nodes, searched with one of several profiles (a
+ * cost function and its travel times), which can be shared by several route computers (see
+ * {@link RouteComputer#withCache(RouteCache, int)}) and threads.
+ * <p>
+ * The routes are stored as the identities of their edges, with primitive keys made of their nodes and profile, and
+ * the pairs of nodes without route as an empty array. The least recently used routes are removed once the estimated
+ * memory used by the cache exceeds its limit.
+ * <p>
+ * The cache belongs to a version of the dataset, and can be written to a file to be loaded again (for example after a
+ * restart) with the same version only, as the identities of the nodes and edges change from one version to another.
+ * The file is replaced atomically, and a file which is not a valid cache (for example one left by an older version of
+ * the application) is ignored, so that the cache never prevents the application from starting.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class RouteCache {
+
+	/**
+	 * The number of profiles a cache can distinguish, from 0 (included) to this number (excluded).
+	 */
+	public final static int PROFILE_COUNT = 1 << 8;
+
+	private final static int NODE_ID_BITS = 28;
+	private final static int MAX_NODE_ID = (1 << NODE_ID_BITS) - 1;
+	// the estimated memory used by an entry besides its edges: its key, links, and the header of its array
+	private final static int ENTRY_BYTES = 64;
+	private final static int INITIAL_CAPACITY = 64;
+	private final static int NONE = -1;
+
+	private final long datasetVersion;
+	private final long maxBytes;
+	private long usedBytes;
+	private int size;
+
+	// the entries are stored in slots, chained by bucket and by order of use (from the least to the most recent)
+	private int[] buckets;
+	private long[] keys;
+	private int[][] values;
+	private int[] nextInBucket;
+	private int[] previousUsed, nextUsed;
+	private int leastRecent = NONE, mostRecent = NONE;
+	private int freeSlot = NONE;
+	private int slotCount;
+
+	/**
+	 * Creates an empty route cache.
+	 *
+	 * @param datasetVersion the version of the dataset the routes belong to (see {@link #datasetVersion(Path)}).
+	 * @param maxBytes       the estimated memory the cache may use, in bytes.
+	 * @throws IllegalArgumentException if the memory is not strictly positive.
+	 */
+	public RouteCache(long datasetVersion, long maxBytes) {
+		Preconditions.checkArgument(maxBytes > 0);
+		this.datasetVersion = datasetVersion;
+		this.maxBytes = maxBytes;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Gives the version of the dataset contained in the given directory, which changes as soon as one of its files is
+	 * modified (or replaced).
+	 *
+	 * @param directory the directory of the dataset.
+	 * @return the version of the dataset, see {@link BinaryFiles#datasetVersion(Path)}.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static long datasetVersion(Path directory) throws IOException {
+		return BinaryFiles.datasetVersion(directory);
+	}
+
+	/**
+	 * Loads the cache written in the given file, if it exists, is a valid cache and belongs to the given version of
+	 * the dataset. The least recently used routes are ignored if the routes of the file exceed the given memory.
+	 * <p>
+	 * The file is read at once rather than mapped, so that it can be replaced later on (see {@link #writeTo(Path)})
+	 * on all systems.
+	 *
+	 * @param file           the path of the file.
+	 * @param datasetVersion the version of the current dataset.
+	 * @param maxBytes       the estimated memory the cache may use, in bytes.
+	 * @return the cache of the file, or an empty cache if the file does not exist, is not a valid cache (for example
+	 * if it is truncated) or belongs to another version.
+	 * @throws IOException              in case of an input/output error.
+	 * @throws IllegalArgumentException if the memory is not strictly positive.
+	 */
+	public static RouteCache loadFrom(Path file, long datasetVersion, long maxBytes) throws IOException {
+		RouteCache cache = new RouteCache(datasetVersion, maxBytes);
+		if (!Files.exists(file)) return cache;
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+		try {
+			if (buffer.getLong() != datasetVersion) return cache;
+			int count = buffer.getInt();
+			if (count < 0) return new RouteCache(datasetVersion, maxBytes);
+			for (int i = 0; i < count; i++) {
+				long key = buffer.getLong();
+				int length = buffer.getInt();
+				if (!isValid(key) || length < 0 || buffer.remaining() < (long) length * Integer.BYTES)
+					return new RouteCache(datasetVersion, maxBytes);
+				int[] edgeIds = new int[length];
+				buffer.asIntBuffer().get(edgeIds);
+				buffer.position(buffer.position() + length * Integer.BYTES);
+				cache.put(key, edgeIds);
+			}
+		} catch (BufferUnderflowException e) {
+			return new RouteCache(datasetVersion, maxBytes);
+		}
+		return buffer.hasRemaining() ? new RouteCache(datasetVersion, maxBytes) : cache;
+	}
+
+	private static boolean isValid(long key) {
+		return key >= 0 && key >>> (2 * NODE_ID_BITS) < PROFILE_COUNT;
+	}
+
+	/**
+	 * Writes the cache in the given file, which is replaced if it already exists. The cache is first written in a
+	 * temporary file of the same directory, which then replaces the file atomically, so that the file is never left
+	 * partly written.
+	 *
+	 * @param file the path of the file.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public void writeTo(Path file) throws IOException {
+		ByteBuffer content;
+		synchronized (this) {
+			long bytes = Long.BYTES + Integer.BYTES;
+			for (int slot = leastRecent; slot != NONE; slot = nextUsed[slot])
+				bytes += Long.BYTES + Integer.BYTES + (long) values[slot].length * Integer.BYTES;
+			content = ByteBuffer.allocate(Math.toIntExact(bytes));
+			content.putLong(datasetVersion).putInt(size);
+			// from the least to the most recently used, so that loading the file uses them in the same order
+			for (int slot = leastRecent; slot != NONE; slot = nextUsed[slot]) {
+				content.putLong(keys[slot]).putInt(values[slot].length);
+				for (int edgeId : values[slot]) content.putInt(edgeId);
+			}
+		}
+		Path directory = file.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temporary, content.array());
+			Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Gives the identities of the edges of the best route between the given nodes with the given profile, if it is in
+	 * the cache. The array given must not be modified.
+	 *
+	 * @param profile    the profile of the route.
+	 * @param fromNodeId the identity of the first node of the route.
+	 * @param toNodeId   the identity of the last node of the route.
+	 * @return the identities of the edges of the route, in order (empty if there is no route), or null if the route
+	 * is not in the cache.
+	 * @throws IllegalArgumentException if the profile or one of the nodes is invalid.
+	 */
+	public synchronized int[] get(int profile, int fromNodeId, int toNodeId) {
+		int slot = find(key(profile, fromNodeId, toNodeId));
+		if (slot == NONE) return null;
+		unlink(slot);
+		linkMostRecent(slot);
+		return values[slot];
+	}
+
+	/**
+	 * Adds the best route between the given nodes with the given profile to the cache, as the most recently used one,
+	 * and removes the least recently used routes if the cache then exceeds its memory.
+	 *
+	 * @param profile    the profile of the route.
+	 * @param fromNodeId the identity of the first node of the route.
+	 * @param toNodeId   the identity of the last node of the route.
+	 * @param edgeIds    the identities of the edges of the route, in order (empty if there is no route).
+	 * @throws IllegalArgumentException if the profile or one of the nodes is invalid.
+	 */
+	public void put(int profile, int fromNodeId, int toNodeId, int[] edgeIds) {
+		put(key(profile, fromNodeId, toNodeId), edgeIds.clone());
+	}
+
+	/**
+	 * Gives the number of routes in the cache.
+	 *
+	 * @return the number of routes.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Gives the estimated memory used by the routes of the cache, which never exceeds the one given at its creation.
+	 *
+	 * @return the memory used, in bytes.
+	 */
+	public synchronized long usedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Removes all the routes of the cache.
+	 */
+	public synchronized void clear() {
+		allocate(INITIAL_CAPACITY);
+		leastRecent = mostRecent = freeSlot = NONE;
+		slotCount = size = 0;
+		usedBytes = 0;
+	}
+
+	private static long key(int profile, int fromNodeId, int toNodeId) {
+		Preconditions.checkArgument(0 <= profile && profile < PROFILE_COUNT);
+		Preconditions.checkArgument(0 <= fromNodeId && fromNodeId <= MAX_NODE_ID);
+		Preconditions.checkArgument(0 <= toNodeId && toNodeId <= MAX_NODE_ID);
+		return (long) profile << (2 * NODE_ID_BITS) | (long) fromNodeId << NODE_ID_BITS | toNodeId;
+	}
+
+	private synchronized void put(long key, int[] edgeIds) {
+		long bytes = ENTRY_BYTES + (long) edgeIds.length * Integer.BYTES;
+		int slot = find(key);
+		if (slot != NONE) remove(slot);
+		if (bytes > maxBytes) return;
+		while (usedBytes + bytes > maxBytes) remove(leastRecent);
+
+		if (freeSlot != NONE) {
+			slot = freeSlot;
+			freeSlot = nextInBucket[slot];
+		} else {
+			if (slotCount == keys.length) grow();
+			slot = slotCount++;
+		}
+		keys[slot] = key;
+		values[slot] = edgeIds;
+		int bucket = bucketOf(key);
+		nextInBucket[slot] = buckets[bucket];
+		buckets[bucket] = slot;
+		linkMostRecent(slot);
+		usedBytes += bytes;
+		size++;
+	}
+
+	private int find(long key) {
+		for (int slot = buckets[bucketOf(key)]; slot != NONE; slot = nextInBucket[slot]) {
+			if (keys[slot] == key) return slot;
+		}
+		return NONE;
+	}
+
+	private void remove(int slot) {
+		int bucket = bucketOf(keys[slot]);
+		if (buckets[bucket] == slot) {
+			buckets[bucket] = nextInBucket[slot];
+		} else {
+			int previous = buckets[bucket];
+			while (nextInBucket[previous] != slot) previous = nextInBucket[previous];
+			nextInBucket[previous] = nextInBucket[slot];
+		}
+		unlink(slot);
+		usedBytes -= ENTRY_BYTES + (long) values[slot].length * Integer.BYTES;
+		values[slot] = null;
+		nextInBucket[slot] = freeSlot;
+		freeSlot = slot;
+		size--;
+	}
+
+	private void unlink(int slot) {
+		if (previousUsed[slot] == NONE) leastRecent = nextUsed[slot];
+		else nextUsed[previousUsed[slot]] = nextUsed[slot];
+		if (nextUsed[slot] == NONE) mostRecent = previousUsed[slot];
+		else previousUsed[nextUsed[slot]] = previousUsed[slot];
+	}
+
+	private void linkMostRecent(int slot) {
+		previousUsed[slot] = mostRecent;
+		nextUsed[slot] = NONE;
+		if (mostRecent == NONE) leastRecent = slot;
+		else nextUsed[mostRecent] = slot;
+		mostRecent = slot;
+	}
+
+	private int bucketOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & (buckets.length - 1);
+	}
+
+	private void allocate(int capacity) {
+		buckets = new int[capacity];
+		Arrays.fill(buckets, NONE);
+		keys = new long[capacity];
+		values = new int[capacity][];
+		nextInBucket = new int[capacity];
+		previousUsed = new int[capacity];
+		nextUsed = new int[capacity];
+	}
+
+	/**
+	 * Doubles the number of slots and of buckets, all the slots being used.
+	 */
+	private void grow() {
+		int capacity = 2 * keys.length;
+		keys = Arrays.copyOf(keys, capacity);
+		values = Arrays.copyOf(values, capacity);
+		nextInBucket = Arrays.copyOf(nextInBucket, capacity);
+		previousUsed = Arrays.copyOf(previousUsed, capacity);
+		nextUsed = Arrays.copyOf(nextUsed, capacity);
+		buckets = new int[capacity];
+		Arrays.fill(buckets, NONE);
+		for (int slot = 0; slot < slotCount; slot++) {
+			int bucket = bucketOf(keys[slot]);
+			nextInBucket[slot] = buckets[bucket];
+			buckets[bucket] = slot;
+		}
+	}
+}
@@ -5,6 +5,7 @@ import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * This class represents an itinerary planner.
@@ -18,6 +19,20 @@ public final class RouteComputer {
 
 	private final Graph graph;
 	private final CostFunction costFunction;
+	private final EdgeOverlay overlay;
+	private final ChainGraph chains;
+	private final FilteredGraph filtered;
+	private final TravelTimes travelTimes;
+	private final Consumer<SearchStatistics> statisticsSink;
+	private final RouteCache cache;
+	private final int cacheProfile;
+
+	private record WeightedNode(int nodeId, float distance, float heuristic) implements Comparable<WeightedNode> {
+		@Override
+		public int compareTo(WeightedNode that) {
+			return Float.compare(this.distance + this.heuristic, that.distance + that.heuristic);
+		}
+	}
 
 	/**
 	 * Creates a RouteComputer. A RouteComputer is composed of a Graph and a CostFunction.
@@ -26,8 +41,125 @@ public final class RouteComputer {
 	 * @param costFunction the cost function that determines the cost of an edge.
 	 */
 	public RouteComputer(Graph graph, CostFunction costFunction) {
+		this(graph, costFunction, new EdgeOverlay());
+	}
+
+	/**
+	 * Creates a RouteComputer whose edge costs are also changed by the given overlay (closures, penalties).
+	 * Each route computation uses the state of the overlay at its beginning.
+	 *
+	 * @param graph the graph composing the itinerary.
+	 * @param costFunction the cost function that determines the cost of an edge.
+	 * @param overlay the temporary changes to the cost of the edges.
+	 */
+	public RouteComputer(Graph graph, CostFunction costFunction, EdgeOverlay overlay) {
 		this.graph = graph;
 		this.costFunction = costFunction;
+		this.overlay = overlay;
+		this.chains = null;
+		this.filtered = null;
+		this.travelTimes = null;
+		this.statisticsSink = null;
+		this.cache = null;
+		this.cacheProfile = 0;
+	}
+
+	/**
+	 * Creates a RouteComputer searching routes in the given graph whose chains of intermediate nodes are collapsed,
+	 * which is much faster. As the costs of the arcs of the collapsed graph are computed once and for all, routes are
+	 * searched in the complete graph while the overlay contains changes.
+	 *
+	 * @param chains the collapsed graph, giving the graph and the cost function.
+	 * @param overlay the temporary changes to the cost of the edges.
+	 */
+	public RouteComputer(ChainGraph chains, EdgeOverlay overlay) {
+		this.graph = chains.graph();
+		this.costFunction = chains.costFunction();
+		this.overlay = overlay;
+		this.chains = chains;
+		this.filtered = null;
+		this.travelTimes = null;
+		this.statisticsSink = null;
+		this.cache = null;
+		this.cacheProfile = 0;
+	}
+
+	/**
+	 * Creates a RouteComputer searching routes in the given routing graph, without the edges that cannot be used and
+	 * whose costs are already computed, which is faster.
+	 *
+	 * @param filtered the routing graph, giving the graph and the cost function.
+	 * @param overlay the temporary changes to the cost of the edges.
+	 */
+	public RouteComputer(FilteredGraph filtered, EdgeOverlay overlay) {
+		this.graph = filtered.graph();
+		this.costFunction = filtered.costFunction();
+		this.overlay = overlay;
+		this.chains = null;
+		this.filtered = filtered;
+		this.travelTimes = null;
+		this.statisticsSink = null;
+		this.cache = null;
+		this.cacheProfile = 0;
+	}
+
+	private RouteComputer(RouteComputer that, TravelTimes travelTimes, Consumer<SearchStatistics> statisticsSink,
+						  RouteCache cache, int cacheProfile) {
+		this.graph = that.graph;
+		this.costFunction = that.costFunction;
+		this.overlay = that.overlay;
+		this.chains = that.chains;
+		this.filtered = that.filtered;
+		this.travelTimes = travelTimes;
+		this.statisticsSink = statisticsSink;
+		this.cache = cache;
+		this.cacheProfile = cacheProfile;
+	}
+
+	/**
+	 * Gives a RouteComputer searching routes like this one, whose edges are timed with the given travel times (the
+	 * travel times of the routes of this one are not known).
+	 *
+	 * @param travelTimes the travel times of the edges of the graph.
+	 * @return a RouteComputer whose routes have a travel time.
+	 */
+	public RouteComputer withTravelTimes(TravelTimes travelTimes) {
+		return new RouteComputer(this, travelTimes, statisticsSink, cache, cacheProfile);
+	}
+
+	/**
+	 * Gives a RouteComputer searching routes like this one, which gives the statistics of each of its searches of a
+	 * best route (the work done and the time spent) to the given sink, once the search is over. The sink is called by
+	 * the thread doing the search, and must thus accept statistics from several threads at once if the searches are
+	 * done in parallel, like a {@link SearchStatisticsCollector}.
+	 * <p>
+	 * The route computers do not collect statistics by default, and then only test whether they do once per step of
+	 * their searches. Collecting them measures the time spent in the cost function and the heuristic at each call,
+	 * which slows the searches down.
+	 *
+	 * @param statisticsSink the receiver of the statistics of the searches, or null to collect none.
+	 * @return a RouteComputer collecting statistics.
+	 */
+	public RouteComputer withStatistics(Consumer<SearchStatistics> statisticsSink) {
+		return new RouteComputer(this, travelTimes, statisticsSink, cache, cacheProfile);
+	}
+
+	/**
+	 * Gives a RouteComputer searching routes like this one, which first looks for the best routes in the given cache,
+	 * under the given profile, and adds the routes it searches to it. The profile identifies the cost function (and the
+	 * travel times) of this computer among those sharing the cache, which must thus use a different profile for each
+	 * cost function. The cache is only used while the overlay does not change the cost of any edge, and the searches
+	 * whose route is found in the cache give no statistics.
+	 *
+	 * @param cache   the cache of the routes, for the dataset of the graph, or null to use none.
+	 * @param profile the profile of the routes of this computer in the cache.
+	 * @return a RouteComputer using the cache.
+	 * @throws IllegalArgumentException if the profile is not between 0 (included) and
+	 *                                  {@link RouteCache#PROFILE_COUNT} (excluded).
+	 */
+	public RouteComputer withCache(RouteCache cache, int profile) {
+		Preconditions.checkArgument(0 <= profile && profile < RouteCache.PROFILE_COUNT);
+		return new RouteComputer(this, travelTimes, statisticsSink, cache, profile);
 	}
 
 	/**
@@ -40,33 +172,89 @@ public final class RouteComputer {
 	 * @throws IllegalArgumentException if the start and end nodes are identical.
 	 */
 	public Route bestRouteBetween(int startNodeId, int endNodeId) {
+		return bestRouteBetween(startNodeId, endNodeId, new Workspace());
+	}
+
+	/**
+	 * Gives the best route to take with the minimum total cost starting from the startNodeId to the endNodeId, like
+	 * {@link #bestRouteBetween(int, int)}, but searched with the arrays of the given workspace rather than with new
+	 * ones. The cost of the route is then given by {@link Workspace#lastCost()}.
+	 *
+	 * @param startNodeId the identity of the first node of the itinerary.
+	 * @param endNodeId   the identity of the last node of the itinerary.
+	 * @param workspace   the workspace of the search, which must not be used by another search at the same time.
+	 * @return the route with the minimum total cost or null if no route exists.
+	 * @throws IllegalArgumentException if the start and end nodes are identical, or if the workspace was created for a
+	 *                                  graph with a different number of nodes.
+	 */
+	public Route bestRouteBetween(int startNodeId, int endNodeId, Workspace workspace) {
 		Preconditions.checkArgument(startNodeId != endNodeId);
+		Preconditions.checkArgument(workspace.distances.length == graph.nodeCount());
+		workspace.lastCost = Double.NaN;
+		// the state of the overlay is read once, so that the whole search sees the same one
+		EdgeOverlay.Snapshot changes = overlay.snapshot();
 
-		record WeightedNode(int nodeId, float distance, float heuristic) implements Comparable<WeightedNode> {
-			@Override
-			public int compareTo(WeightedNode that) {
-				return Float.compare(this.distance + this.heuristic, that.distance + that.heuristic);
+		// the cached routes are only valid while the overlay does not change the costs
+		boolean cached = cache != null && changes.isEmpty();
+		if (cached) {
+			int[] edgeIds = cache.get(cacheProfile, startNodeId, endNodeId);
+			if (edgeIds != null) {
+				if (edgeIds.length == 0) return null;
+				workspace.lastCost = costOf(startNodeId, edgeIds);
+				return routeOf(startNodeId, edgeIds);
 			}
 		}
 
-		int nbNodes = graph.nodeCount();
-		PriorityQueue<WeightedNode> inExploration = new PriorityQueue<>();
+		Probe probe = statisticsSink == null ? null : new Probe();
+		int[] edgeIds;
+		try {
+			edgeIds = findBestRoute(startNodeId, endNodeId, changes, workspace, probe);
+		} finally {
+			workspace.clear();
+		}
+		if (probe != null) statisticsSink.accept(probe.statistics());
+		if (cached) cache.put(cacheProfile, startNodeId, endNodeId, edgeIds == null ? new int[0] : edgeIds);
+		return edgeIds == null ? null : routeOf(startNodeId, edgeIds);
+	}
 
-		// used to store the distances to the actual node
-		float[] distances = new float[nbNodes];
+	/**
+	 * Creates a workspace for the searches of {@link #bestRouteBetween(int, int, Workspace)}, which can be reused by
+	 * all the searches of a thread to avoid allocating arrays as large as the graph for each of them.
+	 *
+	 * @return a new workspace.
+	 */
+	public Workspace newWorkspace() {
+		return new Workspace();
+	}
 
-		// initialize the distances
-		Arrays.fill(distances, Float.POSITIVE_INFINITY);
-		distances[startNodeId] = 0;
+	/**
+	 * Gives the identities of the edges of the best route between the given nodes, in order, or null if there is no
+	 * route.
+	 */
+	private int[] findBestRoute(int startNodeId, int endNodeId, EdgeOverlay.Snapshot changes, Workspace workspace,
+								Probe probe) {
+		boolean unchanged = changes.isEmpty();
+
+		if (chains != null && unchanged && isOnArc(startNodeId) && isOnArc(endNodeId)) {
+			return bestRouteOnChains(startNodeId, endNodeId, workspace, probe);
+		}
+
+		PriorityQueue<WeightedNode> inExploration = workspace.queue;
+
+		// used to store the distances to the actual node, all infinite but the one of the start node
+		float[] distances = workspace.distances;
+		workspace.reach(startNodeId, 0);
 
 		// used to store the path
-		int[] previousNodes = new int[nbNodes];
+		int[] previousNodes = workspace.previousNodes;
+		int[] previousEdges = workspace.previousEdges;
 
 		// The point of the last node of the itinerary used to calculate the heuristic function
 		PointCh endPoint = graph.nodePoint(endNodeId);
 
 		// Add the first node in the inExploration
-		inExploration.add(new WeightedNode(startNodeId, 0, getHCost(startNodeId, endPoint)));
+		inExploration.add(new WeightedNode(startNodeId, 0, getHCost(startNodeId, endPoint, probe)));
+		if (probe != null) probe.pushed(inExploration.size());
 
 		// store if the path has been found
 		boolean pathFound = false;
@@ -76,73 +264,463 @@ public final class RouteComputer {
 
 			// we skip already explored nodes
 			if (distances[actual.nodeId] == ALREADY_EXPLORED_NODE_VALUE) {
+				if (probe != null) probe.stalePops++;
 				continue;
 			}
 			// set the node as visited
 			distances[actual.nodeId] = ALREADY_EXPLORED_NODE_VALUE;
+			if (probe != null) probe.settledNodes++;
 
 			// check if reached the final node
 			if (actual.nodeId == endNodeId) {
+				workspace.lastCost = actual.distance;
 				pathFound = true;
 				break;
 			}
 
+			if (filtered != null) {
+				// the edges that cannot be used are already removed, and the costs computed
+				for (int index = filtered.firstEdge(actual.nodeId); index < filtered.firstEdge(actual.nodeId + 1); index++) {
+					int edgeId = filtered.edgeId(index);
+					int arrivalNode = filtered.targetNodeId(index);
+					if (probe != null) probe.relaxedEdges++;
+					float edgeDist = unchanged ? filtered.cost(index) : (float) (filtered.cost(index) * changes.factor(edgeId));
+					float dist = actual.distance + edgeDist;
+					if (dist < distances[arrivalNode]) {
+						workspace.reach(arrivalNode, dist);
+						previousNodes[arrivalNode] = actual.nodeId;
+						previousEdges[arrivalNode] = edgeId;
+						inExploration.add(new WeightedNode(arrivalNode, dist, getHCost(arrivalNode, endPoint, probe)));
+						if (probe != null) probe.pushed(inExploration.size());
+					}
+				}
+				continue;
+			}
+
 			// for each edge of the actual node, add the next node to the priority queue
 			for (int i = 0; i < graph.nodeOutDegree(actual.nodeId()); i++) {
 				// get the node at the end of the edge
 				int edgeId = graph.nodeOutEdgeId(actual.nodeId(), i);
 				int arrivalNode = graph.edgeTargetNodeId(edgeId);
+				if (probe != null) probe.relaxedEdges++;
 
 				// calculate the actual distance with the cost factor
-				float edgeDist = (float) (graph.edgeLength(edgeId) * costFunction.costFactor(actual.nodeId(), edgeId));
+				double costFactor = costFactor(actual.nodeId(), edgeId, probe);
+				if (!unchanged) costFactor *= changes.factor(edgeId);
+				float edgeDist = (float) (graph.edgeLength(edgeId) * costFactor);
 				float dist = actual.distance + edgeDist;
 
 				if (dist < distances[arrivalNode]) { // skips the node if the node = float.Negative_Infinity
-					distances[arrivalNode] = dist;
+					workspace.reach(arrivalNode, dist);
 					previousNodes[arrivalNode] = actual.nodeId;
-					inExploration.add(new WeightedNode(arrivalNode, dist, getHCost(arrivalNode, endPoint)));
+					previousEdges[arrivalNode] = edgeId;
+					inExploration.add(new WeightedNode(arrivalNode, dist, getHCost(arrivalNode, endPoint, probe)));
+					if (probe != null) probe.pushed(inExploration.size());
 				}
 			}
 			
 		}
 
 		if (pathFound) {
-			// follow the edges
-			List<Edge> route = new ArrayList<>();
-			int actualNode = endNodeId;
-			while (actualNode != startNodeId) {
-				// We need to get the edge making the link from previousNodes[actualNode] --> actualNode
-				// for this, we loop through all the edges starting from previousNodes[actualNode] and find the one that
-				// reaches the actualNode.
-				for (int i = 0; i < graph.nodeOutDegree(previousNodes[actualNode]); i++) {
-					// get the node at the end of the edge
-					int edgeId = graph.nodeOutEdgeId(previousNodes[actualNode], i);
-					int nPrimeId = graph.edgeTargetNodeId(edgeId);
-					if (nPrimeId == actualNode) { // this is this edge
-						// insert the edge at the front to build the correct route
-						route.add(Edge.of(this.graph, edgeId, previousNodes[actualNode], actualNode));
-						actualNode = previousNodes[actualNode];
-						break;
-					}
-				}
+			// follow the edges, the edge used to reach a node being stored, as several edges can link the same nodes
+			int edgeCount = 0;
+			for (int actualNode = endNodeId; actualNode != startNodeId; actualNode = previousNodes[actualNode]) {
+				edgeCount++;
+			}
+			int[] edgeIds = new int[edgeCount];
+			for (int actualNode = endNodeId; actualNode != startNodeId; actualNode = previousNodes[actualNode]) {
+				edgeIds[--edgeCount] = previousEdges[actualNode];
 			}
-			Collections.reverse(route);
-			return new SingleRoute(route);
+			return edgeIds;
 		} else {
 			return null;
 		}
 	}
 
+	/**
+	 * Gives the route starting at the given node and following the given edges, stored compactly.
+	 */
+	private Route routeOf(int startNodeId, int[] edgeIds) {
+		return new CompactRoute(graph, travelTimes, startNodeId, edgeIds);
+	}
+
+	/**
+	 * Gives the cost of the route starting at the given node and following the given edges, summed like the searches
+	 * do.
+	 */
+	private double costOf(int startNodeId, int[] edgeIds) {
+		float cost = 0;
+		int fromNodeId = startNodeId;
+		for (int edgeId : edgeIds) {
+			cost += (float) (graph.edgeLength(edgeId) * costFunction.costFactor(fromNodeId, edgeId));
+			fromNodeId = graph.edgeTargetNodeId(edgeId);
+		}
+		return cost;
+	}
+
+	/**
+	 * Gives the best route to take with the minimum total cost starting from the startNodeId to the endNodeId, the
+	 * cost of the turns made at the nodes being added to the cost of the edges.
+	 * <p>
+	 * As the cost of leaving a node depends on the edge used to reach it, the states of the search are the edges
+	 * rather than the nodes: the search goes from an edge to the edges leaving its target node. The routes are always
+	 * searched in the complete graph, with the changes of the overlay.
+	 *
+	 * @param startNodeId      the identity of the first node of the itinerary.
+	 * @param endNodeId        the identity of the last node of the itinerary.
+	 * @param turnCostFunction the turn cost function giving the cost of the turns.
+	 * @return the route with the minimum total cost or null if no route exists.
+	 * @throws IllegalArgumentException if the start and end nodes are identical.
+	 */
+	public Route bestRouteBetween(int startNodeId, int endNodeId, TurnCostFunction turnCostFunction) {
+		Preconditions.checkArgument(startNodeId != endNodeId);
+		Probe probe = statisticsSink == null ? null : new Probe();
+		Route route = findBestRouteWithTurns(startNodeId, endNodeId, turnCostFunction, probe);
+		if (probe != null) statisticsSink.accept(probe.statistics());
+		return route;
+	}
+
+	private Route findBestRouteWithTurns(int startNodeId, int endNodeId, TurnCostFunction turnCostFunction,
+										 Probe probe) {
+		EdgeOverlay.Snapshot changes = overlay.snapshot();
+		boolean unchanged = changes.isEmpty();
+
+		// the states are indexed by edge identity: the cost to reach the end of the edge, the node it starts from and
+		// the edge used before it (-1 for the edges leaving the start node)
+		int nbEdges = graph.edgeCount();
+		float[] distances = new float[nbEdges];
+		Arrays.fill(distances, Float.POSITIVE_INFINITY);
+		int[] sourceNodes = new int[nbEdges];
+		int[] previousEdges = new int[nbEdges];
+
+		PointCh endPoint = graph.nodePoint(endNodeId);
+		PriorityQueue<WeightedNode> inExploration = new PriorityQueue<>();
+		for (int i = 0; i < graph.nodeOutDegree(startNodeId); i++) {
+			int edgeId = graph.nodeOutEdgeId(startNodeId, i);
+			if (probe != null) probe.relaxedEdges++;
+			float dist = edgeCost(startNodeId, edgeId, changes, unchanged, probe);
+			if (dist < distances[edgeId]) {
+				distances[edgeId] = dist;
+				sourceNodes[edgeId] = startNodeId;
+				previousEdges[edgeId] = -1;
+				inExploration.add(new WeightedNode(edgeId, dist, getHCost(graph.edgeTargetNodeId(edgeId), endPoint, probe)));
+				if (probe != null) probe.pushed(inExploration.size());
+			}
+		}
+
+		int lastEdge = -1;
+		while (!inExploration.isEmpty()) {
+			// the "node" of the queue is an edge here
+			WeightedNode actual = inExploration.remove();
+			int inEdgeId = actual.nodeId;
+			if (distances[inEdgeId] == ALREADY_EXPLORED_NODE_VALUE) {
+				if (probe != null) probe.stalePops++;
+				continue;
+			}
+			distances[inEdgeId] = ALREADY_EXPLORED_NODE_VALUE;
+			if (probe != null) probe.settledNodes++;
+
+			int nodeId = graph.edgeTargetNodeId(inEdgeId);
+			if (nodeId == endNodeId) {
+				lastEdge = inEdgeId;
+				break;
+			}
+
+			for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+				int edgeId = graph.nodeOutEdgeId(nodeId, i);
+				if (probe != null) probe.relaxedEdges++;
+				float dist = actual.distance
+						+ (float) turnCostFunction.turnCost(sourceNodes[inEdgeId], inEdgeId, nodeId, edgeId)
+						+ edgeCost(nodeId, edgeId, changes, unchanged, probe);
+				if (dist < distances[edgeId]) {
+					distances[edgeId] = dist;
+					sourceNodes[edgeId] = nodeId;
+					previousEdges[edgeId] = inEdgeId;
+					inExploration.add(new WeightedNode(edgeId, dist, getHCost(graph.edgeTargetNodeId(edgeId), endPoint, probe)));
+					if (probe != null) probe.pushed(inExploration.size());
+				}
+			}
+		}
+		if (lastEdge < 0) return null;
+
+		List<Edge> route = new ArrayList<>();
+		for (int edgeId = lastEdge; edgeId >= 0; edgeId = previousEdges[edgeId]) {
+			route.add(edgeOf(edgeId, sourceNodes[edgeId], graph.edgeTargetNodeId(edgeId)));
+		}
+		Collections.reverse(route);
+		return new SingleRoute(route);
+	}
+
+	/**
+	 * Gives the best routes from the given source node to all the nodes whose best route costs at most maxCost, with
+	 * the changes of the overlay. The search stops earlier once all the given target nodes are settled, if there are
+	 * any: several targets are thus reached with a single search.
+	 *
+	 * @param sourceNodeId  the identity of the source node.
+	 * @param maxCost       the maximal cost of the best routes searched (may be positive infinity).
+	 * @param targetNodeIds the identities of the target nodes, if any.
+	 * @return the tree of the best routes from the source node.
+	 * @throws IllegalArgumentException if the maximal cost is negative.
+	 */
+	public ShortestPathTree shortestPathTree(int sourceNodeId, double maxCost, int... targetNodeIds) {
+		Preconditions.checkArgument(maxCost >= 0);
+		EdgeOverlay.Snapshot changes = overlay.snapshot();
+		boolean unchanged = changes.isEmpty();
+
+		int nbNodes = graph.nodeCount();
+		float[] distances = new float[nbNodes];
+		Arrays.fill(distances, Float.POSITIVE_INFINITY);
+		distances[sourceNodeId] = 0;
+		float[] lengths = new float[nbNodes];
+		int[] previousNodes = new int[nbNodes];
+		int[] previousEdges = new int[nbNodes];
+		boolean[] settled = new boolean[nbNodes];
+		int[] settledNodes = new int[16];
+		int settledCount = 0;
+
+		// the targets are counted once each, even if given several times
+		boolean[] target = new boolean[targetNodeIds.length == 0 ? 0 : nbNodes];
+		int remainingTargets = 0;
+		for (int nodeId : targetNodeIds) {
+			if (!target[nodeId]) remainingTargets++;
+			target[nodeId] = true;
+		}
+
+		PriorityQueue<WeightedNode> inExploration = new PriorityQueue<>();
+		inExploration.add(new WeightedNode(sourceNodeId, 0, 0));
+		while (!inExploration.isEmpty()) {
+			WeightedNode actual = inExploration.remove();
+			if (settled[actual.nodeId]) continue;
+			if (actual.distance > maxCost) break;
+			settled[actual.nodeId] = true;
+			if (settledCount == settledNodes.length) settledNodes = Arrays.copyOf(settledNodes, 2 * settledCount);
+			settledNodes[settledCount++] = actual.nodeId;
+			if (target.length > 0 && target[actual.nodeId] && --remainingTargets == 0) break;
+
+			for (int i = 0; i < graph.nodeOutDegree(actual.nodeId); i++) {
+				int edgeId = graph.nodeOutEdgeId(actual.nodeId, i);
+				int arrivalNode = graph.edgeTargetNodeId(edgeId);
+				float dist = actual.distance + edgeCost(actual.nodeId, edgeId, changes, unchanged, null);
+				if (!settled[arrivalNode] && dist < distances[arrivalNode]) {
+					distances[arrivalNode] = dist;
+					lengths[arrivalNode] = lengths[actual.nodeId] + (float) graph.edgeLength(edgeId);
+					previousNodes[arrivalNode] = actual.nodeId;
+					previousEdges[arrivalNode] = edgeId;
+					inExploration.add(new WeightedNode(arrivalNode, dist, 0));
+				}
+			}
+		}
+		return new ShortestPathTree(graph, travelTimes, sourceNodeId, distances, lengths, previousNodes, previousEdges,
+				settled, Arrays.copyOf(settledNodes, settledCount));
+	}
+
+	private float edgeCost(int nodeId, int edgeId, EdgeOverlay.Snapshot changes, boolean unchanged, Probe probe) {
+		double costFactor = costFactor(nodeId, edgeId, probe);
+		if (!unchanged) costFactor *= changes.factor(edgeId);
+		return (float) (graph.edgeLength(edgeId) * costFactor);
+	}
+
+	private double costFactor(int nodeId, int edgeId, Probe probe) {
+		if (probe == null) return costFunction.costFactor(nodeId, edgeId);
+		long start = System.nanoTime();
+		double costFactor = costFunction.costFactor(nodeId, edgeId);
+		probe.costFunctionNanos += System.nanoTime() - start;
+		return costFactor;
+	}
+
+	/**
+	 * Checks if the given identity node is a junction or an intermediate node of an arc of the collapsed graph
+	 * (the nodes of cycles without junctions being neither).
+	 */
+	private boolean isOnArc(int nodeId) {
+		return !chains.isIntermediate(nodeId) || chains.arrivingPosition(nodeId, 0) >= 0;
+	}
+
+	/**
+	 * Gives the best route between the given nodes, searched among the junctions of the collapsed graph. A node
+	 * reached through the edges stored between the positions previousFirst[n] and previousLast[n] of the collapsed
+	 * graph comes from previousNodes[n]. An intermediate start node leaves through the end of the (at most two) arcs
+	 * passing through it, and an intermediate end node is reached through the beginning of those passing through it.
+	 */
+	private int[] bestRouteOnChains(int startNodeId, int endNodeId, Workspace workspace, Probe probe) {
+		PriorityQueue<WeightedNode> inExploration = workspace.queue;
+		float[] distances = workspace.distances;
+		workspace.reach(startNodeId, 0);
+		int[] previousNodes = workspace.previousNodes;
+		int[] previousFirst = workspace.previousEdges;
+		int[] previousLast = workspace.previousLast();
+
+		PointCh endPoint = graph.nodePoint(endNodeId);
+		boolean endIsIntermediate = chains.isIntermediate(endNodeId);
+		inExploration.add(new WeightedNode(startNodeId, 0, getHCost(startNodeId, endPoint, probe)));
+		if (probe != null) probe.pushed(inExploration.size());
+
+		boolean pathFound = false;
+		while (!inExploration.isEmpty()) {
+			WeightedNode actual = inExploration.remove();
+			if (distances[actual.nodeId] == ALREADY_EXPLORED_NODE_VALUE) {
+				if (probe != null) probe.stalePops++;
+				continue;
+			}
+			distances[actual.nodeId] = ALREADY_EXPLORED_NODE_VALUE;
+			if (probe != null) probe.settledNodes++;
+			if (actual.nodeId == endNodeId) {
+				workspace.lastCost = actual.distance;
+				pathFound = true;
+				break;
+			}
+
+			// the parts of arcs to follow: from the position "first" (included) to "last" (excluded)
+			int partCount = chains.isIntermediate(actual.nodeId) ? 2 : chains.firstArc(actual.nodeId + 1) - chains.firstArc(actual.nodeId);
+			for (int i = 0; i < partCount; i++) {
+				int arcId, first, last;
+				float cost;
+				if (chains.isIntermediate(actual.nodeId)) {
+					// only the start node can be intermediate here, it leaves through the rest of its arcs
+					int arriving = chains.arrivingPosition(actual.nodeId, i);
+					if (arriving < 0) continue;
+					arcId = chains.arcAt(arriving);
+					first = arriving + 1;
+					last = chains.arcFirstPosition(arcId + 1);
+					cost = chains.costBetween(first, last);
+				} else {
+					arcId = chains.firstArc(actual.nodeId) + i;
+					first = chains.arcFirstPosition(arcId);
+					last = chains.arcFirstPosition(arcId + 1);
+					cost = chains.arcCost(arcId);
+				}
+				relax(workspace, endPoint, actual,
+						chains.arcTargetNodeId(arcId), cost, first, last, probe);
+
+				for (int j = 0; endIsIntermediate && j < 2; j++) {
+					int arriving = chains.arrivingPosition(endNodeId, j);
+					if (arriving >= first && arriving < last) {
+						relax(workspace, endPoint, actual,
+								endNodeId, chains.costBetween(first, arriving + 1), first, arriving + 1, probe);
+					}
+				}
+			}
+		}
+		if (!pathFound) return null;
+
+		int edgeCount = 0;
+		for (int nodeId = endNodeId; nodeId != startNodeId; nodeId = previousNodes[nodeId]) {
+			edgeCount += previousLast[nodeId] - previousFirst[nodeId];
+		}
+		int[] edgeIds = new int[edgeCount];
+		for (int nodeId = endNodeId; nodeId != startNodeId; nodeId = previousNodes[nodeId]) {
+			for (int position = previousLast[nodeId] - 1; position >= previousFirst[nodeId]; position--) {
+				edgeIds[--edgeCount] = chains.edgeAt(position);
+			}
+		}
+		return edgeIds;
+	}
+
+	private void relax(Workspace workspace, PointCh endPoint, WeightedNode actual, int arrivalNode, float cost,
+					   int first, int last, Probe probe) {
+		if (probe != null) probe.relaxedEdges++;
+		float dist = actual.distance + cost;
+		if (dist < workspace.distances[arrivalNode]) {
+			workspace.reach(arrivalNode, dist);
+			workspace.previousNodes[arrivalNode] = actual.nodeId;
+			workspace.previousEdges[arrivalNode] = first;
+			workspace.previousLast()[arrivalNode] = last;
+			workspace.queue.add(new WeightedNode(arrivalNode, dist, getHCost(arrivalNode, endPoint, probe)));
+			if (probe != null) probe.pushed(workspace.queue.size());
+		}
+	}
+
+	private Edge edgeOf(int edgeId, int fromNodeId, int toNodeId) {
+		return travelTimes == null
+				? Edge.of(graph, edgeId, fromNodeId, toNodeId)
+				: Edge.of(graph, edgeId, fromNodeId, toNodeId, travelTimes);
+	}
+
 	/**
 	 * Gives the heuristic function used to decide which node to consider at each step. This function consists of
 	 * calculating the Euclidean distance between a certain node and the last node of the itinerary.
 	 *
 	 * @param currentNodeId the identity of the current node.
 	 * @param endPoint      the point in the graph of the last node of the itinerary.
+	 * @param probe         the counters of the search, or null if its statistics are not collected.
 	 * @return the Euclidean distance between the currentNodeId and the endNodeId.
 	 */
-	private float getHCost(int currentNodeId, PointCh endPoint) {
+	private float getHCost(int currentNodeId, PointCh endPoint, Probe probe) {
+		long start = probe == null ? 0 : System.nanoTime();
 		PointCh currentPoint = graph.nodePoint(currentNodeId);
-		return (float) currentPoint.distanceTo(endPoint);
+		float hCost = (float) currentPoint.distanceTo(endPoint);
+		if (probe != null) probe.heuristicNanos += System.nanoTime() - start;
+		return hCost;
+	}
+
+	/**
+	 * The arrays of the searches of best routes, as large as the graph, which can be reused from one search to the
+	 * next by a single thread. Only the distances of the nodes reached by a search are reset once it is over, the
+	 * other arrays being only read for those nodes.
+	 */
+	public final class Workspace {
+		private final float[] distances;
+		private final int[] previousNodes;
+		private final int[] previousEdges;
+		private int[] previousLast;
+		private final PriorityQueue<WeightedNode> queue = new PriorityQueue<>();
+		private int[] reachedNodes = new int[64];
+		private int reachedCount;
+		private double lastCost = Double.NaN;
+
+		private Workspace() {
+			int nbNodes = graph.nodeCount();
+			distances = new float[nbNodes];
+			Arrays.fill(distances, Float.POSITIVE_INFINITY);
+			previousNodes = new int[nbNodes];
+			previousEdges = new int[nbNodes];
+		}
+
+		/**
+		 * Gives the total cost of the route found by the last search done with this workspace.
+		 *
+		 * @return the cost of the last route, or NaN if the last search found none.
+		 */
+		public double lastCost() {
+			return lastCost;
+		}
+
+		private void reach(int nodeId, float distance) {
+			if (distances[nodeId] == Float.POSITIVE_INFINITY) {
+				if (reachedCount == reachedNodes.length) reachedNodes = Arrays.copyOf(reachedNodes, 2 * reachedCount);
+				reachedNodes[reachedCount++] = nodeId;
+			}
+			distances[nodeId] = distance;
+		}
+
+		private int[] previousLast() {
+			if (previousLast == null) previousLast = new int[distances.length];
+			return previousLast;
+		}
+
+		private void clear() {
+			for (int i = 0; i < reachedCount; i++) distances[reachedNodes[i]] = Float.POSITIVE_INFINITY;
+			reachedCount = 0;
+			queue.clear();
+		}
+	}
+
+	/**
+	 * The counters of a search whose statistics are collected.
+	 */
+	private static final class Probe {
+		private final long startNanos = System.nanoTime();
+		private long settledNodes, relaxedEdges, heapPushes, peakHeapSize, stalePops;
+		private long costFunctionNanos, heuristicNanos;
+
+		private void pushed(int heapSize) {
+			heapPushes++;
+			peakHeapSize = Math.max(peakHeapSize, heapSize);
+		}
+
+		private SearchStatistics statistics() {
+			return new SearchStatistics(1, settledNodes, relaxedEdges, heapPushes, peakHeapSize, stalePops,
+					costFunctionNanos, heuristicNanos, System.nanoTime() - startNanos);
+		}
 	}
 }
@@ -0,0 +1,41 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * This record class represents the work done by one route search of {@link RouteComputer}, or by several ones once
+ * summed.
+ *
+ * @param searchCount        the number of searches.
+ * @param settledNodes       the number of nodes settled (removed from the queue for the first time).
+ * @param relaxedEdges       the number of edges whose arrival node was considered.
+ * @param heapPushes         the number of nodes added to the priority queue.
+ * @param peakHeapSize       the largest size reached by the priority queue (the largest one among the searches).
+ * @param stalePops          the number of nodes removed from the queue while already settled.
+ * @param costFunctionNanos  the time spent computing the cost factors of the edges, in nanoseconds.
+ * @param heuristicNanos     the time spent computing the heuristic of the nodes, in nanoseconds.
+ * @param totalNanos         the total duration of the searches, in nanoseconds.
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public record SearchStatistics(long searchCount, long settledNodes, long relaxedEdges, long heapPushes,
+							   long peakHeapSize, long stalePops, long costFunctionNanos, long heuristicNanos,
+							   long totalNanos) {
+	/**
+	 * The statistics of no search at all.
+	 */
+	public static final SearchStatistics ZERO = new SearchStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+	/**
+	 * Gives the statistics of the searches of this one and of the given one, summed (except the peak size of the
+	 * queue, which is the largest of both).
+	 *
+	 * @param that the other statistics.
+	 * @return the statistics of all the searches.
+	 */
+	public SearchStatistics plus(SearchStatistics that) {
+		return new SearchStatistics(searchCount + that.searchCount, settledNodes + that.settledNodes,
+				relaxedEdges + that.relaxedEdges, heapPushes + that.heapPushes,
+				Math.max(peakHeapSize, that.peakHeapSize), stalePops + that.stalePops,
+				costFunctionNanos + that.costFunctionNanos, heuristicNanos + that.heuristicNanos,
+				totalNanos + that.totalNanos);
+	}
+}
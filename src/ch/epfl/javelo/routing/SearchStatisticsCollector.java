@@ -0,0 +1,49 @@
+package ch.epfl.javelo.routing;
+
+import java.util.function.Consumer;
+
+/**
+ * This class represents a receiver of the statistics of the searches of one or several route computers (see
+ * {@link RouteComputer#withStatistics(Consumer)}), which keeps the statistics of the last search and the sum of all
+ * of them. It can be used from several threads at once.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class SearchStatisticsCollector implements Consumer<SearchStatistics> {
+
+	private SearchStatistics last = SearchStatistics.ZERO;
+	private SearchStatistics total = SearchStatistics.ZERO;
+
+	@Override
+	public synchronized void accept(SearchStatistics statistics) {
+		last = statistics;
+		total = total.plus(statistics);
+	}
+
+	/**
+	 * Gives the statistics of the last search received.
+	 *
+	 * @return the statistics of the last search, or {@link SearchStatistics#ZERO} if there is none.
+	 */
+	public synchronized SearchStatistics last() {
+		return last;
+	}
+
+	/**
+	 * Gives the sum of the statistics of all the searches received.
+	 *
+	 * @return the statistics of all the searches.
+	 */
+	public synchronized SearchStatistics total() {
+		return total;
+	}
+
+	/**
+	 * Forgets all the searches received.
+	 */
+	public synchronized void reset() {
+		last = SearchStatistics.ZERO;
+		total = SearchStatistics.ZERO;
+	}
+}
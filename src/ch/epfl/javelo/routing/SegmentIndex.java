@@ -0,0 +1,183 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+
+import java.util.List;
+
+/**
+ * This class represents a spatial index over the straight segments (the edges) of a route, which finds the segment
+ * closest to a point without examining all of them.
+ * <p>
+ * The index is a packed R-tree: groups of {@value #FANOUT} consecutive segments are bounded by a box, groups of
+ * {@value #FANOUT} consecutive boxes by a box of the level above, and so on up to a single box. As the segments of a
+ * route follow each other, consecutive segments are close and their boxes are small. The tree is traversed in the
+ * order of the segments without allocating, only the boxes which may contain a segment at least as close as the
+ * closest one found so far being entered.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+final class SegmentIndex {
+	private final static int FANOUT = 8;
+	// margin on the distance to a box, which covers the rounding errors on the points interpolated on a segment
+	private final static double BOX_MARGIN = 1e-6;
+
+	private final double[] fromE, fromN, toE, toN, lengths;
+	// the boxes of all the levels above the segments, from the lowest one, and the index of the first box of each level
+	private final double[] minE, minN, maxE, maxN;
+	private final int[] levelStart;
+
+	/**
+	 * Creates the index of the given segments, whose arrays are neither copied nor modified.
+	 *
+	 * @param fromE   the east coordinates of the starting points of the segments.
+	 * @param fromN   the north coordinates of the starting points of the segments.
+	 * @param toE     the east coordinates of the ending points of the segments.
+	 * @param toN     the north coordinates of the ending points of the segments.
+	 * @param lengths the lengths of the segments, in meters.
+	 * @throws IllegalArgumentException if there is no segment, or if the arrays do not have the same length.
+	 */
+	SegmentIndex(double[] fromE, double[] fromN, double[] toE, double[] toN, double[] lengths) {
+		int count = fromE.length;
+		Preconditions.checkArgument(count > 0);
+		Preconditions.checkArgument(fromN.length == count && toE.length == count && toN.length == count
+				&& lengths.length == count);
+		this.fromE = fromE;
+		this.fromN = fromN;
+		this.toE = toE;
+		this.toN = toN;
+		this.lengths = lengths;
+
+		int levels = 0, boxCount = 0;
+		for (int c = count; levels == 0 || c > 1; levels++) {
+			c = (c + FANOUT - 1) / FANOUT;
+			boxCount += c;
+		}
+		levelStart = new int[levels + 1];
+		minE = new double[boxCount];
+		minN = new double[boxCount];
+		maxE = new double[boxCount];
+		maxN = new double[boxCount];
+
+		for (int i = 0; i < count; i++) {
+			int box = i / FANOUT;
+			boolean first = i % FANOUT == 0;
+			include(box, Math.min(fromE[i], toE[i]), Math.min(fromN[i], toN[i]),
+					Math.max(fromE[i], toE[i]), Math.max(fromN[i], toN[i]), first);
+		}
+		int childCount = (count + FANOUT - 1) / FANOUT;
+		levelStart[1] = childCount;
+		for (int level = 1; level < levels; level++) {
+			int childStart = levelStart[level - 1];
+			for (int i = 0; i < childCount; i++) {
+				int child = childStart + i;
+				include(levelStart[level] + i / FANOUT, minE[child], minN[child], maxE[child], maxN[child],
+						i % FANOUT == 0);
+			}
+			childCount = (childCount + FANOUT - 1) / FANOUT;
+			levelStart[level + 1] = levelStart[level] + childCount;
+		}
+	}
+
+	/**
+	 * Creates the index of the given edges.
+	 *
+	 * @param edges the edges.
+	 * @return the index of the edges.
+	 * @throws IllegalArgumentException if there is no edge.
+	 */
+	static SegmentIndex of(List<Edge> edges) {
+		int count = edges.size();
+		double[] fromE = new double[count], fromN = new double[count];
+		double[] toE = new double[count], toN = new double[count];
+		double[] lengths = new double[count];
+		for (int i = 0; i < count; i++) {
+			Edge edge = edges.get(i);
+			fromE[i] = edge.fromPoint().e();
+			fromN[i] = edge.fromPoint().n();
+			toE[i] = edge.toPoint().e();
+			toN[i] = edge.toPoint().n();
+			lengths[i] = edge.length();
+		}
+		return new SegmentIndex(fromE, fromN, toE, toN, lengths);
+	}
+
+	private void include(int box, double boxMinE, double boxMinN, double boxMaxE, double boxMaxN, boolean first) {
+		minE[box] = first ? boxMinE : Math.min(minE[box], boxMinE);
+		minN[box] = first ? boxMinN : Math.min(minN[box], boxMinN);
+		maxE[box] = first ? boxMaxE : Math.max(maxE[box], boxMaxE);
+		maxN[box] = first ? boxMaxN : Math.max(maxN[box], boxMaxN);
+	}
+
+	/**
+	 * Gives the index of the segment closest to the given point, the first one if several segments are equally
+	 * close, as a scan of all the segments in order would.
+	 *
+	 * @param e the east coordinate of the point.
+	 * @param n the north coordinate of the point.
+	 * @return the index of the closest segment.
+	 */
+	int closestSegment(double e, double n) {
+		int top = levelStart.length - 1;
+		int level = top, index = 0;
+		int closest = 0;
+		double closestDistance = Double.POSITIVE_INFINITY;
+
+		while (true) {
+			if (level == 0) {
+				double distance = distanceTo(index, e, n);
+				if (distance < closestDistance) {
+					closest = index;
+					closestDistance = distance;
+				}
+			} else if (boxDistanceTo(levelStart[level - 1] + index, e, n) <= closestDistance + BOX_MARGIN) {
+				level--;
+				index *= FANOUT;
+				continue;
+			}
+			// goes to the next sibling, or to the next sibling of the closest ancestor having one
+			while (true) {
+				if (level == top) return closest;
+				if ((index + 1) % FANOUT != 0 && index + 1 < levelCount(level)) {
+					index++;
+					break;
+				}
+				level++;
+				index /= FANOUT;
+			}
+		}
+	}
+
+	/**
+	 * Gives the position on the given segment of the point of the segment closest to the given point.
+	 *
+	 * @param segment the index of the segment.
+	 * @param e       the east coordinate of the point.
+	 * @param n       the north coordinate of the point.
+	 * @return the position on the segment, between 0 and its length.
+	 */
+	double positionOn(int segment, double e, double n) {
+		return Math2.clamp(0, Math2.projectionLength(
+				fromE[segment], fromN[segment], toE[segment], toN[segment], e, n), lengths[segment]);
+	}
+
+	private double distanceTo(int segment, double e, double n) {
+		double x = positionOn(segment, e, n) / lengths[segment];
+		return Math2.norm(Math2.interpolate(fromE[segment], toE[segment], x) - e,
+				Math2.interpolate(fromN[segment], toN[segment], x) - n);
+	}
+
+	private double boxDistanceTo(int box, double e, double n) {
+		double dE = Math.max(0, Math.max(minE[box] - e, e - maxE[box]));
+		double dN = Math.max(0, Math.max(minN[box] - n, n - maxN[box]));
+		return Math2.norm(dE, dN);
+	}
+
+	/**
+	 * Gives the number of segments (level 0) or boxes (levels above) of the given level.
+	 */
+	private int levelCount(int level) {
+		return level == 0 ? fromE.length : levelStart[level] - levelStart[level - 1];
+	}
+}
@@ -0,0 +1,121 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents the best routes from a source node to all the nodes reached by a bounded one-to-many search
+ * (see {@link RouteComputer#shortestPathTree(int, double, int...)}).
+ * <p>
+ * A node is settled once the search knows its best route: the settled nodes are stored in the order in which they
+ * were settled, that is by increasing cost.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class ShortestPathTree {
+
+	private final Graph graph;
+	private final TravelTimes travelTimes;
+	private final int sourceNodeId;
+	private final float[] costs;
+	private final float[] lengths;
+	private final int[] previousNodes;
+	private final int[] previousEdges;
+	private final int[] settledNodes;
+	private final boolean[] settled;
+
+	ShortestPathTree(Graph graph, TravelTimes travelTimes, int sourceNodeId, float[] costs, float[] lengths,
+					 int[] previousNodes, int[] previousEdges, boolean[] settled, int[] settledNodes) {
+		this.graph = graph;
+		this.travelTimes = travelTimes;
+		this.sourceNodeId = sourceNodeId;
+		this.costs = costs;
+		this.lengths = lengths;
+		this.previousNodes = previousNodes;
+		this.previousEdges = previousEdges;
+		this.settled = settled;
+		this.settledNodes = settledNodes;
+	}
+
+	/**
+	 * Gives the identity of the source node of the tree.
+	 *
+	 * @return the identity of the source node.
+	 */
+	public int sourceNodeId() {
+		return sourceNodeId;
+	}
+
+	/**
+	 * Gives the number of settled nodes.
+	 *
+	 * @return the number of settled nodes.
+	 */
+	public int settledCount() {
+		return settledNodes.length;
+	}
+
+	/**
+	 * Gives the identity of the "index" settled node, the nodes being settled by increasing cost.
+	 *
+	 * @param index the index of the settled node.
+	 * @return the identity of the node.
+	 */
+	public int settledNodeId(int index) {
+		return settledNodes[index];
+	}
+
+	/**
+	 * Checks if the best route to the given identity node is known.
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return true iff the node is settled.
+	 */
+	public boolean isSettled(int nodeId) {
+		return settled[nodeId];
+	}
+
+	/**
+	 * Gives the cost of the best route from the source node to the given identity node.
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return the cost of the best route, positive infinity if the node is not settled.
+	 */
+	public double cost(int nodeId) {
+		return settled[nodeId] ? costs[nodeId] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Gives the length, in meters, of the best route from the source node to the given identity node.
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return the length of the best route, positive infinity if the node is not settled.
+	 */
+	public double length(int nodeId) {
+		return settled[nodeId] ? lengths[nodeId] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Gives the best route from the source node to the given identity node.
+	 *
+	 * @param nodeId the identity of the node.
+	 * @return the best route, or null if the node is not settled or is the source node.
+	 */
+	public Route routeTo(int nodeId) {
+		if (!settled[nodeId] || nodeId == sourceNodeId) return null;
+		List<Edge> edges = new ArrayList<>();
+		for (int actualNode = nodeId; actualNode != sourceNodeId; actualNode = previousNodes[actualNode]) {
+			int edgeId = previousEdges[actualNode];
+			int fromNodeId = previousNodes[actualNode];
+			edges.add(travelTimes == null
+					? Edge.of(graph, edgeId, fromNodeId, actualNode)
+					: Edge.of(graph, edgeId, fromNodeId, actualNode, travelTimes));
+		}
+		Collections.reverse(edges);
+		return new SingleRoute(edges);
+	}
+}
@@ -18,6 +18,9 @@ public final class SingleRoute implements Route {
 	private final List<Edge> edges;
 	private final double[] sortedEdgePos;
 	private final List<PointCh> totalPoints;
+	private final double time;
+	// the spatial index of the edges, built when a point closest to another one is first asked
+	private SegmentIndex segmentIndex;
 
 	/**
 	 * In this constructor we initialize the list containing all the edges
@@ -35,6 +38,9 @@ public final class SingleRoute implements Route {
 		for (int i = 1; i < sortedEdgePos.length; i++) {
 			sortedEdgePos[i] = sortedEdgePos[i - 1] + this.edges.get(i - 1).length();
 		}
+		double time = 0;
+		for (Edge edge : this.edges) time += edge.time();
+		this.time = time;
 	}
 
 	@Override
@@ -47,6 +53,11 @@ public final class SingleRoute implements Route {
 		return sortedEdgePos[sortedEdgePos.length - 1];
 	}
 
+	@Override
+	public double time() {
+		return time;
+	}
+
 	@Override
 	public List<Edge> edges() {
 		return this.edges;
@@ -93,6 +104,21 @@ public final class SingleRoute implements Route {
 		return this.edges.get(edgeIndex(newPosition)).elevationAt(positionOnEdge);
 	}
 
+	@Override
+	public void elevationsAt(double[] positions, double[] elevations) {
+		Preconditions.checkArgument(positions.length == elevations.length);
+		int edgeIndex = 0;
+		for (int i = 0; i < positions.length; i++) {
+			double newPosition = Math2.clamp(0, positions[i], this.length());
+			while (edgeIndex < edges.size() - 1 && sortedEdgePos[edgeIndex + 1] < newPosition) edgeIndex++;
+			// a position at the end of an edge is found as elevationAt finds it, as there may be edges of length 0
+			int index = newPosition == sortedEdgePos[edgeIndex] || newPosition == sortedEdgePos[edgeIndex + 1]
+					? edgeIndex(newPosition)
+					: edgeIndex;
+			elevations[i] = this.edges.get(index).elevationAt(newPosition - sortedEdgePos[index]);
+		}
+	}
+
 	@Override
 	public int nodeClosestTo(double position) {
 		double newPosition = Math2.clamp(0, position, this.length());
@@ -108,16 +134,11 @@ public final class SingleRoute implements Route {
 
 	@Override
 	public RoutePoint pointClosestTo(PointCh point) {
-		double position = Math2.clamp(0, edges.get(0).positionClosestTo(point), edges.get(0).length());
-		PointCh initPoint = edges.get(0).pointAt(position);
-		RoutePoint closest = new RoutePoint(initPoint, position, initPoint.distanceTo(point));
-
-		for (int i = 1; i < edges.size(); i++) {
-			double positionClosest = Math2.clamp(0, edges.get(i).positionClosestTo(point), edges.get(i).length());
-			PointCh pointCh = edges.get(i).pointAt(positionClosest);
-			RoutePoint current = new RoutePoint(pointCh, positionClosest + sortedEdgePos[i], pointCh.distanceTo(point));
-			closest = closest.min(current);
-		}
-		return closest;
+		SegmentIndex index = segmentIndex;
+		if (index == null) segmentIndex = index = SegmentIndex.of(edges);
+		int i = index.closestSegment(point.e(), point.n());
+		double positionClosest = Math2.clamp(0, edges.get(i).positionClosestTo(point), edges.get(i).length());
+		PointCh pointCh = edges.get(i).pointAt(positionClosest);
+		return new RoutePoint(pointCh, positionClosest + sortedEdgePos[i], pointCh.distanceTo(point));
 	}
 }
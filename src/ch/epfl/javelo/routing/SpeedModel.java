@@ -0,0 +1,108 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.Q28_4;
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static ch.epfl.javelo.data.Attribute.*;
+
+/**
+ * This record class represents the model giving the speed of a cyclist, used to estimate travel times.
+ * <p>
+ * On flat ground, the cyclist rides at the flat speed, the whole power being spent against the resistance of the air
+ * and of the road. Uphill, the same power also lifts the cyclist, who slows down; downhill, gravity helps, up to the
+ * maximal descent speed. The speed is then multiplied by a factor depending on the surface of the way.
+ *
+ * @param flatSpeed       the speed on flat ground, in meters per second.
+ * @param power           the power of the cyclist, in watts.
+ * @param mass            the mass of the cyclist and of the bike, in kilograms.
+ * @param maxDescentSpeed the maximal speed, reached in descents, in meters per second.
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public record SpeedModel(double flatSpeed, double power, double mass, double maxDescentSpeed) {
+
+	/**
+	 * The model of a casual city cyclist: 18 km/h on flat ground, 150 W, 90 kg, at most 40 km/h in descents.
+	 */
+	public static final SpeedModel CITY_BIKE = new SpeedModel(18 / 3.6, 150, 90, 40 / 3.6);
+
+	private static final double GRAVITY = 9.81;
+	private static final int SAMPLE_SPACING = 2;
+
+	private static final AttributeSet CARRIED = AttributeSet.of(HIGHWAY_STEPS);
+	private static final AttributeSet WALKED = AttributeSet.of(HIGHWAY_PEDESTRIAN, BICYCLE_DISMOUNT);
+	private static final AttributeSet ROUGH_SURFACE = AttributeSet.of(
+			SURFACE_GROUND, SURFACE_GRASS, SURFACE_DIRT, SURFACE_SAND, SURFACE_PEBBLESTONE,
+			TRACKTYPE_GRADE3, TRACKTYPE_GRADE4, TRACKTYPE_GRADE5);
+	private static final AttributeSet UNPAVED_SURFACE = AttributeSet.of(
+			SURFACE_UNPAVED, SURFACE_GRAVEL, SURFACE_FINE_GRAVEL, SURFACE_COMPACTED, SURFACE_WOOD, TRACKTYPE_GRADE2);
+	private static final AttributeSet BUMPY_SURFACE = AttributeSet.of(SURFACE_SETT, SURFACE_COBBLESTONE);
+
+	/**
+	 * Creates a speed model.
+	 *
+	 * @throws IllegalArgumentException if one of the values is not strictly positive, or if the maximal descent speed
+	 * is smaller than the flat speed.
+	 */
+	public SpeedModel {
+		Preconditions.checkArgument(flatSpeed > 0 && power > 0 && mass > 0 && maxDescentSpeed >= flatSpeed);
+	}
+
+	/**
+	 * Gives the speed of the cyclist on a way of the given slope, before the surface factor is applied.
+	 *
+	 * @param slope the slope (positive uphill), for example 0.04 for 4%.
+	 * @return the speed, in meters per second, between zero (excluded) and the maximal descent speed.
+	 */
+	public double speed(double slope) {
+		// the power is spent against the resistance (the one at flat speed) and gravity
+		double force = power / flatSpeed + mass * GRAVITY * slope;
+		return power / Math.max(force, power / maxDescentSpeed);
+	}
+
+	/**
+	 * Gives the factor by which the speed is multiplied on a way of the given attributes.
+	 *
+	 * @param attributes the attributes of the way.
+	 * @return the factor of the speed, between zero (excluded) and 1.
+	 */
+	public double surfaceFactor(AttributeSet attributes) {
+		if (attributes.intersects(CARRIED)) return 0.15;
+		if (attributes.intersects(WALKED)) return 0.3;
+		if (attributes.intersects(ROUGH_SURFACE)) return 0.6;
+		if (attributes.intersects(UNPAVED_SURFACE)) return 0.8;
+		if (attributes.intersects(BUMPY_SURFACE)) return 0.85;
+		return 1;
+	}
+
+	/**
+	 * Gives the time needed to travel along the given identity edge of the graph, taking the slope of each part of its
+	 * profile into account. An edge without profile is considered to be flat.
+	 *
+	 * @param graph  the graph containing the edge.
+	 * @param edgeId the identity of the edge.
+	 * @return the travel time along the edge, in seconds.
+	 */
+	public double edgeTime(Graph graph, int edgeId) {
+		double length = graph.edgeLength(edgeId);
+		double factor = surfaceFactor(graph.edgeAttributes(edgeId));
+		DoubleUnaryOperator profile = graph.edgeProfile(edgeId);
+		double previous = profile.applyAsDouble(0);
+		if (length == 0 || Double.isNaN(previous)) return length / (speed(0) * factor);
+
+		int sampleCount = 1 + Math2.ceilDiv((int) Math.scalb(length, 4), Q28_4.ofInt(SAMPLE_SPACING));
+		double spacing = length / (sampleCount - 1);
+		double time = 0;
+		for (int i = 1; i < sampleCount; i++) {
+			double elevation = profile.applyAsDouble(i * spacing);
+			time += spacing / speed((elevation - previous) / spacing);
+			previous = elevation;
+		}
+		return time / factor;
+	}
+}
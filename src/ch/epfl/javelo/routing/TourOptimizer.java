@@ -0,0 +1,215 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents an optimizer of the order in which the stops of a ride are visited (a heuristic for the
+ * travelling salesman problem).
+ * <p>
+ * The costs between the stops are computed with one one-to-many search per stop, in parallel. The tour is first built
+ * by going each time to the nearest stop not visited yet, then improved by local search until no move improves it or
+ * the time limit is reached: 2-opt moves reverse a part of the tour, Or-opt moves move one to three consecutive stops
+ * elsewhere. As costs may differ in both directions (one-way streets), the cost of a reversed part is recomputed.
+ * <p>
+ * The first stop always remains the first one. An open tour ends at any stop, or at the last stop if its end is fixed,
+ * while a closed tour goes back to the first stop at the end (the returned order does not repeat it).
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class TourOptimizer {
+
+	// the cost of going from a stop to another one it cannot reach, which is finite so that costs can be subtracted
+	private static final double UNREACHABLE_COST = 1e12;
+	private static final int MAX_MOVED_STOPS = 3;
+	private static final double MIN_IMPROVEMENT = 1e-6;
+
+	private TourOptimizer() {
+	}
+
+	/**
+	 * Gives the costs of the best routes between all the given nodes, computed in parallel.
+	 *
+	 * @param routeComputer the route computer searching the routes.
+	 * @param nodeIds       the identities of the nodes.
+	 * @return the matrix whose element [i][j] is the cost of the best route from the node i to the node j (zero if
+	 * they are the same node, positive infinity if there is no route).
+	 */
+	public static double[][] costMatrix(RouteComputer routeComputer, int[] nodeIds) {
+		double[][] costs = new double[nodeIds.length][];
+		IntStream.range(0, nodeIds.length).parallel().forEach(i -> {
+			ShortestPathTree tree = routeComputer.shortestPathTree(nodeIds[i], Double.POSITIVE_INFINITY, nodeIds);
+			costs[i] = new double[nodeIds.length];
+			for (int j = 0; j < nodeIds.length; j++) costs[i][j] = tree.cost(nodeIds[j]);
+		});
+		return costs;
+	}
+
+	/**
+	 * Gives a good order in which to visit the stops whose costs are given.
+	 *
+	 * @param costs        the costs between the stops, as given by {@link #costMatrix(RouteComputer, int[])}.
+	 * @param closed       true iff the tour goes back to the first stop.
+	 * @param maxNanoTime  the maximal duration of the local search, in nanoseconds.
+	 * @return the indexes of the stops, in the order in which they are visited, starting with 0.
+	 * @throws IllegalArgumentException if the matrix is empty or not square, or if the duration is negative.
+	 */
+	public static int[] optimize(double[][] costs, boolean closed, long maxNanoTime) {
+		return optimize(costs, closed, false, maxNanoTime);
+	}
+
+	/**
+	 * Gives a good order in which to visit the stops whose costs are given, the tour ending at the last stop.
+	 *
+	 * @param costs       the costs between the stops, as given by {@link #costMatrix(RouteComputer, int[])}.
+	 * @param maxNanoTime the maximal duration of the local search, in nanoseconds.
+	 * @return the indexes of the stops, in the order in which they are visited, starting with 0 and ending with the
+	 * last index.
+	 * @throws IllegalArgumentException if the matrix is empty or not square, or if the duration is negative.
+	 */
+	public static int[] optimizeWithFixedEnd(double[][] costs, long maxNanoTime) {
+		return optimize(costs, false, true, maxNanoTime);
+	}
+
+	private static int[] optimize(double[][] costs, boolean closed, boolean fixedEnd, long maxNanoTime) {
+		int count = costs.length;
+		Preconditions.checkArgument(count > 0 && maxNanoTime >= 0);
+		for (double[] row : costs) Preconditions.checkArgument(row.length == count);
+		long deadline = System.nanoTime() + maxNanoTime;
+
+		double[][] c = new double[count][count];
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < count; j++) c[i][j] = Math.min(costs[i][j], UNREACHABLE_COST);
+		}
+
+		// a closed tour is an open tour whose last stop is a copy of the first one, both being fixed
+		int[] tour = nearestNeighbourTour(c, closed, fixedEnd);
+		boolean fixedLast = closed || fixedEnd;
+		int last = fixedLast ? tour.length - 2 : tour.length - 1;
+		boolean improved = true;
+		while (improved && System.nanoTime() < deadline) {
+			improved = twoOpt(c, tour, last, fixedLast);
+			improved |= orOpt(c, tour, last, fixedLast);
+		}
+		return closed ? Arrays.copyOf(tour, count) : tour;
+	}
+
+	private static int[] nearestNeighbourTour(double[][] c, boolean closed, boolean fixedEnd) {
+		int count = c.length;
+		int[] tour = new int[closed ? count + 1 : count];
+		boolean[] visited = new boolean[count];
+		visited[0] = true;
+		if (fixedEnd) {
+			visited[count - 1] = true;
+			tour[count - 1] = count - 1;
+		}
+		for (int k = 1; k < (fixedEnd ? count - 1 : count); k++) {
+			int from = tour[k - 1];
+			int nearest = -1;
+			for (int j = 0; j < count; j++) {
+				if (!visited[j] && (nearest < 0 || c[from][j] < c[from][nearest])) nearest = j;
+			}
+			tour[k] = nearest;
+			visited[nearest] = true;
+		}
+		return tour;
+	}
+
+	/**
+	 * Gives the cost of going from the stop at the given position to the next one, zero after the last position unless
+	 * the stop following it is fixed.
+	 */
+	private static double next(double[][] c, int[] tour, int position, int last, boolean fixedLast) {
+		if (position < last || (fixedLast && position == last)) return c[tour[position]][tour[position + 1]];
+		return 0;
+	}
+
+	/**
+	 * Applies the best improving reversal of a part of the tour starting at each position, if any.
+	 */
+	private static boolean twoOpt(double[][] c, int[] tour, int last, boolean fixedLast) {
+		boolean improved = false;
+		for (int i = 1; i < last; i++) {
+			// the costs of the part from i to j, in both directions, are updated as j grows
+			double forward = 0, backward = 0;
+			double bestDelta = -MIN_IMPROVEMENT;
+			int bestJ = -1;
+			for (int j = i + 1; j <= last; j++) {
+				forward += c[tour[j - 1]][tour[j]];
+				backward += c[tour[j]][tour[j - 1]];
+				double before = c[tour[i - 1]][tour[i]] + forward + next(c, tour, j, last, fixedLast);
+				double after = c[tour[i - 1]][tour[j]] + backward
+						+ (j < last || fixedLast ? c[tour[i]][tour[j + 1]] : 0);
+				if (after - before < bestDelta) {
+					bestDelta = after - before;
+					bestJ = j;
+				}
+			}
+			if (bestJ >= 0) {
+				reverse(tour, i, bestJ);
+				improved = true;
+			}
+		}
+		return improved;
+	}
+
+	/**
+	 * Applies the best improving move of one to three consecutive stops starting at each position, if any.
+	 */
+	private static boolean orOpt(double[][] c, int[] tour, int last, boolean fixedLast) {
+		boolean improved = false;
+		for (int length = 1; length <= MAX_MOVED_STOPS; length++) {
+			for (int i = 1; i + length - 1 <= last; i++) {
+				int j = i + length - 1;
+				// the cost saved by removing the stops from i to j, and the one of linking their neighbours
+				double removed = c[tour[i - 1]][tour[i]] + next(c, tour, j, last, fixedLast);
+				double linked = j < last || fixedLast ? c[tour[i - 1]][tour[j + 1]] : 0;
+
+				double bestDelta = -MIN_IMPROVEMENT;
+				int bestPosition = -1;
+				// the stops are inserted after the position p, outside the moved part
+				for (int p = 0; p <= last; p++) {
+					if (p >= i - 1 && p <= j) continue;
+					double inserted = c[tour[p]][tour[i]]
+							+ (p < last || fixedLast ? c[tour[j]][tour[p + 1]] - c[tour[p]][tour[p + 1]] : 0);
+					double delta = inserted + linked - removed;
+					if (delta < bestDelta) {
+						bestDelta = delta;
+						bestPosition = p;
+					}
+				}
+				if (bestPosition >= 0) {
+					move(tour, i, j, bestPosition);
+					improved = true;
+				}
+			}
+		}
+		return improved;
+	}
+
+	private static void reverse(int[] tour, int i, int j) {
+		for (; i < j; i++, j--) {
+			int stop = tour[i];
+			tour[i] = tour[j];
+			tour[j] = stop;
+		}
+	}
+
+	/**
+	 * Moves the stops from the position i to the position j (included) after the stop at position p.
+	 */
+	private static void move(int[] tour, int i, int j, int p) {
+		int length = j - i + 1;
+		int[] moved = Arrays.copyOfRange(tour, i, j + 1);
+		if (p < i) {
+			System.arraycopy(tour, p + 1, tour, p + 1 + length, i - p - 1);
+			System.arraycopy(moved, 0, tour, p + 1, length);
+		} else {
+			System.arraycopy(tour, j + 1, tour, i, p - j);
+			System.arraycopy(moved, 0, tour, p - length + 1, length);
+		}
+	}
+}
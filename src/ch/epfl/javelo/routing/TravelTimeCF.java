@@ -0,0 +1,36 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+/**
+ * This record class represents the cost function searching the fastest routes. The cost of an edge is its travel time
+ * multiplied by the maximal speed of the model, that is the distance that could be travelled at the maximal speed
+ * meanwhile, so that the cost factor is never smaller than 1. The edges that cannot be used with the given base cost
+ * function (those of infinite cost factor) cannot be used either.
+ *
+ * @param graph the graph containing the edges.
+ * @param base  the cost function telling which edges can be used.
+ * @param times the travel times of the edges of the graph.
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public record TravelTimeCF(Graph graph, CostFunction base, TravelTimes times) implements CostFunction {
+
+	@Override
+	public double costFactor(int nodeId, int edgeId) {
+		if (base.costFactor(nodeId, edgeId) == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+		double length = graph.edgeLength(edgeId);
+		if (length == 0) return 1;
+		return Math.max(1, times.time(edgeId) * times.model().maxDescentSpeed() / length);
+	}
+
+	/**
+	 * Gives the identifier of the cost function, made of the one of the base cost function and of the speed model.
+	 *
+	 * @return the identifier of the cost function.
+	 */
+	@Override
+	public String id() {
+		return getClass().getName() + "(" + base.id() + ", " + times.model() + ")";
+	}
+}
@@ -0,0 +1,150 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.BinaryFiles;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents the travel times along all the edges of a graph, computed once and for all with a speed model
+ * so that routes can be timed, and searched by time, without decoding the profiles of their edges again.
+ * <p>
+ * As computing them decodes the profiles of all the edges, the travel times can be persisted in the file
+ * travel_times.bin of the dataset, as 32 bits floats. They are preceded by the header identifying the dataset (see
+ * {@link BinaryFiles}) and by the four values of the speed model, so that the times of another dataset or of another
+ * model are never used.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class TravelTimes {
+
+	/**
+	 * Name of the optional file containing the travel times of the edges.
+	 */
+	public static final String FILE = "travel_times.bin";
+
+	private static final int HEADER_BYTES = BinaryFiles.HEADER_BYTES + 4 * Double.BYTES;
+
+	private final SpeedModel model;
+	private final FloatBuffer times;
+
+	private TravelTimes(SpeedModel model, FloatBuffer times) {
+		this.model = model;
+		this.times = times;
+	}
+
+	/**
+	 * Computes the travel times along all the edges of the given graph. The work is split among all the available
+	 * processors.
+	 *
+	 * @param graph the graph.
+	 * @param model the speed model.
+	 * @return the travel times of the edges of the graph.
+	 */
+	public static TravelTimes of(Graph graph, SpeedModel model) {
+		float[] times = new float[graph.edgeCount()];
+		IntStream.range(0, times.length).parallel().forEach(edgeId -> times[edgeId] = (float) model.edgeTime(graph, edgeId));
+		return new TravelTimes(model, FloatBuffer.wrap(times));
+	}
+
+	/**
+	 * Gives the travel times of the edges of the given graph with the given model contained in the file
+	 * travel_times.bin of the directory whose path is basePath, or null if there is no such file or if it was computed
+	 * from another version of the dataset (see {@link Graph#datasetVersion()}) or with another model.
+	 *
+	 * @param basePath the path of the directory of the dataset.
+	 * @param graph    the graph loaded from the dataset.
+	 * @param model    the speed model.
+	 * @return the travel times contained in the file, or null if they are not those of the graph and model.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static TravelTimes loadFrom(Path basePath, Graph graph, SpeedModel model) throws IOException {
+		Path file = basePath.resolve(FILE);
+		if (!Files.exists(file)) return null;
+		ByteBuffer content = BinaryFiles.map(file);
+		if (!BinaryFiles.hasHeader(content, graph.datasetVersion(), graph.nodeCount(), graph.edgeCount())) return null;
+		if (content.capacity() != HEADER_BYTES + graph.edgeCount() * Float.BYTES) return null;
+		ByteBuffer modelValues = content.slice(BinaryFiles.HEADER_BYTES, 4 * Double.BYTES);
+		SpeedModel stored = new SpeedModel(modelValues.getDouble(), modelValues.getDouble(),
+				modelValues.getDouble(), modelValues.getDouble());
+		if (!stored.equals(model)) return null;
+		return new TravelTimes(model, content.slice(HEADER_BYTES, content.capacity() - HEADER_BYTES).asFloatBuffer());
+	}
+
+	/**
+	 * Gives the travel times of the edges of the given graph with the given model, read from the file
+	 * travel_times.bin of the directory whose path is basePath if they were already computed, and computed then
+	 * written to that file otherwise.
+	 *
+	 * @param basePath the path of the directory of the dataset.
+	 * @param graph    the graph loaded from the dataset.
+	 * @param model    the speed model.
+	 * @return the travel times of the edges of the graph.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static TravelTimes loadOrCompute(Path basePath, Graph graph, SpeedModel model) throws IOException {
+		TravelTimes times = loadFrom(basePath, graph, model);
+		if (times == null) {
+			times = of(graph, model);
+			times.writeTo(basePath, graph);
+		}
+		return times;
+	}
+
+	/**
+	 * Writes the travel times in the file travel_times.bin of the directory whose path is basePath, which is replaced
+	 * if it already exists.
+	 *
+	 * @param basePath the path of the directory of the dataset.
+	 * @param graph    the graph the travel times were computed from, loaded from the dataset.
+	 * @throws IOException              in case of an input/output error.
+	 * @throws IllegalArgumentException if the travel times are not those of all the edges of the graph.
+	 */
+	public void writeTo(Path basePath, Graph graph) throws IOException {
+		Preconditions.checkArgument(count() == graph.edgeCount());
+		ByteBuffer content = ByteBuffer.allocate(HEADER_BYTES + count() * Float.BYTES);
+		BinaryFiles.putHeader(content, graph.datasetVersion(), graph.nodeCount(), graph.edgeCount());
+		content.position(BinaryFiles.HEADER_BYTES)
+				.putDouble(model.flatSpeed())
+				.putDouble(model.power())
+				.putDouble(model.mass())
+				.putDouble(model.maxDescentSpeed());
+		content.slice(HEADER_BYTES, content.capacity() - HEADER_BYTES).asFloatBuffer().put(times.duplicate().clear());
+		BinaryFiles.write(basePath.resolve(FILE), content);
+	}
+
+	/**
+	 * Gives the speed model used to compute the travel times.
+	 *
+	 * @return the speed model.
+	 */
+	public SpeedModel model() {
+		return model;
+	}
+
+	/**
+	 * Gives the number of edges whose travel time is known.
+	 *
+	 * @return the number of edges.
+	 */
+	public int count() {
+		return times.capacity();
+	}
+
+	/**
+	 * Gives the time needed to travel along the given identity edge.
+	 *
+	 * @param edgeId the identity of the edge.
+	 * @return the travel time along the edge, in seconds.
+	 */
+	public double time(int edgeId) {
+		return times.get(edgeId);
+	}
+}
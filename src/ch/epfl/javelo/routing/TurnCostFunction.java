@@ -0,0 +1,24 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * This interface represents a turn cost function, giving the cost of going from an edge to the next one at a node.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public interface TurnCostFunction {
+
+	/**
+	 * Gives the cost, expressed in the same unit as the cost of the edges, of leaving the "nodeId" identity node by
+	 * the "outEdgeId" identity edge after having reached it by the "inEdgeId" identity edge, coming from the
+	 * "fromNodeId" identity node. This cost must imperatively be positive or zero, and is positive infinity for a
+	 * forbidden turn.
+	 *
+	 * @param fromNodeId the identity of the node the incoming edge starts from.
+	 * @param inEdgeId   the identity of the incoming edge.
+	 * @param nodeId     the identity of the node where the turn takes place.
+	 * @param outEdgeId  the identity of the outgoing edge.
+	 * @return the cost of the turn.
+	 */
+	double turnCost(int fromNodeId, int inEdgeId, int nodeId, int outEdgeId);
+}
@@ -0,0 +1,302 @@
+package ch.epfl.javelo.server;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.ElevationProfile;
+import ch.epfl.javelo.routing.ElevationProfileComputer;
+import ch.epfl.javelo.routing.GpxGenerator;
+import ch.epfl.javelo.routing.MultiRoute;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.javelo.routing.SpeedModel;
+import ch.epfl.javelo.routing.TravelTimes;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class represents a headless routing service, which answers HTTP requests with the routes, elevation profiles
+ * and closest nodes of a graph loaded once, without any graphical interface.
+ * <p>
+ * The endpoints answer GET requests whose points are given in Swiss coordinates, as "e,n" pairs separated by ";":
+ * <ul>
+ *     <li>{@code /nearest?point=e,n[&radius=m]} gives the node closest to the point, in JSON,</li>
+ *     <li>{@code /route?points=e,n;e,n[;...]} gives the best route going through the nodes closest to the points,
+ *     in order, in JSON,</li>
+ *     <li>{@code /profile?points=...} gives the elevation profile of that route, in JSON,</li>
+ *     <li>{@code /gpx?points=...} gives that route in GPX format.</li>
+ * </ul>
+ * Invalid requests are answered with the status 400 and requests whose route or node does not exist with the status
+ * 404, both with a JSON object whose "error" member describes the problem.
+ * <p>
+ * The requests are handled concurrently by a fixed pool of threads (a thread per request would need the virtual
+ * threads of more recent versions of Java), sharing the graph and the route computer: both are only read by the
+ * searches, each thread reusing its own working arrays (a {@link RouteComputer.Workspace}) from a request to the
+ * next.
+ * <p>
+ * Usage: {@code RoutingServer <data dir> [<port> [<threads>]]}, the port being 8080 and the number of threads the
+ * number of processors by default.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class RoutingServer {
+
+	private final static int DEFAULT_PORT = 8080;
+	private final static double SEARCH_DISTANCE = 500;
+	private final static double MAX_SEARCH_DISTANCE = 5_000;
+	private final static double MAX_STEP_LENGTH = 5;
+	private final static int MAX_POINTS = 100;
+	private final static String JSON = "application/json; charset=utf-8";
+	private final static String GPX = "application/gpx+xml; charset=utf-8";
+
+	private final Graph graph;
+	private final RouteComputer routeComputer;
+	private final ThreadLocal<RouteComputer.Workspace> workspaces;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private record Response(int status, String contentType, String body) {
+	}
+
+	@FunctionalInterface
+	private interface Endpoint {
+		Response answer(Map<String, String> parameters) throws IOException;
+	}
+
+	/**
+	 * Creates a routing server, which does not accept requests before being started.
+	 *
+	 * @param graph         the graph.
+	 * @param routeComputer the route computer searching the routes in the graph.
+	 * @param address       the address of the server (whose port is chosen by the system if it is 0).
+	 * @param threadCount   the number of threads handling the requests.
+	 * @throws IOException              if the server cannot be bound to the address.
+	 * @throws IllegalArgumentException if the number of threads is not strictly positive.
+	 */
+	public RoutingServer(Graph graph, RouteComputer routeComputer, InetSocketAddress address, int threadCount)
+			throws IOException {
+		Preconditions.checkArgument(threadCount > 0);
+		this.graph = graph;
+		this.routeComputer = routeComputer;
+		this.workspaces = ThreadLocal.withInitial(routeComputer::newWorkspace);
+		this.server = HttpServer.create(address, 0);
+		this.executor = Executors.newFixedThreadPool(threadCount);
+		server.setExecutor(executor);
+		server.createContext("/nearest", exchange -> handle(exchange, this::nearest));
+		server.createContext("/route", exchange -> handle(exchange, this::route));
+		server.createContext("/profile", exchange -> handle(exchange, this::profile));
+		server.createContext("/gpx", exchange -> handle(exchange, this::gpx));
+	}
+
+	public static void main(String[] args) throws IOException {
+		Preconditions.checkArgument(1 <= args.length && args.length <= 3);
+		Path dataDirectory = Path.of(args[0]);
+		Graph graph = Graph.loadFrom(dataDirectory);
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+		int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		RouteComputer computer = new RouteComputer(graph, new CityBikeCF(graph))
+				.withTravelTimes(TravelTimes.loadOrCompute(dataDirectory, graph, SpeedModel.CITY_BIKE));
+		RoutingServer server = new RoutingServer(graph, computer, new InetSocketAddress(port), threadCount);
+		server.start();
+		System.out.printf("JaVelo routing server listening on port %d with %d threads%n", server.port(), threadCount);
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests, closes the connections and stops the threads once the requests being handled are
+	 * answered.
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	/**
+	 * Gives the port the server is bound to.
+	 *
+	 * @return the port of the server.
+	 */
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+		try {
+			Response response;
+			if (!exchange.getRequestMethod().equals("GET")) {
+				response = error(405, "only GET requests are accepted");
+			} else {
+				try {
+					response = endpoint.answer(parameters(exchange.getRequestURI().getRawQuery()));
+				} catch (IllegalArgumentException e) {
+					response = error(400, e.getMessage() == null ? "invalid request" : e.getMessage());
+				} catch (RuntimeException e) {
+					response = error(500, "internal error");
+				}
+			}
+			byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", response.contentType());
+			exchange.sendResponseHeaders(response.status(), body.length);
+			exchange.getResponseBody().write(body);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static Map<String, String> parameters(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null) return parameters;
+		for (String parameter : query.split("&")) {
+			int equal = parameter.indexOf('=');
+			if (equal < 0) continue;
+			parameters.put(URLDecoder.decode(parameter.substring(0, equal), StandardCharsets.UTF_8),
+					URLDecoder.decode(parameter.substring(equal + 1), StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	private static String required(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		if (value == null) throw new IllegalArgumentException("missing parameter " + name);
+		return value;
+	}
+
+	private static PointCh point(String text) {
+		String[] coordinates = text.split(",");
+		if (coordinates.length != 2) throw new IllegalArgumentException("invalid point " + text);
+		double e = Double.parseDouble(coordinates[0].strip());
+		double n = Double.parseDouble(coordinates[1].strip());
+		return new PointCh(e, n);
+	}
+
+	private Response nearest(Map<String, String> parameters) {
+		PointCh point = point(required(parameters, "point"));
+		double radius = parameters.containsKey("radius") ? Double.parseDouble(parameters.get("radius")) : SEARCH_DISTANCE;
+		Preconditions.checkArgument(0 <= radius && radius <= MAX_SEARCH_DISTANCE);
+		int nodeId = graph.nodeClosestTo(point, radius);
+		if (nodeId < 0) return error(404, "no node close to the point");
+		PointCh nodePoint = graph.nodePoint(nodeId);
+		return new Response(200, JSON, "{\"nodeId\":" + nodeId
+				+ ",\"e\":" + json(nodePoint.e())
+				+ ",\"n\":" + json(nodePoint.n())
+				+ ",\"distance\":" + json(nodePoint.distanceTo(point)) + "}");
+	}
+
+	/**
+	 * Gives the best route going through the nodes closest to the points of the request, in order, or null if there
+	 * is no such route.
+	 */
+	private Route routeOf(Map<String, String> parameters) {
+		String[] texts = required(parameters, "points").split(";");
+		Preconditions.checkArgument(2 <= texts.length && texts.length <= MAX_POINTS);
+		int[] nodeIds = new int[texts.length];
+		for (int i = 0; i < texts.length; i++) {
+			nodeIds[i] = graph.nodeClosestTo(point(texts[i]), SEARCH_DISTANCE);
+			if (nodeIds[i] < 0) return null;
+		}
+		List<Route> segments = new ArrayList<>();
+		for (int i = 1; i < nodeIds.length; i++) {
+			if (nodeIds[i - 1] == nodeIds[i]) continue;
+			Route segment = routeComputer.bestRouteBetween(nodeIds[i - 1], nodeIds[i], workspaces.get());
+			if (segment == null) return null;
+			segments.add(segment);
+		}
+		return segments.isEmpty() ? null : new MultiRoute(segments);
+	}
+
+	private Response route(Map<String, String> parameters) {
+		Route route = routeOf(parameters);
+		if (route == null) return error(404, "no route between the points");
+		ElevationProfile profile = ElevationProfileComputer.elevationProfile(route, MAX_STEP_LENGTH);
+		StringBuilder json = new StringBuilder()
+				.append("{\"length\":").append(json(route.length()))
+				.append(",\"time\":").append(json(route.time()))
+				.append(",\"totalAscent\":").append(json(profile.totalAscent()))
+				.append(",\"totalDescent\":").append(json(profile.totalDescent()))
+				.append(",\"points\":[");
+		List<PointCh> points = route.points();
+		for (int i = 0; i < points.size(); i++) {
+			if (i > 0) json.append(',');
+			json.append('[').append(json(points.get(i).e())).append(',').append(json(points.get(i).n())).append(']');
+		}
+		return new Response(200, JSON, json.append("]}").toString());
+	}
+
+	private Response profile(Map<String, String> parameters) {
+		Route route = routeOf(parameters);
+		if (route == null) return error(404, "no route between the points");
+		ElevationProfile profile = ElevationProfileComputer.elevationProfile(route, MAX_STEP_LENGTH);
+		StringBuilder json = new StringBuilder()
+				.append("{\"length\":").append(json(profile.length()))
+				.append(",\"step\":").append(json(profile.sampleStep()))
+				.append(",\"minElevation\":").append(json(profile.minElevation()))
+				.append(",\"maxElevation\":").append(json(profile.maxElevation()))
+				.append(",\"totalAscent\":").append(json(profile.totalAscent()))
+				.append(",\"totalDescent\":").append(json(profile.totalDescent()))
+				.append(",\"elevations\":[");
+		for (int i = 0; i < profile.sampleCount(); i++) {
+			if (i > 0) json.append(',');
+			json.append(json(profile.elevationSample(i)));
+		}
+		return new Response(200, JSON, json.append("]}").toString());
+	}
+
+	private Response gpx(Map<String, String> parameters) throws IOException {
+		Route route = routeOf(parameters);
+		if (route == null) return error(404, "no route between the points");
+		StringWriter writer = new StringWriter();
+		GpxGenerator.writeGpx(route, ElevationProfileComputer.elevationProfile(route, MAX_STEP_LENGTH), writer);
+		return new Response(200, GPX, writer.toString());
+	}
+
+	/**
+	 * Gives the response with the given status whose JSON object describes the given error, the message being escaped
+	 * as it may contain URL-decoded parts of the request, like line breaks.
+	 */
+	private static Response error(int status, String message) {
+		StringBuilder json = new StringBuilder("{\"error\":\"");
+		for (int i = 0; i < message.length(); i++) {
+			char c = message.charAt(i);
+			switch (c) {
+				case '"' -> json.append("\\\"");
+				case '\\' -> json.append("\\\\");
+				case '\n' -> json.append("\\n");
+				case '\r' -> json.append("\\r");
+				case '\t' -> json.append("\\t");
+				default -> {
+					if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+					else json.append(c);
+				}
+			}
+		}
+		return new Response(status, JSON, json.append("\"}").toString());
+	}
+
+	/**
+	 * Gives the JSON representation of the given number, null if it is not finite (like an unknown travel time).
+	 */
+	private static String json(double value) {
+		return Double.isFinite(value) ? Double.toString(value) : "null";
+	}
+}
@@ -0,0 +1,304 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.Ch1903;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.EdgeOverlay;
+import ch.epfl.javelo.routing.ElevationProfile;
+import ch.epfl.javelo.routing.ElevationProfileComputer;
+import ch.epfl.javelo.routing.FilteredGraph;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class represents an offline tool computing the best routes between many pairs of points, read from a CSV file,
+ * and writing their length, ascent, descent and cost (and optionally their points) to another CSV file.
+ * <p>
+ * Each line of the input file gives an origin and a destination, as four numbers optionally preceded by an identity:
+ * {@code [id,]x1,y1,x2,y2}. The points are Swiss coordinates (E, N) if both are in Switzerland that way, and WGS 84
+ * coordinates in degrees (latitude, longitude) otherwise. A first line which does not contain numbers is a header, and
+ * is ignored. The lines without an identity are identified by their number among the lines of points, from 1.
+ * <p>
+ * Each line of the output file gives, in the order of the input file: the identity of the pair, its status ("ok",
+ * "invalid" if the line cannot be read, "no_node" if a point has no node close to it, or "no_route"), the nodes closest
+ * to the points, and the length, ascent, descent and cost of the route, empty if there is none. The points of the
+ * route, as "e n" pairs separated by ";", can be added in a last column.
+ * <p>
+ * The lines are read and written by the calling thread, and routed by batches by a fixed pool of threads, each one
+ * reusing its own workspace for all its searches. As the number of batches being routed or waiting to be written is
+ * bounded, the memory used does not depend on the size of the files.
+ * <p>
+ * Usage: {@code BatchRouter <data dir> <input csv> <output csv> [--geometry] [--threads=<n>]}, the number of threads
+ * being the number of processors by default.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class BatchRouter {
+
+	private final static int BATCH_SIZE = 256;
+	private final static int BATCHES_PER_THREAD = 4;
+	private final static double SEARCH_DISTANCE = 500;
+	private final static double MAX_STEP_LENGTH = 5;
+	private final static long PROGRESS_INTERVAL_NANOS = 5_000_000_000L;
+	private final static String HEADER = "id,status,from_node,to_node,length,ascent,descent,cost";
+
+	private final Graph graph;
+	private final RouteComputer routeComputer;
+	private final int threadCount;
+	private final boolean withGeometry;
+	private final ThreadLocal<RouteComputer.Workspace> workspaces;
+
+	/**
+	 * The totals of a batch routing.
+	 *
+	 * @param pairs     the number of pairs read.
+	 * @param routed    the number of pairs having a route.
+	 * @param invalid   the number of lines which could not be read.
+	 * @param unsnapped the number of pairs having a point without any node close to it.
+	 * @param unrouted  the number of pairs whose nodes are not linked by any route.
+	 * @param nanos     the duration of the routing, in nanoseconds.
+	 */
+	public record Summary(long pairs, long routed, long invalid, long unsnapped, long unrouted, long nanos) {
+		/**
+		 * Gives the number of pairs routed per second.
+		 *
+		 * @return the throughput of the routing.
+		 */
+		public double throughput() {
+			return nanos == 0 ? 0 : pairs * 1e9 / nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d pairs (%d routed, %d invalid, %d without node, %d without route) in %.1f s, %.0f pairs/s",
+					pairs, routed, invalid, unsnapped, unrouted, nanos / 1e9, throughput());
+		}
+	}
+
+	private record Batch(String text, int pairs, int routed, int invalid, int unsnapped, int unrouted) {
+	}
+
+	/**
+	 * Creates a batch router.
+	 *
+	 * @param graph         the graph.
+	 * @param routeComputer the route computer searching the routes in the graph.
+	 * @param threadCount   the number of threads searching the routes.
+	 * @param withGeometry  true if and only if the points of the routes are written.
+	 * @throws IllegalArgumentException if the number of threads is not strictly positive.
+	 */
+	public BatchRouter(Graph graph, RouteComputer routeComputer, int threadCount, boolean withGeometry) {
+		Preconditions.checkArgument(threadCount > 0);
+		this.graph = graph;
+		this.routeComputer = routeComputer;
+		this.threadCount = threadCount;
+		this.withGeometry = withGeometry;
+		this.workspaces = ThreadLocal.withInitial(routeComputer::newWorkspace);
+	}
+
+	public static void main(String[] args) throws IOException {
+		boolean withGeometry = false;
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		List<String> paths = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.equals("--geometry")) withGeometry = true;
+			else if (arg.startsWith("--threads=")) threadCount = Integer.parseInt(arg.substring("--threads=".length()));
+			else paths.add(arg);
+		}
+		if (paths.size() != 3) {
+			System.err.println("usage: BatchRouter <data dir> <input csv> <output csv> [--geometry] [--threads=<n>]");
+			System.exit(1);
+		}
+		Graph graph = Graph.loadFrom(Path.of(paths.get(0)));
+		RouteComputer computer = new RouteComputer(FilteredGraph.of(graph, new CityBikeCF(graph)), new EdgeOverlay());
+		BatchRouter router = new BatchRouter(graph, computer, threadCount, withGeometry);
+		try (BufferedReader input = Files.newBufferedReader(Path.of(paths.get(1)));
+			 Writer output = Files.newBufferedWriter(Path.of(paths.get(2)))) {
+			System.out.println(router.route(input, output, System.err));
+		}
+	}
+
+	/**
+	 * Routes the pairs of points of the given input and writes the routes found with the given output, neither of
+	 * which is closed.
+	 *
+	 * @param input    the reader of the pairs of points.
+	 * @param output   the writer of the routes.
+	 * @param progress the stream on which the progress is regularly printed, or null to print nothing.
+	 * @return the totals of the routing.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public Summary route(BufferedReader input, Writer output, PrintStream progress) throws IOException {
+		long start = System.nanoTime();
+		long lastReport = start;
+		long pairs = 0, routed = 0, invalid = 0, unsnapped = 0, unrouted = 0;
+		output.write(withGeometry ? HEADER + ",geometry\n" : HEADER + "\n");
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			ArrayDeque<Future<Batch>> pending = new ArrayDeque<>();
+			boolean firstLine = true;
+			long lineNumber = 0;
+			List<String> lines = new ArrayList<>(BATCH_SIZE);
+			String line;
+			do {
+				line = input.readLine();
+				if (line != null && !line.isBlank()) {
+					if (firstLine && isHeader(line)) {
+						firstLine = false;
+						continue;
+					}
+					firstLine = false;
+					lineNumber++;
+					lines.add(line.split(",", -1).length == 5 ? line : lineNumber + "," + line);
+				}
+				if (lines.size() == BATCH_SIZE || (line == null && !lines.isEmpty())) {
+					List<String> batch = lines;
+					pending.add(executor.submit(() -> routeBatch(batch)));
+					lines = new ArrayList<>(BATCH_SIZE);
+				}
+				// the oldest batches are written once enough of them are pending, or once the input is over
+				while (pending.size() >= threadCount * BATCHES_PER_THREAD || (line == null && !pending.isEmpty())) {
+					Batch batch = join(pending.remove());
+					output.write(batch.text());
+					pairs += batch.pairs();
+					routed += batch.routed();
+					invalid += batch.invalid();
+					unsnapped += batch.unsnapped();
+					unrouted += batch.unrouted();
+					long now = System.nanoTime();
+					if (progress != null && now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+						lastReport = now;
+						progress.printf("%d pairs routed, %.0f pairs/s%n", pairs, pairs * 1e9 / (now - start));
+					}
+				}
+			} while (line != null);
+		} finally {
+			executor.shutdownNow();
+		}
+		output.flush();
+		return new Summary(pairs, routed, invalid, unsnapped, unrouted, System.nanoTime() - start);
+	}
+
+	private static boolean isHeader(String line) {
+		String[] fields = line.split(",", -1);
+		try {
+			Double.parseDouble(fields[fields.length - 1].strip());
+			return false;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	private static Batch join(Future<Batch> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+			throw new Error(e.getCause());
+		}
+	}
+
+	/**
+	 * Routes the given lines, each one starting with the identity of its pair, with the workspace of the current
+	 * thread.
+	 */
+	private Batch routeBatch(List<String> lines) {
+		RouteComputer.Workspace workspace = workspaces.get();
+		StringBuilder text = new StringBuilder();
+		int routed = 0, invalid = 0, unsnapped = 0, unrouted = 0;
+		for (String line : lines) {
+			String[] fields = line.split(",", -1);
+			String id = fields[0].strip();
+			PointCh from, to;
+			try {
+				Preconditions.checkArgument(fields.length == 5);
+				double[] values = new double[4];
+				for (int i = 0; i < 4; i++) values[i] = Double.parseDouble(fields[i + 1].strip());
+				boolean swiss = SwissBounds.containsEN(values[0], values[1]) && SwissBounds.containsEN(values[2], values[3]);
+				from = swiss ? new PointCh(values[0], values[1]) : fromLatLon(values[0], values[1]);
+				to = swiss ? new PointCh(values[2], values[3]) : fromLatLon(values[2], values[3]);
+			} catch (IllegalArgumentException e) {
+				invalid++;
+				text.append(id).append(",invalid,,,,,,").append(withGeometry ? ",\n" : "\n");
+				continue;
+			}
+
+			int fromNodeId = graph.nodeClosestTo(from, SEARCH_DISTANCE);
+			int toNodeId = graph.nodeClosestTo(to, SEARCH_DISTANCE);
+			Route route = null;
+			String status;
+			if (fromNodeId < 0 || toNodeId < 0) {
+				unsnapped++;
+				status = "no_node";
+			} else if (fromNodeId == toNodeId || (route = routeComputer.bestRouteBetween(fromNodeId, toNodeId, workspace)) != null) {
+				routed++;
+				status = "ok";
+			} else {
+				unrouted++;
+				status = "no_route";
+			}
+
+			text.append(id).append(',').append(status)
+					.append(',').append(fromNodeId < 0 ? "" : fromNodeId)
+					.append(',').append(toNodeId < 0 ? "" : toNodeId);
+			if (route != null) {
+				ElevationProfile profile = ElevationProfileComputer.elevationProfile(route, MAX_STEP_LENGTH);
+				text.append(',').append(route.length())
+						.append(',').append(profile.totalAscent())
+						.append(',').append(profile.totalDescent())
+						.append(',').append(workspace.lastCost());
+			} else if (status.equals("ok")) {
+				// both points are closest to the same node, the route is empty
+				text.append(",0.0,0.0,0.0,0.0");
+			} else {
+				text.append(",,,,");
+			}
+			if (withGeometry) {
+				text.append(',');
+				if (route != null) {
+					List<PointCh> points = route.points();
+					for (int i = 0; i < points.size(); i++) {
+						if (i > 0) text.append(';');
+						text.append(points.get(i).e()).append(' ').append(points.get(i).n());
+					}
+				}
+			}
+			text.append('\n');
+		}
+		return new Batch(text.toString(), lines.size(), routed, invalid, unsnapped, unrouted);
+	}
+
+	/**
+	 * Gives the point of the given WGS 84 coordinates, in degrees.
+	 *
+	 * @throws IllegalArgumentException if the point is not in Switzerland.
+	 */
+	private static PointCh fromLatLon(double lat, double lon) {
+		double lonRad = Math.toRadians(lon);
+		double latRad = Math.toRadians(lat);
+		return new PointCh(Ch1903.e(lonRad, latRad), Ch1903.n(lonRad, latRad));
+	}
+}
@@ -0,0 +1,386 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.BinaryFiles;
+import ch.epfl.javelo.data.GraphOsmIds;
+import ch.epfl.javelo.data.GraphSectors;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class represents a builder of JaVelo datasets, shared by the tools producing new datasets.
+ * <p>
+ * Nodes and edges are added in any order, and the dataset is written by {@link #write(Path)}: the nodes are then
+ * numbered along a Hilbert curve (which keeps the nodes of a sector contiguous), the sectors are regenerated, the
+ * out-edges of every node are stored contiguously and the attribute sets are deduplicated.
+ * <p>
+ * As nodes.bin only allows 15 edges leaving a node, the extra ones are dropped when writing. The two edges of a pair
+ * added by {@link #addEdgePair} are always dropped together, so that no road becomes passable in one direction only.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+final class DatasetBuilder {
+
+	/**
+	 * A profile encoded in the format of elevations.bin, with the compression type giving the smallest size.
+	 * The elevation gains are those of the decoded samples, in the direction of the samples and in the opposite one.
+	 */
+	record EncodedProfile(int type, short[] shorts, int forwardGainQ28_4, int backwardGainQ28_4) {
+		static final EncodedProfile NONE = new EncodedProfile(0, new short[0], 0, 0);
+	}
+
+	private final static int SECTOR_CURVE_ORDER = 7;
+	private final static int NODE_CURVE_ORDER = 9;
+	private final static int CELLS_PER_SECTOR_SIDE = 1 << NODE_CURVE_ORDER;
+	private final static int NODE_ID_BITS = 28;
+	private final static int MAX_OUT_DEGREE = 15;
+	private final static int BYTES_PER_EDGE = 10;
+	private final static int OFFSET_PROFILE_TYPE = 30;
+	private final static int MAX_UQ12_4 = 0xFFFF;
+	private final static int INITIAL_CAPACITY = 1 << 10;
+
+	// nodes, indexed by their order of addition
+	private int[] nodeE = new int[INITIAL_CAPACITY], nodeN = new int[INITIAL_CAPACITY];
+	private long[] nodeOsmIds = new long[INITIAL_CAPACITY];
+	private int nodeCount = 0;
+	private boolean osmIdsKnown = false;
+
+	// edges, indexed by their order of addition. The target is complemented if the edge is inverted, the twin is the
+	// opposite edge of the same pair (or -1).
+	private int[] edgeFrom = new int[INITIAL_CAPACITY], edgeTo = new int[INITIAL_CAPACITY];
+	private int[] edgeTwin = new int[INITIAL_CAPACITY];
+	private int[] edgeLengthAndGain = new int[INITIAL_CAPACITY], edgeAttributes = new int[INITIAL_CAPACITY];
+	private int[] edgeProfileIds = new int[INITIAL_CAPACITY];
+	private int edgeCount = 0;
+
+	private short[] elevations = new short[INITIAL_CAPACITY];
+	private int elevationCount = 0;
+
+	private final Map<Long, Integer> attributeIndexes = new HashMap<>();
+	private long[] attributeSets = new long[INITIAL_CAPACITY];
+
+	private int droppedEdges = 0;
+
+	/**
+	 * Adds a node to the dataset.
+	 *
+	 * @param e     the east coordinate of the node.
+	 * @param n     the north coordinate of the node.
+	 * @param osmId the OpenStreetMap identity of the node, or -1 if it is unknown or if the node is not an OpenStreetMap
+	 *              node (nodes_osmid.bin is only written if at least one node has an identity).
+	 * @return the index of the node, to be used when adding edges (it is not its final identity).
+	 * @throws IllegalArgumentException if the node is not inside Switzerland.
+	 */
+	int addNode(double e, double n, long osmId) {
+		Preconditions.checkArgument(SwissBounds.containsEN(e, n));
+		if (nodeCount == nodeE.length) {
+			nodeE = Arrays.copyOf(nodeE, 2 * nodeCount);
+			nodeN = Arrays.copyOf(nodeN, 2 * nodeCount);
+			nodeOsmIds = Arrays.copyOf(nodeOsmIds, 2 * nodeCount);
+		}
+		nodeE[nodeCount] = (int) Math.rint(Math.scalb(e, 4));
+		nodeN[nodeCount] = (int) Math.rint(Math.scalb(n, 4));
+		nodeOsmIds[nodeCount] = osmId;
+		osmIdsKnown |= osmId >= 0;
+		return nodeCount++;
+	}
+
+	/**
+	 * Gives the number of nodes added so far.
+	 *
+	 * @return the number of nodes.
+	 */
+	int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Gives the number of edges added so far.
+	 *
+	 * @return the number of edges.
+	 */
+	int edgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * Gives the number of edges that could not be written because their starting node, or the one of their twin,
+	 * already had the maximal number of out-edges (15). Only known once the dataset is written.
+	 *
+	 * @return the number of dropped edges.
+	 */
+	int droppedEdges() {
+		return droppedEdges;
+	}
+
+	/**
+	 * Adds a profile, already encoded in the format of elevations.bin.
+	 *
+	 * @param type   the compression type of the profile (0 if the edges using it have no profile).
+	 * @param shorts the encoded samples.
+	 * @return the identity of the profile, in the format of profile_ids.bin.
+	 */
+	int addProfile(int type, short[] shorts) {
+		if (type == 0) return 0;
+		if (elevationCount + shorts.length > elevations.length)
+			elevations = Arrays.copyOf(elevations, Math.max(2 * elevations.length, elevationCount + shorts.length));
+		System.arraycopy(shorts, 0, elevations, elevationCount, shorts.length);
+		int profileId = (type << OFFSET_PROFILE_TYPE) | elevationCount;
+		elevationCount += shorts.length;
+		return profileId;
+	}
+
+	/**
+	 * Adds an edge to the dataset.
+	 *
+	 * @param from           the index of the starting node.
+	 * @param to             the index of the arrival node.
+	 * @param inverted       true iff the edge goes in the opposite direction of its profile (and OSM way).
+	 * @param lengthQ28_4    the length of the edge, in UQ12.4.
+	 * @param gainQ28_4      the total positive elevation of the edge, in UQ12.4.
+	 * @param attributesBits the bits of the attribute set of the edge.
+	 * @param profileId      the identity of the profile of the edge, as returned by {@link #addProfile(int, short[])}.
+	 * @throws IllegalArgumentException if the length or the gain do not fit in UQ12.4.
+	 */
+	void addEdge(int from, int to, boolean inverted, int lengthQ28_4, int gainQ28_4, long attributesBits, int profileId) {
+		Preconditions.checkArgument(0 <= lengthQ28_4 && lengthQ28_4 <= MAX_UQ12_4);
+		if (edgeCount == edgeFrom.length) {
+			edgeFrom = Arrays.copyOf(edgeFrom, 2 * edgeCount);
+			edgeTo = Arrays.copyOf(edgeTo, 2 * edgeCount);
+			edgeTwin = Arrays.copyOf(edgeTwin, 2 * edgeCount);
+			edgeLengthAndGain = Arrays.copyOf(edgeLengthAndGain, 2 * edgeCount);
+			edgeAttributes = Arrays.copyOf(edgeAttributes, 2 * edgeCount);
+			edgeProfileIds = Arrays.copyOf(edgeProfileIds, 2 * edgeCount);
+		}
+		edgeFrom[edgeCount] = from;
+		edgeTo[edgeCount] = inverted ? ~to : to;
+		edgeTwin[edgeCount] = -1;
+		edgeLengthAndGain[edgeCount] = (lengthQ28_4 << Short.SIZE) | Math.min(gainQ28_4, MAX_UQ12_4);
+		edgeAttributes[edgeCount] = attributeIndex(attributesBits);
+		edgeProfileIds[edgeCount] = profileId;
+		edgeCount++;
+	}
+
+	/**
+	 * Adds the two opposite edges linking the given nodes, which share the given profile. The profile goes from
+	 * "from" to "to", the edge going from "to" to "from" is thus inverted. The two edges are either both written or
+	 * both dropped.
+	 *
+	 * @param from           the index of the first node.
+	 * @param to             the index of the second node.
+	 * @param lengthQ28_4    the length of the edges, in UQ12.4.
+	 * @param attributesBits the bits of the attribute set of the edges.
+	 * @param profile        the encoded profile of the edges, going from "from" to "to".
+	 */
+	void addEdgePair(int from, int to, int lengthQ28_4, long attributesBits, EncodedProfile profile) {
+		int profileId = addProfile(profile.type(), profile.shorts());
+		addEdge(from, to, false, lengthQ28_4, profile.forwardGainQ28_4(), attributesBits, profileId);
+		addEdge(to, from, true, lengthQ28_4, profile.backwardGainQ28_4(), attributesBits, profileId);
+		edgeTwin[edgeCount - 2] = edgeCount - 1;
+		edgeTwin[edgeCount - 1] = edgeCount - 2;
+	}
+
+	/**
+	 * Encodes the given elevation samples with the compression type giving the smallest size: type 3 if all the
+	 * differences between consecutive samples fit in Q0.4, type 2 if they fit in Q4.4, type 1 otherwise.
+	 * This method can be called concurrently.
+	 *
+	 * @param samples the elevation samples, in meters, or null if the edge has no profile.
+	 * @return the encoded profile, {@link EncodedProfile#NONE} if the samples are null, contain NaN or less than two values.
+	 */
+	static EncodedProfile encodeProfile(float[] samples) {
+		if (samples == null || samples.length < 2) return EncodedProfile.NONE;
+		int[] q = new int[samples.length];
+		for (int i = 0; i < samples.length; i++) {
+			if (Float.isNaN(samples[i])) return EncodedProfile.NONE;
+			q[i] = Math2.clamp(0, (int) Math.rint(Math.scalb(samples[i], 4)), MAX_UQ12_4);
+		}
+		int maxDelta = 0;
+		int forwardGain = 0, backwardGain = 0;
+		for (int i = 1; i < q.length; i++) {
+			int delta = q[i] - q[i - 1];
+			maxDelta = Math.max(maxDelta, delta >= 0 ? delta : -delta - 1);
+			if (delta > 0) forwardGain += delta;
+			else backwardGain -= delta;
+		}
+		int type = maxDelta < (1 << 3) ? 3 : maxDelta < (1 << 7) ? 2 : 1;
+		int perShort = 1 << (type - 1);
+		int bits = Short.SIZE / perShort;
+
+		short[] shorts = new short[1 + Math2.ceilDiv(q.length - 1, perShort)];
+		shorts[0] = (short) q[0];
+		for (int s = 1; s < shorts.length; s++) {
+			int packed = 0;
+			for (int j = 0; j < perShort; j++) {
+				int i = 1 + (s - 1) * perShort + j;
+				int value = i >= q.length ? 0 : type == 1 ? q[i] : q[i] - q[i - 1];
+				packed = (packed << bits) | (value & ((1 << bits) - 1));
+			}
+			shorts[s] = (short) packed;
+		}
+		return new EncodedProfile(type, shorts, forwardGain, backwardGain);
+	}
+
+	/**
+	 * Gives the number of samples of the profile of an edge of the given length.
+	 *
+	 * @param lengthQ28_4 the length of the edge, in UQ12.4.
+	 * @return the number of samples of the profile.
+	 */
+	static int sampleCount(int lengthQ28_4) {
+		return 1 + Math2.ceilDiv(lengthQ28_4, 2 << 4);
+	}
+
+	/**
+	 * Gives the number of shorts of elevations.bin used by a profile of the given type, for an edge of the given length.
+	 *
+	 * @param profileType the compression type of the profile (1, 2 or 3).
+	 * @param lengthQ28_4 the length of the edge, in UQ12.4.
+	 * @return the number of shorts used by the profile.
+	 */
+	static int profileShortCount(int profileType, int lengthQ28_4) {
+		return 1 + Math2.ceilDiv(sampleCount(lengthQ28_4) - 1, 1 << (profileType - 1));
+	}
+
+	/**
+	 * Gives the index of a point along the curve used to number the nodes: the index of the sector along the curve
+	 * visiting the sectors, followed by the index of the point along the curve covering its sector.
+	 *
+	 * @param sector the index of the sector containing the point.
+	 * @param e      the east coordinate of the point.
+	 * @param n      the north coordinate of the point.
+	 * @return the index of the point along the curve.
+	 */
+	static long curveIndex(int sector, double e, double n) {
+		int sectorX = sector % GraphSectors.NUMBER_OF_SECTOR_PER_SIDE;
+		int sectorY = sector / GraphSectors.NUMBER_OF_SECTOR_PER_SIDE;
+		double xInSector = (e - SwissBounds.MIN_E - sectorX * GraphSectors.SECTOR_WIDTH) / GraphSectors.SECTOR_WIDTH;
+		double yInSector = (n - SwissBounds.MIN_N - sectorY * GraphSectors.SECTOR_HEIGHT) / GraphSectors.SECTOR_HEIGHT;
+		int x = Math2.clamp(0, (int) (xInSector * CELLS_PER_SECTOR_SIDE), CELLS_PER_SECTOR_SIDE - 1);
+		int y = Math2.clamp(0, (int) (yInSector * CELLS_PER_SECTOR_SIDE), CELLS_PER_SECTOR_SIDE - 1);
+		long sectorIndex = Math2.hilbertIndex(SECTOR_CURVE_ORDER, sectorX, sectorY);
+		return (sectorIndex << (2 * NODE_CURVE_ORDER)) | Math2.hilbertIndex(NODE_CURVE_ORDER, x, y);
+	}
+
+	/**
+	 * Writes the dataset in the given directory (created if needed).
+	 *
+	 * @param out the directory where the dataset is written.
+	 * @return an array giving, for each node index, the identity of the node in the written dataset.
+	 * @throws IOException              in case of an input/output error.
+	 * @throws IllegalArgumentException if a sector contains more than 65535 nodes.
+	 */
+	int[] write(Path out) throws IOException {
+		// Nodes: number them along the curve, the nodes of a sector being then contiguous.
+		long[] keys = new long[nodeCount];
+		int[] sectorOf = new int[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			double e = Math.scalb((double) nodeE[i], -4);
+			double n = Math.scalb((double) nodeN[i], -4);
+			sectorOf[i] = GraphSectors.sectorIndexOf(e, n);
+			keys[i] = (curveIndex(sectorOf[i], e, n) << NODE_ID_BITS) | i;
+		}
+		Arrays.parallelSort(keys);
+		int[] indexOf = new int[nodeCount];
+		int[] idOf = new int[nodeCount];
+		for (int id = 0; id < nodeCount; id++) {
+			indexOf[id] = (int) (keys[id] & ((1 << NODE_ID_BITS) - 1));
+			idOf[indexOf[id]] = id;
+		}
+
+		ByteBuffer sectors = ByteBuffer.allocate(GraphSectors.SECTOR_COUNT * GraphSectors.SECTOR_SIZE_BYTE);
+		for (int id = 0; id < nodeCount; ) {
+			int sector = sectorOf[indexOf[id]];
+			int start = id;
+			while (id < nodeCount && sectorOf[indexOf[id]] == sector) id++;
+			Preconditions.checkArgument(id - start <= MAX_UQ12_4);
+			sectors.putInt(sector * GraphSectors.SECTOR_SIZE_BYTE, start);
+			sectors.putShort(sector * GraphSectors.SECTOR_SIZE_BYTE + 4, (short) (id - start));
+		}
+
+		// Edges: drop the last added ones leaving the nodes having too many, with their twin. As dropping an edge never
+		// increases an out-degree, a single pass from the last edge keeps the first 15 remaining edges of every node.
+		boolean[] dropped = new boolean[edgeCount];
+		int[] outDegreeOf = new int[nodeCount];
+		for (int e = 0; e < edgeCount; e++) outDegreeOf[edgeFrom[e]]++;
+		droppedEdges = 0;
+		for (int e = edgeCount - 1; e >= 0; e--) {
+			if (dropped[e] || outDegreeOf[edgeFrom[e]] <= MAX_OUT_DEGREE) continue;
+			for (int d : new int[]{e, edgeTwin[e]}) {
+				if (d < 0 || dropped[d]) continue;
+				dropped[d] = true;
+				outDegreeOf[edgeFrom[d]]--;
+				droppedEdges++;
+			}
+		}
+
+		// Sort the others by starting node (keeping their order of addition), with a counting sort.
+		int[] firstEdge = new int[nodeCount + 1];
+		for (int e = 0; e < edgeCount; e++) if (!dropped[e]) firstEdge[idOf[edgeFrom[e]] + 1]++;
+		Arrays.parallelPrefix(firstEdge, Integer::sum);
+		int[] sortedEdges = new int[edgeCount - droppedEdges];
+		int[] cursor = Arrays.copyOf(firstEdge, nodeCount);
+		for (int e = 0; e < edgeCount; e++) if (!dropped[e]) sortedEdges[cursor[idOf[edgeFrom[e]]]++] = e;
+
+		ByteBuffer nodes = ByteBuffer.allocate(nodeCount * 3 * Integer.BYTES);
+		ByteBuffer osmIds = ByteBuffer.allocate(nodeCount * Long.BYTES);
+		ByteBuffer edges = ByteBuffer.allocate(sortedEdges.length * BYTES_PER_EDGE);
+		ByteBuffer profileIds = ByteBuffer.allocate(sortedEdges.length * Integer.BYTES);
+		int written = 0;
+		for (int id = 0; id < nodeCount; id++) {
+			int index = indexOf[id];
+			int outDegree = firstEdge[id + 1] - firstEdge[id];
+			nodes.putInt(nodeE[index]).putInt(nodeN[index]).putInt((outDegree << NODE_ID_BITS) | written);
+			osmIds.putLong(nodeOsmIds[index]);
+			for (int i = 0; i < outDegree; i++, written++) {
+				int e = sortedEdges[firstEdge[id] + i];
+				int to = edgeTo[e];
+				edges.putInt(to < 0 ? ~idOf[~to] : idOf[to]);
+				edges.putShort((short) (edgeLengthAndGain[e] >>> Short.SIZE));
+				edges.putShort((short) edgeLengthAndGain[e]);
+				edges.putShort((short) edgeAttributes[e]);
+				profileIds.putInt(edgeProfileIds[e]);
+			}
+		}
+
+		ByteBuffer elevationsBuffer = ByteBuffer.allocate(elevationCount * Short.BYTES);
+		elevationsBuffer.asShortBuffer().put(ShortBuffer.wrap(elevations, 0, elevationCount));
+		ByteBuffer attributes = ByteBuffer.allocate(attributeIndexes.size() * Long.BYTES);
+		attributes.asLongBuffer().put(attributeSets, 0, attributeIndexes.size());
+
+		Files.createDirectories(out);
+		BinaryFiles.write(out.resolve("nodes.bin"), nodes);
+		BinaryFiles.write(out.resolve("sectors.bin"), sectors);
+		BinaryFiles.write(out.resolve("edges.bin"), edges.flip());
+		BinaryFiles.write(out.resolve("profile_ids.bin"), profileIds.flip());
+		BinaryFiles.write(out.resolve("elevations.bin"), elevationsBuffer);
+		BinaryFiles.write(out.resolve("attributes.bin"), attributes);
+		if (osmIdsKnown) BinaryFiles.write(out.resolve(GraphOsmIds.FILE), osmIds);
+		return idOf;
+	}
+
+	/**
+	 * Gives the index of the given attribute set in attributes.bin, adding it if needed.
+	 */
+	private int attributeIndex(long bits) {
+		Integer index = attributeIndexes.get(bits);
+		if (index == null) {
+			index = attributeIndexes.size();
+			Preconditions.checkArgument(index <= MAX_UQ12_4);
+			if (index == attributeSets.length) attributeSets = Arrays.copyOf(attributeSets, 2 * index);
+			attributeSets[index] = bits;
+			attributeIndexes.put(bits, index);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,108 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.Math2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * This class represents an elevation model read from a raster in ESRI ASCII grid format (.asc), whose coordinates are
+ * expressed in the Swiss coordinate system (CH1903+ / LV95), as distributed by swisstopo for its DHM25 and swissALTI3D
+ * models. The raster is kept in memory, as one float per cell.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+final class ElevationRaster {
+	private final int columns, rows;
+	private final double minE, maxN, cellSize;
+	private final float[] elevations;
+
+	private ElevationRaster(int columns, int rows, double minE, double maxN, double cellSize, float[] elevations) {
+		this.columns = columns;
+		this.rows = rows;
+		this.minE = minE;
+		this.maxN = maxN;
+		this.cellSize = cellSize;
+		this.elevations = elevations;
+	}
+
+	/**
+	 * Reads the raster contained in the given file. Cells having the "NODATA_value" have no elevation.
+	 *
+	 * @param file the path of the raster.
+	 * @return the elevation model.
+	 * @throws IOException in case of an input/output error, or if the header of the raster is invalid.
+	 */
+	static ElevationRaster read(Path file) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+			int columns = -1, rows = -1;
+			double x = Double.NaN, y = Double.NaN, cellSize = Double.NaN, noData = Double.NaN;
+			boolean centered = false;
+			String line;
+			// the header lines all start with a key, the data lines with a number
+			while ((line = reader.readLine()) != null && !line.isBlank() && Character.isLetter(line.strip().charAt(0))) {
+				String[] keyValue = line.strip().split("\\s+");
+				double value = Double.parseDouble(keyValue[1]);
+				switch (keyValue[0].toLowerCase(Locale.ROOT)) {
+					case "ncols" -> columns = (int) value;
+					case "nrows" -> rows = (int) value;
+					case "xllcorner" -> x = value;
+					case "yllcorner" -> y = value;
+					case "xllcenter" -> { x = value; centered = true; }
+					case "yllcenter" -> { y = value; centered = true; }
+					case "cellsize" -> cellSize = value;
+					case "nodata_value" -> noData = value;
+					default -> throw new IOException("Unknown raster header: " + keyValue[0]);
+				}
+			}
+			if (columns <= 0 || rows <= 0 || Double.isNaN(x) || Double.isNaN(y) || !(cellSize > 0))
+				throw new IOException("Invalid raster header");
+
+			float[] elevations = new float[columns * rows];
+			int cell = 0;
+			for (; line != null; line = reader.readLine()) {
+				for (String token : line.strip().split("\\s+")) {
+					if (token.isEmpty() || cell == elevations.length) continue;
+					double value = Double.parseDouble(token);
+					elevations[cell++] = value == noData ? Float.NaN : (float) value;
+				}
+			}
+			if (cell != elevations.length) throw new IOException("Truncated raster");
+
+			// stored values are those of the cell centers
+			double minE = centered ? x : x + cellSize / 2;
+			double minN = centered ? y : y + cellSize / 2;
+			return new ElevationRaster(columns, rows, minE, minN + (rows - 1) * cellSize, cellSize, elevations);
+		}
+	}
+
+	/**
+	 * Gives the elevation at the given point, obtained by bilinear interpolation of the four closest cells.
+	 * This method can be called concurrently.
+	 *
+	 * @param e the east coordinate of the point.
+	 * @param n the north coordinate of the point.
+	 * @return the elevation at the point, or NaN if the point is outside the raster or close to a cell without data.
+	 */
+	float elevationAt(double e, double n) {
+		double column = (e - minE) / cellSize;
+		double row = (maxN - n) / cellSize;
+		if (!(column >= 0 && column <= columns - 1 && row >= 0 && row <= rows - 1)) return Float.NaN;
+		int c0 = Math.min((int) column, columns - 2 < 0 ? 0 : columns - 2);
+		int r0 = Math.min((int) row, rows - 2 < 0 ? 0 : rows - 2);
+		int c1 = Math.min(c0 + 1, columns - 1);
+		int r1 = Math.min(r0 + 1, rows - 1);
+		double top = Math2.interpolate(cell(c0, r0), cell(c1, r0), column - c0);
+		double bottom = Math2.interpolate(cell(c0, r1), cell(c1, r1), column - c0);
+		return (float) Math2.interpolate(top, bottom, row - r0);
+	}
+
+	private float cell(int column, int row) {
+		return elevations[row * columns + column];
+	}
+}
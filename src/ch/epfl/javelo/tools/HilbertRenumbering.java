@@ -0,0 +1,231 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.BinaryFiles;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphOsmIds;
+import ch.epfl.javelo.data.GraphSectors;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class represents an offline tool renumbering the nodes and the edges of a dataset along a Hilbert curve,
+ * so that nodes close in space, their out-edges and the profiles of these edges are also close in the files.
+ * <p>
+ * The nodes of each sector stay contiguous (the sectors are visited along a Hilbert curve of order 7, and the nodes of a
+ * sector along a Hilbert curve of order 9 covering the sector), the out-edges of a node follow the order of the nodes,
+ * and the elevation samples follow the order of the edges.
+ * <p>
+ * Usage: {@code HilbertRenumbering <input dir> <output dir> [benchmark queries]}
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class HilbertRenumbering {
+
+	private final static int NODE_INTS = 3;
+	private final static int BYTES_PER_EDGE = 10;
+	private final static int NODE_ID_BITS = 28;
+	private final static int OFFSET_PROFILE_TYPE = 30;
+	private final static int FIRST_SAMPLE_MASK = (1 << OFFSET_PROFILE_TYPE) - 1;
+	private final static long BENCHMARK_SEED = 2022;
+	private final static double BENCHMARK_MIN_DISTANCE = 1_000;
+
+	private HilbertRenumbering() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		Preconditions.checkArgument(args.length == 2 || args.length == 3);
+		Path in = Path.of(args[0]);
+		Path out = Path.of(args[1]);
+		long t0 = System.nanoTime();
+		int[] newNodeIds = renumber(in, out);
+		System.out.printf("%d nodes renumbered in %d ms%n", newNodeIds.length, (System.nanoTime() - t0) / 1_000_000);
+		if (args.length == 3) benchmark(in, out, newNodeIds, Integer.parseInt(args[2]));
+	}
+
+	/**
+	 * Writes in the output directory the dataset of the input directory, renumbered along a Hilbert curve.
+	 * The attributes are copied unchanged, and nodes_osmid.bin is only rewritten if it exists.
+	 *
+	 * @param in  the directory containing the dataset to renumber.
+	 * @param out the directory where the renumbered dataset is written (created if needed).
+	 * @return an array giving, for each node identity of the input dataset, its identity in the output dataset.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static int[] renumber(Path in, Path out) throws IOException {
+		IntBuffer nodes = BinaryFiles.map(in.resolve("nodes.bin")).asIntBuffer();
+		ByteBuffer sectors = BinaryFiles.map(in.resolve("sectors.bin"));
+		ByteBuffer edges = BinaryFiles.map(in.resolve("edges.bin"));
+		IntBuffer profileIds = BinaryFiles.map(in.resolve("profile_ids.bin")).asIntBuffer();
+		ShortBuffer elevations = BinaryFiles.map(in.resolve("elevations.bin")).asShortBuffer();
+		int nodeCount = nodes.capacity() / NODE_INTS;
+		int edgeCount = profileIds.capacity();
+
+		// Nodes: sort them by their index along the curve, keeping the sectors of the input dataset.
+		long[] keys = new long[nodeCount];
+		for (int sector = 0; sector < GraphSectors.SECTOR_COUNT; sector++) {
+			int start = sectors.getInt(sector * GraphSectors.SECTOR_SIZE_BYTE);
+			int end = start + Short.toUnsignedInt(sectors.getShort(sector * GraphSectors.SECTOR_SIZE_BYTE + 4));
+			for (int nodeId = start; nodeId < end; nodeId++) {
+				double e = Math.scalb((double) nodes.get(NODE_INTS * nodeId), -4);
+				double n = Math.scalb((double) nodes.get(NODE_INTS * nodeId + 1), -4);
+				keys[nodeId] = (DatasetBuilder.curveIndex(sector, e, n) << NODE_ID_BITS) | nodeId;
+			}
+		}
+		Arrays.parallelSort(keys);
+		int[] oldNodeIds = new int[nodeCount];
+		int[] newNodeIds = new int[nodeCount];
+		for (int newId = 0; newId < nodeCount; newId++) {
+			oldNodeIds[newId] = (int) (keys[newId] & ((1 << NODE_ID_BITS) - 1));
+			newNodeIds[oldNodeIds[newId]] = newId;
+		}
+
+		// Sectors: the nodes of a sector are contiguous, only their first identity changes.
+		ByteBuffer newSectors = ByteBuffer.allocate(sectors.capacity());
+		for (int sector = 0; sector < GraphSectors.SECTOR_COUNT; sector++) {
+			int index = sector * GraphSectors.SECTOR_SIZE_BYTE;
+			short count = sectors.getShort(index + 4);
+			int firstNode = count == 0 ? 0 : newNodeIds[sectors.getInt(index)];
+			for (int i = 1; i < Short.toUnsignedInt(count); i++) {
+				firstNode = Math.min(firstNode, newNodeIds[sectors.getInt(index) + i]);
+			}
+			newSectors.putInt(index, firstNode);
+			newSectors.putShort(index + 4, count);
+		}
+
+		// Nodes and edges: the out-edges of the nodes are stored in the new order of the nodes, and the elevation
+		// samples in the new order of the edges (a profile shared by two opposite edges is only copied once).
+		IntBuffer newNodes = IntBuffer.allocate(nodes.capacity());
+		ByteBuffer newEdges = ByteBuffer.allocate(edges.capacity());
+		IntBuffer newProfileIds = IntBuffer.allocate(edgeCount);
+		ShortBuffer newElevations = ShortBuffer.allocate(elevations.capacity());
+		int[] copiedProfiles = new int[elevations.capacity()];
+		Arrays.fill(copiedProfiles, -1);
+		int newEdgeId = 0;
+		for (int newId = 0; newId < nodeCount; newId++) {
+			int oldId = oldNodeIds[newId];
+			int outEdges = nodes.get(NODE_INTS * oldId + 2);
+			int outDegree = outEdges >>> NODE_ID_BITS;
+			int firstEdge = outEdges & ((1 << NODE_ID_BITS) - 1);
+			newNodes.put(nodes.get(NODE_INTS * oldId));
+			newNodes.put(nodes.get(NODE_INTS * oldId + 1));
+			newNodes.put((outDegree << NODE_ID_BITS) | newEdgeId);
+
+			for (int oldEdgeId = firstEdge; oldEdgeId < firstEdge + outDegree; oldEdgeId++, newEdgeId++) {
+				int target = edges.getInt(oldEdgeId * BYTES_PER_EDGE);
+				int newTarget = target < 0 ? ~newNodeIds[~target] : newNodeIds[target];
+				newEdges.putInt(newEdgeId * BYTES_PER_EDGE, newTarget);
+				for (int b = Integer.BYTES; b < BYTES_PER_EDGE; b += Short.BYTES) {
+					newEdges.putShort(newEdgeId * BYTES_PER_EDGE + b, edges.getShort(oldEdgeId * BYTES_PER_EDGE + b));
+				}
+
+				int profileId = profileIds.get(oldEdgeId);
+				int profileType = profileId >>> OFFSET_PROFILE_TYPE;
+				if (profileType == 0) {
+					newProfileIds.put(newEdgeId, 0);
+					continue;
+				}
+				int firstSample = profileId & FIRST_SAMPLE_MASK;
+				if (copiedProfiles[firstSample] < 0) {
+					copiedProfiles[firstSample] = newElevations.position();
+					int lengthQ28_4 = Short.toUnsignedInt(edges.getShort(oldEdgeId * BYTES_PER_EDGE + Integer.BYTES));
+					int shortCount = DatasetBuilder.profileShortCount(profileType, lengthQ28_4);
+					newElevations.put(elevations.slice(firstSample, shortCount));
+				}
+				newProfileIds.put(newEdgeId, (profileType << OFFSET_PROFILE_TYPE) | copiedProfiles[firstSample]);
+			}
+		}
+
+		Files.createDirectories(out);
+		BinaryFiles.write(out.resolve("nodes.bin"), toBytes(newNodes));
+		BinaryFiles.write(out.resolve("sectors.bin"), newSectors);
+		BinaryFiles.write(out.resolve("edges.bin"), newEdges);
+		BinaryFiles.write(out.resolve("profile_ids.bin"), toBytes(newProfileIds));
+		BinaryFiles.write(out.resolve("elevations.bin"), toBytes(newElevations.flip()));
+		BinaryFiles.write(out.resolve("attributes.bin"), BinaryFiles.map(in.resolve("attributes.bin")));
+
+		Path osmIds = in.resolve(GraphOsmIds.FILE);
+		if (Files.exists(osmIds)) {
+			LongBuffer oldOsmIds = BinaryFiles.map(osmIds).asLongBuffer();
+			LongBuffer newOsmIds = LongBuffer.allocate(nodeCount);
+			for (int newId = 0; newId < nodeCount; newId++) newOsmIds.put(oldOsmIds.get(oldNodeIds[newId]));
+			BinaryFiles.write(out.resolve(GraphOsmIds.FILE), toBytes(newOsmIds.flip()));
+		}
+		return newNodeIds;
+	}
+
+	private static ByteBuffer toBytes(IntBuffer buffer) {
+		ByteBuffer bytes = ByteBuffer.allocate(buffer.limit() * Integer.BYTES);
+		bytes.asIntBuffer().put(buffer.duplicate().rewind());
+		return bytes;
+	}
+
+	private static ByteBuffer toBytes(ShortBuffer buffer) {
+		ByteBuffer bytes = ByteBuffer.allocate(buffer.limit() * Short.BYTES);
+		bytes.asShortBuffer().put(buffer.duplicate().rewind());
+		return bytes;
+	}
+
+	private static ByteBuffer toBytes(LongBuffer buffer) {
+		ByteBuffer bytes = ByteBuffer.allocate(buffer.limit() * Long.BYTES);
+		bytes.asLongBuffer().put(buffer.duplicate().rewind());
+		return bytes;
+	}
+
+	/**
+	 * Computes the same random routes on the dataset before and after renumbering, and prints the time taken.
+	 * Routes are checked to have the same length in both datasets.
+	 */
+	private static void benchmark(Path before, Path after, int[] newNodeIds, int queries) throws IOException {
+		Graph beforeGraph = Graph.loadFrom(before);
+		Graph afterGraph = Graph.loadFrom(after);
+		RouteComputer beforeComputer = new RouteComputer(beforeGraph, new CityBikeCF(beforeGraph));
+		RouteComputer afterComputer = new RouteComputer(afterGraph, new CityBikeCF(afterGraph));
+
+		SplittableRandom rng = new SplittableRandom(BENCHMARK_SEED);
+		int[][] pairs = new int[queries][];
+		for (int i = 0; i < queries; ) {
+			int from = rng.nextInt(newNodeIds.length);
+			int to = rng.nextInt(newNodeIds.length);
+			if (beforeGraph.nodePoint(from).distanceTo(beforeGraph.nodePoint(to)) < BENCHMARK_MIN_DISTANCE) continue;
+			pairs[i++] = new int[]{from, to};
+		}
+
+		// the first pass warms up the JIT and the page cache of both datasets
+		for (int pass = 0; pass < 2; pass++) {
+			long beforeTime = 0, afterTime = 0;
+			int found = 0;
+			for (int[] pair : pairs) {
+				long t0 = System.nanoTime();
+				Route beforeRoute = beforeComputer.bestRouteBetween(pair[0], pair[1]);
+				long t1 = System.nanoTime();
+				Route afterRoute = afterComputer.bestRouteBetween(newNodeIds[pair[0]], newNodeIds[pair[1]]);
+				long t2 = System.nanoTime();
+				beforeTime += t1 - t0;
+				afterTime += t2 - t1;
+				if (beforeRoute == null) continue;
+				found++;
+				if (afterRoute == null || Math.abs(beforeRoute.length() - afterRoute.length()) > 1e-3)
+					throw new IllegalStateException("Different routes between " + pair[0] + " and " + pair[1]);
+			}
+			if (pass == 1) {
+				System.out.printf("%d queries (%d routes found)%n", queries, found);
+				System.out.printf("before: %.2f ms/query%n", beforeTime / 1e6 / queries);
+				System.out.printf("after:  %.2f ms/query%n", afterTime / 1e6 / queries);
+				System.out.printf("speedup: %.2fx%n", (double) beforeTime / afterTime);
+			}
+		}
+	}
+}
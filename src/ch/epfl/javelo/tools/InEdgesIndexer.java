@@ -0,0 +1,39 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.BinaryFiles;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphEdges;
+import ch.epfl.javelo.data.GraphInEdges;
+import ch.epfl.javelo.data.GraphNodes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * This class represents an offline tool building the reverse adjacency of a dataset and persisting it in the file
+ * in_edges.bin of the dataset directory, so that {@link Graph#loadFrom(Path)} does not have to build it.
+ * <p>
+ * Usage: {@code InEdgesIndexer <dataset dir>}
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class InEdgesIndexer {
+	private InEdgesIndexer() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		Preconditions.checkArgument(args.length == 1);
+		Path dir = Path.of(args[0]);
+		long t0 = System.nanoTime();
+		GraphNodes nodes = new GraphNodes(BinaryFiles.map(dir.resolve("nodes.bin")).asIntBuffer());
+		GraphEdges edges = new GraphEdges(
+				BinaryFiles.map(dir.resolve("edges.bin")),
+				BinaryFiles.map(dir.resolve("profile_ids.bin")).asIntBuffer(),
+				BinaryFiles.map(dir.resolve("elevations.bin")).asShortBuffer());
+		GraphInEdges.of(nodes, edges).writeTo(dir.resolve(Graph.IN_EDGES_FILE), BinaryFiles.datasetVersion(dir));
+		System.out.printf("Reverse adjacency of %d nodes and %d edges built in %d ms%n",
+				nodes.count(), edges.count(), (System.nanoTime() - t0) / 1_000_000);
+	}
+}
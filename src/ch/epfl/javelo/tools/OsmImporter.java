@@ -0,0 +1,223 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.data.Attribute;
+import ch.epfl.javelo.projection.Ch1903;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * This class builds a JaVelo dataset (nodes.bin, sectors.bin, edges.bin, attributes.bin, profile_ids.bin,
+ * elevations.bin and nodes_osmid.bin) from a local OpenStreetMap extract, in PBF (.osm.pbf) or XML (.osm) format,
+ * and a local elevation raster in ESRI ASCII grid format, in Swiss coordinates.
+ * <p>
+ * The extract is read twice, as a stream. The first pass keeps the ways representing roads (those having a highway
+ * tag known by {@link Attribute}), as the list of their node identities and their attribute set. The second pass keeps
+ * the coordinates of the nodes used by these ways only. Every node of a road becomes a node of the graph, and every
+ * pair of consecutive nodes of a road becomes two opposite edges, whose profile is sampled in the raster in parallel,
+ * by batches. The memory used is thus proportional to the size of the road network, not to the one of the extract.
+ * <p>
+ * Nodes outside Switzerland are ignored. As the length of an edge must fit in edges.bin, the segments longer than
+ * 4095 meters are split in pieces of equal length, by interpolated nodes having no OSM identity (-1 in
+ * nodes_osmid.bin). As nodes.bin only allows 15 edges leaving a node, the extra ones are ignored with their opposite
+ * edge, and counted in the summary.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class OsmImporter {
+	private final static int BATCH_SIZE = 1 << 16;
+	private final static int MAX_LENGTH_Q28_4 = 0xFFFF;
+	private final static Map<String, Attribute> ATTRIBUTES = new HashMap<>();
+
+	static {
+		for (Attribute attribute : Attribute.ALL) ATTRIBUTES.put(attribute.keyValue(), attribute);
+	}
+
+	private OsmImporter() {
+	}
+
+	/**
+	 * Builds a dataset from the given extract and raster.
+	 *
+	 * @param args the path of the OpenStreetMap extract, the one of the raster, and the one of the output directory.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("usage: OsmImporter <extract.osm.pbf|extract.osm> <elevations.asc> <output directory>");
+			System.exit(1);
+		}
+		long start = System.nanoTime();
+		DatasetBuilder builder = importDataset(Path.of(args[0]), ElevationRaster.read(Path.of(args[1])), Path.of(args[2]));
+		System.out.printf("%d nodes, %d edges (%d dropped) written in %.1f s%n",
+				builder.nodeCount(), builder.edgeCount() - builder.droppedEdges(), builder.droppedEdges(),
+				(System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Builds a dataset from the given extract and elevation model, and writes it in the given directory.
+	 *
+	 * @param extract the path of the OpenStreetMap extract.
+	 * @param raster  the elevation model.
+	 * @param out     the directory where the dataset is written.
+	 * @return the builder of the written dataset, giving the number of nodes and edges.
+	 * @throws IOException in case of an input/output error.
+	 */
+	static DatasetBuilder importDataset(Path extract, ElevationRaster raster, Path out) throws IOException {
+		// Pass 1: the roads.
+		Roads roads = new Roads();
+		read(extract, roads);
+
+		// Pass 2: the coordinates of their nodes, found by binary search among the sorted identities.
+		long[] osmIds = roads.sortedNodeIds();
+		double[] nodeE = new double[osmIds.length];
+		double[] nodeN = new double[osmIds.length];
+		Arrays.fill(nodeE, Double.NaN);
+		read(extract, new OsmSink() {
+			@Override
+			public void node(long id, double lon, double lat) {
+				int i = Arrays.binarySearch(osmIds, id);
+				if (i < 0) return;
+				double e = Ch1903.e(Math.toRadians(lon), Math.toRadians(lat));
+				double n = Ch1903.n(Math.toRadians(lon), Math.toRadians(lat));
+				if (SwissBounds.containsEN(e, n)) {
+					nodeE[i] = e;
+					nodeN[i] = n;
+				}
+			}
+		});
+
+		// Edges, by batches whose profiles are sampled in parallel.
+		DatasetBuilder builder = new DatasetBuilder();
+		int[] nodeIndexes = new int[osmIds.length];
+		Arrays.fill(nodeIndexes, -1);
+		int[] from = new int[BATCH_SIZE], to = new int[BATCH_SIZE], lengths = new int[BATCH_SIZE];
+		int[] pieces = new int[BATCH_SIZE], pieceCounts = new int[BATCH_SIZE];
+		long[] attributes = new long[BATCH_SIZE];
+		DatasetBuilder.EncodedProfile[] profiles = new DatasetBuilder.EncodedProfile[BATCH_SIZE];
+		int batchSize = 0;
+		for (int way = 0; way < roads.count; way++) {
+			for (int r = roads.firstRef[way] + 1; r < roads.firstRef[way + 1]; r++) {
+				int a = Arrays.binarySearch(osmIds, roads.refs[r - 1]);
+				int b = Arrays.binarySearch(osmIds, roads.refs[r]);
+				if (a == b || Double.isNaN(nodeE[a]) || Double.isNaN(nodeE[b])) continue;
+				double length = Math2.norm(nodeE[b] - nodeE[a], nodeN[b] - nodeN[a]);
+				// the pieces of a segment are kept in the same batch, as each one starts at the end of the previous one
+				int pieceCount = Math.max(1, Math2.ceilDiv((int) Math.rint(Math.scalb(length, 4)), MAX_LENGTH_Q28_4));
+				if (batchSize + pieceCount > BATCH_SIZE) {
+					addEdges(builder, raster, osmIds, nodeE, nodeN, nodeIndexes, from, to, pieces, pieceCounts, lengths,
+							attributes, profiles, batchSize);
+					batchSize = 0;
+				}
+				for (int piece = 0; piece < pieceCount; piece++, batchSize++) {
+					from[batchSize] = a;
+					to[batchSize] = b;
+					pieces[batchSize] = piece;
+					pieceCounts[batchSize] = pieceCount;
+					lengths[batchSize] = (int) Math.rint(Math.scalb(length / pieceCount, 4));
+					attributes[batchSize] = roads.attributes[way];
+				}
+			}
+		}
+		addEdges(builder, raster, osmIds, nodeE, nodeN, nodeIndexes, from, to, pieces, pieceCounts, lengths, attributes,
+				profiles, batchSize);
+
+		builder.write(out);
+		return builder;
+	}
+
+	/**
+	 * Adds the edges of the given batch, the i-th one being the piece pieces[i] (among pieceCounts[i] pieces of equal
+	 * length) of the segment going from the node from[i] to the node to[i].
+	 */
+	private static void addEdges(DatasetBuilder builder, ElevationRaster raster, long[] osmIds, double[] nodeE,
+								 double[] nodeN, int[] nodeIndexes, int[] from, int[] to, int[] pieces,
+								 int[] pieceCounts, int[] lengths, long[] attributes,
+								 DatasetBuilder.EncodedProfile[] profiles, int count) {
+		IntStream.range(0, count).parallel().forEach(i -> {
+			int a = from[i], b = to[i];
+			float[] samples = new float[DatasetBuilder.sampleCount(lengths[i])];
+			for (int s = 0; s < samples.length; s++) {
+				double xInPiece = samples.length == 1 ? 0 : (double) s / (samples.length - 1);
+				double x = (pieces[i] + xInPiece) / pieceCounts[i];
+				samples[s] = raster.elevationAt(
+						Math2.interpolate(nodeE[a], nodeE[b], x),
+						Math2.interpolate(nodeN[a], nodeN[b], x));
+			}
+			profiles[i] = DatasetBuilder.encodeProfile(samples);
+		});
+		int pieceEnd = -1;
+		for (int i = 0; i < count; i++) {
+			int a = from[i], b = to[i];
+			for (int node : new int[]{a, b}) {
+				if (nodeIndexes[node] < 0) nodeIndexes[node] = builder.addNode(nodeE[node], nodeN[node], osmIds[node]);
+			}
+			int pieceStart = pieces[i] == 0 ? nodeIndexes[a] : pieceEnd;
+			if (pieces[i] == pieceCounts[i] - 1) {
+				pieceEnd = nodeIndexes[b];
+			} else {
+				double x = (double) (pieces[i] + 1) / pieceCounts[i];
+				pieceEnd = builder.addNode(
+						Math2.interpolate(nodeE[a], nodeE[b], x), Math2.interpolate(nodeN[a], nodeN[b], x), -1);
+			}
+			builder.addEdgePair(pieceStart, pieceEnd, lengths[i], attributes[i], profiles[i]);
+		}
+	}
+
+	private static void read(Path extract, OsmSink sink) throws IOException {
+		if (extract.getFileName().toString().endsWith(".pbf")) OsmPbfReader.read(extract, sink);
+		else OsmXmlReader.read(extract, sink);
+	}
+
+	/**
+	 * The roads of the extract: the node identities of every way, stored contiguously, and its attribute set.
+	 */
+	private static final class Roads implements OsmSink {
+		private long[] refs = new long[1 << 16];
+		private int[] firstRef = new int[1 << 12];
+		private long[] attributes = new long[1 << 12];
+		private int count = 0;
+
+		@Override
+		public void way(long id, long[] wayRefs, Map<String, String> tags) {
+			Attribute highway = ATTRIBUTES.get("highway=" + tags.get("highway"));
+			if (highway == null || wayRefs.length < 2) return;
+			long bits = 0;
+			for (Map.Entry<String, String> tag : tags.entrySet()) {
+				Attribute attribute = ATTRIBUTES.get(tag.getKey() + "=" + tag.getValue());
+				if (attribute != null) bits |= 1L << attribute.ordinal();
+			}
+
+			if (count + 1 >= firstRef.length) {
+				firstRef = Arrays.copyOf(firstRef, 2 * firstRef.length);
+				attributes = Arrays.copyOf(attributes, 2 * attributes.length);
+			}
+			int start = firstRef[count];
+			if (start + wayRefs.length > refs.length)
+				refs = Arrays.copyOf(refs, Math.max(2 * refs.length, start + wayRefs.length));
+			System.arraycopy(wayRefs, 0, refs, start, wayRefs.length);
+			attributes[count] = bits;
+			firstRef[++count] = start + wayRefs.length;
+		}
+
+		/**
+		 * Gives the identities of the nodes used by the roads, sorted and without duplicates.
+		 */
+		long[] sortedNodeIds() {
+			long[] ids = Arrays.copyOf(refs, firstRef[count]);
+			Arrays.parallelSort(ids);
+			int distinct = 0;
+			for (int i = 0; i < ids.length; i++) {
+				if (i == 0 || ids[i] != ids[i - 1]) ids[distinct++] = ids[i];
+			}
+			return Arrays.copyOf(ids, distinct);
+		}
+	}
+}
@@ -0,0 +1,389 @@
+package ch.epfl.javelo.tools;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * This class reads OpenStreetMap files in PBF format (.osm.pbf), as a stream.
+ * <p>
+ * The blocks of the file are decompressed and decoded in parallel, by all the available processors, but at most
+ * two blocks per processor are in memory at the same time, and the elements are passed to the sink in the order of
+ * the file, by the calling thread. Only uncompressed and zlib-compressed blocks are supported, which are the only ones
+ * produced by the usual tools (osmium, osmosis, Geofabrik extracts).
+ * <p>
+ * See https://wiki.openstreetmap.org/wiki/PBF_Format for the description of the format.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+final class OsmPbfReader {
+	private final static int MAX_HEADER_SIZE = 64 * 1024;
+	private final static int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+	private final static Set<String> SUPPORTED_FEATURES = Set.of("OsmSchema-V0.6", "DenseNodes", "HistoricalInformation");
+
+	private OsmPbfReader() {
+	}
+
+	/**
+	 * The elements of a decoded block. The nodes are stored in three parallel arrays.
+	 */
+	private record Block(long[] nodeIds, double[] nodeLons, double[] nodeLats, int nodeCount, List<Way> ways) {
+	}
+
+	private record Way(long id, long[] refs, Map<String, String> tags) {
+	}
+
+	/**
+	 * Reads the given file and passes its nodes and ways to the given sink.
+	 *
+	 * @param file the path of the file.
+	 * @param sink the receiver of the elements of the file.
+	 * @throws IOException in case of an input/output error, or if the file is not a valid PBF file.
+	 */
+	static void read(Path file, OsmSink sink) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "pbf-decoder");
+			thread.setDaemon(true);
+			return thread;
+		});
+		ArrayDeque<Future<Block>> window = new ArrayDeque<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			while (true) {
+				int headerSize;
+				try {
+					headerSize = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) throw new IOException("Invalid blob header size");
+				ProtoReader header = new ProtoReader(in.readNBytes(headerSize));
+				String type = null;
+				int dataSize = -1;
+				while (header.hasNext()) {
+					switch (header.nextField()) {
+						case 1 -> type = header.string();
+						case 3 -> dataSize = (int) header.varint();
+						default -> header.skip();
+					}
+				}
+				if (type == null || dataSize < 0 || dataSize > MAX_BLOB_SIZE) throw new IOException("Invalid blob header");
+				byte[] blob = in.readNBytes(dataSize);
+				if (blob.length != dataSize) throw new EOFException("Truncated blob");
+
+				switch (type) {
+					case "OSMHeader" -> checkHeader(new ProtoReader(uncompress(blob)));
+					case "OSMData" -> {
+						window.add(executor.submit(() -> decodeBlock(new ProtoReader(uncompress(blob)))));
+						if (window.size() >= 2 * threads) deliver(window.remove(), sink);
+					}
+					default -> {
+						// unknown blob types must be ignored
+					}
+				}
+			}
+			while (!window.isEmpty()) deliver(window.remove(), sink);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void deliver(Future<Block> future, OsmSink sink) throws IOException {
+		Block block;
+		try {
+			block = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioException) throw ioException;
+			throw new IOException(e.getCause());
+		}
+		for (int i = 0; i < block.nodeCount(); i++) sink.node(block.nodeIds()[i], block.nodeLons()[i], block.nodeLats()[i]);
+		for (Way way : block.ways()) sink.way(way.id(), way.refs(), way.tags());
+	}
+
+	private static byte[] uncompress(byte[] blob) throws IOException {
+		ProtoReader reader = new ProtoReader(blob);
+		int rawSize = -1;
+		byte[] raw = null, zlib = null;
+		while (reader.hasNext()) {
+			switch (reader.nextField()) {
+				case 1 -> raw = reader.bytes();
+				case 2 -> rawSize = (int) reader.varint();
+				case 3 -> zlib = reader.bytes();
+				case 4, 5, 6, 7 -> throw new IOException("Unsupported blob compression");
+				default -> reader.skip();
+			}
+		}
+		if (raw != null) return raw;
+		if (zlib == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE) throw new IOException("Invalid blob");
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(zlib);
+			byte[] data = new byte[rawSize];
+			int size = 0;
+			while (size < rawSize && !inflater.finished()) {
+				int inflated = inflater.inflate(data, size, rawSize - size);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+				size += inflated;
+			}
+			if (size != rawSize) throw new IOException("Invalid zlib blob");
+			return data;
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static void checkHeader(ProtoReader reader) throws IOException {
+		while (reader.hasNext()) {
+			if (reader.nextField() == 4) {
+				String feature = reader.string();
+				if (!SUPPORTED_FEATURES.contains(feature)) throw new IOException("Unsupported feature: " + feature);
+			} else reader.skip();
+		}
+	}
+
+	private static Block decodeBlock(ProtoReader reader) throws IOException {
+		List<byte[]> strings = new ArrayList<>();
+		List<ProtoReader> groups = new ArrayList<>();
+		long granularity = 100, latOffset = 0, lonOffset = 0;
+		while (reader.hasNext()) {
+			switch (reader.nextField()) {
+				case 1 -> {
+					ProtoReader table = reader.message();
+					while (table.hasNext()) {
+						if (table.nextField() == 1) strings.add(table.bytes());
+						else table.skip();
+					}
+				}
+				case 2 -> groups.add(reader.message());
+				case 17 -> granularity = reader.varint();
+				case 19 -> latOffset = reader.varint();
+				case 20 -> lonOffset = reader.varint();
+				default -> reader.skip();
+			}
+		}
+		String[] table = new String[strings.size()];
+		for (int i = 0; i < table.length; i++) table[i] = new String(strings.get(i), StandardCharsets.UTF_8);
+
+		BlockBuilder block = new BlockBuilder(table, granularity, latOffset, lonOffset);
+		for (ProtoReader group : groups) {
+			while (group.hasNext()) {
+				switch (group.nextField()) {
+					case 1 -> block.decodeNode(group.message());
+					case 2 -> block.decodeDenseNodes(group.message());
+					case 3 -> block.decodeWay(group.message());
+					default -> group.skip();
+				}
+			}
+		}
+		return block.build();
+	}
+
+	/**
+	 * Accumulates the elements of a block being decoded.
+	 */
+	private static final class BlockBuilder {
+		private final String[] strings;
+		private final long granularity, latOffset, lonOffset;
+		private long[] nodeIds = new long[0];
+		private double[] nodeLons = new double[0], nodeLats = new double[0];
+		private int nodeCount = 0;
+		private final List<Way> ways = new ArrayList<>();
+
+		BlockBuilder(String[] strings, long granularity, long latOffset, long lonOffset) {
+			this.strings = strings;
+			this.granularity = granularity;
+			this.latOffset = latOffset;
+			this.lonOffset = lonOffset;
+		}
+
+		Block build() {
+			return new Block(nodeIds, nodeLons, nodeLats, nodeCount, ways);
+		}
+
+		private void addNode(long id, long lat, long lon) {
+			if (nodeCount == nodeIds.length) {
+				int capacity = Math.max(16, 2 * nodeCount);
+				nodeIds = Arrays.copyOf(nodeIds, capacity);
+				nodeLons = Arrays.copyOf(nodeLons, capacity);
+				nodeLats = Arrays.copyOf(nodeLats, capacity);
+			}
+			nodeIds[nodeCount] = id;
+			nodeLats[nodeCount] = 1e-9 * (latOffset + granularity * lat);
+			nodeLons[nodeCount] = 1e-9 * (lonOffset + granularity * lon);
+			nodeCount++;
+		}
+
+		void decodeNode(ProtoReader reader) throws IOException {
+			long id = 0, lat = 0, lon = 0;
+			while (reader.hasNext()) {
+				switch (reader.nextField()) {
+					case 1 -> id = reader.signedVarint();
+					case 8 -> lat = reader.signedVarint();
+					case 9 -> lon = reader.signedVarint();
+					default -> reader.skip();
+				}
+			}
+			addNode(id, lat, lon);
+		}
+
+		void decodeDenseNodes(ProtoReader reader) throws IOException {
+			ProtoReader ids = null, lats = null, lons = null;
+			while (reader.hasNext()) {
+				switch (reader.nextField()) {
+					case 1 -> ids = reader.message();
+					case 8 -> lats = reader.message();
+					case 9 -> lons = reader.message();
+					default -> reader.skip();
+				}
+			}
+			if (ids == null) return;
+			if (lats == null || lons == null) throw new IOException("Invalid dense nodes");
+			long id = 0, lat = 0, lon = 0;
+			while (ids.hasNext()) {
+				if (!lats.hasNext() || !lons.hasNext()) throw new IOException("Invalid dense nodes");
+				id += ids.signedVarint();
+				lat += lats.signedVarint();
+				lon += lons.signedVarint();
+				addNode(id, lat, lon);
+			}
+		}
+
+		void decodeWay(ProtoReader reader) throws IOException {
+			long id = 0;
+			ProtoReader keys = null, values = null, refs = null;
+			while (reader.hasNext()) {
+				switch (reader.nextField()) {
+					case 1 -> id = reader.varint();
+					case 2 -> keys = reader.message();
+					case 3 -> values = reader.message();
+					case 8 -> refs = reader.message();
+					default -> reader.skip();
+				}
+			}
+			Map<String, String> tags = new HashMap<>();
+			if (keys != null && values != null) {
+				while (keys.hasNext() && values.hasNext()) tags.put(string(keys.varint()), string(values.varint()));
+			}
+			long[] wayRefs = new long[16];
+			int refCount = 0;
+			long ref = 0;
+			while (refs != null && refs.hasNext()) {
+				ref += refs.signedVarint();
+				if (refCount == wayRefs.length) wayRefs = Arrays.copyOf(wayRefs, 2 * refCount);
+				wayRefs[refCount++] = ref;
+			}
+			ways.add(new Way(id, Arrays.copyOf(wayRefs, refCount), tags));
+		}
+
+		private String string(long index) throws IOException {
+			if (index < 0 || index >= strings.length) throw new IOException("Invalid string index");
+			return strings[(int) index];
+		}
+	}
+
+	/**
+	 * A minimal reader of protocol buffers messages, reading the fields one after the other. Packed repeated fields
+	 * are read as messages whose content is a sequence of varints.
+	 */
+	private static final class ProtoReader {
+		private final byte[] bytes;
+		private final int limit;
+		private int position;
+		private int wireType;
+
+		ProtoReader(byte[] bytes) {
+			this(bytes, 0, bytes.length);
+		}
+
+		private ProtoReader(byte[] bytes, int position, int limit) {
+			this.bytes = bytes;
+			this.position = position;
+			this.limit = limit;
+		}
+
+		boolean hasNext() {
+			return position < limit;
+		}
+
+		int nextField() throws IOException {
+			long key = varint();
+			wireType = (int) (key & 0b111);
+			return (int) (key >>> 3);
+		}
+
+		long varint() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < Long.SIZE; shift += 7) {
+				if (position >= limit) throw new EOFException("Truncated varint");
+				byte b = bytes[position++];
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) return value;
+			}
+			throw new IOException("Invalid varint");
+		}
+
+		long signedVarint() throws IOException {
+			long value = varint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		ProtoReader message() throws IOException {
+			int length = length();
+			ProtoReader message = new ProtoReader(bytes, position, position + length);
+			position += length;
+			return message;
+		}
+
+		byte[] bytes() throws IOException {
+			int length = length();
+			byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+			position += length;
+			return value;
+		}
+
+		String string() throws IOException {
+			return new String(bytes(), StandardCharsets.UTF_8);
+		}
+
+		void skip() throws IOException {
+			switch (wireType) {
+				case 0 -> varint();
+				case 1 -> position += 8;
+				case 2 -> position += length();
+				case 5 -> position += 4;
+				default -> throw new IOException("Unsupported wire type " + wireType);
+			}
+			if (position > limit) throw new EOFException("Truncated message");
+		}
+
+		private int length() throws IOException {
+			if (wireType != 2) throw new IOException("Unexpected wire type " + wireType);
+			long length = varint();
+			if (length < 0 || length > limit - position) throw new EOFException("Truncated message");
+			return (int) length;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package ch.epfl.javelo.tools;
+
+import java.util.Map;
+
+/**
+ * This interface represents a receiver of the elements of an OpenStreetMap file, in the order of the file.
+ * Relations are ignored.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+interface OsmSink {
+
+	/**
+	 * Receives a node of the file.
+	 *
+	 * @param id  the OSM identity of the node.
+	 * @param lon the longitude of the node, in degrees.
+	 * @param lat the latitude of the node, in degrees.
+	 */
+	default void node(long id, double lon, double lat) {
+	}
+
+	/**
+	 * Receives a way of the file.
+	 *
+	 * @param id   the OSM identity of the way.
+	 * @param refs the OSM identities of the nodes of the way, in order.
+	 * @param tags the tags of the way.
+	 */
+	default void way(long id, long[] refs, Map<String, String> tags) {
+	}
+}
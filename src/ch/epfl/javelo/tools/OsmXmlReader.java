@@ -0,0 +1,79 @@
+package ch.epfl.javelo.tools;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class reads OpenStreetMap files in XML format (.osm), as a stream: only the element being read is in memory.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+final class OsmXmlReader {
+	private OsmXmlReader() {
+	}
+
+	/**
+	 * Reads the given file and passes its nodes and ways to the given sink.
+	 *
+	 * @param file the path of the file.
+	 * @param sink the receiver of the elements of the file.
+	 * @throws IOException in case of an input/output error, or if the file is not valid XML.
+	 */
+	static void read(Path file, OsmSink sink) throws IOException {
+		XMLInputFactory factory = XMLInputFactory.newFactory();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+			XMLStreamReader reader = factory.createXMLStreamReader(stream);
+			try {
+				long wayId = -1;
+				long[] refs = new long[16];
+				int refCount = 0;
+				Map<String, String> tags = new HashMap<>();
+				while (reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						switch (reader.getLocalName()) {
+							case "node" -> sink.node(
+									Long.parseLong(reader.getAttributeValue(null, "id")),
+									Double.parseDouble(reader.getAttributeValue(null, "lon")),
+									Double.parseDouble(reader.getAttributeValue(null, "lat")));
+							case "way" -> {
+								wayId = Long.parseLong(reader.getAttributeValue(null, "id"));
+								refCount = 0;
+								tags = new HashMap<>();
+							}
+							case "nd" -> {
+								if (wayId < 0) break;
+								if (refCount == refs.length) refs = Arrays.copyOf(refs, 2 * refCount);
+								refs[refCount++] = Long.parseLong(reader.getAttributeValue(null, "ref"));
+							}
+							case "tag" -> {
+								if (wayId >= 0) tags.put(reader.getAttributeValue(null, "k"), reader.getAttributeValue(null, "v"));
+							}
+							default -> {
+							}
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("way")) {
+						sink.way(wayId, Arrays.copyOf(refs, refCount), tags);
+						wayId = -1;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException | NumberFormatException | NullPointerException e) {
+			throw new IOException("Invalid OSM file: " + file, e);
+		}
+	}
+}
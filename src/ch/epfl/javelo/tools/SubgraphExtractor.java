@@ -0,0 +1,190 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.BinaryFiles;
+import ch.epfl.javelo.data.GraphOsmIds;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * This class represents an offline tool extracting the part of a dataset contained in a region (a bounding box or a
+ * polygon) as a smaller, self-contained dataset.
+ * <p>
+ * The extracted dataset contains the nodes inside the region and the edges linking two of them, renumbered and
+ * compacted: the sectors are regenerated, only the attribute sets and the profiles used by the extracted edges are
+ * kept (a profile shared by two opposite edges stays shared), and the lengths, elevation gains and encoded profiles are
+ * copied bit for bit. The input dataset is read in a single pass over its nodes, in the order of their identities.
+ * <p>
+ * Usage: {@code SubgraphExtractor <input dir> <output dir> <e1> <n1> <e2> <n2> [<e3> <n3> ...]}, two points giving the
+ * bottom left and top right corners of a bounding box, three or more the vertices of a polygon.
+ *
+ * @author Morgane Magnin (347041)
+ * @author Amene Gafsi (345583)
+ */
+public final class SubgraphExtractor {
+
+	private final static int NODE_INTS = 3;
+	private final static int BYTES_PER_EDGE = 10;
+	private final static int NODE_ID_BITS = 28;
+	private final static int OFFSET_PROFILE_TYPE = 30;
+	private final static int FIRST_SAMPLE_MASK = (1 << OFFSET_PROFILE_TYPE) - 1;
+	private final static byte UNKNOWN = 0, INSIDE = 1, OUTSIDE = 2;
+
+	private SubgraphExtractor() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		Preconditions.checkArgument(args.length >= 6 && args.length % 2 == 0);
+		List<PointCh> points = new ArrayList<>();
+		for (int i = 2; i < args.length; i += 2)
+			points.add(new PointCh(Double.parseDouble(args[i]), Double.parseDouble(args[i + 1])));
+		Predicate<PointCh> region = points.size() == 2 ? boundingBox(points.get(0), points.get(1)) : polygon(points);
+		long t0 = System.nanoTime();
+		int[] newNodeIds = extract(Path.of(args[0]), region, Path.of(args[1]));
+		System.out.printf("%d nodes extracted in %d ms%n",
+				Arrays.stream(newNodeIds).filter(id -> id >= 0).count(), (System.nanoTime() - t0) / 1_000_000);
+	}
+
+	/**
+	 * Gives the region made of the points inside the given bounding box (borders included).
+	 *
+	 * @param bottomLeft the bottom left corner of the box.
+	 * @param topRight   the top right corner of the box.
+	 * @return the region of the bounding box.
+	 * @throws IllegalArgumentException if the corners are not in this order.
+	 */
+	public static Predicate<PointCh> boundingBox(PointCh bottomLeft, PointCh topRight) {
+		Preconditions.checkArgument(bottomLeft.e() <= topRight.e() && bottomLeft.n() <= topRight.n());
+		return p -> bottomLeft.e() <= p.e() && p.e() <= topRight.e() && bottomLeft.n() <= p.n() && p.n() <= topRight.n();
+	}
+
+	/**
+	 * Gives the region made of the points inside the given (simple) polygon, determined with the even-odd rule.
+	 *
+	 * @param vertices the vertices of the polygon, in order (the last one being linked to the first one).
+	 * @return the region of the polygon.
+	 * @throws IllegalArgumentException if the polygon has less than three vertices.
+	 */
+	public static Predicate<PointCh> polygon(List<PointCh> vertices) {
+		Preconditions.checkArgument(vertices.size() >= 3);
+		double[] es = vertices.stream().mapToDouble(PointCh::e).toArray();
+		double[] ns = vertices.stream().mapToDouble(PointCh::n).toArray();
+		PointCh min = new PointCh(Arrays.stream(es).min().orElseThrow(), Arrays.stream(ns).min().orElseThrow());
+		PointCh max = new PointCh(Arrays.stream(es).max().orElseThrow(), Arrays.stream(ns).max().orElseThrow());
+		Predicate<PointCh> box = boundingBox(min, max);
+		return p -> {
+			if (!box.test(p)) return false;
+			boolean inside = false;
+			for (int i = 0, j = es.length - 1; i < es.length; j = i++) {
+				if ((ns[i] > p.n()) != (ns[j] > p.n())
+						&& p.e() < es[j] + (es[i] - es[j]) * (p.n() - ns[j]) / (ns[i] - ns[j])) {
+					inside = !inside;
+				}
+			}
+			return inside;
+		};
+	}
+
+	/**
+	 * Writes in the output directory the part of the input dataset contained in the given region.
+	 * The file nodes_osmid.bin is only written if it exists in the input dataset.
+	 *
+	 * @param in     the directory containing the complete dataset.
+	 * @param region the region to extract.
+	 * @param out    the directory where the extracted dataset is written (created if needed).
+	 * @return an array giving, for each node identity of the input dataset, its identity in the extracted dataset,
+	 * or -1 if the node is outside the region.
+	 * @throws IOException in case of an input/output error.
+	 */
+	public static int[] extract(Path in, Predicate<PointCh> region, Path out) throws IOException {
+		IntBuffer nodes = BinaryFiles.map(in.resolve("nodes.bin")).asIntBuffer();
+		ByteBuffer edges = BinaryFiles.map(in.resolve("edges.bin"));
+		IntBuffer profileIds = BinaryFiles.map(in.resolve("profile_ids.bin")).asIntBuffer();
+		ShortBuffer elevations = BinaryFiles.map(in.resolve("elevations.bin")).asShortBuffer();
+		LongBuffer attributeSets = BinaryFiles.map(in.resolve("attributes.bin")).asLongBuffer();
+		Path osmIdsFile = in.resolve(GraphOsmIds.FILE);
+		LongBuffer osmIds = Files.exists(osmIdsFile) ? BinaryFiles.map(osmIdsFile).asLongBuffer() : null;
+		int nodeCount = nodes.capacity() / NODE_INTS;
+
+		DatasetBuilder builder = new DatasetBuilder();
+		byte[] location = new byte[nodeCount];
+		int[] indexOf = new int[nodeCount];
+		Map<Integer, Integer> copiedProfiles = new HashMap<>();
+		for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+			if (!isInside(nodeId, nodes, region, location)) continue;
+			int from = index(nodeId, nodes, osmIds, builder, indexOf);
+
+			int outEdges = nodes.get(NODE_INTS * nodeId + 2);
+			int firstEdge = outEdges & ((1 << NODE_ID_BITS) - 1);
+			for (int edgeId = firstEdge; edgeId < firstEdge + (outEdges >>> NODE_ID_BITS); edgeId++) {
+				int target = edges.getInt(edgeId * BYTES_PER_EDGE);
+				int targetId = target < 0 ? ~target : target;
+				if (!isInside(targetId, nodes, region, location)) continue;
+
+				int lengthQ28_4 = Short.toUnsignedInt(edges.getShort(edgeId * BYTES_PER_EDGE + 4));
+				int profileId = profileIds.get(edgeId);
+				int profileType = profileId >>> OFFSET_PROFILE_TYPE;
+				int newProfileId = 0;
+				if (profileType != 0) {
+					int firstSample = profileId & FIRST_SAMPLE_MASK;
+					Integer copied = copiedProfiles.get(firstSample);
+					if (copied == null) {
+						short[] shorts = new short[DatasetBuilder.profileShortCount(profileType, lengthQ28_4)];
+						elevations.get(firstSample, shorts);
+						copied = builder.addProfile(profileType, shorts);
+						copiedProfiles.put(firstSample, copied);
+					}
+					newProfileId = copied;
+				}
+				builder.addEdge(from, index(targetId, nodes, osmIds, builder, indexOf), target < 0,
+						lengthQ28_4,
+						Short.toUnsignedInt(edges.getShort(edgeId * BYTES_PER_EDGE + 6)),
+						attributeSets.get(Short.toUnsignedInt(edges.getShort(edgeId * BYTES_PER_EDGE + 8))),
+						newProfileId);
+			}
+		}
+
+		int[] idOf = builder.write(out);
+		int[] newNodeIds = new int[nodeCount];
+		for (int nodeId = 0; nodeId < nodeCount; nodeId++)
+			newNodeIds[nodeId] = location[nodeId] == INSIDE ? idOf[indexOf[nodeId] - 1] : -1;
+		return newNodeIds;
+	}
+
+	private static boolean isInside(int nodeId, IntBuffer nodes, Predicate<PointCh> region, byte[] location) {
+		if (location[nodeId] == UNKNOWN) {
+			PointCh point = new PointCh(
+					Math.scalb((double) nodes.get(NODE_INTS * nodeId), -4),
+					Math.scalb((double) nodes.get(NODE_INTS * nodeId + 1), -4));
+			location[nodeId] = region.test(point) ? INSIDE : OUTSIDE;
+		}
+		return location[nodeId] == INSIDE;
+	}
+
+	/**
+	 * Gives the index of the given node in the builder, adding it the first time. The indexes are stored shifted by
+	 * one, so that zero means "not added yet".
+	 */
+	private static int index(int nodeId, IntBuffer nodes, LongBuffer osmIds, DatasetBuilder builder, int[] indexOf) {
+		if (indexOf[nodeId] == 0) {
+			indexOf[nodeId] = 1 + builder.addNode(
+					Math.scalb((double) nodes.get(NODE_INTS * nodeId), -4),
+					Math.scalb((double) nodes.get(NODE_INTS * nodeId + 1), -4),
+					osmIds == null ? -1 : osmIds.get(nodeId));
+		}
+		return indexOf[nodeId] - 1;
+	}
+}
@@ -0,0 +1,36 @@
+package ch.epfl.javelo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayeringTest {
+
+    private static final List<String> FORBIDDEN_PREFIXES = List.of(
+            "javafx.", "javax.swing.", "java.awt.", "ch.epfl.javelo.gui.", "ch.epfl.javelo.server.");
+
+    @Test
+    void coreDependsOnlyOnJavaBaseAndJavaXml() throws IOException {
+        var violations = new ArrayList<String>();
+        for (var pkg : List.of("data", "projection", "routing")) {
+            try (Stream<Path> files = Files.walk(Path.of("src/ch/epfl/javelo", pkg))) {
+                for (var file : files.filter(f -> f.toString().endsWith(".java")).toList()) {
+                    for (var line : Files.readAllLines(file)) {
+                        if (!line.startsWith("import ")) continue;
+                        var imported = line.substring("import ".length()).replace("static ", "");
+                        for (var prefix : FORBIDDEN_PREFIXES)
+                            if (imported.startsWith(prefix)) violations.add(file + ": " + line);
+                    }
+                }
+            }
+        }
+        assertEquals(List.of(), violations);
+    }
+}
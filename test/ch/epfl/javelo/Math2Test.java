@@ -222,4 +222,40 @@ class Math2Test {
         var expected2 = 8.049844718999243;
         assertEquals(expected2, actual2, delta);
     }
-}
\ No newline at end of file
+
+    @Test
+    void hilbertIndexWorksOnKnownValues() {
+        // order 1 curve: (0,0) -> (0,1) -> (1,1) -> (1,0)
+        assertEquals(0, Math2.hilbertIndex(1, 0, 0));
+        assertEquals(1, Math2.hilbertIndex(1, 0, 1));
+        assertEquals(2, Math2.hilbertIndex(1, 1, 1));
+        assertEquals(3, Math2.hilbertIndex(1, 1, 0));
+        assertEquals(0, Math2.hilbertIndex(0, 0, 0));
+    }
+
+    @Test
+    void hilbertIndexIsABijectionOfAdjacentCells() {
+        var order = 5;
+        var side = 1 << order;
+        var xs = new int[side * side];
+        var ys = new int[side * side];
+        var seen = new boolean[side * side];
+        for (int x = 0; x < side; x += 1) {
+            for (int y = 0; y < side; y += 1) {
+                var index = (int) Math2.hilbertIndex(order, x, y);
+                assertFalse(seen[index]);
+                seen[index] = true;
+                xs[index] = x;
+                ys[index] = y;
+            }
+        }
+        for (int i = 1; i < side * side; i += 1)
+            assertEquals(1, Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]));
+    }
+
+    @Test
+    void hilbertIndexThrowsOnOutOfBoundsCell() {
+        assertThrows(IllegalArgumentException.class, () -> Math2.hilbertIndex(4, 16, 0));
+        assertThrows(IllegalArgumentException.class, () -> Math2.hilbertIndex(4, 0, -1));
+    }
+}
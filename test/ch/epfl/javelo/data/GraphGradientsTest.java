@@ -0,0 +1,103 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphGradientsTest {
+
+    @Test
+    void graphGradientsBucketOfWorks() {
+        assertEquals(0, GraphGradients.bucketOf(-0.2));
+        assertEquals(1, GraphGradients.bucketOf(-0.05));
+        assertEquals(1, GraphGradients.bucketOf(0));
+        assertEquals(2, GraphGradients.bucketOf(0.01));
+        assertEquals(3, GraphGradients.bucketOf(0.04));
+        assertEquals(4, GraphGradients.bucketOf(0.07));
+        assertEquals(5, GraphGradients.bucketOf(0.3));
+    }
+
+    @Test
+    void graphGradientsMatchDecodedProfiles(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var gradients = GraphGradients.of(graph);
+        assertEquals(graph.edgeCount(), gradients.count());
+
+        var profiled = 0;
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+            var shares = 0d;
+            for (int b = 0; b < GraphGradients.BUCKET_COUNT; b += 1) shares += gradients.share(edgeId, b);
+            assertEquals(1, shares, 1e-9);
+
+            var profile = graph.edgeProfile(edgeId);
+            var length = graph.edgeLength(edgeId);
+            if (Double.isNaN(profile.applyAsDouble(0))) {
+                assertEquals(0, gradients.maxUpSlope(edgeId));
+                assertEquals(0, gradients.maxDownSlope(edgeId));
+                assertEquals(1, gradients.share(edgeId, GraphGradients.bucketOf(0)));
+                continue;
+            }
+            profiled += 1;
+            var averageSlope = (profile.applyAsDouble(length) - profile.applyAsDouble(0)) / length;
+            assertTrue(gradients.maxUpSlope(edgeId) >= averageSlope - 0.0025);
+            assertTrue(gradients.maxDownSlope(edgeId) >= -averageSlope - 0.0025);
+
+            // the steepest part of the opposite edge is its steepest descent
+            var opposite = -1;
+            var target = graph.edgeTargetNodeId(edgeId);
+            for (int i = 0; i < graph.nodeOutDegree(target); i += 1) {
+                var candidate = graph.nodeOutEdgeId(target, i);
+                if (graph.edgeTargetNodeId(candidate) == graph.edgeSourceNodeId(edgeId)) opposite = candidate;
+            }
+            assertEquals(gradients.maxUpSlope(edgeId), gradients.maxDownSlope(opposite));
+        }
+        assertTrue(profiled > 0);
+    }
+
+    @Test
+    void graphGradientsCanBeWrittenAndLoaded(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 6, 5);
+        var graph = Graph.loadFrom(dir);
+        var gradients = GraphGradients.of(graph);
+        gradients.writeTo(dir, graph);
+        var loaded = GraphGradients.loadFrom(dir, graph);
+        assertEquals(gradients.count(), loaded.count());
+        for (int edgeId = 0; edgeId < gradients.count(); edgeId += 1) {
+            assertEquals(gradients.maxUpSlope(edgeId), loaded.maxUpSlope(edgeId));
+            assertEquals(gradients.maxDownSlope(edgeId), loaded.maxDownSlope(edgeId));
+            for (int b = 0; b < GraphGradients.BUCKET_COUNT; b += 1)
+                assertEquals(gradients.share(edgeId, b), loaded.share(edgeId, b));
+        }
+    }
+
+    @Test
+    void graphGradientsRejectsFileOfAnotherDataset(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 6, 5);
+        var graph = Graph.loadFrom(dir);
+        var gradients = GraphGradients.of(graph);
+        gradients.writeTo(dir, graph);
+
+        // a larger dataset, whose edges would be read out of the bounds of the gradients
+        TestGraphs.writeGrid(dir, 8, 5);
+        var larger = Graph.loadFrom(dir);
+        assertThrows(IllegalArgumentException.class, () -> GraphGradients.loadFrom(dir, larger));
+
+        // the same dataset rebuilt
+        GraphGradients.of(larger).writeTo(dir, larger);
+        TestGraphs.writeGrid(dir, 8, 5);
+        var nodesFile = dir.resolve("nodes.bin");
+        Files.setLastModifiedTime(nodesFile, FileTime.fromMillis(Files.getLastModifiedTime(nodesFile).toMillis() + 1_000));
+        var rebuilt = Graph.loadFrom(dir);
+        assertThrows(IllegalArgumentException.class, () -> GraphGradients.loadFrom(dir, rebuilt));
+
+        assertThrows(IllegalArgumentException.class, () -> gradients.writeTo(dir, rebuilt));
+    }
+}
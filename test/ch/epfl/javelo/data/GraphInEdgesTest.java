@@ -0,0 +1,117 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphInEdgesTest {
+
+    @Test
+    void graphInEdgesWorksOnSmallGraph() {
+        // 0 -> 1, 0 -> 2, 1 -> 2, 2 -> 0
+        var nodes = new GraphNodes(IntBuffer.wrap(new int[]{
+                0, 0, (2 << 28) | 0,
+                0, 0, (1 << 28) | 2,
+                0, 0, (1 << 28) | 3,
+        }));
+        var edgesBuffer = ByteBuffer.allocate(4 * 10);
+        edgesBuffer.putInt(0, 1);
+        edgesBuffer.putInt(10, ~2);
+        edgesBuffer.putInt(20, 2);
+        edgesBuffer.putInt(30, 0);
+        var edges = new GraphEdges(edgesBuffer, IntBuffer.allocate(4), ShortBuffer.allocate(0));
+
+        var inEdges = GraphInEdges.of(nodes, edges);
+        assertEquals(1, inEdges.inDegree(0));
+        assertEquals(3, inEdges.edgeId(0, 0));
+        assertEquals(1, inEdges.inDegree(1));
+        assertEquals(0, inEdges.edgeId(1, 0));
+        assertEquals(2, inEdges.inDegree(2));
+        assertEquals(1, inEdges.edgeId(2, 0));
+        assertEquals(2, inEdges.edgeId(2, 1));
+        assertArrayEquals(new int[]{0, 0, 1, 2},
+                new int[]{inEdges.sourceNodeId(0), inEdges.sourceNodeId(1), inEdges.sourceNodeId(2), inEdges.sourceNodeId(3)});
+    }
+
+    @Test
+    void graphInEdgesIsTheReverseOfOutEdges(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 25, 18);
+        var graph = Graph.loadFrom(dir);
+
+        var expected = new ArrayList<List<Integer>>();
+        for (int n = 0; n < graph.nodeCount(); n += 1) expected.add(new ArrayList<>());
+        for (int n = 0; n < graph.nodeCount(); n += 1) {
+            for (int i = 0; i < graph.nodeOutDegree(n); i += 1) {
+                var edgeId = graph.nodeOutEdgeId(n, i);
+                expected.get(graph.edgeTargetNodeId(edgeId)).add(edgeId);
+                assertEquals(n, graph.edgeSourceNodeId(edgeId));
+            }
+        }
+        for (int n = 0; n < graph.nodeCount(); n += 1) {
+            var actual = new ArrayList<Integer>();
+            for (int i = 0; i < graph.nodeInDegree(n); i += 1) actual.add(graph.nodeInEdgeId(n, i));
+            assertEquals(expected.get(n), actual.stream().sorted().toList());
+        }
+    }
+
+    @Test
+    void graphInEdgesIsLoadedFromPersistedFile(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 25, 18);
+        var built = Graph.loadFrom(dir);
+        var version = BinaryFiles.datasetVersion(dir);
+        assertEquals(version, built.datasetVersion());
+        var nodes = new GraphNodes(BinaryFiles.map(dir.resolve("nodes.bin")).asIntBuffer());
+        var edges = new GraphEdges(BinaryFiles.map(dir.resolve("edges.bin")), IntBuffer.allocate(0), ShortBuffer.allocate(0));
+        GraphInEdges.of(nodes, edges).writeTo(dir.resolve(Graph.IN_EDGES_FILE), version);
+        assertEquals(version, BinaryFiles.datasetVersion(dir));
+        assertNotNull(GraphInEdges.loadFrom(dir.resolve(Graph.IN_EDGES_FILE), version, nodes.count(), edges.count()));
+        assertNull(GraphInEdges.loadFrom(dir.resolve(Graph.IN_EDGES_FILE), version, nodes.count() + 1, edges.count()));
+
+        var loaded = Graph.loadFrom(dir);
+        assertEquals(built.edgeCount(), loaded.edgeCount());
+        for (int n = 0; n < built.nodeCount(); n += 1) {
+            assertEquals(built.nodeInDegree(n), loaded.nodeInDegree(n));
+            for (int i = 0; i < built.nodeInDegree(n); i += 1)
+                assertEquals(built.nodeInEdgeId(n, i), loaded.nodeInEdgeId(n, i));
+        }
+        for (int e = 0; e < built.edgeCount(); e += 1)
+            assertEquals(built.edgeSourceNodeId(e), loaded.edgeSourceNodeId(e));
+    }
+
+    @Test
+    void graphInEdgesIgnoresFileOfAnotherGraph(@TempDir Path dir) throws IOException {
+        // both grids have the same number of nodes and edges, but not the same edges
+        TestGraphs.writeGrid(dir, 25, 18);
+        var graph = Graph.loadFrom(dir);
+        var nodes = new GraphNodes(BinaryFiles.map(dir.resolve("nodes.bin")).asIntBuffer());
+        var edges = new GraphEdges(BinaryFiles.map(dir.resolve("edges.bin")), IntBuffer.allocate(0), ShortBuffer.allocate(0));
+        GraphInEdges.of(nodes, edges).writeTo(dir.resolve(Graph.IN_EDGES_FILE), graph.datasetVersion());
+
+        TestGraphs.writeGrid(dir, 18, 25);
+        // the grid may be written again within the same millisecond
+        var nodesFile = dir.resolve("nodes.bin");
+        Files.setLastModifiedTime(nodesFile, FileTime.fromMillis(Files.getLastModifiedTime(nodesFile).toMillis() + 1_000));
+        var other = Graph.loadFrom(dir);
+        assertEquals(graph.nodeCount(), other.nodeCount());
+        assertEquals(graph.edgeCount(), other.edgeCount());
+        assertNotEquals(graph.datasetVersion(), other.datasetVersion());
+        assertNull(GraphInEdges.loadFrom(dir.resolve(Graph.IN_EDGES_FILE), other.datasetVersion(),
+                other.nodeCount(), other.edgeCount()));
+        for (int n = 0; n < other.nodeCount(); n += 1) {
+            for (int i = 0; i < other.nodeInDegree(n); i += 1)
+                assertEquals(n, other.edgeTargetNodeId(other.nodeInEdgeId(n, i)));
+        }
+    }
+}
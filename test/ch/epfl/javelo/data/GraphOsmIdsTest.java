@@ -0,0 +1,71 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphOsmIdsTest {
+
+    @Test
+    void graphOsmIdsWorksOnKnownValues() {
+        var ids = GraphOsmIds.of(LongBuffer.wrap(new long[]{42, 7, 1_000_000_000_000L, 13}));
+        assertEquals(4, ids.count());
+        assertEquals(42, ids.osmId(0));
+        assertEquals(1_000_000_000_000L, ids.osmId(2));
+        assertEquals(0, ids.nodeId(42));
+        assertEquals(1, ids.nodeId(7));
+        assertEquals(2, ids.nodeId(1_000_000_000_000L));
+        assertEquals(3, ids.nodeId(13));
+        assertEquals(-1, ids.nodeId(8));
+        assertEquals(-1, ids.nodeId(0));
+        assertEquals(-1, ids.nodeId(Long.MAX_VALUE));
+    }
+
+    @Test
+    void graphOsmIdsWorksWithIdentitiesTooLargeToBePacked() {
+        var ids = GraphOsmIds.of(LongBuffer.wrap(new long[]{Long.MAX_VALUE, 3, -5}));
+        assertEquals(0, ids.nodeId(Long.MAX_VALUE));
+        assertEquals(1, ids.nodeId(3));
+        assertEquals(2, ids.nodeId(-5));
+        assertEquals(-1, ids.nodeId(4));
+    }
+
+    @Test
+    void graphOsmIdsIgnoresNodesWithoutIdentity() {
+        var ids = GraphOsmIds.of(LongBuffer.wrap(new long[]{7, -1, 3, -1}));
+        assertEquals(-1, ids.osmId(1));
+        assertEquals(-1, ids.osmId(3));
+        assertEquals(0, ids.nodeId(7));
+        assertEquals(2, ids.nodeId(3));
+        assertEquals(-1, ids.nodeId(-1));
+    }
+
+    @Test
+    void graphOsmIdsIsABijectionOnRandomValues() {
+        var rng = newRandom();
+        var osmIds = rng.longs(RANDOM_ITERATIONS, 0, 20_000_000_000L).distinct().toArray();
+        var ids = GraphOsmIds.of(LongBuffer.wrap(osmIds));
+        for (int nodeId = 0; nodeId < osmIds.length; nodeId += 1) {
+            assertEquals(osmIds[nodeId], ids.osmId(nodeId));
+            assertEquals(nodeId, ids.nodeId(osmIds[nodeId]));
+        }
+    }
+
+    @Test
+    void graphOsmIdsIsLoadedFromDataset(@TempDir Path dir) throws IOException {
+        var nodeIdOf = TestGraphs.writeGrid(dir, 10, 10);
+        var ids = GraphOsmIds.loadFrom(dir);
+        for (int i = 0; i < nodeIdOf.length; i += 1) {
+            assertEquals(TestGraphs.osmIdOf(i), ids.osmId(nodeIdOf[i]));
+            assertEquals(nodeIdOf[i], ids.nodeId(TestGraphs.osmIdOf(i)));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ch.epfl.javelo.gui;
+
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.PointWebMercator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimplifiedRouteTest {
+    private static final double ORIGIN_E = 2_600_000;
+    private static final double ORIGIN_N = 1_200_000;
+
+    @Test
+    void simplifiedRouteKeepsOnlyEndsOfStraightLine() {
+        var points = new ArrayList<PointCh>();
+        for (int i = 0; i <= 1000; i += 1) points.add(new PointCh(ORIGIN_E + 10 * i, ORIGIN_N));
+        var route = SimplifiedRoute.of(points);
+        // the line is slightly curved once projected, which is only visible at the largest zoom levels
+        for (int z = SimplifiedRoute.MIN_ZOOM_LEVEL; z <= 15; z += 1)
+            assertEquals(2, route.vertexCount(z));
+        assertTrue(route.vertexCount(SimplifiedRoute.MAX_ZOOM_LEVEL) < 20);
+    }
+
+    @Test
+    void simplifiedRouteKeepsMorePointsAtLargerZoomLevels() {
+        var rng = newRandom();
+        var points = new ArrayList<PointCh>();
+        double e = ORIGIN_E, n = ORIGIN_N;
+        for (int i = 0; i < 5000; i += 1) {
+            points.add(new PointCh(e, n));
+            e += rng.nextDouble(-5, 20);
+            n += rng.nextDouble(-10, 10);
+        }
+        var route = SimplifiedRoute.of(points);
+        var previousCount = 0;
+        for (int z = SimplifiedRoute.MIN_ZOOM_LEVEL; z <= SimplifiedRoute.MAX_ZOOM_LEVEL; z += 1) {
+            var count = route.vertexCount(z);
+            assertTrue(count >= previousCount);
+            assertTrue(count >= 2 && count <= points.size());
+            previousCount = count;
+        }
+        assertTrue(route.vertexCount(SimplifiedRoute.MIN_ZOOM_LEVEL) < points.size() / 10);
+        assertEquals(route.vertexCount(SimplifiedRoute.MIN_ZOOM_LEVEL), route.vertexCount(1));
+        assertEquals(route.vertexCount(SimplifiedRoute.MAX_ZOOM_LEVEL), route.vertexCount(22));
+
+        // the whole route is visible in a window covering it, and its ends are kept
+        for (int z = SimplifiedRoute.MIN_ZOOM_LEVEL; z <= SimplifiedRoute.MAX_ZOOM_LEVEL; z += 1) {
+            var parts = route.visibleParts(z, 0, 0, Math.scalb(1d, z + 8), Math.scalb(1d, z + 8));
+            assertEquals(1, parts.size());
+            assertEquals(2 * route.vertexCount(z), parts.get(0).length);
+            var first = PointWebMercator.ofPointCh(points.get(0));
+            var last = PointWebMercator.ofPointCh(points.get(points.size() - 1));
+            assertEquals(first.xAtZoomLevel(z), parts.get(0)[0], 1e-6);
+            assertEquals(first.yAtZoomLevel(z), parts.get(0)[1], 1e-6);
+            assertEquals(last.xAtZoomLevel(z), parts.get(0)[parts.get(0).length - 2], 1e-6);
+            assertEquals(last.yAtZoomLevel(z), parts.get(0)[parts.get(0).length - 1], 1e-6);
+        }
+    }
+
+    @Test
+    void simplifiedRouteGivesVisiblePartsRelativeToWindow() {
+        // a route going east, then back west 2 km further north
+        var points = List.of(
+                new PointCh(ORIGIN_E, ORIGIN_N),
+                new PointCh(ORIGIN_E + 5000, ORIGIN_N),
+                new PointCh(ORIGIN_E + 5000, ORIGIN_N + 2000),
+                new PointCh(ORIGIN_E, ORIGIN_N + 2000));
+        var route = SimplifiedRoute.of(points);
+        var z = 12;
+        var start = PointWebMercator.ofPointCh(points.get(0));
+        var end = PointWebMercator.ofPointCh(points.get(3));
+        var x = start.xAtZoomLevel(z);
+        var y = start.yAtZoomLevel(z);
+
+        // a window around the start only contains the first segment
+        var parts = route.visibleParts(z, x - 10, y - 10, x + 10, y + 10);
+        assertEquals(1, parts.size());
+        assertEquals(4, parts.get(0).length);
+        assertEquals(10, parts.get(0)[0], 1e-9);
+        assertEquals(10, parts.get(0)[1], 1e-9);
+
+        // a window covering the west ends contains the first and last segments, in two parts
+        parts = route.visibleParts(z, x - 10, end.yAtZoomLevel(z) - 10, x + 10, y + 10);
+        assertEquals(2, parts.size());
+        assertEquals(4, parts.get(0).length);
+        assertEquals(4, parts.get(1).length);
+
+        assertTrue(route.visibleParts(z, x - 100, y + 50, x - 50, y + 100).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> SimplifiedRoute.of(points.subList(0, 1)));
+    }
+}
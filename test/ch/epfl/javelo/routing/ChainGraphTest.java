@@ -0,0 +1,109 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import ch.epfl.test.TestRandomizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChainGraphTest {
+
+    @Test
+    void chainGraphCollapsesIntermediateNodes(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 21, 11, 5);
+        var graph = Graph.loadFrom(dir);
+        var chains = ChainGraph.of(graph, new CityBikeCF(graph));
+
+        // node (2, 0) is along a street, node (5, 5) is a crossing, node (1, 1) is on no street
+        assertTrue(chains.isIntermediate(ids[2]));
+        assertFalse(chains.isIntermediate(ids[5 * 21 + 5]));
+        assertFalse(chains.isIntermediate(ids[21 + 1]));
+        assertEquals(4, chains.firstArc(ids[5 * 21 + 5] + 1) - chains.firstArc(ids[5 * 21 + 5]));
+
+        // 22 street segments between 5 x 3 crossings, but the 4 corners only link two segments
+        var expectedArcs = 2 * (4 * 3 + 5 * 2 - 4);
+        assertEquals(expectedArcs, chains.arcCount());
+        var crossing = ids[5 * 21 + 5];
+        for (int arc = chains.firstArc(crossing); arc < chains.firstArc(crossing + 1); arc += 1) {
+            var target = chains.arcTargetNodeId(arc);
+            assertEquals(5 * TestGraphs.SPACING, chains.arcLength(arc), 25);
+            assertTrue(chains.arcCost(arc) >= chains.arcLength(arc) - 1e-3);
+            assertFalse(chains.isIntermediate(target));
+        }
+    }
+
+    @Test
+    void routeComputerOnChainsFindsRoutesOfSameCost(@TempDir Path dir) throws IOException {
+        var columns = 31;
+        var rows = 21;
+        var ids = TestGraphs.writeGrid(dir, columns, rows, 3);
+        var graph = Graph.loadFrom(dir);
+        var cf = new CityBikeCF(graph);
+        var plain = new RouteComputer(graph, cf);
+        var collapsed = new RouteComputer(ChainGraph.of(graph, cf), new EdgeOverlay());
+
+        var rng = TestRandomizer.newRandom();
+        var compared = 0;
+        for (int i = 0; i < 300; i += 1) {
+            var from = ids[rng.nextInt(ids.length)];
+            var to = ids[rng.nextInt(ids.length)];
+            if (from == to) continue;
+            var expected = plain.bestRouteBetween(from, to);
+            var actual = collapsed.bestRouteBetween(from, to);
+            if (expected == null) {
+                assertNull(actual);
+                continue;
+            }
+            compared += 1;
+            assertNotNull(actual);
+            assertEquals(TestGraphs.cost(graph, cf, expected), TestGraphs.cost(graph, cf, actual), 1e-2);
+            var edges = actual.edges();
+            assertEquals(from, edges.get(0).fromNodeId());
+            assertEquals(to, edges.get(edges.size() - 1).toNodeId());
+            for (int j = 1; j < edges.size(); j += 1)
+                assertEquals(edges.get(j - 1).toNodeId(), edges.get(j).fromNodeId());
+        }
+        assertTrue(compared > 50);
+    }
+
+    @Test
+    void routeComputerOnChainsHandlesNodesOfTheSameChain(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 21, 11, 5);
+        var graph = Graph.loadFrom(dir);
+        var cf = new CityBikeCF(graph);
+        var collapsed = new RouteComputer(ChainGraph.of(graph, cf), new EdgeOverlay());
+
+        var forward = collapsed.bestRouteBetween(ids[1], ids[3]);
+        assertEquals(2, forward.edges().size());
+        assertEquals(ids[2], forward.edges().get(0).toNodeId());
+        var backward = collapsed.bestRouteBetween(ids[4], ids[1]);
+        assertEquals(3, backward.edges().size());
+        var toCrossing = collapsed.bestRouteBetween(ids[2], ids[5]);
+        assertEquals(3, toCrossing.edges().size());
+        var fromCrossing = collapsed.bestRouteBetween(ids[5], ids[7]);
+        assertEquals(2, fromCrossing.edges().size());
+        assertNull(collapsed.bestRouteBetween(ids[2], ids[21 + 1]));
+    }
+
+    @Test
+    void routeComputerOnChainsUsesOverlay(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 21, 11, 5);
+        var graph = Graph.loadFrom(dir);
+        var overlay = new EdgeOverlay();
+        var collapsed = new RouteComputer(ChainGraph.of(graph, new CityBikeCF(graph)), overlay);
+        var direct = collapsed.bestRouteBetween(ids[1], ids[4]);
+        assertEquals(3, direct.edges().size());
+
+        for (int i = 0; i < graph.nodeOutDegree(ids[2]); i += 1) {
+            var edgeId = graph.nodeOutEdgeId(ids[2], i);
+            if (graph.edgeTargetNodeId(edgeId) == ids[3]) overlay.block(edgeId);
+        }
+        var detour = collapsed.bestRouteBetween(ids[1], ids[4]);
+        assertTrue(detour.length() > direct.length() + 10 * TestGraphs.SPACING - 50);
+    }
+}
@@ -0,0 +1,112 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactRouteTest {
+
+    private static int[] edgesThrough(Graph graph, int... nodeIds) {
+        var edgeIds = new int[nodeIds.length - 1];
+        for (int i = 1; i < nodeIds.length; i += 1)
+            edgeIds[i - 1] = TestGraphs.edgeBetween(graph, nodeIds[i - 1], nodeIds[i]);
+        return edgeIds;
+    }
+
+    private static SingleRoute singleRoute(Graph graph, TravelTimes times, int startNodeId, int[] edgeIds) {
+        var edges = new ArrayList<Edge>();
+        var from = startNodeId;
+        for (var edgeId : edgeIds) {
+            var to = graph.edgeTargetNodeId(edgeId);
+            edges.add(times == null ? Edge.of(graph, edgeId, from, to) : Edge.of(graph, edgeId, from, to, times));
+            from = to;
+        }
+        return new SingleRoute(edges);
+    }
+
+    @Test
+    void compactRouteBehavesLikeSingleRoute(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var times = TravelTimes.of(graph, SpeedModel.CITY_BIKE);
+        var edgeIds = edgesThrough(graph, ids[13], ids[14], ids[15], ids[27], ids[39], ids[38], ids[50], ids[51]);
+        var compact = new CompactRoute(graph, times, ids[13], edgeIds);
+        var single = singleRoute(graph, times, ids[13], edgeIds);
+
+        assertEquals(0, compact.indexOfSegmentAt(30));
+        assertEquals(single.length(), compact.length());
+        assertEquals(single.time(), compact.time(), 1e-9);
+        assertEquals(single.points(), compact.points());
+        assertEquals(single.edges().size(), compact.edges().size());
+        for (int i = 0; i < single.edges().size(); i += 1) {
+            var expected = single.edges().get(i);
+            var actual = compact.edges().get(i);
+            assertEquals(expected.fromNodeId(), actual.fromNodeId());
+            assertEquals(expected.toNodeId(), actual.toNodeId());
+            assertEquals(expected.length(), actual.length());
+            assertEquals(expected.time(), actual.time());
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> compact.points().get(edgeIds.length + 1));
+
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var position = rng.nextDouble(-50, compact.length() + 50);
+            assertEquals(single.pointAt(position), compact.pointAt(position));
+            assertEquals(single.elevationAt(position), compact.elevationAt(position));
+            assertEquals(single.nodeClosestTo(position), compact.nodeClosestTo(position));
+            var point = new PointCh(TestGraphs.ORIGIN_E + rng.nextDouble(-100, 700),
+                    TestGraphs.ORIGIN_N + rng.nextDouble(-100, 500));
+            assertEquals(single.pointClosestTo(point), compact.pointClosestTo(point));
+        }
+        for (int i = 0; i <= edgeIds.length; i += 1) {
+            var position = i * TestGraphs.SPACING;
+            assertEquals(single.pointAt(position), compact.pointAt(position));
+            assertEquals(single.nodeClosestTo(position), compact.nodeClosestTo(position));
+        }
+
+        assertTrue(Double.isNaN(new CompactRoute(graph, ids[13], edgeIds).time()));
+    }
+
+    @Test
+    void compactRouteRoundTripsThroughBytes(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var edgeIds = edgesThrough(graph, ids[0], ids[1], ids[13], ids[25]);
+        var route = new CompactRoute(graph, ids[0], edgeIds);
+        var bytes = route.toBytes();
+        assertEquals((3 + edgeIds.length) * Integer.BYTES, bytes.length);
+        assertEquals(route, CompactRoute.fromBytes(graph, null, bytes));
+        assertEquals(route.hashCode(), CompactRoute.fromBytes(graph, null, bytes).hashCode());
+        assertArrayEquals(edgeIds, route.edgeIds());
+        assertEquals(ids[0], route.startNodeId());
+
+        assertThrows(IllegalArgumentException.class, () -> CompactRoute.fromBytes(graph, null, new byte[5]));
+        var truncated = Arrays.copyOf(bytes, bytes.length - Integer.BYTES);
+        assertThrows(IllegalArgumentException.class, () -> CompactRoute.fromBytes(graph, null, truncated));
+        var corrupted = bytes.clone();
+        corrupted[0] = 0;
+        assertThrows(IllegalArgumentException.class, () -> CompactRoute.fromBytes(graph, null, corrupted));
+    }
+
+    @Test
+    void compactRouteRejectsDisconnectedEdges(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        assertThrows(IllegalArgumentException.class, () -> new CompactRoute(graph, ids[0], new int[0]));
+        var first = TestGraphs.edgeBetween(graph, ids[0], ids[1]);
+        var other = TestGraphs.edgeBetween(graph, ids[5], ids[6]);
+        assertThrows(IllegalArgumentException.class, () -> new CompactRoute(graph, ids[0], new int[]{first, other}));
+        assertThrows(IllegalArgumentException.class, () -> new CompactRoute(graph, ids[1], new int[]{first}));
+    }
+}
@@ -0,0 +1,89 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeOverlayTest {
+
+    @Test
+    void edgeOverlayIsInitiallyEmpty() {
+        var overlay = new EdgeOverlay();
+        assertTrue(overlay.snapshot().isEmpty());
+        assertEquals(1, overlay.snapshot().factor(42));
+    }
+
+    @Test
+    void edgeOverlayStoresBlocksAndPenalties() {
+        var overlay = new EdgeOverlay();
+        overlay.block(12);
+        overlay.penalize(3, 2.5);
+        overlay.update(Map.of(7, 4d, 8, Double.POSITIVE_INFINITY));
+        var snapshot = overlay.snapshot();
+        assertEquals(4, snapshot.size());
+        assertEquals(Double.POSITIVE_INFINITY, snapshot.factor(12));
+        assertEquals(2.5, snapshot.factor(3));
+        assertEquals(4, snapshot.factor(7));
+        assertEquals(Double.POSITIVE_INFINITY, snapshot.factor(8));
+        assertEquals(1, snapshot.factor(9));
+
+        overlay.remove(12);
+        overlay.update(Map.of(3, 1d));
+        assertEquals(2, overlay.snapshot().size());
+        assertEquals(1, overlay.snapshot().factor(12));
+        overlay.clear();
+        assertTrue(overlay.snapshot().isEmpty());
+    }
+
+    @Test
+    void edgeOverlaySnapshotsAreNotChangedByUpdates() {
+        var overlay = new EdgeOverlay();
+        overlay.block(1);
+        var before = overlay.snapshot();
+        overlay.update(Map.of(1, 1d, 2, 3d));
+        assertEquals(Double.POSITIVE_INFINITY, before.factor(1));
+        assertEquals(1, before.factor(2));
+        assertEquals(1, overlay.snapshot().factor(1));
+        assertEquals(3, overlay.snapshot().factor(2));
+    }
+
+    @Test
+    void edgeOverlayRejectsFactorsSmallerThanOne() {
+        var overlay = new EdgeOverlay();
+        assertThrows(IllegalArgumentException.class, () -> overlay.penalize(1, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> overlay.update(Map.of(1, 2d, 2, Double.NaN)));
+        assertTrue(overlay.snapshot().isEmpty());
+    }
+
+    @Test
+    void edgeOverlayIsSavedAndLoaded(@TempDir Path dir) throws IOException {
+        var overlay = new EdgeOverlay();
+        overlay.update(Map.of(5, 1.5, 100_000, Double.POSITIVE_INFINITY, 3, 10d));
+        var file = dir.resolve("overlay.txt");
+        overlay.saveTo(file);
+
+        var loaded = new EdgeOverlay();
+        loaded.block(77);
+        loaded.loadFrom(file);
+        assertEquals(3, loaded.snapshot().size());
+        assertEquals(1, loaded.snapshot().factor(77));
+        assertEquals(1.5, loaded.snapshot().factor(5));
+        assertEquals(10, loaded.snapshot().factor(3));
+        assertEquals(Double.POSITIVE_INFINITY, loaded.snapshot().factor(100_000));
+
+        Files.writeString(file, "# closures\n\n12 blocked\n  13   2\n");
+        loaded.loadFrom(file);
+        assertEquals(Double.POSITIVE_INFINITY, loaded.snapshot().factor(12));
+        assertEquals(2, loaded.snapshot().factor(13));
+
+        Files.writeString(file, "12 0.5\n");
+        assertThrows(IllegalArgumentException.class, () -> loaded.loadFrom(file));
+        assertEquals(2, loaded.snapshot().size());
+    }
+}
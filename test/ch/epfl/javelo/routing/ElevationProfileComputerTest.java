@@ -1,9 +1,15 @@
 package ch.epfl.javelo.routing;
 
+import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.DoubleUnaryOperator;
@@ -13,10 +19,67 @@ import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ElevationProfileComputerTest {
+    // a route giving its elevations one by one, as all routes did before they walked their edges
+    private record OneByOneRoute(Route route) implements Route {
+        public int indexOfSegmentAt(double position) { return route.indexOfSegmentAt(position); }
+        public double length() { return route.length(); }
+        public double time() { return route.time(); }
+        public List<Edge> edges() { return route.edges(); }
+        public List<PointCh> points() { return route.points(); }
+        public PointCh pointAt(double position) { return route.pointAt(position); }
+        public double elevationAt(double position) { return route.elevationAt(position); }
+        public int nodeClosestTo(double position) { return route.nodeClosestTo(position); }
+        public RoutePoint pointClosestTo(PointCh point) { return route.pointClosestTo(point); }
+    }
+
+    @Test
+    void routeElevationsAtAreTheElevationsAtEachPosition(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var rc = new RouteComputer(graph, new CityBikeCF(graph));
+        var compact = rc.bestRouteBetween(ids[0], ids[95]);
+        var single = new SingleRoute(compact.edges());
+        var multi = new MultiRoute(List.of(
+                rc.bestRouteBetween(ids[95], ids[40]),
+                new MultiRoute(List.of(rc.bestRouteBetween(ids[40], ids[7]), single)),
+                rc.bestRouteBetween(ids[95], ids[3])));
+
+        var rng = newRandom();
+        for (var route : List.of(compact, single, multi)) {
+            var edgeEnds = new ArrayList<Double>(List.of(0d));
+            for (var edge : route.edges()) edgeEnds.add(edgeEnds.get(edgeEnds.size() - 1) + edge.length());
+            for (int i = 0; i < 20; i += 1) {
+                var positions = new double[rng.nextInt(1, 500)];
+                for (int j = 0; j < positions.length; j += 1) {
+                    // some positions are at the ends of the edges, and some outside the route
+                    positions[j] = rng.nextBoolean()
+                            ? edgeEnds.get(rng.nextInt(edgeEnds.size()))
+                            : rng.nextDouble(-10, route.length() + 10);
+                }
+                Arrays.sort(positions);
+                var expected = new double[positions.length];
+                for (int j = 0; j < positions.length; j += 1) expected[j] = route.elevationAt(positions[j]);
+                var actual = new double[positions.length];
+                route.elevationsAt(positions, actual);
+                assertArrayEquals(expected, actual);
+            }
+            for (var maxStepLength : new double[]{1, 5, 7.5, 100}) {
+                var expected = elevationProfile(new OneByOneRoute(route), maxStepLength);
+                var actual = elevationProfile(route, maxStepLength);
+                for (double p = 0; p <= route.length(); p += maxStepLength / 2)
+                    assertEquals(expected.elevationAt(p), actual.elevationAt(p));
+                assertEquals(expected.totalAscent(), actual.totalAscent());
+                assertEquals(expected.totalDescent(), actual.totalDescent());
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> multi.elevationsAt(new double[2], new double[1]));
+    }
+
     @Test
     void elevationProfileComputerThrowsWithZeroMaxStepLength() {
         assertThrows(IllegalArgumentException.class, () -> {
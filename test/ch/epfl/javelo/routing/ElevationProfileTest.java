@@ -42,6 +42,23 @@ class ElevationProfileTest {
         }
     }
 
+    @Test
+    void elevationProfileGivesItsSamples() {
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var sampleCount = rng.nextInt(2, 100);
+            var length = Math.nextUp(rng.nextDouble(1000));
+            var elevationSamples = randomSamples(rng, sampleCount);
+            var profile = new ElevationProfile(length, elevationSamples);
+            assertEquals(sampleCount, profile.sampleCount());
+            assertEquals(length / (sampleCount - 1), profile.sampleStep(), 1e-9);
+            for (int j = 0; j < sampleCount; j += 1)
+                assertEquals(elevationSamples[j], profile.elevationSample(j));
+        }
+        var profile = new ElevationProfile(10, new float[]{1, 2});
+        assertThrows(IndexOutOfBoundsException.class, () -> profile.elevationSample(2));
+    }
+
     private static float[] randomSamples(RandomGenerator rng, int count) {
         var samples = new float[count];
         for (int i = 0; i < count; i += 1)
@@ -0,0 +1,116 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphGradients;
+import ch.epfl.test.TestGraphs;
+import ch.epfl.test.TestRandomizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilteredGraphTest {
+
+    @Test
+    void filteredGraphContainsExactlyTheUsableEdges(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 20, 12);
+        var graph = Graph.loadFrom(dir);
+        var cf = new CityBikeCF(graph);
+        var filtered = FilteredGraph.of(graph, cf);
+
+        var usable = 0;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            var index = filtered.firstEdge(nodeId);
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i += 1) {
+                var edgeId = graph.nodeOutEdgeId(nodeId, i);
+                var factor = cf.costFactor(nodeId, edgeId);
+                if (factor == Double.POSITIVE_INFINITY) continue;
+                usable += 1;
+                assertEquals(edgeId, filtered.edgeId(index));
+                assertEquals(graph.edgeTargetNodeId(edgeId), filtered.targetNodeId(index));
+                assertEquals((float) (graph.edgeLength(edgeId) * factor), filtered.cost(index));
+                index += 1;
+            }
+            assertEquals(index, filtered.firstEdge(nodeId + 1));
+        }
+        assertEquals(usable, filtered.edgeCount());
+        // motorways and wrong-way one-ways are removed
+        assertTrue(usable < graph.edgeCount());
+    }
+
+    @Test
+    void filteredGraphIsWrittenAndLoaded(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 20, 12);
+        var graph = Graph.loadFrom(dir);
+        var cf = new CityBikeCF(graph);
+        var filtered = FilteredGraph.of(graph, cf);
+        var file = dir.resolve("city_bike.bin");
+        filtered.writeTo(file);
+        var loaded = FilteredGraph.loadFrom(file, graph, cf);
+
+        assertEquals(filtered.edgeCount(), loaded.edgeCount());
+        for (int nodeId = 0; nodeId <= graph.nodeCount(); nodeId += 1)
+            assertEquals(filtered.firstEdge(nodeId), loaded.firstEdge(nodeId));
+        for (int index = 0; index < filtered.edgeCount(); index += 1) {
+            assertEquals(filtered.edgeId(index), loaded.edgeId(index));
+            assertEquals(filtered.targetNodeId(index), loaded.targetNodeId(index));
+            assertEquals(filtered.cost(index), loaded.cost(index));
+        }
+
+        Files.write(file, new byte[8]);
+        assertThrows(IllegalArgumentException.class, () -> FilteredGraph.loadFrom(file, graph, cf));
+    }
+
+    @Test
+    void filteredGraphRejectsFileOfAnotherCostFunctionOrDataset(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 20, 12);
+        var graph = Graph.loadFrom(dir);
+        var cf = new CityBikeCF(graph);
+        var file = dir.resolve("city_bike.bin");
+        FilteredGraph.of(graph, cf).writeTo(file);
+
+        var withGradients = new CityBikeCF(graph, GraphGradients.of(graph));
+        assertNotEquals(cf.id(), withGradients.id());
+        assertThrows(IllegalArgumentException.class, () -> FilteredGraph.loadFrom(file, graph, withGradients));
+        var times = TravelTimes.of(graph, SpeedModel.CITY_BIKE);
+        assertThrows(IllegalArgumentException.class,
+                () -> FilteredGraph.loadFrom(file, graph, new TravelTimeCF(graph, cf, times)));
+
+        // the dataset is rebuilt with the same numbers of nodes and edges
+        TestGraphs.writeGrid(dir, 20, 12);
+        var nodesFile = dir.resolve("nodes.bin");
+        Files.setLastModifiedTime(nodesFile, FileTime.fromMillis(Files.getLastModifiedTime(nodesFile).toMillis() + 1_000));
+        var rebuilt = Graph.loadFrom(dir);
+        assertThrows(IllegalArgumentException.class,
+                () -> FilteredGraph.loadFrom(file, rebuilt, new CityBikeCF(rebuilt)));
+    }
+
+    @Test
+    void routeComputerOnFilteredGraphFindsSameRoutes(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 30, 20);
+        var graph = Graph.loadFrom(dir);
+        var cf = new CityBikeCF(graph);
+        var overlay = new EdgeOverlay();
+        var plain = new RouteComputer(graph, cf, overlay);
+        var filtered = new RouteComputer(FilteredGraph.of(graph, cf), overlay);
+
+        var rng = TestRandomizer.newRandom();
+        for (int i = 0; i < 100; i += 1) {
+            if (i == 50) overlay.block(graph.nodeOutEdgeId(ids[15 * 30 + 15], 0));
+            var from = ids[rng.nextInt(ids.length)];
+            var to = ids[rng.nextInt(ids.length)];
+            if (from == to) continue;
+            var expected = plain.bestRouteBetween(from, to);
+            var actual = filtered.bestRouteBetween(from, to);
+            assertEquals(expected.edges().size(), actual.edges().size());
+            assertEquals(expected.length(), actual.length(), 1e-6);
+            for (int j = 0; j < expected.edges().size(); j += 1)
+                assertEquals(expected.edges().get(j).toNodeId(), actual.edges().get(j).toNodeId());
+        }
+    }
+}
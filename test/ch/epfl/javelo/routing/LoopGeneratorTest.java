@@ -0,0 +1,41 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoopGeneratorTest {
+
+    @Test
+    void loopGeneratorThrowsOnInvalidLength(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 6, 5);
+        var graph = Graph.loadFrom(dir);
+        var generator = new LoopGenerator(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class, () -> generator.loopFrom(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> generator.loopFrom(0, -100));
+    }
+
+    @Test
+    void loopGeneratorFindsLoopsCloseToTargetLength(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 30, 20);
+        var graph = Graph.loadFrom(dir);
+        var generator = new LoopGenerator(graph, new CityBikeCF(graph));
+        var start = ids[10 * 30 + 12];
+        for (var target : new double[]{600, 1200, 2000}) {
+            var loop = generator.loopFrom(start, target);
+            assertNotNull(loop);
+            var edges = loop.edges();
+            assertEquals(start, edges.get(0).fromNodeId());
+            assertEquals(start, edges.get(edges.size() - 1).toNodeId());
+            for (int i = 1; i < edges.size(); i += 1)
+                assertEquals(edges.get(i - 1).toNodeId(), edges.get(i).fromNodeId());
+            assertEquals(target, loop.length(), 0.2 * target);
+        }
+    }
+}
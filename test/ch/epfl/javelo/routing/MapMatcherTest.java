@@ -0,0 +1,157 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphEdges;
+import ch.epfl.javelo.data.GraphNodes;
+import ch.epfl.javelo.data.GraphSectors;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapMatcherTest {
+
+    private static Route pathThrough(Graph graph, List<Integer> nodeIds) {
+        var edges = new ArrayList<Edge>();
+        for (int i = 1; i < nodeIds.size(); i += 1) {
+            var from = nodeIds.get(i - 1);
+            var to = nodeIds.get(i);
+            edges.add(Edge.of(graph, TestGraphs.edgeBetween(graph, from, to), from, to));
+        }
+        return new SingleRoute(edges);
+    }
+
+    private static List<PointCh> noisyTrace(Route route, double step, double noise, Random rng) {
+        var trace = new ArrayList<PointCh>();
+        for (double x = 0; x <= route.length(); x += step) {
+            var p = route.pointAt(x);
+            trace.add(new PointCh(p.e() + rng.nextDouble(-noise, noise), p.n() + rng.nextDouble(-noise, noise)));
+        }
+        return trace;
+    }
+
+    private static int indexOfSubList(List<Edge> edges, List<Edge> subList) {
+        outer:
+        for (int start = 0; start + subList.size() <= edges.size(); start += 1) {
+            for (int i = 0; i < subList.size(); i += 1) {
+                var a = edges.get(start + i);
+                var b = subList.get(i);
+                if (a.fromNodeId() != b.fromNodeId() || a.toNodeId() != b.toNodeId()) continue outer;
+            }
+            return start;
+        }
+        return -1;
+    }
+
+    @Test
+    void mapMatcherThrowsOnEmptyTrace(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 6, 5);
+        var matcher = new MapMatcher(Graph.loadFrom(dir));
+        assertThrows(IllegalArgumentException.class, () -> matcher.match(List.of()));
+    }
+
+    @Test
+    void mapMatcherReturnsNullForTraceFarFromGraph(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 6, 5);
+        var matcher = new MapMatcher(Graph.loadFrom(dir));
+        var e = TestGraphs.ORIGIN_E - 5_000;
+        var n = TestGraphs.ORIGIN_N - 5_000;
+        assertNull(matcher.match(List.of(new PointCh(e, n), new PointCh(e + 30, n))));
+    }
+
+    @Test
+    void mapMatcherFollowsNoisyTrace(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 30, 20);
+        var graph = Graph.loadFrom(dir);
+        var nodes = new ArrayList<Integer>();
+        for (int c = 2; c <= 20; c += 1) nodes.add(ids[4 * 30 + c]);
+        for (int r = 5; r <= 15; r += 1) nodes.add(ids[r * 30 + 20]);
+        for (int c = 19; c >= 12; c -= 1) nodes.add(ids[15 * 30 + c]);
+        var expected = pathThrough(graph, nodes);
+
+        var rng = new Random(2022);
+        var trace = noisyTrace(expected, 7, 8, rng);
+        // a position far from the graph, in the middle of the trace, is ignored
+        trace.add(trace.size() / 2, new PointCh(TestGraphs.ORIGIN_E - 2_000, TestGraphs.ORIGIN_N));
+        var matched = new MapMatcher(graph).match(trace);
+        assertNotNull(matched);
+
+        var edges = matched.edges();
+        for (int i = 1; i < edges.size(); i += 1)
+            assertEquals(edges.get(i - 1).toNodeId(), edges.get(i).fromNodeId());
+        // the ends of the trace are ambiguous, the matched route may thus have one more edge at each end
+        var start = indexOfSubList(edges, expected.edges());
+        assertTrue(0 <= start && start <= 1);
+        assertTrue(edges.size() - expected.edges().size() - start <= 1);
+    }
+
+    @Test
+    void mapMatcherBridgesMissingPositions(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 30, 20);
+        var graph = Graph.loadFrom(dir);
+        var first = new ArrayList<Integer>();
+        for (int c = 2; c <= 8; c += 1) first.add(ids[2 * 30 + c]);
+        var second = new ArrayList<Integer>();
+        for (int c = 2; c <= 8; c += 1) second.add(ids[17 * 30 + c]);
+
+        var rng = new Random(2023);
+        var trace = noisyTrace(pathThrough(graph, first), 10, 3, rng);
+        trace.addAll(noisyTrace(pathThrough(graph, second), 10, 3, rng));
+        var matched = new MapMatcher(graph).match(trace);
+        assertNotNull(matched);
+        var edges = matched.edges();
+        for (int i = 1; i < edges.size(); i += 1)
+            assertEquals(edges.get(i - 1).toNodeId(), edges.get(i).fromNodeId());
+        assertTrue(indexOfSubList(edges, pathThrough(graph, first.subList(1, first.size() - 1)).edges()) >= 0);
+        assertTrue(indexOfSubList(edges, pathThrough(graph, second.subList(1, second.size() - 1)).edges()) >= 0);
+    }
+
+    @Test
+    void mapMatcherFindsCandidatesInTheMiddleOfLongEdges() {
+        // two nodes 1.2 km apart, linked by an edge in each direction
+        var e0 = TestGraphs.ORIGIN_E;
+        var e1 = TestGraphs.ORIGIN_E + 1_200;
+        var n = TestGraphs.ORIGIN_N;
+        var nodes = new GraphNodes(IntBuffer.wrap(new int[]{
+                (int) Math.scalb(e0, 4), (int) Math.scalb(n, 4), (1 << 28) | 0,
+                (int) Math.scalb(e1, 4), (int) Math.scalb(n, 4), (1 << 28) | 1,
+        }));
+        var sectorsBuffer = ByteBuffer.allocate(GraphSectors.SECTOR_COUNT * GraphSectors.SECTOR_SIZE_BYTE);
+        var s0 = GraphSectors.sectorIndexOf(e0, n);
+        var s1 = GraphSectors.sectorIndexOf(e1, n);
+        sectorsBuffer.putInt(s0 * GraphSectors.SECTOR_SIZE_BYTE, 0);
+        sectorsBuffer.putShort(s0 * GraphSectors.SECTOR_SIZE_BYTE + 4, (short) (s0 == s1 ? 2 : 1));
+        if (s0 != s1) {
+            sectorsBuffer.putInt(s1 * GraphSectors.SECTOR_SIZE_BYTE, 1);
+            sectorsBuffer.putShort(s1 * GraphSectors.SECTOR_SIZE_BYTE + 4, (short) 1);
+        }
+        var edgesBuffer = ByteBuffer.allocate(2 * 10);
+        edgesBuffer.putInt(0, 1);
+        edgesBuffer.putShort(4, (short) (1_200 * 16));
+        edgesBuffer.putInt(10, 0);
+        edgesBuffer.putShort(14, (short) (1_200 * 16));
+        var edges = new GraphEdges(edgesBuffer, IntBuffer.wrap(new int[2]), ShortBuffer.allocate(0));
+        var graph = new Graph(nodes, new GraphSectors(sectorsBuffer), edges, List.of(new AttributeSet(0)));
+
+        // the trace is more than 500 meters from both nodes
+        var trace = new ArrayList<PointCh>();
+        for (int x = 520; x <= 680; x += 20) trace.add(new PointCh(e0 + x, n + 4));
+        var matched = new MapMatcher(graph).match(trace);
+        assertNotNull(matched);
+        assertEquals(1, matched.edges().size());
+        assertEquals(0, matched.edges().get(0).fromNodeId());
+        assertEquals(1, matched.edges().get(0).toNodeId());
+    }
+}
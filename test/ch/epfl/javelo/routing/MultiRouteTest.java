@@ -304,6 +304,46 @@ class MultiRouteTest {
         }
     }
 
+    @Test
+    void multiRouteBehavesLikeSingleRouteOfSameEdges() {
+        var edges = sawToothEdges(9);
+        var single = new SingleRoute(edges);
+        var route = new MultiRoute(List.of(
+                new SingleRoute(edges.subList(0, 2)),
+                new MultiRoute(List.of(
+                        new SingleRoute(edges.subList(2, 3)),
+                        new SingleRoute(edges.subList(3, 6)))),
+                new SingleRoute(edges.subList(6, 9))));
+        assertEquals(single.length(), route.length());
+        assertEquals(single.points(), route.points());
+        assertEquals(edges, route.edges());
+        assertThrows(IndexOutOfBoundsException.class, () -> route.points().get(10));
+
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var position = rng.nextDouble(-100, single.length() + 100);
+            assertEquals(single.pointAt(position), route.pointAt(position));
+            assertEquals(single.elevationAt(position), route.elevationAt(position), 1e-7);
+            assertEquals(single.nodeClosestTo(position), route.nodeClosestTo(position));
+            var point = new PointCh(ORIGIN_E + rng.nextDouble(-100, 9 * TOOTH_EW + 100),
+                    ORIGIN_N + rng.nextDouble(-100, TOOTH_NS + 100));
+            var expected = single.pointClosestTo(point);
+            var actual = route.pointClosestTo(point);
+            assertEquals(expected.point(), actual.point());
+            assertEquals(expected.position(), actual.position(), 1e-7);
+            assertEquals(expected.distanceToReference(), actual.distanceToReference());
+        }
+        for (int i = 0; i <= edges.size(); i += 1) {
+            var position = i * TOOTH_LENGTH;
+            assertEquals(single.pointAt(position), route.pointAt(position));
+            assertEquals(single.nodeClosestTo(position), route.nodeClosestTo(position));
+        }
+        assertEquals(0, route.indexOfSegmentAt(2 * TOOTH_LENGTH));
+        assertEquals(1, route.indexOfSegmentAt(2.5 * TOOTH_LENGTH));
+        assertEquals(2, route.indexOfSegmentAt(6 * TOOTH_LENGTH));
+        assertEquals(3, route.indexOfSegmentAt(7 * TOOTH_LENGTH));
+    }
+
     private static List<Edge> verticalEdges(int edgesCount) {
         var edges = new ArrayList<Edge>(edgesCount);
         for (int i = 0; i < edgesCount; i += 1) {
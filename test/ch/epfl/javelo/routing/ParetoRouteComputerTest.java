@@ -0,0 +1,68 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParetoRouteComputerTest {
+
+    @Test
+    void paretoRouteComputerThrowsOnInvalidArguments(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 6, 5);
+        var graph = Graph.loadFrom(dir);
+        var prc = new ParetoRouteComputer(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class, () -> prc.paretoRoutesBetween(3, 3, 2));
+        assertThrows(IllegalArgumentException.class, () -> prc.paretoRoutesBetween(3, 4, 0.5));
+    }
+
+    @Test
+    void paretoRouteComputerGivesParetoFront(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 30, 20);
+        var graph = Graph.loadFrom(dir);
+        var rowOf = new int[graph.nodeCount()];
+        for (int i = 0; i < ids.length; i += 1) rowOf[ids[i]] = i / 30;
+        var cityBike = new CityBikeCF(graph);
+        // the streets of the row 7 are made expensive, so that going around them is cheaper but climbs more
+        CostFunction cf = (nodeId, edgeId) -> {
+            var factor = cityBike.costFactor(nodeId, edgeId);
+            return rowOf[nodeId] == 7 && rowOf[graph.edgeTargetNodeId(edgeId)] == 7 ? 3 * factor : factor;
+        };
+        var prc = new ParetoRouteComputer(graph, cf);
+        var rc = new RouteComputer(graph, cf);
+        var start = ids[7 * 30];
+        var end = ids[7 * 30 + 29];
+        var front = prc.paretoRoutesBetween(start, end, 3);
+        assertTrue(front.size() > 1);
+
+        for (int i = 0; i < front.size(); i += 1) {
+            var route = front.get(i);
+            var edges = route.route().edges();
+            assertEquals(start, edges.get(0).fromNodeId());
+            assertEquals(end, edges.get(edges.size() - 1).toNodeId());
+            var cost = 0d;
+            var gain = 0d;
+            for (var edge : edges) {
+                var edgeId = TestGraphs.edgeBetween(graph, edge.fromNodeId(), edge.toNodeId());
+                cost += graph.edgeLength(edgeId) * cf.costFactor(edge.fromNodeId(), edgeId);
+                gain += graph.edgeElevationGain(edgeId);
+            }
+            assertEquals(cost, route.cost(), 1e-2);
+            assertEquals(gain, route.elevationGain(), 1e-2);
+            assertTrue(route.cost() <= 3 * front.get(0).cost() + 1e-2);
+            if (i > 0) {
+                assertTrue(route.cost() >= front.get(i - 1).cost());
+                assertTrue(route.elevationGain() < front.get(i - 1).elevationGain());
+            }
+        }
+
+        // the first route is the cheapest one, the last one the flattest one among the cheap enough ones
+        assertEquals(TestGraphs.cost(graph, cf, rc.bestRouteBetween(start, end)), front.get(0).cost(), 1e-2);
+        assertTrue(prc.paretoRoutesBetween(start, end, 1).size() < front.size());
+    }
+}
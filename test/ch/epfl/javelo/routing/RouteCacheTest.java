@@ -0,0 +1,161 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCacheTest {
+
+    @Test
+    void routeCacheDistinguishesNodesAndProfiles() {
+        var cache = new RouteCache(1, 1 << 20);
+        assertNull(cache.get(0, 1, 2));
+        cache.put(0, 1, 2, new int[]{10, 11});
+        cache.put(1, 1, 2, new int[]{12});
+        cache.put(0, 2, 1, new int[0]);
+        assertArrayEquals(new int[]{10, 11}, cache.get(0, 1, 2));
+        assertArrayEquals(new int[]{12}, cache.get(1, 1, 2));
+        assertArrayEquals(new int[0], cache.get(0, 2, 1));
+        assertNull(cache.get(1, 2, 1));
+        assertEquals(3, cache.size());
+
+        cache.put(0, 1, 2, new int[]{13});
+        assertArrayEquals(new int[]{13}, cache.get(0, 1, 2));
+        assertEquals(3, cache.size());
+
+        assertThrows(IllegalArgumentException.class, () -> cache.get(RouteCache.PROFILE_COUNT, 1, 2));
+        assertThrows(IllegalArgumentException.class, () -> cache.get(0, -1, 2));
+        assertThrows(IllegalArgumentException.class, () -> cache.put(0, 1, 1 << 28, new int[0]));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.usedBytes());
+        assertNull(cache.get(0, 1, 2));
+    }
+
+    @Test
+    void routeCacheEvictsLeastRecentlyUsedRoutes() {
+        var entryBytes = 64 + 10 * Integer.BYTES;
+        var cache = new RouteCache(1, 100L * entryBytes);
+        for (int i = 0; i < 100; i += 1) cache.put(0, i, i + 1, new int[10]);
+        assertEquals(100, cache.size());
+        assertEquals(100L * entryBytes, cache.usedBytes());
+
+        // the first route is used again, the second one is thus the least recently used
+        assertNotNull(cache.get(0, 0, 1));
+        cache.put(0, 500, 501, new int[10]);
+        assertNotNull(cache.get(0, 0, 1));
+        assertNull(cache.get(0, 1, 2));
+        assertNotNull(cache.get(0, 2, 3));
+
+        for (int i = 1000; i < 3000; i += 1) cache.put(0, i, i + 1, new int[10]);
+        assertEquals(100, cache.size());
+        assertTrue(cache.usedBytes() <= 100L * entryBytes);
+        assertNull(cache.get(0, 0, 1));
+        assertNotNull(cache.get(0, 2999, 3000));
+
+        // a route larger than the cache is not kept
+        cache.put(0, 7, 8, new int[3000]);
+        assertNull(cache.get(0, 7, 8));
+    }
+
+    @Test
+    void routeCacheIsLoadedOnlyForSameDatasetVersion(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("routes.bin");
+        assertEquals(0, RouteCache.loadFrom(file, 7, 1 << 20).size());
+
+        var cache = new RouteCache(7, 1 << 20);
+        for (int i = 0; i < 50; i += 1) cache.put(i % 3, i, i + 1, new int[i]);
+        cache.get(0, 0, 1);
+        cache.writeTo(file);
+
+        var loaded = RouteCache.loadFrom(file, 7, 1 << 20);
+        assertEquals(50, loaded.size());
+        assertEquals(cache.usedBytes(), loaded.usedBytes());
+        for (int i = 0; i < 50; i += 1) assertArrayEquals(new int[i], loaded.get(i % 3, i, i + 1));
+        assertEquals(0, RouteCache.loadFrom(file, 8, 1 << 20).size());
+
+        // the least recently used routes are dropped if the file does not fit
+        var small = RouteCache.loadFrom(file, 7, 64 + Integer.BYTES);
+        assertEquals(1, small.size());
+        assertArrayEquals(new int[0], small.get(0, 0, 1));
+
+        // a truncated or corrupt file is ignored
+        var content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 1));
+        assertEquals(0, RouteCache.loadFrom(file, 7, 1 << 20).size());
+        Files.write(file, new byte[]{1, 2, 3});
+        assertEquals(0, RouteCache.loadFrom(file, 7, 1 << 20).size());
+        content[Long.BYTES] = -1;
+        Files.write(file, content);
+        assertEquals(0, RouteCache.loadFrom(file, 7, 1 << 20).size());
+        assertThrows(IllegalArgumentException.class, () -> RouteCache.loadFrom(file, 7, 0));
+    }
+
+    @Test
+    void routeCacheReplacesItsFileWithoutLeavingTemporaryFiles(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("routes.bin");
+        var cache = new RouteCache(7, 1 << 20);
+        cache.put(0, 1, 2, new int[]{3, 4});
+        cache.writeTo(file);
+        // the loaded file is not kept open (or mapped), and can thus be replaced
+        assertEquals(1, RouteCache.loadFrom(file, 7, 1 << 20).size());
+        cache.put(0, 2, 3, new int[]{5});
+        cache.writeTo(file);
+        assertEquals(2, RouteCache.loadFrom(file, 7, 1 << 20).size());
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void routeCacheDatasetVersionChangesWithFiles(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 6, 5);
+        var version = RouteCache.datasetVersion(dir);
+        assertEquals(version, RouteCache.datasetVersion(dir));
+        Files.write(dir.resolve("edges.bin"), new byte[]{0});
+        assertNotEquals(version, RouteCache.datasetVersion(dir));
+    }
+
+    @Test
+    void routeComputerUsesCacheUnlessOverlayChangesCosts(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var grid = Graph.loadFrom(dir);
+        var overlay = new EdgeOverlay();
+        var rc = new RouteComputer(grid, new CityBikeCF(grid), overlay);
+        var cache = new RouteCache(RouteCache.datasetVersion(dir), 1 << 20);
+        var collector = new SearchStatisticsCollector();
+        var cached = rc.withCache(cache, 3).withStatistics(collector);
+
+        var expected = rc.bestRouteBetween(ids[0], ids[95]);
+        assertEquals(expected.points(), cached.bestRouteBetween(ids[0], ids[95]).points());
+        assertEquals(1, collector.total().searchCount());
+        assertEquals(1, cache.size());
+        var workspace = cached.newWorkspace();
+        assertEquals(expected.points(), cached.bestRouteBetween(ids[0], ids[95], workspace).points());
+        assertEquals(1, collector.total().searchCount());
+        var searchWorkspace = rc.newWorkspace();
+        rc.bestRouteBetween(ids[0], ids[95], searchWorkspace);
+        assertEquals(searchWorkspace.lastCost(), workspace.lastCost(), 1e-3);
+
+        // routes of other profiles are not used
+        assertEquals(expected.points(), rc.withCache(cache, 4).bestRouteBetween(ids[0], ids[95]).points());
+        assertEquals(2, cache.size());
+
+        var blockedEdge = grid.nodeOutEdgeId(ids[0], 0);
+        overlay.block(blockedEdge);
+        cached.bestRouteBetween(ids[0], ids[95]);
+        assertEquals(2, collector.total().searchCount());
+        assertEquals(2, cache.size());
+
+        assertThrows(IllegalArgumentException.class, () -> rc.withCache(cache, -1));
+    }
+}
@@ -1,14 +1,19 @@
 package ch.epfl.javelo.routing;
 
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
 
+import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.*;
 
 class RouteComputerTest {
@@ -94,4 +99,177 @@ class RouteComputerTest {
         assertEquals(expected20kE, actualPointAt20kE, 1);
         assertEquals(expected20kN, actualPointAt20kN, 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    void routeComputerAvoidsEdgesBlockedByOverlay(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var grid = Graph.loadFrom(dir);
+        var overlay = new EdgeOverlay();
+        var rc = new RouteComputer(grid, new CityBikeCF(grid), overlay);
+
+        var direct = rc.bestRouteBetween(ids[0], ids[5]);
+        assertEquals(5, direct.edges().size());
+
+        var blocked = TestGraphs.edgeBetween(grid, ids[2], ids[3]);
+        overlay.block(blocked);
+        var detour = rc.bestRouteBetween(ids[0], ids[5]);
+        assertTrue(detour.length() > direct.length() + 2 * TestGraphs.SPACING - 20);
+        for (var edge : detour.edges())
+            assertFalse(edge.fromNodeId() == ids[2] && edge.toNodeId() == ids[3]);
+
+        // the opposite edge is not blocked
+        assertEquals(5, rc.bestRouteBetween(ids[5], ids[0]).edges().size());
+
+        overlay.remove(blocked);
+        assertEquals(direct.length(), rc.bestRouteBetween(ids[0], ids[5]).length());
+    }
+
+    @Test
+    void routeComputerAppliesPenaltiesOfOverlay(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var grid = Graph.loadFrom(dir);
+        var overlay = new EdgeOverlay();
+        var rc = new RouteComputer(grid, new CityBikeCF(grid), overlay);
+        var direct = rc.bestRouteBetween(ids[0], ids[5]);
+
+        overlay.penalize(TestGraphs.edgeBetween(grid, ids[2], ids[3]), 1.01);
+        assertEquals(direct.length(), rc.bestRouteBetween(ids[0], ids[5]).length());
+        overlay.update(Map.of(
+                TestGraphs.edgeBetween(grid, ids[2], ids[3]), 50d,
+                TestGraphs.edgeBetween(grid, ids[3], ids[2]), 50d));
+        assertTrue(rc.bestRouteBetween(ids[0], ids[5]).length() > direct.length());
+        overlay.clear();
+        assertEquals(direct.length(), rc.bestRouteBetween(ids[0], ids[5]).length());
+    }
+
+    private static double totalCost(Graph graph, CostFunction cf, TurnCostFunction tcf, Route route) {
+        var cost = 0d;
+        Edge previous = null;
+        for (var edge : route.edges()) {
+            var edgeId = TestGraphs.edgeBetween(graph, edge.fromNodeId(), edge.toNodeId());
+            cost += graph.edgeLength(edgeId) * cf.costFactor(edge.fromNodeId(), edgeId);
+            if (previous != null) {
+                var previousId = TestGraphs.edgeBetween(graph, previous.fromNodeId(), previous.toNodeId());
+                cost += tcf.turnCost(previous.fromNodeId(), previousId, edge.fromNodeId(), edgeId);
+            }
+            previous = edge;
+        }
+        return cost;
+    }
+
+    @Test
+    void routeComputerWithoutTurnCostsFindsRoutesOfSameCost(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var grid = Graph.loadFrom(dir);
+        var cf = new CityBikeCF(grid);
+        var rc = new RouteComputer(grid, cf);
+        TurnCostFunction noTurnCost = (from, in, node, out) -> 0;
+        var rng = newRandom();
+        for (int i = 0; i < 50; i += 1) {
+            var start = ids[rng.nextInt(ids.length)];
+            var end = ids[rng.nextInt(ids.length)];
+            if (start == end) continue;
+            var expected = rc.bestRouteBetween(start, end);
+            var actual = rc.bestRouteBetween(start, end, noTurnCost);
+            assertEquals(expected == null, actual == null);
+            if (expected == null) continue;
+            assertEquals(start, actual.edges().get(0).fromNodeId());
+            assertEquals(end, actual.edges().get(actual.edges().size() - 1).toNodeId());
+            assertEquals(totalCost(grid, cf, noTurnCost, expected), totalCost(grid, cf, noTurnCost, actual), 1e-2);
+        }
+    }
+
+    @Test
+    void routeComputerAvoidsCostlyTurns(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var grid = Graph.loadFrom(dir);
+        var cf = new CityBikeCF(grid);
+        var tcf = new CityBikeTurnCF(grid);
+        var rc = new RouteComputer(grid, cf);
+        var rng = newRandom();
+        for (int i = 0; i < 50; i += 1) {
+            var start = ids[rng.nextInt(ids.length)];
+            var end = ids[rng.nextInt(ids.length)];
+            if (start == end) continue;
+            var withoutTurns = rc.bestRouteBetween(start, end);
+            var withTurns = rc.bestRouteBetween(start, end, tcf);
+            assertEquals(withoutTurns == null, withTurns == null);
+            if (withTurns == null) continue;
+            assertTrue(totalCost(grid, cf, tcf, withTurns) <= totalCost(grid, cf, tcf, withoutTurns) + 1e-2);
+        }
+    }
+
+    @Test
+    void routeComputerNeverMakesForbiddenTurns(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var grid = Graph.loadFrom(dir);
+        var rc = new RouteComputer(grid, new CityBikeCF(grid));
+        // going straight through the node (2, 0) is forbidden
+        TurnCostFunction tcf = (from, in, node, out) ->
+                from == ids[1] && node == ids[2] && grid.edgeTargetNodeId(out) == ids[3]
+                        ? Double.POSITIVE_INFINITY
+                        : 0;
+        var route = rc.bestRouteBetween(ids[0], ids[5], tcf);
+        assertTrue(route.edges().size() > 5);
+        for (int i = 1; i < route.edges().size(); i += 1) {
+            var previous = route.edges().get(i - 1);
+            var edge = route.edges().get(i);
+            assertFalse(previous.fromNodeId() == ids[1] && edge.toNodeId() == ids[3]);
+        }
+        assertEquals(3, rc.bestRouteBetween(ids[2], ids[5], tcf).edges().size());
+    }
+
+    @Test
+    void routeComputerCollectsSearchStatistics(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var grid = Graph.loadFrom(dir);
+        var collector = new SearchStatisticsCollector();
+        var rc = new RouteComputer(grid, new CityBikeCF(grid));
+        var measured = rc.withStatistics(collector);
+
+        var route = measured.bestRouteBetween(ids[0], ids[95]);
+        assertEquals(rc.bestRouteBetween(ids[0], ids[95]).points(), route.points());
+        var last = collector.last();
+        assertEquals(1, last.searchCount());
+        assertTrue(last.settledNodes() > route.edges().size());
+        assertTrue(last.settledNodes() + last.stalePops() <= last.heapPushes());
+        assertTrue(last.relaxedEdges() >= last.heapPushes() - 1);
+        assertTrue(0 < last.peakHeapSize() && last.peakHeapSize() <= last.heapPushes());
+        assertTrue(last.costFunctionNanos() + last.heuristicNanos() <= last.totalNanos());
+
+        measured.bestRouteBetween(ids[5], ids[40], (from, in, node, out) -> 0);
+        var total = collector.total();
+        assertEquals(2, total.searchCount());
+        assertEquals(last.plus(collector.last()), total);
+        collector.reset();
+        assertEquals(SearchStatistics.ZERO, collector.total());
+
+        // a route computer without sink collects nothing
+        rc.bestRouteBetween(ids[0], ids[95]);
+        assertEquals(SearchStatistics.ZERO, collector.total());
+    }
+
+    @Test
+    void routeComputerReusesWorkspaceAcrossSearches(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var grid = Graph.loadFrom(dir);
+        var rc = new RouteComputer(grid, new CityBikeCF(grid));
+        var workspace = rc.newWorkspace();
+        assertTrue(Double.isNaN(workspace.lastCost()));
+        for (int i = 0; i < 40; i += 1) {
+            var from = ids[(i * 7) % ids.length];
+            var to = ids[(i * 31 + 5) % ids.length];
+            if (from == to) continue;
+            var route = rc.bestRouteBetween(from, to, workspace);
+            assertEquals(rc.bestRouteBetween(from, to).points(), route.points());
+            assertTrue(workspace.lastCost() >= route.length() * 0.99);
+        }
+
+        var otherDir = dir.resolve("other");
+        Files.createDirectories(otherDir);
+        TestGraphs.writeGrid(otherDir, 5, 5);
+        var other = Graph.loadFrom(otherDir);
+        assertThrows(IllegalArgumentException.class, () ->
+                new RouteComputer(other, new CityBikeCF(other)).bestRouteBetween(0, 1, workspace));
+    }
+}
@@ -0,0 +1,81 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentIndexTest {
+
+    private static int closestSegmentByScan(double[] fromE, double[] fromN, double[] toE, double[] toN,
+                                            double[] lengths, double e, double n) {
+        var closest = 0;
+        var closestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < fromE.length; i += 1) {
+            var position = Math2.clamp(0,
+                    Math2.projectionLength(fromE[i], fromN[i], toE[i], toN[i], e, n), lengths[i]);
+            var x = position / lengths[i];
+            var distance = Math2.norm(Math2.interpolate(fromE[i], toE[i], x) - e,
+                    Math2.interpolate(fromN[i], toN[i], x) - n);
+            if (distance < closestDistance) {
+                closest = i;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+    @Test
+    void segmentIndexFindsSameSegmentAsScan() {
+        var rng = newRandom();
+        for (var count : new int[]{1, 7, 8, 9, 64, 65, 1000}) {
+            var fromE = new double[count];
+            var fromN = new double[count];
+            var toE = new double[count];
+            var toN = new double[count];
+            var lengths = new double[count];
+            double e = 0, n = 0;
+            for (int i = 0; i < count; i += 1) {
+                fromE[i] = e;
+                fromN[i] = n;
+                e += rng.nextDouble(-20, 50);
+                n += rng.nextDouble(-50, 50);
+                toE[i] = e;
+                toN[i] = n;
+                lengths[i] = Math.hypot(toE[i] - fromE[i], toN[i] - fromN[i]);
+            }
+            var index = new SegmentIndex(fromE, fromN, toE, toN, lengths);
+            for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+                var pointE = rng.nextDouble(-500, e + 500);
+                var pointN = rng.nextDouble(-2000, 2000);
+                assertEquals(closestSegmentByScan(fromE, fromN, toE, toN, lengths, pointE, pointN),
+                        index.closestSegment(pointE, pointN));
+            }
+        }
+    }
+
+    @Test
+    void segmentIndexKeepsFirstOfEquallyCloseSegments() {
+        // a segment followed by the same segment in the opposite direction, twice
+        var fromE = new double[]{0, 100, 0, 100};
+        var fromN = new double[]{0, 0, 0, 0};
+        var toE = new double[]{100, 0, 100, 0};
+        var toN = new double[]{0, 0, 0, 0};
+        var lengths = new double[]{100, 100, 100, 100};
+        var index = new SegmentIndex(fromE, fromN, toE, toN, lengths);
+        assertEquals(0, index.closestSegment(50, 10));
+        assertEquals(30, index.positionOn(0, 30, 10));
+        assertEquals(70, index.positionOn(1, 30, 10));
+        assertEquals(100, index.positionOn(0, 150, 10));
+    }
+
+    @Test
+    void segmentIndexConstructorThrowsOnInvalidSegments() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new SegmentIndex(new double[0], new double[0], new double[0], new double[0], new double[0]));
+        assertThrows(IllegalArgumentException.class, () ->
+                new SegmentIndex(new double[1], new double[1], new double[1], new double[2], new double[1]));
+    }
+}
@@ -0,0 +1,45 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShortestPathTreeTest {
+
+    @Test
+    void shortestPathTreeGivesBestRoutes(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var cf = new CityBikeCF(graph);
+        var rc = new RouteComputer(graph, cf);
+        var tree = rc.shortestPathTree(ids[0], Double.POSITIVE_INFINITY);
+        var previousCost = 0d;
+        for (int i = 0; i < tree.settledCount(); i += 1) {
+            var nodeId = tree.settledNodeId(i);
+            assertTrue(tree.cost(nodeId) >= previousCost);
+            previousCost = tree.cost(nodeId);
+            if (nodeId == ids[0]) continue;
+            var route = tree.routeTo(nodeId);
+            assertEquals(route.length(), tree.length(nodeId), 1e-2);
+            assertEquals(TestGraphs.cost(graph, cf, rc.bestRouteBetween(ids[0], nodeId)), tree.cost(nodeId), 1e-2);
+            assertEquals(TestGraphs.cost(graph, cf, route), tree.cost(nodeId), 1e-2);
+        }
+
+        var bounded = rc.shortestPathTree(ids[0], 200);
+        assertTrue(bounded.settledCount() < tree.settledCount());
+        for (int i = 0; i < bounded.settledCount(); i += 1) assertTrue(bounded.cost(bounded.settledNodeId(i)) <= 200);
+        assertEquals(Double.POSITIVE_INFINITY, bounded.cost(ids[ids.length - 1]));
+        assertNull(bounded.routeTo(ids[ids.length - 1]));
+
+        var targeted = rc.shortestPathTree(ids[0], Double.POSITIVE_INFINITY, ids[3], ids[13]);
+        assertTrue(targeted.isSettled(ids[3]) && targeted.isSettled(ids[13]));
+        assertEquals(tree.cost(ids[13]), targeted.cost(ids[13]));
+        assertTrue(targeted.settledCount() < tree.settledCount());
+    }
+}
@@ -0,0 +1,132 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TourOptimizerTest {
+
+    private static final long TIME_LIMIT = 500_000_000L;
+
+    private static double tourCost(double[][] costs, int[] order, boolean closed) {
+        var cost = 0d;
+        for (int i = 1; i < order.length; i += 1) cost += costs[order[i - 1]][order[i]];
+        if (closed) cost += costs[order[order.length - 1]][order[0]];
+        return cost;
+    }
+
+    private static void assertIsPermutation(int count, int[] order) {
+        assertEquals(0, order[0]);
+        var sorted = order.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < count; i += 1) assertEquals(i, sorted[i]);
+    }
+
+    private static double[][] randomPlaneCosts(int count) {
+        var rng = newRandom();
+        var xs = new double[count];
+        var ys = new double[count];
+        for (int i = 0; i < count; i += 1) {
+            xs[i] = rng.nextDouble(0, 10_000);
+            ys[i] = rng.nextDouble(0, 10_000);
+        }
+        var costs = new double[count][count];
+        for (int i = 0; i < count; i += 1) {
+            for (int j = 0; j < count; j += 1) costs[i][j] = Math.hypot(xs[i] - xs[j], ys[i] - ys[j]);
+        }
+        return costs;
+    }
+
+    @Test
+    void tourOptimizerFindsObviousOrder() {
+        // stops on a line, given in shuffled order
+        var positions = new double[]{0, 5, 2, 9, 1, 7, 3};
+        var costs = new double[positions.length][positions.length];
+        for (int i = 0; i < positions.length; i += 1) {
+            for (int j = 0; j < positions.length; j += 1) costs[i][j] = Math.abs(positions[i] - positions[j]);
+        }
+        var open = TourOptimizer.optimize(costs, false, TIME_LIMIT);
+        assertArrayEquals(new int[]{0, 4, 2, 6, 1, 5, 3}, open);
+        assertEquals(18, tourCost(costs, TourOptimizer.optimize(costs, true, TIME_LIMIT), true), 1e-9);
+    }
+
+    @Test
+    void tourOptimizerImprovesInsertionOrder() {
+        for (var closed : new boolean[]{false, true}) {
+            var costs = randomPlaneCosts(60);
+            var order = TourOptimizer.optimize(costs, closed, TIME_LIMIT);
+            assertIsPermutation(60, order);
+            var insertionOrder = new int[60];
+            for (int i = 0; i < 60; i += 1) insertionOrder[i] = i;
+            assertTrue(tourCost(costs, order, closed) < 0.5 * tourCost(costs, insertionOrder, closed));
+        }
+    }
+
+    @Test
+    void tourOptimizerKeepsLastStopWithFixedEnd() {
+        // stops on a line, the last one being in the middle
+        var positions = new double[]{0, 5, 2, 9, 1, 7, 3, 4};
+        var costs = new double[positions.length][positions.length];
+        for (int i = 0; i < positions.length; i += 1) {
+            for (int j = 0; j < positions.length; j += 1) costs[i][j] = Math.abs(positions[i] - positions[j]);
+        }
+        var order = TourOptimizer.optimizeWithFixedEnd(costs, TIME_LIMIT);
+        assertIsPermutation(positions.length, order);
+        assertEquals(0, order[0]);
+        assertEquals(positions.length - 1, order[order.length - 1]);
+        // going to the farthest stop then back to the last one: 9 + 5
+        assertEquals(14, tourCost(costs, order, false), 1e-9);
+
+        var randomCosts = randomPlaneCosts(60);
+        var randomOrder = TourOptimizer.optimizeWithFixedEnd(randomCosts, TIME_LIMIT);
+        assertIsPermutation(60, randomOrder);
+        assertEquals(59, randomOrder[59]);
+        assertArrayEquals(new int[]{0}, TourOptimizer.optimizeWithFixedEnd(new double[][]{{0}}, TIME_LIMIT));
+        assertArrayEquals(new int[]{0, 1}, TourOptimizer.optimizeWithFixedEnd(new double[][]{{0, 1}, {1, 0}}, TIME_LIMIT));
+    }
+
+    @Test
+    void tourOptimizerHandlesAsymmetricAndInfiniteCosts() {
+        var costs = new double[][]{
+                {0, 1, 10, Double.POSITIVE_INFINITY},
+                {10, 0, 1, 10},
+                {10, 10, 0, 1},
+                {1, 10, 10, 0}};
+        assertArrayEquals(new int[]{0, 1, 2, 3}, TourOptimizer.optimize(costs, true, TIME_LIMIT));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, TourOptimizer.optimize(costs, false, TIME_LIMIT));
+        assertArrayEquals(new int[]{0}, TourOptimizer.optimize(new double[][]{{0}}, true, TIME_LIMIT));
+    }
+
+    @Test
+    void tourOptimizerIsFastForHundredStops() {
+        var costs = randomPlaneCosts(100);
+        var t0 = System.nanoTime();
+        var order = TourOptimizer.optimize(costs, true, TIME_LIMIT);
+        assertTrue(System.nanoTime() - t0 < 1_000_000_000L);
+        assertIsPermutation(100, order);
+    }
+
+    @Test
+    void tourOptimizerCostMatrixMatchesRouteComputer(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var rc = new RouteComputer(graph, new CityBikeCF(graph));
+        var nodeIds = new int[]{ids[0], ids[17], ids[50], ids[95], ids[33]};
+        var costs = TourOptimizer.costMatrix(rc, nodeIds);
+        for (int i = 0; i < nodeIds.length; i += 1) {
+            var tree = rc.shortestPathTree(nodeIds[i], Double.POSITIVE_INFINITY);
+            for (int j = 0; j < nodeIds.length; j += 1) {
+                assertEquals(i == j ? 0 : tree.cost(nodeIds[j]), costs[i][j], 1e-3);
+            }
+        }
+        assertIsPermutation(nodeIds.length, TourOptimizer.optimize(costs, false, TIME_LIMIT));
+    }
+}
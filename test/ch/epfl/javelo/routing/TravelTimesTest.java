@@ -0,0 +1,150 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static ch.epfl.javelo.data.Attribute.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TravelTimesTest {
+
+    @Test
+    void speedModelSpeedDecreasesWithSlope() {
+        var model = SpeedModel.CITY_BIKE;
+        assertEquals(model.flatSpeed(), model.speed(0), 1e-9);
+        assertEquals(model.maxDescentSpeed(), model.speed(-0.2), 1e-9);
+        var previous = Double.POSITIVE_INFINITY;
+        for (var slope = -0.2; slope <= 0.3; slope += 0.01) {
+            var speed = model.speed(slope);
+            assertTrue(speed <= previous && speed > 0);
+            previous = speed;
+        }
+        assertTrue(model.speed(0.08) < model.flatSpeed() / 2);
+    }
+
+    @Test
+    void speedModelThrowsOnInvalidValues() {
+        assertThrows(IllegalArgumentException.class, () -> new SpeedModel(0, 100, 80, 10));
+        assertThrows(IllegalArgumentException.class, () -> new SpeedModel(5, 100, 80, 4));
+    }
+
+    @Test
+    void speedModelSurfaceFactorWorks() {
+        var model = SpeedModel.CITY_BIKE;
+        assertEquals(1, model.surfaceFactor(AttributeSet.of(HIGHWAY_RESIDENTIAL, SURFACE_ASPHALT)));
+        assertTrue(model.surfaceFactor(AttributeSet.of(HIGHWAY_TRACK, SURFACE_GRAVEL)) < 1);
+        assertTrue(model.surfaceFactor(AttributeSet.of(HIGHWAY_STEPS))
+                < model.surfaceFactor(AttributeSet.of(HIGHWAY_PATH, SURFACE_DIRT)));
+    }
+
+    @Test
+    void travelTimesAreTheTimesOfTheModel(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var model = SpeedModel.CITY_BIKE;
+        var times = TravelTimes.of(graph, model);
+        assertEquals(graph.edgeCount(), times.count());
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+            var expected = model.edgeTime(graph, edgeId);
+            assertEquals(expected, times.time(edgeId), 1e-4 * expected);
+            var length = graph.edgeLength(edgeId);
+            assertTrue(times.time(edgeId) >= length / model.maxDescentSpeed() - 1e-3);
+            if (Double.isNaN(graph.edgeProfile(edgeId).applyAsDouble(0)))
+                assertEquals(length / model.flatSpeed(), times.time(edgeId), 1e-3);
+        }
+    }
+
+    @Test
+    void travelTimesAreReadBackOnlyForTheSameDatasetAndModel(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var model = SpeedModel.CITY_BIKE;
+        assertNull(TravelTimes.loadFrom(dir, graph, model));
+
+        var times = TravelTimes.loadOrCompute(dir, graph, model);
+        assertTrue(Files.exists(dir.resolve(TravelTimes.FILE)));
+        var loaded = TravelTimes.loadFrom(dir, graph, model);
+        assertNotNull(loaded);
+        assertEquals(model, loaded.model());
+        assertEquals(times.count(), loaded.count());
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1)
+            assertEquals(times.time(edgeId), loaded.time(edgeId));
+
+        var slower = new SpeedModel(model.flatSpeed() / 2, model.power(), model.mass(), model.maxDescentSpeed());
+        assertNull(TravelTimes.loadFrom(dir, graph, slower));
+    }
+
+    @Test
+    void travelTimesOfAnotherDatasetAreComputedAgain(@TempDir Path dir) throws IOException {
+        TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var model = SpeedModel.CITY_BIKE;
+        var oldTimes = TravelTimes.loadOrCompute(dir, graph, model);
+
+        TestGraphs.writeGrid(dir, 8, 5);
+        var nodesFile = dir.resolve("nodes.bin");
+        Files.setLastModifiedTime(nodesFile, FileTime.fromMillis(Files.getLastModifiedTime(nodesFile).toMillis() + 1_000));
+        var rebuilt = Graph.loadFrom(dir);
+        assertNull(TravelTimes.loadFrom(dir, rebuilt, model));
+        assertThrows(IllegalArgumentException.class, () -> oldTimes.writeTo(dir, rebuilt));
+
+        var times = TravelTimes.loadOrCompute(dir, rebuilt, model);
+        assertEquals(rebuilt.edgeCount(), times.count());
+        assertNotNull(TravelTimes.loadFrom(dir, rebuilt, model));
+    }
+
+    @Test
+    void routesAreTimedWithTravelTimes(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var times = TravelTimes.of(graph, SpeedModel.CITY_BIKE);
+        var cf = new CityBikeCF(graph);
+        var untimed = new RouteComputer(graph, cf).bestRouteBetween(ids[0], ids[40]);
+        assertTrue(Double.isNaN(untimed.time()));
+
+        var route = new RouteComputer(graph, cf).withTravelTimes(times).bestRouteBetween(ids[0], ids[40]);
+        var expected = 0d;
+        for (var edge : route.edges()) {
+            for (int i = 0; i < graph.nodeOutDegree(edge.fromNodeId()); i += 1) {
+                var edgeId = graph.nodeOutEdgeId(edge.fromNodeId(), i);
+                if (graph.edgeTargetNodeId(edgeId) == edge.toNodeId()) expected += times.time(edgeId);
+            }
+        }
+        assertEquals(expected, route.time(), 1e-6);
+        var multi = new MultiRoute(List.of(route, route));
+        assertEquals(2 * expected, multi.time(), 1e-6);
+        assertEquals(expected, ElevationProfileComputer.elevationProfile(route, 5).time(), 1e-6);
+    }
+
+    @Test
+    void travelTimeCFFindsFastestRoutes(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var times = TravelTimes.of(graph, SpeedModel.CITY_BIKE);
+        var cityBike = new CityBikeCF(graph);
+        var fastest = new TravelTimeCF(graph, cityBike, times);
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+            var nodeId = graph.edgeSourceNodeId(edgeId);
+            assertTrue(fastest.costFactor(nodeId, edgeId) >= 1);
+            assertEquals(cityBike.costFactor(nodeId, edgeId) == Double.POSITIVE_INFINITY,
+                    fastest.costFactor(nodeId, edgeId) == Double.POSITIVE_INFINITY);
+        }
+        var rc = new RouteComputer(graph, cityBike).withTravelTimes(times);
+        var rcFastest = new RouteComputer(graph, fastest).withTravelTimes(times);
+        for (int end = 1; end < ids.length; end += 7) {
+            var route = rc.bestRouteBetween(ids[0], ids[end]);
+            var fastRoute = rcFastest.bestRouteBetween(ids[0], ids[end]);
+            assertEquals(route == null, fastRoute == null);
+            if (route != null) assertTrue(fastRoute.time() <= route.time() + 1e-3);
+        }
+    }
+}
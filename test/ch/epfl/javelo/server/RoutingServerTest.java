@@ -0,0 +1,123 @@
+package ch.epfl.javelo.server;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingServerTest {
+
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    private static HttpResponse<String> get(RoutingServer server, String pathAndQuery)
+            throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + pathAndQuery)).build();
+        return CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String pointOf(Graph graph, int nodeId) {
+        var p = graph.nodePoint(nodeId);
+        return (p.e() + 1) + "," + (p.n() - 1);
+    }
+
+    @Test
+    void routingServerAnswersAllEndpoints(@TempDir Path dir) throws IOException, InterruptedException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var rc = new RouteComputer(graph, new CityBikeCF(graph));
+        var server = new RoutingServer(graph, rc, new InetSocketAddress("localhost", 0), 4);
+        server.start();
+        try {
+            var nearest = get(server, "/nearest?point=" + pointOf(graph, ids[30]));
+            assertEquals(200, nearest.statusCode());
+            assertTrue(nearest.body().startsWith("{\"nodeId\":" + ids[30] + ","));
+
+            var points = pointOf(graph, ids[0]) + ";" + pointOf(graph, ids[95]);
+            var route = get(server, "/route?points=" + points);
+            assertEquals(200, route.statusCode());
+            assertTrue(route.headers().firstValue("Content-Type").orElseThrow().startsWith("application/json"));
+            var length = rc.bestRouteBetween(ids[0], ids[95]).length();
+            assertTrue(route.body().startsWith("{\"length\":" + length + ",\"time\":null,"));
+
+            var profile = get(server, "/profile?points=" + points);
+            assertEquals(200, profile.statusCode());
+            var elevations = profile.body().substring(profile.body().indexOf('[') + 1, profile.body().indexOf(']'));
+            assertEquals((int) Math.ceil(length / 5) + 1, elevations.split(",").length);
+
+            var gpx = get(server, "/gpx?points=" + points);
+            assertEquals(200, gpx.statusCode());
+            assertTrue(gpx.body().contains("<rtept"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void routingServerRejectsInvalidRequests(@TempDir Path dir) throws IOException, InterruptedException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var server = new RoutingServer(graph, new RouteComputer(graph, new CityBikeCF(graph)),
+                new InetSocketAddress("localhost", 0), 2);
+        server.start();
+        try {
+            assertEquals(400, get(server, "/nearest").statusCode());
+            assertEquals(400, get(server, "/nearest?point=abc").statusCode());
+            assertEquals(400, get(server, "/nearest?point=0,0").statusCode());
+            assertEquals(404, get(server, "/nearest?point=2600000,1200000").statusCode());
+            assertEquals(400, get(server, "/route?points=" + pointOf(graph, ids[0])).statusCode());
+            var error = get(server, "/route?points=2600000,1200000;2600100,1200000");
+            assertEquals(404, error.statusCode());
+            assertTrue(error.body().startsWith("{\"error\":"));
+            var escaped = get(server, "/nearest?point=a%0A%22b%01");
+            assertEquals(400, escaped.statusCode());
+            assertEquals("{\"error\":\"invalid point a\\n\\\"b\\u0001\"}", escaped.body());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void routingServerHandlesConcurrentRequests(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 30, 20);
+        var graph = Graph.loadFrom(dir);
+        var server = new RoutingServer(graph, new RouteComputer(graph, new CityBikeCF(graph)),
+                new InetSocketAddress("localhost", 0), 8);
+        server.start();
+        try {
+            var queries = new ArrayList<String>();
+            for (int i = 0; i < 20; i += 1)
+                queries.add("/route?points=" + pointOf(graph, ids[i * 29]) + ";" + pointOf(graph, ids[599 - i * 17]));
+            var expected = new ArrayList<String>();
+            for (var query : queries) expected.add(get(server, query).body());
+
+            var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+            for (int i = 0; i < 400; i += 1) {
+                var uri = URI.create("http://localhost:" + server.port() + queries.get(i % queries.size()));
+                responses.add(CLIENT.sendAsync(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            for (int i = 0; i < responses.size(); i += 1) {
+                var response = responses.get(i).join();
+                assertEquals(200, response.statusCode());
+                assertEquals(expected.get(i % queries.size()), response.body());
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.ElevationProfileComputer;
+import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRouterTest {
+
+    private static String en(PointCh p) {
+        return (p.e() + 1) + "," + (p.n() - 1);
+    }
+
+    @Test
+    void batchRouterWritesOneLinePerPairInOrder(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 30, 20);
+        var graph = Graph.loadFrom(dir);
+        var rc = new RouteComputer(graph, new CityBikeCF(graph));
+
+        var input = new StringBuilder("from_e,from_n,to_e,to_n\n");
+        var pairCount = 700;
+        for (int i = 0; i < pairCount; i += 1) {
+            var from = ids[(i * 37) % ids.length];
+            var to = ids[(i * 101 + 13) % ids.length];
+            input.append(en(graph.nodePoint(from))).append(',').append(en(graph.nodePoint(to))).append('\n');
+        }
+        var output = new StringWriter();
+        var summary = new BatchRouter(graph, rc, 3, true)
+                .route(new BufferedReader(new StringReader(input.toString())), output, null);
+        assertEquals(pairCount, summary.pairs());
+        assertEquals(pairCount, summary.routed());
+
+        var lines = output.toString().split("\n");
+        assertEquals(pairCount + 1, lines.length);
+        assertEquals("id,status,from_node,to_node,length,ascent,descent,cost,geometry", lines[0]);
+        for (int i = 0; i < pairCount; i += 1) {
+            var fields = lines[i + 1].split(",", -1);
+            var from = ids[(i * 37) % ids.length];
+            var to = ids[(i * 101 + 13) % ids.length];
+            assertEquals(Integer.toString(i + 1), fields[0]);
+            assertEquals("ok", fields[1]);
+            assertEquals(from, Integer.parseInt(fields[2]));
+            assertEquals(to, Integer.parseInt(fields[3]));
+            if (from == to) continue;
+            var route = rc.bestRouteBetween(from, to);
+            var profile = ElevationProfileComputer.elevationProfile(route, 5);
+            assertEquals(route.length(), Double.parseDouble(fields[4]));
+            assertEquals(profile.totalAscent(), Double.parseDouble(fields[5]));
+            assertEquals(profile.totalDescent(), Double.parseDouble(fields[6]));
+            assertTrue(Double.parseDouble(fields[7]) >= route.length() * 0.99);
+            assertEquals(route.points().size(), fields[8].split(";").length);
+        }
+    }
+
+    @Test
+    void batchRouterReportsUnroutablePairs(@TempDir Path dir) throws IOException {
+        var ids = TestGraphs.writeGrid(dir, 12, 8);
+        var graph = Graph.loadFrom(dir);
+        var rc = new RouteComputer(graph, new CityBikeCF(graph));
+        var from = graph.nodePoint(ids[0]);
+        var to = graph.nodePoint(ids[95]);
+        var input = String.join("\n",
+                "a," + en(from) + "," + en(to),
+                "b," + Math.toDegrees(from.lat()) + "," + Math.toDegrees(from.lon())
+                        + "," + Math.toDegrees(to.lat()) + "," + Math.toDegrees(to.lon()),
+                "c,1,2,x,4",
+                "d,2600000,1200000," + en(to),
+                "",
+                en(to) + "," + en(to));
+        var output = new StringWriter();
+        var summary = new BatchRouter(graph, rc, 2, false)
+                .route(new BufferedReader(new StringReader(input)), output, null);
+        assertEquals(5, summary.pairs());
+        assertEquals(3, summary.routed());
+        assertEquals(1, summary.invalid());
+        assertEquals(1, summary.unsnapped());
+        assertEquals(0, summary.unrouted());
+
+        var lines = output.toString().split("\n");
+        var length = rc.bestRouteBetween(ids[0], ids[95]).length();
+        assertTrue(lines[1].startsWith("a,ok," + ids[0] + "," + ids[95] + "," + length + ","));
+        assertTrue(lines[2].startsWith("b,ok," + ids[0] + "," + ids[95] + "," + length + ","));
+        assertEquals("c,invalid,,,,,,", lines[3]);
+        assertEquals("d,no_node,," + ids[95] + ",,,,", lines[4]);
+        assertEquals("5,ok," + ids[95] + "," + ids[95] + ",0.0,0.0,0.0,0.0", lines[5]);
+    }
+}
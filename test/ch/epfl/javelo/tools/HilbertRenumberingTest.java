@@ -0,0 +1,90 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.data.BinaryFiles;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HilbertRenumberingTest {
+
+    @Test
+    void renumberingIsAPermutationPreservingTheGraph(@TempDir Path dir) throws IOException {
+        var in = dir.resolve("in");
+        var out = dir.resolve("out");
+        Files.createDirectories(in);
+        TestGraphs.writeGrid(in, 30, 20);
+        var newIds = HilbertRenumbering.renumber(in, out);
+        var before = Graph.loadFrom(in);
+        var after = Graph.loadFrom(out);
+
+        assertEquals(before.nodeCount(), after.nodeCount());
+        var seen = new boolean[newIds.length];
+        for (int oldId = 0; oldId < newIds.length; oldId += 1) {
+            var newId = newIds[oldId];
+            assertFalse(seen[newId]);
+            seen[newId] = true;
+            assertEquals(before.nodePoint(oldId), after.nodePoint(newId));
+            assertEquals(before.nodeOutDegree(oldId), after.nodeOutDegree(newId));
+            for (int i = 0; i < before.nodeOutDegree(oldId); i += 1) {
+                var oldEdge = before.nodeOutEdgeId(oldId, i);
+                var newEdge = after.nodeOutEdgeId(newId, i);
+                assertEquals(newIds[before.edgeTargetNodeId(oldEdge)], after.edgeTargetNodeId(newEdge));
+                assertEquals(before.edgeIsInverted(oldEdge), after.edgeIsInverted(newEdge));
+                assertEquals(before.edgeLength(oldEdge), after.edgeLength(newEdge));
+                assertEquals(before.edgeElevationGain(oldEdge), after.edgeElevationGain(newEdge));
+                assertEquals(before.edgeAttributes(oldEdge), after.edgeAttributes(newEdge));
+                for (double x = 0; x <= before.edgeLength(oldEdge); x += 1.5)
+                    assertEquals(before.edgeProfile(oldEdge).applyAsDouble(x), after.edgeProfile(newEdge).applyAsDouble(x));
+            }
+        }
+    }
+
+    @Test
+    void renumberingKeepsSectorsAndOsmIdsConsistent(@TempDir Path dir) throws IOException {
+        var in = dir.resolve("in");
+        var out = dir.resolve("out");
+        Files.createDirectories(in);
+        TestGraphs.writeGrid(in, 30, 20);
+        var newIds = HilbertRenumbering.renumber(in, out);
+        var before = Graph.loadFrom(in);
+        var after = Graph.loadFrom(out);
+
+        for (int oldId = 0; oldId < newIds.length; oldId += 7) {
+            var point = before.nodePoint(oldId);
+            assertEquals(newIds[before.nodeClosestTo(point, 10)], after.nodeClosestTo(point, 10));
+        }
+
+        var oldOsmIds = BinaryFiles.map(in.resolve("nodes_osmid.bin")).asLongBuffer();
+        var newOsmIds = BinaryFiles.map(out.resolve("nodes_osmid.bin")).asLongBuffer();
+        for (int oldId = 0; oldId < newIds.length; oldId += 1)
+            assertEquals(oldOsmIds.get(oldId), newOsmIds.get(newIds[oldId]));
+    }
+
+    @Test
+    void renumberingFollowsTheCurve(@TempDir Path dir) throws IOException {
+        var in = dir.resolve("in");
+        var out = dir.resolve("out");
+        Files.createDirectories(in);
+        TestGraphs.writeGrid(in, 30, 20);
+        HilbertRenumbering.renumber(in, out);
+        var before = Graph.loadFrom(in);
+        var after = Graph.loadFrom(out);
+
+        // consecutive nodes are much closer after renumbering
+        assertTrue(meanDistanceBetweenConsecutiveNodes(after) < meanDistanceBetweenConsecutiveNodes(before) / 4);
+    }
+
+    private static double meanDistanceBetweenConsecutiveNodes(Graph graph) {
+        var total = 0d;
+        for (int i = 1; i < graph.nodeCount(); i += 1)
+            total += graph.nodePoint(i - 1).distanceTo(graph.nodePoint(i));
+        return total / (graph.nodeCount() - 1);
+    }
+}
@@ -0,0 +1,345 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.data.Attribute;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphOsmIds;
+import ch.epfl.javelo.projection.Ch1903;
+import ch.epfl.javelo.projection.PointCh;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OsmImporterTest {
+    private static final double ORIGIN_E = 2_537_000;
+    private static final double ORIGIN_N = 1_151_000;
+    private static final double CELL_SIZE = 10;
+    private static final int CELLS = 200;
+
+    // Nodes: OSM identity, east, north. Nodes 60 and 70 are outside the raster, node 50 is used by no road, node 70 is
+    // 9 km away from node 10.
+    private static final long[][] NODES = {
+            {10, 2_537_100, 1_151_100},
+            {20, 2_537_400, 1_151_150},
+            {30, 2_537_450, 1_151_600},
+            {40, 2_538_000, 1_151_700},
+            {50, 2_538_200, 1_151_900},
+            {60, 2_539_500, 1_151_600},
+            {70, 2_537_100, 1_160_100},
+    };
+
+    // Ways: OSM identity, tags (as key, value pairs), node identities.
+    private static final List<Object[]> WAYS = List.of(
+            new Object[]{100L, new String[]{"highway", "residential", "surface", "asphalt", "name", "Rue"}, new long[]{10, 20, 30}},
+            new Object[]{200L, new String[]{"highway", "cycleway", "lcn", "yes"}, new long[]{30, 40}},
+            new Object[]{300L, new String[]{"building", "yes"}, new long[]{40, 50}},
+            new Object[]{400L, new String[]{"highway", "track"}, new long[]{40, 60}},
+            new Object[]{500L, new String[]{"highway", "track"}, new long[]{10, 70}});
+
+    private static double elevationAt(double e, double n) {
+        return 400 + 0.02 * (e - ORIGIN_E) + 0.01 * (n - ORIGIN_N);
+    }
+
+    private static double lon(long[] node) {
+        return Math.toDegrees(Ch1903.lon(node[1], node[2]));
+    }
+
+    private static double lat(long[] node) {
+        return Math.toDegrees(Ch1903.lat(node[1], node[2]));
+    }
+
+    private static ElevationRaster writeRaster(Path dir) throws IOException {
+        var raster = new StringBuilder()
+                .append("ncols ").append(CELLS).append('\n')
+                .append("nrows ").append(CELLS).append('\n')
+                .append("xllcenter ").append(ORIGIN_E).append('\n')
+                .append("yllcenter ").append(ORIGIN_N).append('\n')
+                .append("cellsize ").append(CELL_SIZE).append('\n')
+                .append("NODATA_value -9999\n");
+        for (int row = 0; row < CELLS; row += 1) {
+            for (int column = 0; column < CELLS; column += 1) {
+                var e = ORIGIN_E + column * CELL_SIZE;
+                var n = ORIGIN_N + (CELLS - 1 - row) * CELL_SIZE;
+                raster.append(String.format(Locale.ROOT, "%.3f ", elevationAt(e, n)));
+            }
+            raster.append('\n');
+        }
+        var file = dir.resolve("elevations.asc");
+        Files.writeString(file, raster);
+        return ElevationRaster.read(file);
+    }
+
+    private static Path writeXml(Path dir) throws IOException {
+        var xml = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<osm version=\"0.6\">\n");
+        for (var node : NODES)
+            xml.append(String.format(Locale.ROOT, "<node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\"/>\n", node[0], lat(node), lon(node)));
+        for (var way : WAYS) {
+            xml.append("<way id=\"").append(way[0]).append("\">\n");
+            for (var ref : (long[]) way[2]) xml.append("<nd ref=\"").append(ref).append("\"/>\n");
+            var tags = (String[]) way[1];
+            for (int i = 0; i < tags.length; i += 2)
+                xml.append("<tag k=\"").append(tags[i]).append("\" v=\"").append(tags[i + 1]).append("\"/>\n");
+            xml.append("</way>\n");
+        }
+        xml.append("<relation id=\"1\"><member type=\"way\" ref=\"100\" role=\"\"/></relation>\n</osm>\n");
+        var file = dir.resolve("extract.osm");
+        Files.writeString(file, xml);
+        return file;
+    }
+
+    private static Path writePbf(Path dir) throws IOException {
+        var strings = new ArrayList<String>(List.of(""));
+        var stringTable = new Proto();
+        var dense = new Proto();
+        var ids = new Proto();
+        var lats = new Proto();
+        var lons = new Proto();
+        long lastId = 0, lastLat = 0, lastLon = 0;
+        for (var node : NODES) {
+            long lat = Math.round(lat(node) * 1e7), lon = Math.round(lon(node) * 1e7);
+            ids.signedVarint(node[0] - lastId);
+            lats.signedVarint(lat - lastLat);
+            lons.signedVarint(lon - lastLon);
+            lastId = node[0];
+            lastLat = lat;
+            lastLon = lon;
+        }
+        dense.bytes(1, ids).bytes(8, lats).bytes(9, lons);
+        var nodeGroup = new Proto().bytes(2, dense);
+        var wayGroup = new Proto();
+        for (var way : WAYS) {
+            var keys = new Proto();
+            var values = new Proto();
+            var tags = (String[]) way[1];
+            for (int i = 0; i < tags.length; i += 1) {
+                if (!strings.contains(tags[i])) strings.add(tags[i]);
+                (i % 2 == 0 ? keys : values).varint(strings.indexOf(tags[i]));
+            }
+            var refs = new Proto();
+            long lastRef = 0;
+            for (var ref : (long[]) way[2]) {
+                refs.signedVarint(ref - lastRef);
+                lastRef = ref;
+            }
+            wayGroup.bytes(3, new Proto().field(1, 0).varint((Long) way[0]).bytes(2, keys).bytes(3, values).bytes(8, refs));
+        }
+        for (var string : strings) stringTable.bytes(1, string.getBytes(StandardCharsets.UTF_8));
+        var block = new Proto().bytes(1, stringTable).bytes(2, nodeGroup).bytes(2, wayGroup)
+                .field(17, 0).varint(100);
+
+        var header = new Proto().bytes(4, "OsmSchema-V0.6".getBytes(StandardCharsets.UTF_8))
+                .bytes(4, "DenseNodes".getBytes(StandardCharsets.UTF_8));
+        var out = new ByteArrayOutputStream();
+        var data = new DataOutputStream(out);
+        writeBlob(data, "OSMHeader", header.toByteArray(), false);
+        writeBlob(data, "OSMData", block.toByteArray(), true);
+        var file = dir.resolve("extract.osm.pbf");
+        Files.write(file, out.toByteArray());
+        return file;
+    }
+
+    private static void writeBlob(DataOutputStream out, String type, byte[] content, boolean compressed) throws IOException {
+        var blob = new Proto();
+        if (compressed) {
+            var deflater = new Deflater();
+            deflater.setInput(content);
+            deflater.finish();
+            var buffer = new byte[content.length + 64];
+            var size = deflater.deflate(buffer);
+            deflater.end();
+            var zlib = new byte[size];
+            System.arraycopy(buffer, 0, zlib, 0, size);
+            blob.field(2, 0).varint(content.length).bytes(3, zlib);
+        } else {
+            blob.bytes(1, content);
+        }
+        var blobBytes = blob.toByteArray();
+        var header = new Proto().bytes(1, type.getBytes(StandardCharsets.UTF_8))
+                .field(3, 0).varint(blobBytes.length).toByteArray();
+        out.writeInt(header.length);
+        out.write(header);
+        out.write(blobBytes);
+    }
+
+    private static final class Proto {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Proto varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+            return this;
+        }
+
+        Proto signedVarint(long value) {
+            return varint((value << 1) ^ (value >> 63));
+        }
+
+        Proto field(int number, int wireType) {
+            return varint(((long) number << 3) | wireType);
+        }
+
+        Proto bytes(int number, byte[] bytes) {
+            field(number, 2).varint(bytes.length);
+            out.writeBytes(bytes);
+            return this;
+        }
+
+        Proto bytes(int number, Proto message) {
+            return bytes(number, message.toByteArray());
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    private static void checkImportedGraph(Path dataset) throws IOException {
+        var graph = Graph.loadFrom(dataset);
+        var osmIds = GraphOsmIds.loadFrom(dataset);
+
+        // the two nodes interpolated along the road from 10 to 70 included
+        assertEquals(8, graph.nodeCount());
+        assertEquals(-1, osmIds.nodeId(50));
+        assertEquals(-1, osmIds.nodeId(-1));
+        var edgeCount = 0;
+        for (var node : NODES) {
+            var nodeId = osmIds.nodeId(node[0]);
+            if (node[0] == 50) continue;
+            var point = graph.nodePoint(nodeId);
+            assertEquals(node[1], point.e(), 1);
+            assertEquals(node[2], point.n(), 1);
+            edgeCount += graph.nodeOutDegree(nodeId);
+        }
+        assertEquals(10, edgeCount);
+
+        var from10 = graph.nodeOutEdgeId(osmIds.nodeId(10), 0);
+        assertEquals(osmIds.nodeId(20), graph.edgeTargetNodeId(from10));
+        assertFalse(graph.edgeIsInverted(from10));
+        assertTrue(graph.edgeAttributes(from10).contains(Attribute.HIGHWAY_RESIDENTIAL));
+        assertTrue(graph.edgeAttributes(from10).contains(Attribute.SURFACE_ASPHALT));
+        assertEquals(Math.hypot(300, 50), graph.edgeLength(from10), 1);
+        assertEquals(6.5, graph.edgeElevationGain(from10), 0.2);
+
+        var node40 = osmIds.nodeId(40);
+        for (int i = 0; i < graph.nodeOutDegree(node40); i += 1) {
+            var edgeId = graph.nodeOutEdgeId(node40, i);
+            var target = graph.edgeTargetNodeId(edgeId);
+            var profile = graph.edgeProfile(edgeId);
+            if (target == osmIds.nodeId(30)) {
+                assertTrue(graph.edgeIsInverted(edgeId));
+                assertTrue(graph.edgeAttributes(edgeId).contains(Attribute.LCN_YES));
+                var a = graph.nodePoint(node40);
+                var b = graph.nodePoint(target);
+                var length = graph.edgeLength(edgeId);
+                for (double x = 0; x <= length; x += 7) {
+                    var e = a.e() + (b.e() - a.e()) * x / length;
+                    var n = a.n() + (b.n() - a.n()) * x / length;
+                    assertEquals(elevationAt(e, n), profile.applyAsDouble(x), 0.2);
+                }
+            } else {
+                assertEquals(osmIds.nodeId(60), target);
+                assertTrue(graph.edgeAttributes(edgeId).contains(Attribute.HIGHWAY_TRACK));
+                assertTrue(Double.isNaN(profile.applyAsDouble(0)));
+            }
+        }
+        assertEquals(osmIds.nodeId(30), graph.nodeClosestTo(new PointCh(2_537_450, 1_151_610), 50));
+
+        // the road from 10 to 70, too long for a single edge, is split in three pieces passable in both directions
+        var nodeId = osmIds.nodeId(10);
+        for (int piece = 1; piece <= 3; piece += 1) {
+            var edgeId = graph.nodeOutEdgeId(nodeId, graph.nodeOutDegree(nodeId) - 1);
+            var target = graph.edgeTargetNodeId(edgeId);
+            assertEquals(3_000, graph.edgeLength(edgeId), 1);
+            assertTrue(graph.edgeAttributes(edgeId).contains(Attribute.HIGHWAY_TRACK));
+            assertEquals(1_151_100 + 3_000 * piece, graph.nodePoint(target).n(), 1);
+            assertEquals(piece == 3 ? 70 : -1, osmIds.osmId(target));
+            var backward = false;
+            for (int i = 0; i < graph.nodeOutDegree(target); i += 1)
+                backward |= graph.edgeTargetNodeId(graph.nodeOutEdgeId(target, i)) == nodeId;
+            assertTrue(backward);
+            nodeId = target;
+        }
+    }
+
+    @Test
+    void importerBuildsGraphFromXmlExtract(@TempDir Path dir) throws IOException {
+        var raster = writeRaster(dir);
+        OsmImporter.importDataset(writeXml(dir), raster, dir.resolve("xml"));
+        checkImportedGraph(dir.resolve("xml"));
+    }
+
+    @Test
+    void importerBuildsGraphFromPbfExtract(@TempDir Path dir) throws IOException {
+        var raster = writeRaster(dir);
+        OsmImporter.importDataset(writePbf(dir), raster, dir.resolve("pbf"));
+        checkImportedGraph(dir.resolve("pbf"));
+    }
+
+    @Test
+    void rasterInterpolatesBetweenCellsAndIsUndefinedOutside(@TempDir Path dir) throws IOException {
+        var raster = writeRaster(dir);
+        assertEquals(elevationAt(2_537_123.4, 1_151_567.8), raster.elevationAt(2_537_123.4, 1_151_567.8), 1e-3);
+        assertEquals(elevationAt(ORIGIN_E, ORIGIN_N), raster.elevationAt(ORIGIN_E, ORIGIN_N), 1e-3);
+        assertTrue(Float.isNaN(raster.elevationAt(ORIGIN_E - 1, ORIGIN_N)));
+        assertTrue(Float.isNaN(raster.elevationAt(ORIGIN_E, ORIGIN_N + CELLS * CELL_SIZE)));
+    }
+
+    @Test
+    void builderDropsBothEdgesOfPairsLeavingAFullNode(@TempDir Path dir) throws IOException {
+        var builder = new DatasetBuilder();
+        var center = builder.addNode(2_537_000, 1_151_000, 1);
+        var neighbors = new int[18];
+        for (int i = 0; i < neighbors.length; i += 1) {
+            var angle = 2 * Math.PI * i / neighbors.length;
+            neighbors[i] = builder.addNode(2_537_000 + 100 * Math.cos(angle), 1_151_000 + 100 * Math.sin(angle), 2 + i);
+            builder.addEdgePair(center, neighbors[i], 100 << 4, 0, DatasetBuilder.EncodedProfile.NONE);
+        }
+        var idOf = builder.write(dir);
+        assertEquals(6, builder.droppedEdges());
+
+        var graph = Graph.loadFrom(dir);
+        assertEquals(30, graph.edgeCount());
+        assertEquals(15, graph.nodeOutDegree(idOf[center]));
+        for (int i = 0; i < neighbors.length; i += 1) {
+            var neighbor = idOf[neighbors[i]];
+            assertEquals(i < 15 ? 1 : 0, graph.nodeOutDegree(neighbor));
+            if (i < 15) assertEquals(idOf[center], graph.edgeTargetNodeId(graph.nodeOutEdgeId(neighbor, 0)));
+        }
+    }
+
+    @Test
+    void encodedProfilesUseTheSmallestType() {
+        var flat = DatasetBuilder.encodeProfile(new float[]{500, 500.25f, 500.5f, 500, 499.75f});
+        assertEquals(3, flat.type());
+        assertEquals(1 + 1, flat.shorts().length);
+        assertEquals(0x1F40, flat.shorts()[0]);
+        assertEquals((short) 0x448C, flat.shorts()[1]);
+        assertEquals(8, flat.forwardGainQ28_4());
+        assertEquals(12, flat.backwardGainQ28_4());
+
+        var hilly = DatasetBuilder.encodeProfile(new float[]{500, 505, 497});
+        assertEquals(2, hilly.type());
+        assertEquals((short) ((80 << 8) | (-128 & 0xFF)), hilly.shorts()[1]);
+
+        var steep = DatasetBuilder.encodeProfile(new float[]{500, 520});
+        assertEquals(1, steep.type());
+        assertEquals(520 * 16, steep.shorts()[1]);
+
+        assertEquals(0, DatasetBuilder.encodeProfile(new float[]{500, Float.NaN}).type());
+        assertEquals(0, DatasetBuilder.encodeProfile(null).type());
+    }
+}
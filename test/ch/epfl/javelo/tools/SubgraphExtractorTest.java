@@ -0,0 +1,92 @@
+package ch.epfl.javelo.tools;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphOsmIds;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubgraphExtractorTest {
+
+    private static void checkExtraction(Path dir, Predicate<PointCh> region) throws IOException {
+        var in = dir.resolve("in");
+        var out = dir.resolve("out");
+        Files.createDirectories(in);
+        TestGraphs.writeGrid(in, 30, 20);
+        var newIds = SubgraphExtractor.extract(in, region, out);
+        var before = Graph.loadFrom(in);
+        var after = Graph.loadFrom(out);
+        var beforeOsmIds = GraphOsmIds.loadFrom(in);
+        var afterOsmIds = GraphOsmIds.loadFrom(out);
+
+        var extracted = 0;
+        for (int oldId = 0; oldId < newIds.length; oldId += 1) {
+            var point = before.nodePoint(oldId);
+            assertEquals(region.test(point), newIds[oldId] >= 0);
+            if (newIds[oldId] < 0) continue;
+            extracted += 1;
+            var newId = newIds[oldId];
+            assertEquals(point, after.nodePoint(newId));
+            assertEquals(beforeOsmIds.osmId(oldId), afterOsmIds.osmId(newId));
+            assertEquals(newId, after.nodeClosestTo(point, 1));
+
+            var i = 0;
+            for (int j = 0; j < before.nodeOutDegree(oldId); j += 1) {
+                var oldEdge = before.nodeOutEdgeId(oldId, j);
+                var oldTarget = before.edgeTargetNodeId(oldEdge);
+                if (newIds[oldTarget] < 0) continue;
+                var newEdge = after.nodeOutEdgeId(newId, i++);
+                assertEquals(newIds[oldTarget], after.edgeTargetNodeId(newEdge));
+                assertEquals(before.edgeIsInverted(oldEdge), after.edgeIsInverted(newEdge));
+                assertEquals(before.edgeLength(oldEdge), after.edgeLength(newEdge));
+                assertEquals(before.edgeElevationGain(oldEdge), after.edgeElevationGain(newEdge));
+                assertEquals(before.edgeAttributes(oldEdge), after.edgeAttributes(newEdge));
+                for (double x = 0; x <= before.edgeLength(oldEdge); x += 1.5)
+                    assertEquals(before.edgeProfile(oldEdge).applyAsDouble(x), after.edgeProfile(newEdge).applyAsDouble(x));
+            }
+            assertEquals(i, after.nodeOutDegree(newId));
+        }
+        assertEquals(extracted, after.nodeCount());
+        assertTrue(0 < extracted && extracted < newIds.length);
+        assertTrue(Files.size(out.resolve("elevations.bin")) < Files.size(in.resolve("elevations.bin")));
+    }
+
+    @Test
+    void extractorKeepsNodesAndEdgesInsideBoundingBox(@TempDir Path dir) throws IOException {
+        var bottomLeft = new PointCh(TestGraphs.ORIGIN_E + 220, TestGraphs.ORIGIN_N + 130);
+        var topRight = new PointCh(TestGraphs.ORIGIN_E + 910, TestGraphs.ORIGIN_N + 640);
+        checkExtraction(dir, SubgraphExtractor.boundingBox(bottomLeft, topRight));
+    }
+
+    @Test
+    void extractorKeepsNodesAndEdgesInsidePolygon(@TempDir Path dir) throws IOException {
+        var e = TestGraphs.ORIGIN_E;
+        var n = TestGraphs.ORIGIN_N;
+        var polygon = SubgraphExtractor.polygon(List.of(
+                new PointCh(e + 100, n + 100),
+                new PointCh(e + 1200, n + 150),
+                new PointCh(e + 700, n + 400),
+                new PointCh(e + 900, n + 900)));
+        checkExtraction(dir, polygon);
+    }
+
+    @Test
+    void polygonUsesEvenOddRule() {
+        var e = TestGraphs.ORIGIN_E;
+        var n = TestGraphs.ORIGIN_N;
+        var square = SubgraphExtractor.polygon(List.of(
+                new PointCh(e, n), new PointCh(e + 100, n), new PointCh(e + 100, n + 100), new PointCh(e, n + 100)));
+        assertTrue(square.test(new PointCh(e + 50, n + 50)));
+        assertFalse(square.test(new PointCh(e + 150, n + 50)));
+        assertFalse(square.test(new PointCh(e - 1, n + 50)));
+    }
+}
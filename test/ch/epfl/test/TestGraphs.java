@@ -0,0 +1,253 @@
+package ch.epfl.test;
+
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.BinaryFiles;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphSectors;
+import ch.epfl.javelo.routing.CostFunction;
+import ch.epfl.javelo.routing.Route;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static ch.epfl.javelo.data.Attribute.*;
+
+/**
+ * Writes small synthetic JaVelo datasets, shaped as grids of streets close to Lausanne, so that the tests
+ * of the tools working on complete datasets do not depend on the (large) real ones.
+ */
+public final class TestGraphs {
+    // Close to a sector corner, so that the grid spans several sectors.
+    public static final double ORIGIN_E = 2_536_500;
+    public static final double ORIGIN_N = 1_152_500;
+    public static final double SPACING = 50;
+
+    public static final List<AttributeSet> ATTRIBUTES = List.of(
+            AttributeSet.of(HIGHWAY_RESIDENTIAL),
+            AttributeSet.of(HIGHWAY_CYCLEWAY, LCN_YES),
+            AttributeSet.of(HIGHWAY_MOTORWAY),
+            AttributeSet.of(HIGHWAY_TERTIARY, ONEWAY_YES));
+
+    private TestGraphs() {}
+
+    /**
+     * Writes a dataset whose nodes form a grid of columns x rows points spaced by about SPACING meters, each node
+     * being linked to its (up to) four neighbours by a pair of opposite edges sharing a profile.
+     * Nodes are sorted by sector, and randomly inside a sector, like in the real datasets.
+     *
+     * @return the identity of the node at column c and row r, at index r * columns + c.
+     */
+    public static int[] writeGrid(Path dir, int columns, int rows) throws IOException {
+        return writeGrid(dir, columns, rows, 1);
+    }
+
+    /**
+     * Writes a dataset like {@link #writeGrid(Path, int, int)}, but whose streets only follow the rows and columns
+     * that are multiples of blockSize, the nodes between two crossings thus forming chains. The other nodes have
+     * no edges.
+     *
+     * @return the identity of the node at column c and row r, at index r * columns + c.
+     */
+    public static int[] writeGrid(Path dir, int columns, int rows, int blockSize) throws IOException {
+        var rng = TestRandomizer.newRandom();
+        var count = columns * rows;
+        var es = new double[count];
+        var ns = new double[count];
+        var sectors = new int[count];
+        var shuffle = new double[count];
+        for (int r = 0; r < rows; r += 1) {
+            for (int c = 0; c < columns; c += 1) {
+                var i = r * columns + c;
+                es[i] = quantize(ORIGIN_E + c * SPACING + rng.nextDouble(-5, 5));
+                ns[i] = quantize(ORIGIN_N + r * SPACING + rng.nextDouble(-5, 5));
+                sectors[i] = GraphSectors.sectorIndexOf(es[i], ns[i]);
+                shuffle[i] = rng.nextDouble();
+            }
+        }
+        var order = new Integer[count];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> sectors[i]).thenComparingDouble(i -> shuffle[i]));
+        var nodeIdOf = new int[count];
+        for (int id = 0; id < count; id += 1) nodeIdOf[order[id]] = id;
+
+        var sectorsBuffer = ByteBuffer.allocate(GraphSectors.SECTOR_COUNT * GraphSectors.SECTOR_SIZE_BYTE);
+        for (int id = 0; id < count; ) {
+            var sector = sectors[order[id]];
+            var start = id;
+            while (id < count && sectors[order[id]] == sector) id += 1;
+            sectorsBuffer.putInt(sector * GraphSectors.SECTOR_SIZE_BYTE, start);
+            sectorsBuffer.putShort(sector * GraphSectors.SECTOR_SIZE_BYTE + 4, (short) (id - start));
+        }
+
+        var nodesBuffer = ByteBuffer.allocate(count * 3 * Integer.BYTES);
+        var osmIdsBuffer = ByteBuffer.allocate(count * Long.BYTES);
+        var edges = ByteBuffer.allocate(count * 4 * 10);
+        var profileIds = ByteBuffer.allocate(count * 4 * Integer.BYTES);
+        var elevations = new ArrayList<Short>();
+        var profileOfPair = new int[count * 4];
+        Arrays.fill(profileOfPair, -1);
+        var edgeCount = 0;
+        for (int id = 0; id < count; id += 1) {
+            var i = order[id];
+            var r = i / columns;
+            var c = i % columns;
+            var firstEdge = edgeCount;
+            int[][] neighbours = {{c + 1, r}, {c - 1, r}, {c, r + 1}, {c, r - 1}};
+            for (var neighbour : neighbours) {
+                if (neighbour[0] < 0 || neighbour[0] >= columns || neighbour[1] < 0 || neighbour[1] >= rows) continue;
+                if (neighbour[1] == r ? r % blockSize != 0 : c % blockSize != 0) continue;
+                var j = neighbour[1] * columns + neighbour[0];
+                // the profile is stored in the direction going from the smaller to the larger grid index
+                var inverted = j < i;
+                var from = inverted ? j : i;
+                var to = inverted ? i : j;
+                var pair = 2 * from + (to == from + 1 ? 0 : 1);
+                var length = (int) Math.round(Math.hypot(es[to] - es[from], ns[to] - ns[from]) * 16);
+                var attributes = attributesOf(from, to, columns);
+                var type = (from + to) % 4;
+                var samples = samples(es[from], ns[from], es[to], ns[to], length);
+                if (type != 0) {
+                    var encoded = new ArrayList<Short>();
+                    encodeProfile(encoded, type, samples);
+                    if (profileOfPair[pair] < 0) {
+                        profileOfPair[pair] = elevations.size();
+                        elevations.addAll(encoded);
+                    }
+                }
+                if (inverted) reverse(samples);
+                var targetId = nodeIdOf[j];
+                edges.putInt(inverted ? ~targetId : targetId);
+                edges.putShort((short) length);
+                edges.putShort((short) (type == 0 ? 0 : gainQ4(samples)));
+                edges.putShort((short) attributes);
+                profileIds.putInt(type == 0 ? 0 : (type << 30) | profileOfPair[pair]);
+                edgeCount += 1;
+            }
+            nodesBuffer.putInt((int) Math.scalb(es[i], 4));
+            nodesBuffer.putInt((int) Math.scalb(ns[i], 4));
+            nodesBuffer.putInt(((edgeCount - firstEdge) << 28) | firstEdge);
+            osmIdsBuffer.putLong(osmIdOf(i));
+        }
+
+        var elevationsBuffer = ByteBuffer.allocate(elevations.size() * Short.BYTES);
+        for (short s : elevations) elevationsBuffer.putShort(s);
+        var attributesBuffer = ByteBuffer.allocate(ATTRIBUTES.size() * Long.BYTES);
+        for (var set : ATTRIBUTES) attributesBuffer.putLong(set.bits());
+
+        BinaryFiles.write(dir.resolve("nodes.bin"), nodesBuffer);
+        BinaryFiles.write(dir.resolve("nodes_osmid.bin"), osmIdsBuffer);
+        BinaryFiles.write(dir.resolve("sectors.bin"), sectorsBuffer);
+        BinaryFiles.write(dir.resolve("edges.bin"), edges.flip());
+        BinaryFiles.write(dir.resolve("profile_ids.bin"), profileIds.flip());
+        BinaryFiles.write(dir.resolve("elevations.bin"), elevationsBuffer);
+        BinaryFiles.write(dir.resolve("attributes.bin"), attributesBuffer);
+        return nodeIdOf;
+    }
+
+    /**
+     * Gives the identity of the edge of the graph going from the first given node to the second one.
+     *
+     * @throws IllegalArgumentException if there is no such edge.
+     */
+    public static int edgeBetween(Graph graph, int from, int to) {
+        for (int i = 0; i < graph.nodeOutDegree(from); i += 1) {
+            var edgeId = graph.nodeOutEdgeId(from, i);
+            if (graph.edgeTargetNodeId(edgeId) == to) return edgeId;
+        }
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Gives the total cost of the edges of the given route, for the given cost function.
+     */
+    public static double cost(Graph graph, CostFunction cf, Route route) {
+        var cost = 0d;
+        for (var edge : route.edges()) {
+            var edgeId = edgeBetween(graph, edge.fromNodeId(), edge.toNodeId());
+            cost += graph.edgeLength(edgeId) * cf.costFactor(edge.fromNodeId(), edgeId);
+        }
+        return cost;
+    }
+
+    /**
+     * Gives the (fake) OpenStreetMap identity of the node at the given grid index.
+     */
+    public static long osmIdOf(int gridIndex) {
+        return 8_000_000_000L + (gridIndex * 7919L) % 1_000_003L;
+    }
+
+    /**
+     * Gives the elevation of the terrain at the given point.
+     */
+    public static double elevationAt(double e, double n) {
+        return 500 + 0.04 * (e - ORIGIN_E) + 6 * Math.sin((n - ORIGIN_N) / 120);
+    }
+
+    private static int attributesOf(int from, int to, int columns) {
+        var horizontal = to == from + 1;
+        var row = from / columns;
+        var column = from % columns;
+        if (!horizontal && column == 7) return 2;
+        if (horizontal && row % 5 == 0) return 1;
+        if (horizontal && row % 5 == 3) return 3;
+        return 0;
+    }
+
+    private static double quantize(double v) {
+        return Math.scalb(Math.rint(Math.scalb(v, 4)), -4);
+    }
+
+    // The quantized (Q28.4) samples of the profile.
+    private static int[] samples(double e0, double n0, double e1, double n1, int lengthQ4) {
+        var count = 1 + (lengthQ4 + 31) / 32;
+        var samples = new int[count];
+        for (int k = 0; k < count; k += 1) {
+            var t = (double) k / (count - 1);
+            samples[k] = (int) Math.round(16 * elevationAt(e0 + t * (e1 - e0), n0 + t * (n1 - n0)));
+        }
+        return samples;
+    }
+
+    // Encodes the samples with the given profile type, replacing them by the values that GraphEdges will decode.
+    private static void encodeProfile(List<Short> out, int type, int[] samples) {
+        out.add((short) samples[0]);
+        var perShort = type == 1 ? 1 : type == 2 ? 2 : 4;
+        var bits = 16 / perShort;
+        var max = (1 << (bits - 1)) - 1;
+        for (int k = 1; k < samples.length; k += perShort) {
+            var packed = 0;
+            for (int j = 0; j < perShort; j += 1) {
+                var v = 0;
+                if (k + j < samples.length) {
+                    if (type == 1) {
+                        v = samples[k + j];
+                    } else {
+                        v = Math.max(-max - 1, Math.min(max, samples[k + j] - samples[k + j - 1]));
+                        samples[k + j] = samples[k + j - 1] + v;
+                    }
+                }
+                packed = (packed << bits) | (v & ((1 << bits) - 1));
+            }
+            out.add((short) packed);
+        }
+    }
+
+    private static int gainQ4(int[] samples) {
+        var gain = 0;
+        for (int k = 1; k < samples.length; k += 1) gain += Math.max(0, samples[k] - samples[k - 1]);
+        return gain;
+    }
+
+    private static void reverse(int[] a) {
+        for (int i = 0, j = a.length - 1; i < j; i += 1, j -= 1) {
+            var t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+}